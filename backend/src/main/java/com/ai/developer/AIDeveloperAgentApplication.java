@@ -4,10 +4,16 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
 
+import java.util.Map;
+
 @SpringBootApplication
 @EnableAsync
 public class AIDeveloperAgentApplication {
     public static void main(String[] args) {
-        SpringApplication.run(AIDeveloperAgentApplication.class, args);
+        SpringApplication application = new SpringApplication(AIDeveloperAgentApplication.class);
+        // Lowest-precedence defaults; any external configuration overrides them
+        application.setDefaultProperties(Map.of(
+                "management.endpoints.web.exposure.include", "health,info,prometheus"));
+        application.run(args);
     }
 }
@@ -0,0 +1,16 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "agent")
+public class AgentConfig {
+    // Budgets for the tool loop that runs for a single user message
+    private Integer maxSteps = 10;
+    private Integer timeBudgetSeconds = 300;
+    // Tool calls of one step that run at the same time; Tool.getMaxConcurrency() caps each tool
+    private Integer maxParallelToolCalls = 8;
+}
@@ -0,0 +1,15 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.code-index")
+public class CodeIndexConfig {
+    // Where source summaries and their resolved references are saved between runs; defaults to a directory under java.io.tmpdir
+    private String directory;
+    // Local Maven repository holding the jars of project dependencies, used to resolve library types; defaults to ~/.m2/repository
+    private String mavenRepository;
+}
@@ -14,4 +14,10 @@ public class LLMConfig {
     private Double temperature = 0.7;
     private Integer maxTokens = 4000;
     private String endpoint;
+    // Mark the stable request prefix (tools, system prompt, older history) for Anthropic prompt caching
+    private Boolean promptCaching = true;
+    // Context window: history beyond the budget is folded into a rolling summary
+    private Integer contextTokenBudget = 60000;
+    private Integer contextRecentTurns = 6;
+    private Integer contextSummaryMaxTokens = 2000;
 }
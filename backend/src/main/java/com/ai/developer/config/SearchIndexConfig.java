@@ -0,0 +1,15 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.search-index")
+public class SearchIndexConfig {
+    // Trigram index per project, built on the first search and kept current by watching the tree
+    private Boolean enabled = true;
+    // Where indexes are saved between runs; defaults to a directory under java.io.tmpdir
+    private String directory;
+}
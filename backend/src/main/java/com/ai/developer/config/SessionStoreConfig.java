@@ -0,0 +1,19 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "session.store")
+public class SessionStoreConfig {
+    private String type = "mapped-log"; // mapped-log, memory
+    private String directory = "data/sessions";
+    private Integer segmentSizeMb = 64;
+    private Integer cacheMaxSessions = 1000;
+    private Boolean forceOnAppend = false;
+    // The log is compacted when more than this share of it is deleted or superseded records
+    private Double compactionGarbageRatio = 0.5;
+    private Integer compactionIntervalMinutes = 10;
+}
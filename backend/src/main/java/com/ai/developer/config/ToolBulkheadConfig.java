@@ -0,0 +1,26 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.bulkhead")
+public class ToolBulkheadConfig {
+    // Defaults for every tool; max concurrency defaults to Tool.getMaxConcurrency()
+    private Integer queueCapacity = 32;
+    private String rejectionPolicy = "fail"; // fail, evict-oldest
+    // Per-tool overrides keyed by tool name, e.g. tools.bulkhead.tools.git_operations.max-concurrency=2
+    private Map<String, Settings> tools = new HashMap<>();
+
+    @Data
+    public static class Settings {
+        private Integer maxConcurrency;
+        private Integer queueCapacity;
+        private String rejectionPolicy;
+    }
+}
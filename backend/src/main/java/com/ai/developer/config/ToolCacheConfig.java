@@ -0,0 +1,16 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.cache")
+public class ToolCacheConfig {
+    // Results of cacheable tool calls, shared across sessions and evicted least recently used first
+    private Boolean enabled = true;
+    private Long maxBytes = 64L * 1024 * 1024;
+    // Larger results are never cached
+    private Long maxEntryBytes = 4L * 1024 * 1024;
+}
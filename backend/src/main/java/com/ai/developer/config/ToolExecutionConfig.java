@@ -0,0 +1,14 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.execution")
+public class ToolExecutionConfig {
+    // Threads for blocking tool bodies and process output pumps: platform, virtual
+    // (virtual needs a JDK with virtual threads; otherwise platform threads are used)
+    private String mode = "platform";
+}
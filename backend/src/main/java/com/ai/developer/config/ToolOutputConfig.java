@@ -0,0 +1,21 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.output")
+public class ToolOutputConfig {
+    // Largest tool result kept in the conversation; anything bigger is spilled to disk
+    private Integer maxResultBytes = 32 * 1024;
+    // Bytes from the start and from the end of a spilled result shown in its place
+    private Integer previewBytes = 4 * 1024;
+    // Defaults to a directory under java.io.tmpdir
+    private String spillDirectory;
+    // Spilled results of all sessions together above this are deleted, oldest first
+    private Long maxSpillBytes = 1024L * 1024 * 1024;
+    // Spilled results older than this are deleted
+    private Integer spillMaxAgeMinutes = 24 * 60;
+}
@@ -0,0 +1,20 @@
+package com.ai.developer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tools.workspace-trees")
+public class WorkspaceTreeConfig {
+    // Live trees are kept for git repositories and for these directories; anything else is walked on demand
+    private List<String> roots = new ArrayList<>();
+    // Each open tree holds a scan and a watch per directory; the least recently used is closed past this
+    private Integer maxOpen = 8;
+    // Trees unused for this long are closed
+    private Integer idleMinutes = 30;
+}
@@ -30,6 +30,13 @@ public class ChatController {
             .doOnError(error -> log.error("Error creating session", error));
     }
     
+    @DeleteMapping("/sessions/{sessionId}")
+    public Mono<Void> deleteSession(@PathVariable String sessionId) {
+        log.info("Deleting session: {}", sessionId);
+        return chatService.deleteSession(sessionId)
+            .doOnError(error -> log.error("Error deleting session: {}", sessionId, error));
+    }
+    
     @GetMapping("/sessions/{sessionId}/history")
     public Mono<List<ChatResponse>> getSessionHistory(@PathVariable String sessionId) {
         log.info("Getting history for session: {}", sessionId);
@@ -11,8 +11,45 @@ import java.util.Map;
 @Builder
 public class ChatContext {
     private String sessionId;
-    private List<Message> messages;
+    // Immutable history; every append publishes a new, structurally shared version
+    private volatile PersistentList<Message> messages;
     private Map<String, Object> metadata;
     private List<Map<String, Object>> availableTools;
     private ProjectContext projectContext;
+    // Cached by ContextWindowManager, rebuilt on demand and therefore not persisted
+    private volatile HistorySummary historySummary;
+
+    public void setMessages(List<Message> messages) {
+        this.messages = PersistentList.copyOf(messages);
+    }
+
+    public synchronized void addMessage(Message message) {
+        messages = messages.append(message);
+    }
+
+    public synchronized void addMessageFirst(Message message) {
+        messages = PersistentList.<Message>empty().append(message).appendAll(messages);
+    }
+
+    /**
+     * O(1) view of the context as it is now; later appends are not visible through it.
+     */
+    public ChatContext snapshot() {
+        return ChatContext.builder()
+                .sessionId(sessionId)
+                .messages(messages)
+                .metadata(metadata)
+                .availableTools(availableTools)
+                .projectContext(projectContext)
+                .build();
+    }
+
+    public static class ChatContextBuilder {
+        private PersistentList<Message> messages = PersistentList.empty();
+
+        public ChatContextBuilder messages(List<Message> messages) {
+            this.messages = PersistentList.copyOf(messages);
+            return this;
+        }
+    }
 }
@@ -0,0 +1,157 @@
+package com.ai.developer.llm;
+
+import com.ai.developer.config.LLMConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits the conversation into the configured token budget before it is sent to the LLM.
+ *
+ * System messages and the most recent turns are always sent verbatim. When the
+ * history exceeds the budget, everything older is folded into a rolling summary
+ * that is cached on the ChatContext and only extended with newly folded messages.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContextWindowManager {
+
+    private static final int DIGEST_CHARS = 200;
+    private static final String SUMMARY_HEADER = "Summary of the earlier conversation (older turns were compacted):\n";
+
+    private final LLMConfig config;
+
+    /**
+     * Return a snapshot of the context that fits the token budget.
+     */
+    public ChatContext prepare(ChatContext context) {
+        PersistentList<Message> messages = context.getMessages();
+        int budget = config.getContextTokenBudget() != null ? config.getContextTokenBudget() : Integer.MAX_VALUE;
+
+        int totalTokens = 0;
+        for (Message message : messages) {
+            totalTokens += message.estimateTokens();
+        }
+        if (totalTokens <= budget) {
+            return context.snapshot();
+        }
+
+        int turns = Math.max(1, config.getContextRecentTurns() != null ? config.getContextRecentTurns() : 6);
+        int windowStart = recentWindowStart(messages, turns);
+        HistorySummary summary = summarize(context, messages, windowStart);
+        int windowTokens = windowTokens(messages, windowStart, summary);
+
+        // Drop further turns from the verbatim window until the request fits
+        while (windowTokens > budget && turns > 1) {
+            turns--;
+            windowStart = recentWindowStart(messages, turns);
+            summary = summarize(context, messages, windowStart);
+            windowTokens = windowTokens(messages, windowStart, summary);
+        }
+
+        List<Message> window = new ArrayList<>();
+        for (int i = 0; i < windowStart; i++) {
+            if ("system".equals(messages.get(i).getRole())) {
+                window.add(messages.get(i));
+            }
+        }
+        if (summary.getMessage() != null) {
+            window.add(summary.getMessage());
+        }
+        window.addAll(messages.subList(windowStart, messages.size()));
+
+        log.info("Compacted context for session {}: {} of {} messages verbatim, ~{} of ~{} tokens",
+                context.getSessionId(), messages.size() - windowStart, messages.size(), windowTokens, totalTokens);
+
+        ChatContext snapshot = context.snapshot();
+        snapshot.setMessages(window);
+        return snapshot;
+    }
+
+    /**
+     * Index of the user message that starts the last {@code turns} turns.
+     */
+    private int recentWindowStart(List<Message> messages, int turns) {
+        int seen = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).getRole()) && ++seen == turns) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private int windowTokens(List<Message> messages, int windowStart, HistorySummary summary) {
+        int tokens = summary.getMessage() != null ? summary.getMessage().estimateTokens() : 0;
+        for (int i = 0; i < messages.size(); i++) {
+            if (i >= windowStart || "system".equals(messages.get(i).getRole())) {
+                tokens += messages.get(i).estimateTokens();
+            }
+        }
+        return tokens;
+    }
+
+    private HistorySummary summarize(ChatContext context, List<Message> messages, int windowStart) {
+        HistorySummary cached = context.getHistorySummary();
+        if (cached != null && cached.getFoldedMessages() == windowStart) {
+            return cached;
+        }
+
+        // Extend the cached summary when the fold boundary moved forward, otherwise start over
+        boolean extend = cached != null && cached.getFoldedMessages() < windowStart;
+        StringBuilder text = new StringBuilder(extend ? cached.getText() : "");
+        for (int i = extend ? cached.getFoldedMessages() : 0; i < windowStart; i++) {
+            String digest = digest(messages.get(i));
+            if (digest != null) {
+                text.append(digest).append('\n');
+            }
+        }
+
+        // Keep the summary itself bounded by dropping its oldest lines
+        int maxChars = (config.getContextSummaryMaxTokens() != null ? config.getContextSummaryMaxTokens() : 2000) * 4;
+        if (text.length() > maxChars) {
+            int cut = text.indexOf("\n", text.length() - maxChars);
+            text.delete(0, cut < 0 ? text.length() : cut + 1);
+        }
+
+        HistorySummary summary = HistorySummary.builder()
+                .foldedMessages(windowStart)
+                .text(text.toString())
+                .message(text.length() == 0 ? null : Message.builder()
+                        .role("user")
+                        .content(SUMMARY_HEADER + text)
+                        .timestamp(Instant.now())
+                        .build())
+                .build();
+        context.setHistorySummary(summary);
+        return summary;
+    }
+
+    private String digest(Message message) {
+        String role = message.getRole();
+        if ("system".equals(role)) {
+            return null;
+        }
+        if (message.getToolCall() != null) {
+            return "- Assistant called " + message.getToolCall().getName() + " with "
+                    + truncate(message.getToolCall().getArguments());
+        }
+        if ("tool".equals(role)) {
+            return "- Tool result: " + truncate(message.getContent());
+        }
+        return "- " + ("user".equals(role) ? "User" : "Assistant") + ": " + truncate(message.getContent());
+    }
+
+    private String truncate(String text) {
+        if (text == null) {
+            return "";
+        }
+        String singleLine = text.replace('\n', ' ').trim();
+        return singleLine.length() > DIGEST_CHARS ? singleLine.substring(0, DIGEST_CHARS) + "..." : singleLine;
+    }
+}
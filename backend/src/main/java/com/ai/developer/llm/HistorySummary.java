@@ -0,0 +1,15 @@
+package com.ai.developer.llm;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Rolling digest of the turns that have been folded out of the context window.
+ */
+@Data
+@Builder
+public class HistorySummary {
+    private int foldedMessages; // messages [0, foldedMessages) are covered by the summary
+    private String text;
+    private Message message;
+}
@@ -4,6 +4,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface LLMProvider {
+    // prompt is appended as a final user message; pass null when the context already ends with it
     Mono<String> generateResponse(String prompt, ChatContext context);
     Flux<String> streamResponse(String prompt, ChatContext context);
     String getProviderName();
@@ -1,15 +1,52 @@
 package com.ai.developer.llm;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import java.time.Instant;
 
 @Data
 @Builder
 public class Message {
+    // Rough chars-per-token ratio for English text and code, plus per-message framing
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
     private String role; // user, assistant, system, tool
     private String content;
     private String toolCallId;
     private ToolCall toolCall;
     private Instant timestamp;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile Integer tokenEstimate;
+
+    public void setContent(String content) {
+        this.content = content;
+        this.tokenEstimate = null;
+    }
+
+    /**
+     * Approximate token count of this message, computed once and cached.
+     */
+    public int estimateTokens() {
+        Integer estimate = tokenEstimate;
+        if (estimate == null) {
+            int chars = content != null ? content.length() : 0;
+            if (toolCall != null) {
+                chars += (toolCall.getName() != null ? toolCall.getName().length() : 0)
+                        + (toolCall.getArguments() != null ? toolCall.getArguments().length() : 0);
+            }
+            estimate = MESSAGE_OVERHEAD_TOKENS + (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+            tokenEstimate = estimate;
+        }
+        return estimate;
+    }
 }
@@ -0,0 +1,132 @@
+package com.ai.developer.llm;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, structurally shared list backed by a 32-way bit-partitioned trie
+ * with a tail buffer (the same layout as Clojure's PersistentVector).
+ *
+ * Appending returns a new list that shares all but O(log32 n) nodes with the
+ * original, so keeping an older version around as a snapshot is free and
+ * readers of a version never observe later appends.
+ */
+public final class PersistentList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentList<?> EMPTY =
+            new PersistentList<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentList<E> empty() {
+        return (PersistentList<E>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentList<E> copyOf(Collection<? extends E> items) {
+        if (items instanceof PersistentList) {
+            return (PersistentList<E>) items;
+        }
+        return PersistentList.<E>empty().appendAll(items);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return a new list with the element added at the end.
+     */
+    public PersistentList<E> append(E element) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = new Object[tail.length + 1];
+            System.arraycopy(tail, 0, newTail, 0, tail.length);
+            newTail[tail.length] = element;
+            return new PersistentList<>(size + 1, shift, root, newTail);
+        }
+
+        // The tail is full: push it into the trie and start a new one
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentList<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * Return a new list with all elements added at the end, in iteration order.
+     */
+    public PersistentList<E> appendAll(Iterable<? extends E> elements) {
+        PersistentList<E> result = this;
+        for (E element : elements) {
+            result = result.append(element);
+        }
+        return result;
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object[] child = (Object[]) parent[subIndex];
+        result[subIndex] = level == BITS
+                ? tailNode
+                : child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+}
@@ -0,0 +1,323 @@
+package com.ai.developer.llm.providers;
+
+import com.ai.developer.llm.providers.CustomClaudeLLMProvider.Usage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental decoder for the Claude Messages streaming response.
+ *
+ * Works directly on the response DataBuffers: events are framed at the byte level
+ * and each data payload is read with Jackson's streaming JsonParser, pulling out
+ * only the fields its event type needs. Text deltas are handed to the listener as
+ * plain Strings without any intermediate objects; the line and data scratch arrays
+ * are reused for the whole stream.
+ *
+ * One instance per stream; not thread-safe.
+ */
+@Slf4j
+public class ClaudeSseDecoder {
+
+    private static final byte[] DATA_FIELD = {'d', 'a', 't', 'a', ':'};
+
+    private final JsonFactory jsonFactory;
+    private final EventFields event = new EventFields();
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private byte[] data = new byte[4096];
+    private int dataLength;
+
+    public ClaudeSseDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Callbacks for the events of a streamed message, in stream order.
+     */
+    public interface Listener {
+        void onText(int index, String text);
+
+        default void onToolUseStart(int index, String id, String name) {
+        }
+
+        default void onInputJsonDelta(int index, String partialJson) {
+        }
+
+        default void onContentBlockStop(int index) {
+        }
+
+        default void onMessageStart(Usage usage) {
+        }
+
+        default void onMessageDelta(String stopReason, Integer outputTokens) {
+        }
+
+        default void onError(String type, String message) {
+        }
+    }
+
+    /**
+     * Decode the readable bytes of a buffer. The buffer is not released.
+     */
+    public void decode(DataBuffer buffer, Listener listener) {
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                decode(iterator.next(), listener);
+            }
+        }
+    }
+
+    public void decode(ByteBuffer bytes, Listener listener) {
+        int position = bytes.position();
+        int limit = bytes.limit();
+        while (position < limit) {
+            int newline = indexOfNewline(bytes, position, limit);
+            int end = newline < 0 ? limit : newline;
+            appendLine(bytes, position, end - position);
+            if (newline < 0) {
+                return;
+            }
+            processLine(listener);
+            position = newline + 1;
+        }
+    }
+
+    /**
+     * Flush a final event that was not followed by a blank line.
+     */
+    public void complete(Listener listener) {
+        if (lineLength > 0) {
+            processLine(listener);
+        }
+        dispatch(listener);
+    }
+
+    private void processLine(Listener listener) {
+        int length = lineLength;
+        lineLength = 0;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            dispatch(listener);
+            return;
+        }
+        if (!startsWith(line, length, DATA_FIELD)) {
+            // event:, id:, retry: and comment lines carry nothing we need; the type is in the payload
+            return;
+        }
+        int offset = DATA_FIELD.length;
+        if (offset < length && line[offset] == ' ') {
+            offset++;
+        }
+        if (dataLength > 0) {
+            data = ensureCapacity(data, dataLength + 1);
+            data[dataLength++] = '\n';
+        }
+        data = ensureCapacity(data, dataLength + length - offset);
+        System.arraycopy(line, offset, data, dataLength, length - offset);
+        dataLength += length - offset;
+    }
+
+    private void dispatch(Listener listener) {
+        if (dataLength == 0) {
+            return;
+        }
+        int length = dataLength;
+        dataLength = 0;
+        if (data[0] != '{') {
+            // e.g. a trailing [DONE] marker
+            return;
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(data, 0, length)) {
+            event.reset();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            readEvent(parser);
+        } catch (IOException e) {
+            log.error("Error parsing streaming event: {}", e.getMessage());
+            return;
+        }
+
+        switch (event.type == null ? "" : event.type) {
+            case "content_block_delta" -> {
+                if (event.text != null) {
+                    listener.onText(event.index, event.text);
+                } else if (event.partialJson != null) {
+                    listener.onInputJsonDelta(event.index, event.partialJson);
+                }
+            }
+            case "content_block_start" -> {
+                if ("tool_use".equals(event.blockType)) {
+                    listener.onToolUseStart(event.index, event.blockId, event.blockName);
+                }
+            }
+            case "content_block_stop" -> listener.onContentBlockStop(event.index);
+            case "message_start" -> listener.onMessageStart(event.usage());
+            case "message_delta" -> listener.onMessageDelta(event.stopReason, event.outputTokens);
+            case "error" -> listener.onError(event.errorType, event.errorMessage);
+            default -> {
+                // ping, message_stop
+            }
+        }
+    }
+
+    private void readEvent(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "type" -> event.type = parser.getText();
+                case "index" -> event.index = parser.getIntValue();
+                case "delta" -> readObject(parser, value, this::readDeltaField);
+                case "content_block" -> readObject(parser, value, this::readContentBlockField);
+                case "usage" -> readObject(parser, value, this::readUsageField);
+                case "message" -> readObject(parser, value, (p, name) -> {
+                    if ("usage".equals(name)) {
+                        readObject(p, p.currentToken(), this::readUsageField);
+                    } else {
+                        p.skipChildren();
+                    }
+                });
+                case "error" -> readObject(parser, value, (p, name) -> {
+                    if ("type".equals(name)) {
+                        event.errorType = p.getText();
+                    } else if ("message".equals(name)) {
+                        event.errorMessage = p.getText();
+                    } else {
+                        p.skipChildren();
+                    }
+                });
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readDeltaField(JsonParser parser, String field) throws IOException {
+        switch (field) {
+            case "text" -> event.text = parser.getText();
+            case "partial_json" -> event.partialJson = parser.getText();
+            case "stop_reason" -> event.stopReason = parser.getValueAsString();
+            default -> parser.skipChildren();
+        }
+    }
+
+    private void readContentBlockField(JsonParser parser, String field) throws IOException {
+        switch (field) {
+            case "type" -> event.blockType = parser.getText();
+            case "id" -> event.blockId = parser.getText();
+            case "name" -> event.blockName = parser.getText();
+            default -> parser.skipChildren();
+        }
+    }
+
+    private void readUsageField(JsonParser parser, String field) throws IOException {
+        Integer tokens = parser.currentToken() == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+        switch (field) {
+            case "input_tokens" -> event.inputTokens = tokens;
+            case "output_tokens" -> event.outputTokens = tokens;
+            case "cache_creation_input_tokens" -> event.cacheCreationInputTokens = tokens;
+            case "cache_read_input_tokens" -> event.cacheReadInputTokens = tokens;
+            default -> parser.skipChildren();
+        }
+    }
+
+    private void readObject(JsonParser parser, JsonToken start, FieldReader reader) throws IOException {
+        if (start != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            reader.read(parser, field);
+        }
+    }
+
+    private void appendLine(ByteBuffer bytes, int position, int length) {
+        line = ensureCapacity(line, lineLength + length);
+        bytes.get(position, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private static int indexOfNewline(ByteBuffer bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        void read(JsonParser parser, String field) throws IOException;
+    }
+
+    /**
+     * Fields of the event being decoded; reused for every event of the stream.
+     */
+    private static class EventFields {
+        String type;
+        int index;
+        String text;
+        String partialJson;
+        String stopReason;
+        String blockType;
+        String blockId;
+        String blockName;
+        Integer inputTokens;
+        Integer outputTokens;
+        Integer cacheCreationInputTokens;
+        Integer cacheReadInputTokens;
+        String errorType;
+        String errorMessage;
+
+        void reset() {
+            type = null;
+            index = 0;
+            text = null;
+            partialJson = null;
+            stopReason = null;
+            blockType = null;
+            blockId = null;
+            blockName = null;
+            inputTokens = null;
+            outputTokens = null;
+            cacheCreationInputTokens = null;
+            cacheReadInputTokens = null;
+            errorType = null;
+            errorMessage = null;
+        }
+
+        Usage usage() {
+            return new Usage(inputTokens, outputTokens, cacheCreationInputTokens, cacheReadInputTokens);
+        }
+    }
+}
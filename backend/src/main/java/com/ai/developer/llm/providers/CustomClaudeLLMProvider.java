@@ -6,13 +6,15 @@ import com.ai.developer.llm.LLMProvider;
 import com.ai.developer.llm.Message;
 import com.ai.developer.llm.ToolCall;
 import com.ai.developer.service.ChatService;
-import com.ai.developer.tools.ParameterInfo;
-import com.ai.developer.tools.Tool;
 import com.ai.developer.tools.ToolRegistry;
+import com.ai.developer.tools.ToolSchemaFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,6 +23,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
@@ -33,11 +37,9 @@ import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Component
@@ -49,16 +51,18 @@ public class CustomClaudeLLMProvider implements LLMProvider {
     private final LLMConfig config;
     private final ObjectMapper objectMapper;
     private final ToolRegistry toolRegistry;
+    private final MeterRegistry meterRegistry;
     private WebClient webClient;
     
     private static final String CLAUDE_API_URL = "https://api.anthropic.com/v1/messages";
     // Updated to the latest API version for Claude 3.7
     private static final String CLAUDE_API_VERSION = "2023-06-01"; // This is the current latest version as of May 2025
+    private static final CacheControl EPHEMERAL = new CacheControl("ephemeral");
     
     @PostConstruct
     public void init() {
         this.webClient = WebClient.builder()
-                .baseUrl(CLAUDE_API_URL)
+                .baseUrl(config.getEndpoint() != null ? config.getEndpoint() : CLAUDE_API_URL)
                 .defaultHeader("x-api-key", config.getApiKey())
                 .defaultHeader("anthropic-version", CLAUDE_API_VERSION)
                 .defaultHeader("content-type", "application/json")
@@ -138,6 +142,7 @@ public class CustomClaudeLLMProvider implements LLMProvider {
                                 .map(rawResponse -> {
                                     try {
                                         ClaudeResponse claudeResponse = objectMapper.readValue(rawResponse, ClaudeResponse.class);
+                                        recordUsage(claudeResponse.getUsage(), true);
                                         if (claudeResponse.getContent() != null && !claudeResponse.getContent().isEmpty()) {
                                             return claudeResponse.getContent().get(0).getText();
                                         } else {
@@ -178,111 +183,27 @@ public class CustomClaudeLLMProvider implements LLMProvider {
             String requestJson = objectMapper.writeValueAsString(request);
             log.info("Request payload: {}", requestJson);
             
-            // Track the current tool use block being built
-            AtomicReference<ToolUseBlock> currentToolUseBlock = new AtomicReference<>(null);
-            
             return webClient.post()
                     .body(BodyInserters.fromValue(requestJson))
                     .accept(MediaType.TEXT_EVENT_STREAM)
                     .exchangeToFlux(response -> {
                         if (response.statusCode().is2xxSuccessful()) {
-                            return response.bodyToFlux(String.class)
-                                .doOnNext(rawChunk -> {
-                                    log.debug("Raw streaming chunk: {}", rawChunk);
-                                })
-                                .flatMap(rawChunk -> {
+                            // Decode the raw buffers in place rather than binding every event to a POJO
+                            ClaudeSseDecoder decoder = new ClaudeSseDecoder(objectMapper.getFactory());
+                            StreamHandler handler = new StreamHandler();
+                            return response.bodyToFlux(DataBuffer.class)
+                                .concatMapIterable(buffer -> {
                                     try {
-                                        if (rawChunk.startsWith("data: ")) {
-                                            rawChunk = rawChunk.substring(6);
-                                        }
-                                        if (rawChunk.equals("[DONE]")) {
-                                            return Mono.empty();
-                                        }
-                                        
-                                        ClaudeStreamingResponse streamingResponse = objectMapper.readValue(rawChunk, ClaudeStreamingResponse.class);
-                                        
-                                        // Handle different types of streaming responses
-                                        if (streamingResponse.getType().equals("content_block_start") && 
-                                            streamingResponse.getContentBlock() != null &&
-                                            "tool_use".equals(streamingResponse.getContentBlock().getType())) {
-                                            
-                                            // This is the start of a tool use block
-                                            log.info("Detected tool use block start: {}", rawChunk);
-                                            
-                                            // Extract tool use information
-                                            ToolUseBlock toolUseBlock = ToolUseBlock.builder()
-                                                .id(streamingResponse.getContentBlock().getId())
-                                                .name(streamingResponse.getContentBlock().getName())
-                                                .input(new HashMap<>())
-                                                .build();
-                                            
-                                            // Store the current tool use block
-                                            currentToolUseBlock.set(toolUseBlock);
-                                            
-                                            // Don't emit anything yet, wait for the complete tool use block
-                                            return Mono.empty();
-                                        } 
-                                        else if (streamingResponse.getType().equals("content_block_delta") && 
-                                                 streamingResponse.getDelta() != null &&
-                                                 streamingResponse.getDelta().getType() != null &&
-                                                 "tool_use_delta".equals(streamingResponse.getDelta().getType())) {
-                                            
-                                            // This is a delta update to the tool use block (input parameters)
-                                            log.info("Detected tool use delta: {}", rawChunk);
-                                            
-                                            // Update the current tool use block with the input parameters
-                                            ToolUseBlock toolUseBlock = currentToolUseBlock.get();
-                                            if (toolUseBlock != null && streamingResponse.getDelta().getInput() != null) {
-                                                // Merge the input parameters
-                                                if (toolUseBlock.getInput() == null) {
-                                                    toolUseBlock.setInput(new HashMap<>());
-                                                }
-                                                toolUseBlock.getInput().putAll(streamingResponse.getDelta().getInput());
-                                                currentToolUseBlock.set(toolUseBlock);
-                                            }
-                                            
-                                            // Don't emit anything yet, wait for the complete tool use block
-                                            return Mono.empty();
-                                        }
-                                        else if (streamingResponse.getType().equals("message_delta") && 
-                                                 streamingResponse.getDelta() != null &&
-                                                 "tool_use".equals(streamingResponse.getDelta().getStopReason())) {
-                                            
-                                            // This is the end of a tool use block
-                                            log.info("Detected tool use block end: {}", rawChunk);
-                                            
-                                            // Get the complete tool use block
-                                            ToolUseBlock toolUseBlock = currentToolUseBlock.get();
-                                            if (toolUseBlock != null) {
-                                                // Execute the tool and return a special marker
-                                                log.info("Executing tool: {} with input: {}", toolUseBlock.getName(), toolUseBlock.getInput());
-                                                
-                                                // Convert the tool use block to a JSON string for the tool execution handler
-                                                String toolUseJson = objectMapper.writeValueAsString(toolUseBlock);
-                                                
-                                                // Reset the current tool use block
-                                                currentToolUseBlock.set(null);
-                                                
-                                                // Return a special marker with the tool use information
-                                                return Mono.just("[TOOL_USE:" + toolUseJson + "]");
-                                            }
-                                            
-                                            return Mono.empty();
-                                        }
-                                        else if (streamingResponse.getType().equals("content_block_delta") && 
-                                                 streamingResponse.getDelta() != null &&
-                                                 streamingResponse.getDelta().getText() != null) {
-                                            
-                                            // Regular text response
-                                            return Mono.just(streamingResponse.getDelta().getText());
-                                        }
-                                        
-                                        return Mono.empty();
-                                    } catch (JsonProcessingException e) {
-                                        log.error("Error parsing streaming chunk: {}", e.getMessage());
-                                        return Mono.empty();
+                                        decoder.decode(buffer, handler);
+                                    } finally {
+                                        DataBufferUtils.release(buffer);
                                     }
-                                });
+                                    return handler.drain();
+                                })
+                                .concatWith(Flux.defer(() -> {
+                                    decoder.complete(handler);
+                                    return Flux.fromIterable(handler.drain());
+                                }));
                         } else {
                             return response.bodyToMono(String.class)
                                 .doOnNext(errorBody -> {
@@ -318,34 +239,33 @@ public class CustomClaudeLLMProvider implements LLMProvider {
                     sysMsg.length() > 50 ? sysMsg.substring(0, 50) + "..." : sysMsg);
         });
         
-        // Add only user and assistant messages to the messages array
+        // Tool calls and results become tool_use and tool_result blocks; consecutive
+        // messages of the same role are merged, as the API expects all tool_use blocks
+        // of a step in one assistant message and all their results in the next user message
         List<ClaudeMessage> messages = new ArrayList<>();
-        
-        // Add user and assistant messages in order (excluding system messages)
-        List<Message> conversationMessages = context.getMessages().stream()
-                .filter(msg -> {
-                    // Strictly filter to only include user and assistant roles
-                    // Claude API does not accept system role in messages array
-                    String role = msg.getRole();
-                    boolean isValidRole = "user".equals(role) || "assistant".equals(role);
-                    if (!isValidRole && !"system".equals(role)) {
-                        log.warn("Ignoring message with unsupported role: {}", role);
-                    }
-                    return isValidRole;
-                })
-                .toList();
-        
-        for (Message msg : conversationMessages) {
-            log.info("Adding {} message: {}", msg.getRole(),
-                    msg.getContent().length() > 50 ? 
-                    msg.getContent().substring(0, 50) + "..." : 
-                    msg.getContent());
+        for (Message msg : context.getMessages()) {
+            String role = "tool".equals(msg.getRole()) ? "user" : msg.getRole();
+            if (!"user".equals(role) && !"assistant".equals(role)) {
+                if (!"system".equals(role)) {
+                    log.warn("Ignoring message with unsupported role: {}", role);
+                }
+                continue;
+            }
+            
+            ClaudeContentBlock block = toContentBlock(msg);
+            if (block == null) {
+                continue;
+            }
             
-            // Validate role is strictly "user" or "assistant" before adding
-            if ("user".equals(msg.getRole()) || "assistant".equals(msg.getRole())) {
+            ClaudeMessage last = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+            if (last != null && last.getRole().equals(role)) {
+                last.getContent().add(block);
+            } else {
+                List<ClaudeContentBlock> content = new ArrayList<>();
+                content.add(block);
                 messages.add(ClaudeMessage.builder()
-                        .role(msg.getRole())
-                        .content(msg.getContent())
+                        .role(role)
+                        .content(content)
                         .build());
             }
         }
@@ -355,10 +275,15 @@ public class CustomClaudeLLMProvider implements LLMProvider {
             log.info("Adding current prompt as user message: {}", 
                     prompt.length() > 50 ? prompt.substring(0, 50) + "..." : prompt);
             
-            messages.add(ClaudeMessage.builder()
-                    .role("user")
-                    .content(prompt)
-                    .build());
+            ClaudeMessage last = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+            if (last != null && "user".equals(last.getRole())) {
+                last.getContent().addAll(textContent(prompt));
+            } else {
+                messages.add(ClaudeMessage.builder()
+                        .role("user")
+                        .content(textContent(prompt))
+                        .build());
+            }
         }
         
         // Ensure we have at least one message - Claude API requires at least one message
@@ -366,8 +291,8 @@ public class CustomClaudeLLMProvider implements LLMProvider {
             log.warn("No messages found in context, adding default user message");
             messages.add(ClaudeMessage.builder()
                     .role("user")
-                    .content(prompt != null && !prompt.trim().isEmpty() ? 
-                            prompt : "Hello, I need help with development.")
+                    .content(textContent(prompt != null && !prompt.trim().isEmpty() ? 
+                            prompt : "Hello, I need help with development."))
                     .build());
         }
         
@@ -388,80 +313,167 @@ public class CustomClaudeLLMProvider implements LLMProvider {
                 .stream(stream);
         
         // Add system message as top-level parameter if present
+        List<ClaudeContentBlock> system;
         if (systemMessage.isPresent()) {
-            requestBuilder.system(systemMessage.get());
+            system = textContent(systemMessage.get());
         } else {
             // Add default system message if none exists
             String defaultSystemMessage = "You are a helpful AI developer assistant. You can help with coding, debugging, and using various development tools.";
             log.info("No system message found, using default: {}", defaultSystemMessage);
-            requestBuilder.system(defaultSystemMessage);
+            system = textContent(defaultSystemMessage);
         }
+        requestBuilder.system(system);
+        
+        boolean promptCaching = !Boolean.FALSE.equals(config.getPromptCaching());
         
-        // Add tools to the request if available
-        List<ClaudeTool> tools = buildToolDefinitions();
-        if (!tools.isEmpty()) {
-            log.info("Adding {} tools to Claude API request", tools.size());
+        // Precompiled by the registry; the cached variant carries the breakpoint on the last tool
+        String tools = toolRegistry.getToolDefinitionsJson(
+                promptCaching ? ToolSchemaFormat.CLAUDE_CACHED : ToolSchemaFormat.CLAUDE);
+        if (tools != null) {
             requestBuilder.tools(tools);
         }
         
+        if (promptCaching) {
+            addCacheBreakpoints(system, messages);
+        }
+        
         return requestBuilder.build();
     }
     
     /**
-     * Build tool definitions for Claude API request
+     * Mark the stable prefix of the request for prompt caching. The cache prefix is
+     * tools, then system, then messages, so one breakpoint after each stage lets the
+     * server reuse whatever part is unchanged since the previous turn.
      */
-    private List<ClaudeTool> buildToolDefinitions() {
-        List<ClaudeTool> tools = new ArrayList<>();
+    private void addCacheBreakpoints(List<ClaudeContentBlock> system, List<ClaudeMessage> messages) {
+        system.get(system.size() - 1).setCacheControl(EPHEMERAL);
         
-        // Get all registered tools from the registry
-        List<Tool> registeredTools = toolRegistry.getAllTools();
+        // Everything before the newest user message was already sent on the previous turn
+        if (messages.size() >= 2) {
+            List<ClaudeContentBlock> history = messages.get(messages.size() - 2).getContent();
+            history.get(history.size() - 1).setCacheControl(EPHEMERAL);
+        }
+    }
+    
+    private ClaudeContentBlock toContentBlock(Message msg) {
+        if (msg.getToolCall() != null && "assistant".equals(msg.getRole())) {
+            String arguments = msg.getToolCall().getArguments();
+            return ClaudeContentBlock.builder()
+                    .type("tool_use")
+                    .id(msg.getToolCall().getId())
+                    .name(msg.getToolCall().getName())
+                    .input(arguments != null && !arguments.isBlank() ? arguments : "{}")
+                    .build();
+        }
+        if ("tool".equals(msg.getRole()) && msg.getToolCallId() != null) {
+            return ClaudeContentBlock.builder()
+                    .type("tool_result")
+                    .toolUseId(msg.getToolCallId())
+                    .content(msg.getContent() != null ? msg.getContent() : "")
+                    .build();
+        }
+        // Claude rejects empty text blocks
+        if (msg.getContent() == null || msg.getContent().isEmpty()) {
+            return null;
+        }
+        return ClaudeContentBlock.builder()
+                .type("text")
+                .text(msg.getContent())
+                .build();
+    }
+    
+    private List<ClaudeContentBlock> textContent(String text) {
+        List<ClaudeContentBlock> blocks = new ArrayList<>(1);
+        blocks.add(ClaudeContentBlock.builder()
+                .type("text")
+                .text(text)
+                .build());
+        return blocks;
+    }
+    
+    private void recordUsage(Usage usage, boolean includeOutput) {
+        if (usage == null) {
+            return;
+        }
+        recordTokens("input", usage.getInputTokens());
+        if (includeOutput) {
+            recordTokens("output", usage.getOutputTokens());
+        }
+        recordTokens("cache_creation", usage.getCacheCreationInputTokens());
+        recordTokens("cache_read", usage.getCacheReadInputTokens());
+        log.info("Claude usage: input={}, output={}, cacheCreation={}, cacheRead={}",
+                usage.getInputTokens(), usage.getOutputTokens(),
+                usage.getCacheCreationInputTokens(), usage.getCacheReadInputTokens());
+    }
+    
+    private void recordTokens(String type, Integer tokens) {
+        if (tokens != null && tokens > 0) {
+            meterRegistry.counter("llm.tokens", "provider", "claude", "type", type).increment(tokens);
+        }
+    }
+    
+    /**
+     * Turns the decoded events of one streamed response into the chunks emitted to the
+     * caller: text deltas as they are, and a [TOOL_USE:...] marker for each tool_use
+     * block as soon as its input is complete.
+     */
+    private class StreamHandler implements ClaudeSseDecoder.Listener {
+        private final ToolInputAssembler toolInputs = new ToolInputAssembler(objectMapper);
+        private List<String> chunks = new ArrayList<>();
         
-        for (Tool tool : registeredTools) {
-            // Create input schema for the tool
-            Map<String, Object> inputSchema = new HashMap<>();
-            inputSchema.put("type", "object");
-            
-            // Add properties to the schema
-            Map<String, Object> properties = new HashMap<>();
-            List<String> required = new ArrayList<>();
-            
-            // Add each parameter to the properties
-            for (Map.Entry<String, ParameterInfo> entry : tool.getParameters().entrySet()) {
-                String paramName = entry.getKey();
-                ParameterInfo param = entry.getValue();
-                
-                Map<String, Object> paramSchema = new HashMap<>();
-                paramSchema.put("type", param.getType());
-                paramSchema.put("description", param.getDescription());
-                
-                // Add enum values if available
-                if (param.getEnumValues() != null && !param.getEnumValues().isEmpty()) {
-                    paramSchema.put("enum", param.getEnumValues());
-                }
-                
-                properties.put(paramName, paramSchema);
-                
-                // Add to required list if parameter is required
-                if (param.isRequired()) {
-                    required.add(paramName);
-                }
+        List<String> drain() {
+            if (chunks.isEmpty()) {
+                return List.of();
             }
-            
-            inputSchema.put("properties", properties);
-            inputSchema.put("required", required);
-            
-            // Create the tool definition
-            ClaudeTool claudeTool = ClaudeTool.builder()
-                    .name(tool.getName())
-                    .description(tool.getDescription())
-                    .inputSchema(inputSchema)
-                    .build();
-            
-            tools.add(claudeTool);
-            log.info("Added tool definition for: {}", tool.getName());
+            List<String> drained = chunks;
+            chunks = new ArrayList<>();
+            return drained;
         }
         
-        return tools;
+        @Override
+        public void onText(int index, String text) {
+            chunks.add(text);
+        }
+        
+        @Override
+        public void onToolUseStart(int index, String id, String name) {
+            log.info("Detected tool use block start: {} ({})", name, id);
+            toolInputs.start(index, id, name);
+        }
+        
+        @Override
+        public void onInputJsonDelta(int index, String partialJson) {
+            toolInputs.append(index, partialJson);
+        }
+        
+        @Override
+        public void onContentBlockStop(int index) {
+            toolInputs.complete(index).ifPresent(toolUseBlock -> {
+                log.info("Executing tool: {} with input: {}", toolUseBlock.getName(), toolUseBlock.getInput());
+                try {
+                    chunks.add("[TOOL_USE:" + objectMapper.writeValueAsString(toolUseBlock) + "]");
+                } catch (JsonProcessingException e) {
+                    log.error("Error serializing tool use block: {}", e.getMessage());
+                }
+            });
+        }
+        
+        @Override
+        public void onMessageStart(Usage usage) {
+            // Input and cache token counts arrive on message_start, the final output count on message_delta
+            recordUsage(usage, false);
+        }
+        
+        @Override
+        public void onMessageDelta(String stopReason, Integer outputTokens) {
+            recordTokens("output", outputTokens);
+        }
+        
+        @Override
+        public void onError(String type, String message) {
+            log.error("Claude API streaming error event: {} - {}", type, message);
+            chunks.add("Error from Claude API: " + type + " - " + message);
+        }
     }
     
     @Data
@@ -472,6 +484,10 @@ public class CustomClaudeLLMProvider implements LLMProvider {
         private String id;
         private String name;
         private Map<String, Object> input;
+        
+        // Why the streamed input could not be parsed; the tool is not run and the model is told
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String inputError;
     }
     
     @Data
@@ -481,14 +497,17 @@ public class CustomClaudeLLMProvider implements LLMProvider {
     public static class ClaudeRequest {
         private String model;
         private List<ClaudeMessage> messages;
-        private String system;
+        private List<ClaudeContentBlock> system;
         private Double temperature;
         
         @JsonProperty("max_tokens")  // Use snake_case for API compatibility
         private Integer max_tokens;
         
         private Boolean stream;
-        private List<ClaudeTool> tools;
+        
+        // Pre-serialized by ToolRegistry and written into the body as is
+        @JsonRawValue
+        private String tools;
     }
     
     @Data
@@ -497,19 +516,38 @@ public class CustomClaudeLLMProvider implements LLMProvider {
     @AllArgsConstructor
     public static class ClaudeMessage {
         private String role;
-        private String content;
+        private List<ClaudeContentBlock> content;
     }
     
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class ClaudeTool {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ClaudeContentBlock {
+        private String type;
+        private String text;
+        
+        // tool_use
+        private String id;
         private String name;
-        private String description;
+        @JsonRawValue
+        private String input;
+        
+        // tool_result
+        @JsonProperty("tool_use_id")
+        private String toolUseId;
+        private String content;
         
-        @JsonProperty("input_schema")
-        private Map<String, Object> inputSchema;
+        @JsonProperty("cache_control")
+        private CacheControl cacheControl;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheControl {
+        private String type;
     }
     
     @Data
@@ -543,44 +581,11 @@ public class CustomClaudeLLMProvider implements LLMProvider {
         
         @JsonProperty("output_tokens")
         private Integer outputTokens;
-    }
-    
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class ClaudeStreamingResponse {
-        private String type;
-        private Integer index;
-        
-        @JsonProperty("content_block")
-        private ContentBlockInfo contentBlock;
-        
-        private Delta delta;
-        private Usage usage;
-    }
-    
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class ContentBlockInfo {
-        private String type;
-        private String id;
-        private String name;
-        private Map<String, Object> input;
-    }
-    
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class Delta {
-        private String type;
-        private String text;
-        private Map<String, Object> input;
         
-        @JsonProperty("stop_reason")
-        private String stopReason;
+        @JsonProperty("cache_creation_input_tokens")
+        private Integer cacheCreationInputTokens;
         
-        @JsonProperty("stop_sequence")
-        private String stopSequence;
+        @JsonProperty("cache_read_input_tokens")
+        private Integer cacheReadInputTokens;
     }
 }
@@ -55,7 +55,9 @@ public class OpenAILLMProvider implements LLMProvider {
     public Mono<String> generateResponse(String prompt, ChatContext context) {
         return Mono.fromCallable(() -> {
             List<ChatMessage> messages = convertMessages(context);
-            messages.add(UserMessage.from(prompt));
+            if (prompt != null) {
+                messages.add(UserMessage.from(prompt));
+            }
             
             Response<AiMessage> response = chatModel.generate(messages);
             return response.content().text();
@@ -66,7 +68,9 @@ public class OpenAILLMProvider implements LLMProvider {
     public Flux<String> streamResponse(String prompt, ChatContext context) {
         return Flux.create(sink -> {
             List<ChatMessage> messages = convertMessages(context);
-            messages.add(UserMessage.from(prompt));
+            if (prompt != null) {
+                messages.add(UserMessage.from(prompt));
+            }
             
             streamingModel.generate(messages, new StreamingResponseHandler<AiMessage>() {
                 @Override
@@ -0,0 +1,85 @@
+package com.ai.developer.llm.providers;
+
+import com.ai.developer.llm.providers.CustomClaudeLLMProvider.ToolUseBlock;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rebuilds tool_use inputs from the input_json_delta fragments of a streamed message.
+ *
+ * Fragments are appended per content-block index, so several tool_use blocks can be
+ * in flight in one message, and each input is parsed once when its block stops.
+ * One instance per stream; not thread-safe.
+ */
+@Slf4j
+class ToolInputAssembler {
+
+    private static final TypeReference<Map<String, Object>> INPUT_TYPE = new TypeReference<>() {
+    };
+    // Malformed input echoed back to the model; enough to see where it went wrong
+    private static final int MAX_ECHOED_INPUT = 2000;
+
+    private final ObjectMapper objectMapper;
+    private final Map<Integer, PendingToolUse> pending = new HashMap<>();
+
+    ToolInputAssembler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    void start(int index, String id, String name) {
+        pending.put(index, new PendingToolUse(id, name, new StringBuilder()));
+    }
+
+    void append(int index, String partialJson) {
+        PendingToolUse toolUse = pending.get(index);
+        if (toolUse == null) {
+            log.warn("Ignoring input_json_delta for content block {} without a tool_use start", index);
+            return;
+        }
+        toolUse.input().append(partialJson);
+    }
+
+    /**
+     * Finish the block at the given index. Empty for blocks that are not tool_use blocks.
+     * Input that is not valid JSON is reported in inputError, with an empty input.
+     */
+    Optional<ToolUseBlock> complete(int index) {
+        PendingToolUse toolUse = pending.remove(index);
+        if (toolUse == null) {
+            return Optional.empty();
+        }
+        ToolUseBlock.ToolUseBlockBuilder block = ToolUseBlock.builder()
+                .id(toolUse.id())
+                .name(toolUse.name());
+        String json = toolUse.input().toString();
+        // A tool without parameters streams no fragments at all
+        if (json.isBlank()) {
+            return Optional.of(block.input(new HashMap<>()).build());
+        }
+        try {
+            Map<String, Object> input = objectMapper.readValue(json, INPUT_TYPE);
+            return Optional.of(block.input(input != null ? input : new HashMap<>()).build());
+        } catch (JsonProcessingException e) {
+            log.warn("Malformed input for tool {} ({}): {}", toolUse.name(), toolUse.id(), e.getOriginalMessage());
+            return Optional.of(block
+                    .input(new HashMap<>())
+                    .inputError("The input is not valid JSON (" + e.getOriginalMessage() + "). Input received: "
+                            + abbreviate(json))
+                    .build());
+        }
+    }
+
+    private static String abbreviate(String json) {
+        return json.length() <= MAX_ECHOED_INPUT ? json
+                : json.substring(0, MAX_ECHOED_INPUT) + "... (" + (json.length() - MAX_ECHOED_INPUT) + " more characters)";
+    }
+
+    private record PendingToolUse(String id, String name, StringBuilder input) {
+    }
+}
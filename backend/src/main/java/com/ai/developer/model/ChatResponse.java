@@ -13,4 +13,7 @@ public class ChatResponse {
     private String toolCallId;
     private ToolCallResponse toolCall;
     private Instant timestamp;
+    // Agent loop: null for streamed text, otherwise step, tool_call, tool_result or budget_exhausted
+    private String event;
+    private Integer step;
 }
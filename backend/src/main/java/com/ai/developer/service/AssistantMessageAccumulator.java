@@ -0,0 +1,43 @@
+package com.ai.developer.service;
+
+import com.ai.developer.llm.Message;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Collects the streamed text of an in-flight assistant turn.
+ *
+ * Each delta is appended in amortized O(1); the text is only materialized into
+ * a Message when it is complete, i.e. before a tool call or at the end of the stream.
+ * Methods are synchronized because a cancel can race with the last delta.
+ */
+public class AssistantMessageAccumulator {
+
+    private final StringBuilder content = new StringBuilder(256);
+    private Instant startedAt;
+
+    public synchronized void append(String chunk) {
+        if (startedAt == null) {
+            startedAt = Instant.now();
+        }
+        content.append(chunk);
+    }
+
+    /**
+     * Turn the collected text into a Message and reset for the next segment of the turn.
+     */
+    public synchronized Optional<Message> freeze() {
+        if (startedAt == null) {
+            return Optional.empty();
+        }
+        Message message = Message.builder()
+                .role("assistant")
+                .content(content.toString())
+                .timestamp(startedAt)
+                .build();
+        content.setLength(0);
+        startedAt = null;
+        return Optional.of(message);
+    }
+}
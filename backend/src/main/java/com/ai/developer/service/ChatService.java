@@ -1,7 +1,9 @@
 package com.ai.developer.service;
 
+import com.ai.developer.config.AgentConfig;
 import com.ai.developer.config.ToolOutputWebSocketHandler;
 import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.ContextWindowManager;
 import com.ai.developer.llm.LLMProvider;
 import com.ai.developer.llm.Message;
 import com.ai.developer.llm.ToolCall;
@@ -10,16 +12,20 @@ import com.ai.developer.model.ChatRequest;
 import com.ai.developer.model.ChatResponse;
 import com.ai.developer.model.SessionResponse;
 import com.ai.developer.model.ToolCallResponse;
+import com.ai.developer.session.SessionStore;
 import com.ai.developer.tools.Tool;
 import com.ai.developer.tools.ToolOutput;
+import com.ai.developer.tools.ToolOutputGovernor;
 import com.ai.developer.tools.ToolRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -27,7 +33,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -39,9 +44,17 @@ public class ChatService {
     private final ToolRegistry toolRegistry;
     private final ToolOutputWebSocketHandler webSocketHandler;
     private final ObjectMapper objectMapper;
+    private final SessionStore sessionStore;
+    private final ContextWindowManager contextWindowManager;
+    private final AgentConfig agentConfig;
+    private final ToolOutputGovernor toolOutputGovernor;
     
-    // In-memory session storage (would be replaced with database in production)
-    private final Map<String, ChatContext> sessions = new ConcurrentHashMap<>();
+    @PostConstruct
+    public void init() {
+        // Spilled tool output goes with its session, and outlives a restart when sessions do
+        toolOutputGovernor.setSessionsDurable(sessionStore.isDurable());
+        sessionStore.addRemovalListener(toolOutputGovernor::deleteSession);
+    }
     
     public Mono<SessionResponse> createSession() {
         String sessionId = UUID.randomUUID().toString();
@@ -49,7 +62,6 @@ public class ChatService {
         
         ChatContext context = ChatContext.builder()
                 .sessionId(sessionId)
-                .messages(new ArrayList<>())
                 .build();
         
         // Add system message with comprehensive prompt
@@ -113,10 +125,10 @@ public class ChatService {
                 .timestamp(Instant.now())
                 .build();
         
-        context.getMessages().add(systemMessage);
+        context.addMessage(systemMessage);
         log.info("Created new session {} with system message: {}", sessionId, systemMessage.getContent());
         
-        sessions.put(sessionId, context);
+        sessionStore.save(context);
         
         return Mono.just(SessionResponse.builder()
                 .sessionId(sessionId)
@@ -124,8 +136,17 @@ public class ChatService {
                 .build());
     }
     
+    public Mono<Void> deleteSession(String sessionId) {
+        if (!sessionStore.delete(sessionId)) {
+            log.error("Session not found: {}", sessionId);
+            return Mono.error(new IllegalArgumentException("Session not found: " + sessionId));
+        }
+        log.info("Deleted session {}", sessionId);
+        return Mono.empty();
+    }
+    
     public Mono<List<ChatResponse>> getSessionHistory(String sessionId) {
-        ChatContext context = sessions.get(sessionId);
+        ChatContext context = sessionStore.find(sessionId).orElse(null);
         if (context == null) {
             log.error("Session not found: {}", sessionId);
             return Mono.error(new IllegalArgumentException("Session not found: " + sessionId));
@@ -150,7 +171,7 @@ public class ChatService {
         
         log.info("Processing message for session {}: {}", sessionId, userMessage);
         
-        ChatContext context = sessions.get(sessionId);
+        ChatContext context = sessionStore.find(sessionId).orElse(null);
         if (context == null) {
             log.error("Session not found: {}", sessionId);
             return Flux.error(new IllegalArgumentException("Session not found: " + sessionId));
@@ -158,29 +179,21 @@ public class ChatService {
         
         // Log the current context state
         log.info("Current context for session {} has {} messages", sessionId, context.getMessages().size());
-        for (int i = 0; i < context.getMessages().size(); i++) {
-            Message msg = context.getMessages().get(i);
-            // Fix for NullPointerException: Add null check for message content
-            String content = msg.getContent();
-            if (content == null) {
-                log.warn("Message {} has null content, role={}", i, msg.getRole());
-                content = "";
+        if (log.isDebugEnabled()) {
+            List<Message> messages = context.getMessages();
+            for (int i = 0; i < messages.size(); i++) {
+                Message msg = messages.get(i);
+                // Fix for NullPointerException: Add null check for message content
+                String content = msg.getContent();
+                if (content == null) {
+                    content = "";
+                }
+                log.debug("Message {}: role={}, content={}", i, msg.getRole(), 
+                        content.length() > 50 ? content.substring(0, 50) + "..." : content);
             }
-            log.info("Message {}: role={}, content={}", i, msg.getRole(), 
-                    content.length() > 50 ? content.substring(0, 50) + "..." : content);
         }
         
-        // Add user message to context
-        Message newUserMessage = Message.builder()
-                .role("user")
-                .content(userMessage)
-                .timestamp(Instant.now())
-                .build();
-        
-        context.getMessages().add(newUserMessage);
-        log.info("Added user message to context: {}", newUserMessage.getContent());
-        
-        // Ensure we have at least a system message
+        // Ensure we have at least a system message, logged before the user message it precedes
         if (context.getMessages().stream().noneMatch(m -> "system".equals(m.getRole()))) {
             log.info("No system message found in context, adding default system message");
             Message systemMessage = Message.builder()
@@ -189,164 +202,234 @@ public class ChatService {
                     .timestamp(Instant.now())
                     .build();
             
-            context.getMessages().add(0, systemMessage);
+            context.addMessageFirst(systemMessage);
+            sessionStore.append(context, systemMessage);
             log.info("Added system message to context: {}", systemMessage.getContent());
         }
         
-        // Create a defensive copy of the context to prevent message sanitization issues
-        ChatContext defensiveCopy = createDefensiveCopy(context);
+        // Add user message to context
+        Message newUserMessage = Message.builder()
+                .role("user")
+                .content(userMessage)
+                .timestamp(Instant.now())
+                .build();
+        
+        context.addMessage(newUserMessage);
+        sessionStore.append(context, newUserMessage);
+        log.info("Added user message to context: {}", newUserMessage.getContent());
         
-        return llmProvider.streamResponse(userMessage, defensiveCopy)
+        Instant deadline = Instant.now().plusSeconds(agentConfig.getTimeBudgetSeconds());
+        
+        return runStep(context, 1, deadline)
                 .doOnSubscribe(s -> log.info("Starting LLM response stream for session {}", sessionId))
                 .doOnComplete(() -> log.info("Completed LLM response stream for session {}", sessionId))
-                .doOnError(e -> log.error("Error in LLM response stream for session {}: {}", sessionId, e.getMessage()))
-                .flatMap(chunk -> {
+                .doOnError(e -> log.error("Error in LLM response stream for session {}: {}", sessionId, e.getMessage()));
+    }
+    
+    /**
+     * One step of the agent loop: stream a model response, run the tools it asked for and,
+     * while the step and time budgets allow, send their results back in the next step.
+     * The loop ends with the first response that does not call a tool (end_turn).
+     */
+    private Flux<ChatResponse> runStep(ChatContext context, int step, Instant deadline) {
+        String sessionId = context.getSessionId();
+        
+        // Snapshot of the history that fits the token budget; older turns are folded into a summary
+        ChatContext snapshot = contextWindowManager.prepare(context);
+        
+        // Streamed assistant text for this step, added to the context once it is complete
+        AssistantMessageAccumulator assistantText = new AssistantMessageAccumulator();
+        List<ToolUseBlock> toolUses = new ArrayList<>();
+        
+        // No prompt: the context already ends with the user message or the previous step's tool results
+        Flux<ChatResponse> response = llmProvider.streamResponse(null, snapshot)
+                .doOnTerminate(() -> commitAssistantMessage(context, assistantText))
+                .doOnCancel(() -> commitAssistantMessage(context, assistantText))
+                .map(chunk -> {
                     // Check if this chunk contains a tool use request
                     if (chunk.startsWith("[TOOL_USE:")) {
                         log.info("Tool use detected in response for session {}", sessionId);
-                        
-                        try {
-                            // Extract the tool use JSON from the marker
-                            String toolUseJson = chunk.substring(10, chunk.length() - 1);
-                            log.info("Extracted tool use JSON: {}", toolUseJson);
-                            
-                            // Parse the tool use block
-                            ToolUseBlock toolUseBlock = objectMapper.readValue(toolUseJson, ToolUseBlock.class);
-                            
-                            // Handle the tool use request
-                            return handleToolUse(sessionId, toolUseBlock)
-                                    .map(result -> {
-                                        // Return a response indicating tool execution
-                                        return ChatResponse.builder()
-                                                .sessionId(sessionId)
-                                                .message("[Tool execution completed: " + toolUseBlock.getName() + "]")
-                                                .role("assistant")
-                                                .toolCallId(toolUseBlock.getId())
-                                                .toolCall(ToolCallResponse.builder()
-                                                        .name(toolUseBlock.getName())
-                                                        .result(result)
-                                                        .build())
-                                                .timestamp(Instant.now())
-                                                .build();
-                                    });
-                        } catch (JsonProcessingException e) {
-                            log.error("Error parsing tool use JSON: {}", e.getMessage());
-                            return Mono.just(ChatResponse.builder()
-                                    .sessionId(sessionId)
-                                    .message("[Error executing tool: " + e.getMessage() + "]")
-                                    .role("assistant")
-                                    .timestamp(Instant.now())
-                                    .build());
-                        }
-                    }
-                    
-                    // For the first chunk, add the assistant message to the context
-                    if (context.getMessages().stream().noneMatch(m -> 
-                            "assistant".equals(m.getRole()) && 
-                            m.getTimestamp() != null && 
-                            m.getTimestamp().isAfter(Instant.now().minusSeconds(5)))) {
-                        
-                        Message assistantMessage = Message.builder()
-                                .role("assistant")
-                                .content("")
-                                .timestamp(Instant.now())
-                                .build();
-                        
-                        context.getMessages().add(assistantMessage);
-                        log.info("Added initial assistant message to context for session {}", sessionId);
+                        return toolCallEvent(sessionId, step, chunk, toolUses);
                     }
                     
-                    // Update the latest assistant message with the new chunk
-                    Message latestAssistantMessage = context.getMessages().stream()
-                            .filter(m -> "assistant".equals(m.getRole()))
-                            .reduce((first, second) -> second)
-                            .orElse(null);
+                    assistantText.append(chunk);
                     
-                    if (latestAssistantMessage != null) {
-                        // Fix for NullPointerException: Add null check for message content
-                        String currentContent = latestAssistantMessage.getContent();
-                        if (currentContent == null) {
-                            currentContent = "";
-                            log.warn("Latest assistant message has null content, initializing to empty string");
-                        }
-                        latestAssistantMessage.setContent(currentContent + chunk);
-                    }
-                    
-                    return Mono.just(ChatResponse.builder()
+                    return ChatResponse.builder()
                             .sessionId(sessionId)
                             .message(chunk)
                             .role("assistant")
+                            .step(step)
                             .timestamp(Instant.now())
-                            .build());
+                            .build();
                 });
+        
+        return response.concatWith(Flux.defer(() -> {
+            if (toolUses.isEmpty()) {
+                return Flux.empty();
+            }
+            return executeToolUses(context, step, toolUses)
+                    .concatWith(Flux.defer(() -> nextStep(context, step, deadline)));
+        }));
     }
     
-    /**
-     * Handle a tool use request from the LLM
-     */
-    private Mono<String> handleToolUse(String sessionId, ToolUseBlock toolUseBlock) {
-        log.info("Handling tool use for session {}: tool={}, input={}", 
-                sessionId, toolUseBlock.getName(), toolUseBlock.getInput());
-        
-        ChatContext context = sessions.get(sessionId);
-        if (context == null) {
-            log.error("Session not found: {}", sessionId);
-            return Mono.error(new IllegalArgumentException("Session not found: " + sessionId));
+    private Flux<ChatResponse> nextStep(ChatContext context, int step, Instant deadline) {
+        String exhausted = null;
+        if (step >= agentConfig.getMaxSteps()) {
+            exhausted = "step budget of " + agentConfig.getMaxSteps() + " steps";
+        } else if (Instant.now().isAfter(deadline)) {
+            exhausted = "time budget of " + agentConfig.getTimeBudgetSeconds() + " seconds";
         }
         
-        Tool tool = toolRegistry.getTool(toolUseBlock.getName());
-        if (tool == null) {
-            log.error("Tool not found: {}", toolUseBlock.getName());
-            return Mono.error(new IllegalArgumentException("Tool not found: " + toolUseBlock.getName()));
+        if (exhausted != null) {
+            log.warn("Stopping agent loop for session {} after step {}: {} exhausted", context.getSessionId(), step, exhausted);
+            return Flux.just(ChatResponse.builder()
+                    .sessionId(context.getSessionId())
+                    .message("[Agent stopped: " + exhausted + " exhausted]")
+                    .role("assistant")
+                    .event("budget_exhausted")
+                    .step(step)
+                    .timestamp(Instant.now())
+                    .build());
         }
         
-        // Create a tool call message to add to the context
-        String toolCallId = toolUseBlock.getId();
-        
+        log.info("Continuing session {} with step {}", context.getSessionId(), step + 1);
+        return Flux.just(ChatResponse.builder()
+                        .sessionId(context.getSessionId())
+                        .role("assistant")
+                        .event("step")
+                        .step(step + 1)
+                        .timestamp(Instant.now())
+                        .build())
+                .concatWith(Flux.defer(() -> runStep(context, step + 1, deadline)));
+    }
+    
+    /**
+     * Parse a [TOOL_USE:...] marker, queue the call for the end of the step and report it.
+     */
+    private ChatResponse toolCallEvent(String sessionId, int step, String chunk, List<ToolUseBlock> toolUses) {
         try {
-            String argumentsJson = objectMapper.writeValueAsString(toolUseBlock.getInput());
+            // Extract the tool use JSON from the marker
+            String toolUseJson = chunk.substring(10, chunk.length() - 1);
+            log.info("Extracted tool use JSON: {}", toolUseJson);
             
-            // Add tool call message to context
+            ToolUseBlock toolUseBlock = objectMapper.readValue(toolUseJson, ToolUseBlock.class);
+            toolUses.add(toolUseBlock);
+            
+            return ChatResponse.builder()
+                    .sessionId(sessionId)
+                    .message("[Calling tool: " + toolUseBlock.getName() + "]")
+                    .role("assistant")
+                    .toolCallId(toolUseBlock.getId())
+                    .toolCall(ToolCallResponse.builder()
+                            .name(toolUseBlock.getName())
+                            .arguments(toolUseBlock.getInput())
+                            .build())
+                    .event("tool_call")
+                    .step(step)
+                    .timestamp(Instant.now())
+                    .build();
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing tool use JSON: {}", e.getMessage());
+            return ChatResponse.builder()
+                    .sessionId(sessionId)
+                    .message("[Error executing tool: " + e.getMessage() + "]")
+                    .role("assistant")
+                    .step(step)
+                    .timestamp(Instant.now())
+                    .build();
+        }
+    }
+    
+    /**
+     * Record the tool calls of a step in the context, run them and add their results
+     */
+    private Flux<ChatResponse> executeToolUses(ChatContext context, int step, List<ToolUseBlock> toolUses) {
+        String sessionId = context.getSessionId();
+        
+        // All tool calls of the step go into the history before any of their results
+        for (ToolUseBlock toolUseBlock : toolUses) {
             Message toolCallMessage = Message.builder()
                     .role("assistant")
-                    .toolCallId(toolCallId)
+                    .toolCallId(toolUseBlock.getId())
                     .toolCall(ToolCall.builder()
-                            .id(toolCallId)
+                            .id(toolUseBlock.getId())
                             .name(toolUseBlock.getName())
-                            .arguments(argumentsJson)
+                            .arguments(argumentsJson(toolUseBlock))
                             .build())
                     .timestamp(Instant.now())
                     .build();
-                    
-            context.getMessages().add(toolCallMessage);
-            log.info("Added tool call message to context for tool: {}", toolUseBlock.getName());
             
-            // Execute the tool and collect results
-            return executeToolCall(sessionId, toolUseBlock.getName(), toolUseBlock.getInput())
-                    .collectList()
-                    .map(outputs -> {
-                        // Combine all outputs into a single string
-                        StringBuilder result = new StringBuilder();
-                        for (ToolOutput output : outputs) {
-                            result.append(output.getContent()).append("\n");
-                        }
-                        
-                        // Add tool result message to context
-                        Message toolResultMessage = Message.builder()
-                                .role("tool")
-                                .toolCallId(toolCallId)
-                                .content(result.toString())
-                                .timestamp(Instant.now())
-                                .build();
-                                
-                        context.getMessages().add(toolResultMessage);
-                        log.info("Added tool result message to context for tool: {}", toolUseBlock.getName());
-                        
-                        return result.toString();
-                    });
+            context.addMessage(toolCallMessage);
+            sessionStore.append(context, toolCallMessage);
+            log.info("Added tool call message to context for tool: {}", toolUseBlock.getName());
+        }
+        
+        // Independent calls run concurrently; results are still recorded and reported in call order
+        return Flux.fromIterable(toolUses)
+                .flatMapSequential(toolUseBlock -> handleToolUse(sessionId, toolUseBlock)
+                        .map(result -> new ToolResult(toolUseBlock, result)),
+                        agentConfig.getMaxParallelToolCalls())
+                .map(toolResult -> {
+                    ToolUseBlock toolUseBlock = toolResult.toolUse();
+                    Message toolResultMessage = Message.builder()
+                            .role("tool")
+                            .toolCallId(toolUseBlock.getId())
+                            .content(toolResult.result())
+                            .timestamp(Instant.now())
+                            .build();
+                    
+                    context.addMessage(toolResultMessage);
+                    sessionStore.append(context, toolResultMessage);
+                    log.info("Added tool result message to context for tool: {}", toolUseBlock.getName());
+                    
+                    return ChatResponse.builder()
+                            .sessionId(sessionId)
+                            .message("[Tool execution completed: " + toolUseBlock.getName() + "]")
+                            .role("assistant")
+                            .toolCallId(toolUseBlock.getId())
+                            .toolCall(ToolCallResponse.builder()
+                                    .name(toolUseBlock.getName())
+                                    .arguments(toolUseBlock.getInput())
+                                    .result(toolResult.result())
+                                    .build())
+                            .event("tool_result")
+                            .step(step)
+                            .timestamp(Instant.now())
+                            .build();
+                });
+    }
+    
+    /**
+     * Handle a tool use request from the LLM. Failures are returned as the result text
+     * so that the model sees them in the tool_result and can react.
+     */
+    private Mono<String> handleToolUse(String sessionId, ToolUseBlock toolUseBlock) {
+        log.info("Handling tool use for session {}: tool={}, input={}", 
+                sessionId, toolUseBlock.getName(), toolUseBlock.getInput());
+        
+        // A malformed call is not run; the model gets the parse error and can correct it in one step
+        if (toolUseBlock.getInputError() != null) {
+            log.warn("Not executing tool {} with malformed input: {}", toolUseBlock.getName(), toolUseBlock.getInputError());
+            return Mono.just("Error: tool " + toolUseBlock.getName() + " was not called. " + toolUseBlock.getInputError()
+                    + "\nCall it again with its input as one valid JSON object.");
+        }
+        
+        Map<String, Object> input = toolUseBlock.getInput() != null ? toolUseBlock.getInput() : Map.of();
+        
+        // Results over the byte cap are spilled and only a preview goes into the context
+        return toolOutputGovernor.capture(sessionId, executeToolCall(sessionId, toolUseBlock.getName(), input))
+                .onErrorResume(e -> {
+                    log.error("Error executing tool {}: {}", toolUseBlock.getName(), e.getMessage());
+                    return Mono.just("Error executing tool " + toolUseBlock.getName() + ": " + e.getMessage());
+                });
+    }
+    
+    private String argumentsJson(ToolUseBlock toolUseBlock) {
+        try {
+            return objectMapper.writeValueAsString(toolUseBlock.getInput() != null ? toolUseBlock.getInput() : Map.of());
         } catch (JsonProcessingException e) {
             log.error("Error serializing tool arguments: {}", e.getMessage());
-            return Mono.just("Error executing tool: " + e.getMessage());
+            return "{}";
         }
     }
     
@@ -356,7 +439,7 @@ public class ChatService {
     public Flux<ToolOutput> executeToolCall(String sessionId, String toolName, Map<String, Object> arguments) {
         log.info("Executing tool {} for session {} with arguments: {}", toolName, sessionId, arguments);
         
-        ChatContext context = sessions.get(sessionId);
+        ChatContext context = sessionStore.find(sessionId).orElse(null);
         if (context == null) {
             log.error("Session not found: {}", sessionId);
             return Flux.error(new IllegalArgumentException("Session not found: " + sessionId));
@@ -390,41 +473,22 @@ public class ChatService {
                         } catch (Exception e) {
                             log.error("Error broadcasting tool output: {}", e.getMessage());
                         }
-                    });
+                    })
+                    .contextWrite(Context.of(ToolOutputGovernor.SESSION_CONTEXT_KEY, sessionId));
         } catch (Exception e) {
             log.error("Error executing tool: {}", e.getMessage());
             return Flux.error(e);
         }
     }
     
-    private ChatContext createDefensiveCopy(ChatContext original) {
-        List<Message> copiedMessages = new ArrayList<>();
-        
-        for (Message msg : original.getMessages()) {
-            Message copiedMsg = Message.builder()
-                    .role(msg.getRole())
-                    .content(msg.getContent())
-                    .timestamp(msg.getTimestamp())
-                    .build();
-                    
-            if (msg.getToolCallId() != null) {
-                copiedMsg.setToolCallId(msg.getToolCallId());
-            }
-            
-            if (msg.getToolCall() != null) {
-                copiedMsg.setToolCall(ToolCall.builder()
-                        .id(msg.getToolCall().getId())
-                        .name(msg.getToolCall().getName())
-                        .arguments(msg.getToolCall().getArguments())
-                        .build());
-            }
-            
-            copiedMessages.add(copiedMsg);
-        }
-        
-        return ChatContext.builder()
-                .sessionId(original.getSessionId())
-                .messages(copiedMessages)
-                .build();
+    private void commitAssistantMessage(ChatContext context, AssistantMessageAccumulator assistantText) {
+        assistantText.freeze().ifPresent(assistantMessage -> {
+            context.addMessage(assistantMessage);
+            sessionStore.append(context, assistantMessage);
+            log.info("Added assistant message to context for session {}", context.getSessionId());
+        });
+    }
+    
+    private record ToolResult(ToolUseBlock toolUse, String result) {
     }
 }
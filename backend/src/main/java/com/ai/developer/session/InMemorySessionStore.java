@@ -0,0 +1,62 @@
+package com.ai.developer.session;
+
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Non-durable store that keeps every session on the heap. Useful for tests and
+ * local development where a restart is expected to start from scratch.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.store.type", havingValue = "memory")
+public class InMemorySessionStore implements SessionStore {
+
+    private final Map<String, ChatContext> sessions = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void save(ChatContext context) {
+        sessions.put(context.getSessionId(), context);
+        log.info("Stored session {} in memory", context.getSessionId());
+    }
+
+    @Override
+    public Optional<ChatContext> find(String sessionId) {
+        return Optional.ofNullable(sessions.get(sessionId));
+    }
+
+    @Override
+    public void append(ChatContext context, Message message) {
+        // The message already lives in the context held by this map
+    }
+
+    @Override
+    public boolean delete(String sessionId) {
+        if (sessions.remove(sessionId) == null) {
+            return false;
+        }
+        removalListeners.forEach(listener -> listener.accept(sessionId));
+        return true;
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+}
@@ -0,0 +1,325 @@
+package com.ai.developer.session;
+
+import com.ai.developer.config.SessionStoreConfig;
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Default session store. Messages are appended to a segmented, memory-mapped log
+ * on local disk and only recently used sessions are kept on the heap. The only
+ * per-session state that stays resident is the log position of its latest record.
+ *
+ * <p>Once deleted sessions and superseded records take up more than the configured
+ * share of the log, it is compacted: every live session is rewritten as one snapshot
+ * record into a fresh segment and the segments before it are deleted. Disk use and
+ * restart time then follow the live sessions rather than everything ever written.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "session.store.type", havingValue = "mapped-log", matchIfMissing = true)
+public class MappedLogSessionStore implements SessionStore {
+
+    // Previous position of a record without payload that deletes its session
+    private static final long DELETED = -2L;
+
+    private final SessionStoreConfig config;
+
+    private final Map<String, Long> lastPositions = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+    // Bytes of the records that live sessions are read from; the rest of the log is garbage
+    private final AtomicLong liveBytes = new AtomicLong();
+    // Writers hold the read lock, so compaction sees every session whose first record precedes its seal
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private Map<String, ChatContext> hotSessions;
+    private SegmentedLog sessionLog;
+    private Disposable compaction;
+
+    @PostConstruct
+    public void init() throws IOException {
+        int maxSessions = config.getCacheMaxSessions();
+        this.hotSessions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ChatContext> eldest) {
+                // Evicted sessions reload from the log, so nothing kept alongside them goes
+                return size() > maxSessions;
+            }
+        });
+
+        // A segment is mapped as one buffer, which int offsets limit to under 2 GiB
+        long segmentSize = config.getSegmentSizeMb() * 1024L * 1024;
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("session.store.segment-size-mb must be between 1 and 2047, not "
+                    + config.getSegmentSizeMb());
+        }
+
+        long start = System.nanoTime();
+        this.sessionLog = new SegmentedLog(Path.of(config.getDirectory()),
+                (int) segmentSize,
+                Boolean.TRUE.equals(config.getForceOnAppend()));
+        Map<String, Long> chainSizes = new HashMap<>();
+        sessionLog.forEach((sessionId, position, previous, size) -> {
+            if (previous == DELETED) {
+                lastPositions.remove(sessionId);
+                chainSizes.remove(sessionId);
+            } else {
+                lastPositions.put(sessionId, position);
+                // A snapshot starts a new chain, superseding any records left from before it
+                chainSizes.merge(sessionId, (long) size,
+                        previous == SegmentedLog.NO_POSITION ? (old, added) -> added : Long::sum);
+            }
+        });
+        liveBytes.set(chainSizes.values().stream().mapToLong(Long::longValue).sum());
+
+        log.info("Recovered {} sessions from {} in {} ms", lastPositions.size(), config.getDirectory(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        Duration interval = Duration.ofMinutes(config.getCompactionIntervalMinutes());
+        if (!interval.isZero()) {
+            compaction = Flux.interval(interval, interval, Schedulers.boundedElastic())
+                    .subscribe(tick -> compactIfWorthwhile());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (compaction != null) {
+            compaction.dispose();
+        }
+        if (sessionLog != null) {
+            sessionLog.close();
+        }
+    }
+
+    /**
+     * Compacts the log if it has more than one segment and garbage is over the configured share.
+     */
+    void compactIfWorthwhile() {
+        long size = sessionLog.size();
+        long garbage = size - liveBytes.get();
+        if (sessionLog.segmentCount() > 1 && garbage > size * config.getCompactionGarbageRatio()) {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                // The segments are only deleted once every session has been rewritten, so nothing is lost
+                log.error("Could not compact the session log in {}", config.getDirectory(), e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites every live session that has records before a newly sealed segment as one
+     * snapshot record, then deletes the segments before it. Appends go on meanwhile; a
+     * session only waits while its own snapshot is written.
+     */
+    synchronized void compact() {
+        long start = System.nanoTime();
+        long sizeBefore = sessionLog.size();
+        int firstKept;
+        List<String> sessionIds;
+        compactionLock.writeLock().lock();
+        try {
+            firstKept = sessionLog.seal();
+            sessionIds = List.copyOf(lastPositions.keySet());
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+
+        for (String sessionId : sessionIds) {
+            lastPositions.computeIfPresent(sessionId, (id, head) -> rewrite(id, head, firstKept));
+        }
+        sessionLog.deleteSegmentsBefore(firstKept);
+
+        log.info("Compacted the session log from {} to {} bytes for {} sessions in {} ms", sizeBefore,
+                sessionLog.size(), sessionIds.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void save(ChatContext context) {
+        for (Message message : context.getMessages()) {
+            write(context.getSessionId(), message);
+        }
+        hotSessions.put(context.getSessionId(), context);
+    }
+
+    @Override
+    public Optional<ChatContext> find(String sessionId) {
+        ChatContext context = hotSessions.get(sessionId);
+        if (context != null) {
+            return Optional.of(context);
+        }
+
+        Long head = lastPositions.get(sessionId);
+        while (head != null) {
+            ChatContext loaded;
+            try {
+                loaded = load(sessionId, head);
+            } catch (IllegalArgumentException e) {
+                // Compaction rewrote the session and deleted the segment being read
+                Long current = lastPositions.get(sessionId);
+                if (head.equals(current)) {
+                    throw e;
+                }
+                head = current;
+                continue;
+            }
+            long expected = head;
+            ChatContext[] found = new ChatContext[1];
+            // Checked and cached under the key's lock, which append() holds while it logs a
+            // message and updates the cached copy, so no message can fall in between
+            Long current = lastPositions.computeIfPresent(sessionId, (id, position) -> {
+                if (position == expected) {
+                    ChatContext existing = hotSessions.putIfAbsent(id, loaded);
+                    found[0] = existing != null ? existing : loaded;
+                }
+                return position;
+            });
+            if (found[0] != null) {
+                return Optional.of(found[0]);
+            }
+            // A message was appended while we were reading, read the chain again
+            head = current;
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void append(ChatContext context, Message message) {
+        byte[] payload = MessageCodec.encode(message);
+        compactionLock.readLock().lock();
+        try {
+            // A deleted session stays deleted; its last messages are not logged to revive it
+            Long position = lastPositions.computeIfPresent(context.getSessionId(), (id, previous) -> {
+                long appended = appendRecord(id, previous, payload);
+                // Keep a reloaded copy in step with a caller still holding an evicted context
+                ChatContext cached = hotSessions.get(id);
+                if (cached != null && cached != context) {
+                    cached.addMessage(message);
+                }
+                return appended;
+            });
+            if (position == null) {
+                log.debug("Not appending to unknown session {}", context.getSessionId());
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String sessionId) {
+        boolean known = lastPositions.containsKey(sessionId);
+        // Appended under the key's lock, so no message of the session can follow it
+        lastPositions.computeIfPresent(sessionId, (id, head) -> {
+            liveBytes.addAndGet(-sessionLog.chainSize(head));
+            sessionLog.append(id, DELETED, new byte[0]);
+            return null;
+        });
+        hotSessions.remove(sessionId);
+        if (known) {
+            removalListeners.forEach(listener -> listener.accept(sessionId));
+        }
+        return known;
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    private void write(String sessionId, Message message) {
+        byte[] payload = MessageCodec.encode(message);
+        compactionLock.readLock().lock();
+        try {
+            lastPositions.compute(sessionId, (id, previous) -> appendRecord(id, previous, payload));
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    private long appendRecord(String sessionId, Long previous, byte[] payload) {
+        long position = sessionLog.append(sessionId, previous != null ? previous : SegmentedLog.NO_POSITION, payload);
+        liveBytes.addAndGet(SegmentedLog.recordSize(sessionId, payload));
+        return position;
+    }
+
+    /**
+     * Replaces a session's chain by one snapshot record, unless all of it is at or after
+     * firstKept already. Returns the new head.
+     */
+    private long rewrite(String sessionId, long head, int firstKept) {
+        List<byte[]> messages = new ArrayList<>();
+        long oldest = head;
+        long chainSize = 0;
+        for (long position = head; position != SegmentedLog.NO_POSITION; ) {
+            SegmentedLog.Record record = sessionLog.read(position);
+            List<byte[]> payloads = MessageCodec.split(record.payload());
+            for (int i = payloads.size() - 1; i >= 0; i--) {
+                messages.add(payloads.get(i));
+            }
+            chainSize += SegmentedLog.recordSize(sessionId, record.payload());
+            oldest = position;
+            position = record.previous();
+        }
+        if (SegmentedLog.segmentOf(oldest) >= firstKept) {
+            return head;
+        }
+        Collections.reverse(messages);
+        liveBytes.addAndGet(-chainSize);
+        return appendRecord(sessionId, null, MessageCodec.encodeSnapshot(messages));
+    }
+
+    private ChatContext load(String sessionId, long head) {
+        List<Message> messages = new ArrayList<>();
+        for (long position = head; position != SegmentedLog.NO_POSITION; ) {
+            SegmentedLog.Record record = sessionLog.read(position);
+            List<byte[]> payloads = MessageCodec.split(record.payload());
+            for (int i = payloads.size() - 1; i >= 0; i--) {
+                messages.add(MessageCodec.decode(payloads.get(i)));
+            }
+            position = record.previous();
+        }
+        Collections.reverse(messages);
+        // A system message added to an existing session is logged after its other messages
+        // but kept first in the context; the sort is stable, so the rest keep their order
+        messages.sort(Comparator.comparing(message -> !"system".equals(message.getRole())));
+
+        log.info("Reloaded session {} with {} messages from the session log", sessionId, messages.size());
+        return ChatContext.builder()
+                .sessionId(sessionId)
+                .messages(messages)
+                .build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.ai.developer.session;
+
+import com.ai.developer.llm.Message;
+import com.ai.developer.llm.ToolCall;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a Message for the session log. A record holds one
+ * message, or a snapshot of several written when the log is compacted.
+ */
+final class MessageCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte SNAPSHOT = 2;
+
+    private MessageCodec() {
+    }
+
+    static byte[] encode(Message message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            writeString(out, message.getRole());
+            writeString(out, message.getContent());
+            writeString(out, message.getToolCallId());
+
+            ToolCall toolCall = message.getToolCall();
+            out.writeBoolean(toolCall != null);
+            if (toolCall != null) {
+                writeString(out, toolCall.getId());
+                writeString(out, toolCall.getName());
+                writeString(out, toolCall.getArguments());
+            }
+
+            Instant timestamp = message.getTimestamp();
+            out.writeBoolean(timestamp != null);
+            if (timestamp != null) {
+                out.writeLong(timestamp.getEpochSecond());
+                out.writeInt(timestamp.getNano());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding message", e);
+        }
+    }
+
+    static Message decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported message record version: " + version);
+            }
+            Message.MessageBuilder builder = Message.builder()
+                    .role(readString(in))
+                    .content(readString(in))
+                    .toolCallId(readString(in));
+
+            if (in.readBoolean()) {
+                builder.toolCall(ToolCall.builder()
+                        .id(readString(in))
+                        .name(readString(in))
+                        .arguments(readString(in))
+                        .build());
+            }
+            if (in.readBoolean()) {
+                builder.timestamp(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error decoding message", e);
+        }
+    }
+
+    /**
+     * One payload holding several encoded messages, oldest first.
+     */
+    static byte[] encodeSnapshot(List<byte[]> messages) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                    5 + messages.stream().mapToInt(message -> 4 + message.length).sum());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SNAPSHOT);
+            out.writeInt(messages.size());
+            for (byte[] message : messages) {
+                out.writeInt(message.length);
+                out.write(message);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding snapshot", e);
+        }
+    }
+
+    /**
+     * The encoded messages in a payload, oldest first: the payload itself, or the
+     * messages of a snapshot.
+     */
+    static List<byte[]> split(byte[] payload) {
+        if (payload.length == 0 || payload[0] != SNAPSHOT) {
+            return List.of(payload);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readByte();
+            int count = in.readInt();
+            List<byte[]> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] message = new byte[in.readInt()];
+                in.readFully(message);
+                messages.add(message);
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error decoding snapshot", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,299 @@
+package com.ai.developer.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log split into memory-mapped segment files.
+ *
+ * Every record carries the position of the previous record for the same key,
+ * so a key's history can be walked backwards without a per-record index.
+ * Record layout: length | crc32 | previous position | key length | key | payload.
+ * A zero length marks the end of the written part of a segment.
+ */
+@Slf4j
+public class SegmentedLog implements Closeable {
+
+    public static final long NO_POSITION = -1L;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int LENGTH_BYTES = 4;
+    private static final int HEADER_BYTES = 4 + 8 + 2; // crc, previous position, key length
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private final ConcurrentSkipListMap<Integer, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    private int activeSegmentId;
+    private int writeOffset;
+
+    public SegmentedLog(Path directory, int segmentSize, boolean forceOnAppend) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+
+        Files.createDirectories(directory);
+        Map<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.put(segmentId(file), file);
+            }
+        }
+        for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+            segments.put(entry.getKey(), map(entry.getValue(), Files.size(entry.getValue())));
+        }
+
+        if (segments.isEmpty()) {
+            activeSegmentId = 0;
+            segments.put(activeSegmentId, map(segmentPath(activeSegmentId), segmentSize));
+            writeOffset = 0;
+        } else {
+            activeSegmentId = segments.lastKey();
+            writeOffset = recover(segments.get(activeSegmentId));
+        }
+        log.info("Opened session log in {} with {} segments", directory, segments.size());
+    }
+
+    /**
+     * Visit every valid record in log order, up to the first invalid one of each segment.
+     * The checksum of each record covers its payload, so every payload is read once to
+     * check it, but none is copied.
+     */
+    public void forEach(RecordVisitor visitor) {
+        for (Map.Entry<Integer, MappedByteBuffer> entry : segments.entrySet()) {
+            MappedByteBuffer buffer = entry.getValue();
+            int offset = 0;
+            while (true) {
+                int length = validRecordLength(buffer, offset);
+                if (length < 0) {
+                    break;
+                }
+                long previous = buffer.getLong(offset + LENGTH_BYTES + 4);
+                visitor.visit(readKey(buffer, offset), position(entry.getKey(), offset), previous, LENGTH_BYTES + length);
+                offset += LENGTH_BYTES + length;
+            }
+        }
+    }
+
+    /**
+     * Append a record and return its position.
+     */
+    public synchronized long append(String key, long previous, byte[] payload) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + keyBytes.length + payload.length;
+        int recordSize = LENGTH_BYTES + length;
+
+        MappedByteBuffer buffer = segments.get(activeSegmentId);
+        if (writeOffset + recordSize + LENGTH_BYTES > buffer.capacity()) {
+            buffer = roll(recordSize + LENGTH_BYTES);
+        }
+
+        int offset = writeOffset;
+        ByteBuffer body = buffer.duplicate();
+        body.position(offset + LENGTH_BYTES + 4);
+        body.putLong(previous);
+        body.putShort((short) keyBytes.length);
+        body.put(keyBytes);
+        body.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + LENGTH_BYTES + 4, length - 4));
+        buffer.putInt(offset + LENGTH_BYTES, (int) crc.getValue());
+        // The length is written last so a torn write never looks like a complete record
+        buffer.putInt(offset, length);
+
+        if (forceOnAppend) {
+            buffer.force(offset, recordSize);
+        }
+        writeOffset += recordSize;
+        return position(activeSegmentId, offset);
+    }
+
+    /**
+     * Read the record stored at the given position.
+     */
+    public Record read(long position) {
+        MappedByteBuffer buffer = segments.get(segmentOf(position));
+        if (buffer == null) {
+            throw new IllegalArgumentException("Unknown log position: " + position);
+        }
+        int offset = offsetOf(position);
+        int length = buffer.getInt(offset);
+        long previous = buffer.getLong(offset + LENGTH_BYTES + 4);
+        String key = readKey(buffer, offset);
+        int payloadOffset = offset + LENGTH_BYTES + HEADER_BYTES + keyLength(buffer, offset);
+        byte[] payload = new byte[offset + LENGTH_BYTES + length - payloadOffset];
+        buffer.get(payloadOffset, payload);
+        return new Record(key, previous, payload);
+    }
+
+    /**
+     * Bytes taken by the records of the chain that ends at head. Only headers are read.
+     */
+    public long chainSize(long head) {
+        long size = 0;
+        for (long position = head; position != NO_POSITION; ) {
+            MappedByteBuffer buffer = segments.get(segmentOf(position));
+            if (buffer == null) {
+                throw new IllegalArgumentException("Unknown log position: " + position);
+            }
+            int offset = offsetOf(position);
+            size += LENGTH_BYTES + buffer.getInt(offset);
+            position = buffer.getLong(offset + LENGTH_BYTES + 4);
+        }
+        return size;
+    }
+
+    /**
+     * Bytes the log takes on disk: every sealed segment, and the written part of the active one.
+     */
+    public synchronized long size() {
+        return segments.headMap(activeSegmentId).values().stream().mapToLong(MappedByteBuffer::capacity).sum()
+                + writeOffset;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Start a new segment unless the active one is still empty, and return the active
+     * segment's id. Everything appended from here on is at or after that segment.
+     */
+    public synchronized int seal() {
+        if (writeOffset > 0) {
+            roll(segmentSize);
+        }
+        return activeSegmentId;
+    }
+
+    /**
+     * Delete the segments before the given one, oldest first. A crash part way through
+     * leaves a suffix of the log, so a deleted key's records never outlive its tombstone.
+     * Reads of positions in deleted segments fail; their mappings go when unreferenced.
+     */
+    public void deleteSegmentsBefore(int segmentId) {
+        for (Integer id : segments.headMap(segmentId).keySet()) {
+            segments.remove(id);
+            try {
+                Files.deleteIfExists(segmentPath(id));
+            } catch (IOException e) {
+                log.warn("Could not delete session log segment {}", segmentPath(id), e);
+            }
+        }
+    }
+
+    /** Bytes a record with the given key and payload takes in a segment */
+    public static int recordSize(String key, byte[] payload) {
+        return LENGTH_BYTES + HEADER_BYTES + key.getBytes(StandardCharsets.UTF_8).length + payload.length;
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.values().forEach(MappedByteBuffer::force);
+        log.info("Closed session log in {}", directory);
+    }
+
+    private MappedByteBuffer roll(int minimumSize) {
+        segments.get(activeSegmentId).force();
+        activeSegmentId++;
+        MappedByteBuffer buffer = map(segmentPath(activeSegmentId), Math.max(segmentSize, minimumSize));
+        segments.put(activeSegmentId, buffer);
+        writeOffset = 0;
+        log.info("Rolled session log to segment {}", activeSegmentId);
+        return buffer;
+    }
+
+    private int recover(MappedByteBuffer buffer) {
+        int offset = 0;
+        int length;
+        while ((length = validRecordLength(buffer, offset)) >= 0) {
+            offset += LENGTH_BYTES + length;
+        }
+        if (offset + LENGTH_BYTES <= buffer.capacity() && buffer.getInt(offset) != 0) {
+            log.warn("Discarding torn record at offset {} of the active session log segment", offset);
+            for (int i = offset; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return offset;
+    }
+
+    private int validRecordLength(MappedByteBuffer buffer, int offset) {
+        if (offset + LENGTH_BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if (length < HEADER_BYTES || offset + LENGTH_BYTES + length > buffer.capacity()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + LENGTH_BYTES + 4, length - 4));
+        return (int) crc.getValue() == buffer.getInt(offset + LENGTH_BYTES) ? length : -1;
+    }
+
+    private String readKey(MappedByteBuffer buffer, int offset) {
+        byte[] keyBytes = new byte[keyLength(buffer, offset)];
+        buffer.get(offset + LENGTH_BYTES + HEADER_BYTES, keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+
+    private int keyLength(MappedByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + LENGTH_BYTES + 12) & 0xFFFF;
+    }
+
+    private MappedByteBuffer map(Path file, long size) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error mapping session log segment: " + file, e);
+        }
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(String key, long position, long previous, int size);
+    }
+
+    public record Record(String key, long previous, byte[] payload) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.ai.developer.session;
+
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage SPI for chat sessions. Implementations decide where the conversation
+ * lives; ChatService only ever goes through this interface.
+ */
+public interface SessionStore {
+
+    /**
+     * Register a new session and persist the messages it already holds.
+     */
+    void save(ChatContext context);
+
+    /**
+     * Look up a session, reloading it from durable storage if it is not cached.
+     */
+    Optional<ChatContext> find(String sessionId);
+
+    /**
+     * Persist a message that the caller has just added to the given context.
+     * Messages of a session deleted meanwhile are dropped rather than bringing it back.
+     */
+    void append(ChatContext context, Message message);
+
+    /**
+     * Delete a session for good; false if there is no such session.
+     */
+    boolean delete(String sessionId);
+
+    /**
+     * Register a callback that gets the id of every session that is deleted, for state
+     * kept alongside sessions that should go with them. Sessions merely dropped from a
+     * cache can still be found, so they are not reported.
+     */
+    void addRemovalListener(Consumer<String> listener);
+
+    /**
+     * True if sessions outlive a restart of the application.
+     */
+    boolean isDurable();
+}
@@ -0,0 +1,127 @@
+package com.ai.developer.tools;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking counting semaphore for reactive work. At most maxConcurrency
+ * limited publishers are subscribed at a time; up to queueCapacity more wait in
+ * FIFO order without holding a thread, and anything beyond that is rejected.
+ */
+class ConcurrencyLimiter {
+
+    enum RejectionPolicy {
+        /** Reject the new call */
+        FAIL,
+        /** Reject the call that has been waiting longest and queue the new one */
+        EVICT_OLDEST
+    }
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    private final Queue<Waiter> waiting = new ArrayDeque<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private int active;
+
+    ConcurrencyLimiter(String name, int maxConcurrency, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    /**
+     * Subscribe to the work once a permit is free; the permit is returned when the
+     * work completes, fails or is cancelled.
+     */
+    <T> Flux<T> limit(Flux<T> work) {
+        return Flux.usingWhen(acquire(),
+                permit -> work,
+                permit -> Mono.fromRunnable(this::release),
+                (permit, error) -> Mono.fromRunnable(this::release),
+                permit -> Mono.fromRunnable(this::release));
+    }
+
+    synchronized int getActive() {
+        return active;
+    }
+
+    synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+
+    private Mono<Boolean> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            Waiter evicted = null;
+            boolean admitted = false;
+            synchronized (this) {
+                if (active < maxConcurrency) {
+                    active++;
+                    admitted = true;
+                } else if (waiting.size() < queueCapacity
+                        || (rejectionPolicy == RejectionPolicy.EVICT_OLDEST && queueCapacity > 0)) {
+                    if (waiting.size() >= queueCapacity) {
+                        evicted = waiting.poll();
+                    }
+                    waiting.add(waiter);
+                    sink.onCancel(() -> {
+                        boolean granted;
+                        synchronized (this) {
+                            granted = !waiting.remove(waiter) && waiter.granted;
+                        }
+                        // A permit was handed over just as we were cancelled
+                        if (granted) {
+                            release();
+                        }
+                    });
+                } else {
+                    evicted = waiter;
+                }
+            }
+            if (admitted) {
+                sink.success(Boolean.TRUE);
+            }
+            if (evicted != null) {
+                rejected.incrementAndGet();
+                evicted.sink.error(new RejectedExecutionException("Tool " + name + " is at capacity: "
+                        + maxConcurrency + " running, " + queueCapacity + " queued"));
+            }
+        });
+    }
+
+    private void release() {
+        Waiter next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+            next.granted = true;
+        }
+        // The permit moves to the next waiter as is
+        next.sink.success(Boolean.TRUE);
+    }
+
+    private static class Waiter {
+        final MonoSink<Boolean> sink;
+        boolean granted;
+
+        Waiter(MonoSink<Boolean> sink) {
+            this.sink = sink;
+        }
+    }
+}
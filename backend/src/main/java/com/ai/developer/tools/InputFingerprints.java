@@ -0,0 +1,89 @@
+package com.ai.developer.tools;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Cheap stamps of the inputs a tool reads, for {@link Tool#getCacheFingerprint}. They
+ * only stat files, so computing one costs far less than the work it lets a cache skip.
+ * Empty when the input cannot be stamped, which makes the call uncacheable.
+ */
+@Slf4j
+public final class InputFingerprints {
+
+    private InputFingerprints() {
+    }
+
+    /** Modification time, size and file key (inode) of one file */
+    public static Optional<String> ofFile(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(stamp(attributes));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** Digest of the stamps of every file under root whose name ends with suffix */
+    public static Optional<String> ofTree(Path root, String suffix) {
+        if (Files.isRegularFile(root)) {
+            return ofFile(root);
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> files = walk.filter(path -> path.toString().endsWith(suffix)).sorted().toList();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path file : files) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                digest.update((file + "|" + stamp(attributes) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return Optional.of(HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.debug("Cannot fingerprint {}", root, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The commit HEAD points to, read straight from the .git directory without opening
+     * the repository. Empty for unborn branches and linked worktrees.
+     */
+    public static Optional<String> ofGitHead(Path repository) {
+        Path gitDir = repository.resolve(".git");
+        try {
+            if (!Files.isDirectory(gitDir)) {
+                return Optional.empty();
+            }
+            String head = Files.readString(gitDir.resolve("HEAD")).trim();
+            if (!head.startsWith("ref: ")) {
+                return Optional.of(head);
+            }
+            String ref = head.substring("ref: ".length());
+            Path looseRef = gitDir.resolve(ref);
+            if (Files.isRegularFile(looseRef)) {
+                return Optional.of(Files.readString(looseRef).trim());
+            }
+            // Packed refs are rewritten as a whole, so their stamp changes with any ref
+            return ofFile(gitDir.resolve("packed-refs")).map(stamp -> ref + "@" + stamp);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String stamp(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().toInstant() + ":" + attributes.size() + ":" + attributes.fileKey();
+    }
+}
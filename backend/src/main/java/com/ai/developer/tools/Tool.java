@@ -2,10 +2,28 @@ package com.ai.developer.tools;
 
 import reactor.core.publisher.Flux;
 import java.util.Map;
+import java.util.Optional;
 
 public interface Tool {
     String getName();
     String getDescription();
     Map<String, ParameterInfo> getParameters();
     Flux<ToolOutput> execute(Map<String, Object> arguments);
+    
+    /**
+     * Upper bound on executions of this tool running at the same time, across all sessions.
+     * Calls beyond it wait for a running one to finish.
+     */
+    default int getMaxConcurrency() {
+        return 4;
+    }
+    
+    /**
+     * Stamp of whatever the result of this call depends on besides its arguments, such
+     * as the mtime and size of the file it reads (see {@link InputFingerprints}). Only
+     * side-effect free operations should return one; empty means the call is never cached.
+     */
+    default Optional<String> getCacheFingerprint(Map<String, Object> arguments) {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,56 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.tools.ConcurrencyLimiter.RejectionPolicy;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Isolation for one tool: its own scheduler, sized to its concurrency limit, and a
+ * bounded wait queue in front of it. A tool that is slow or saturated only queues
+ * or rejects its own calls and never occupies the threads of other tools or the
+ * event loop that streams responses.
+ */
+class ToolBulkhead {
+
+    private final ConcurrencyLimiter limiter;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final List<Meter> meters;
+
+    ToolBulkhead(String toolName, int maxConcurrency, int queueCapacity, RejectionPolicy rejectionPolicy,
+                 ToolThreads toolThreads, MeterRegistry meterRegistry) {
+        this.limiter = new ConcurrencyLimiter(toolName, maxConcurrency, queueCapacity, rejectionPolicy);
+        this.scheduler = toolThreads.newScheduler("tool-" + toolName, maxConcurrency);
+        this.meterRegistry = meterRegistry;
+
+        Tags tags = Tags.of("tool", toolName);
+        this.meters = List.of(
+                Gauge.builder("tool.bulkhead.max.concurrency", () -> maxConcurrency).tags(tags)
+                        .description("Calls of the tool allowed to run at the same time").register(meterRegistry),
+                Gauge.builder("tool.bulkhead.queue.capacity", () -> queueCapacity).tags(tags)
+                        .description("Calls of the tool allowed to wait for a free slot").register(meterRegistry),
+                Gauge.builder("tool.bulkhead.active", limiter, ConcurrencyLimiter::getActive).tags(tags)
+                        .register(meterRegistry),
+                Gauge.builder("tool.bulkhead.queued", limiter, ConcurrencyLimiter::getQueued).tags(tags)
+                        .register(meterRegistry),
+                FunctionCounter.builder("tool.bulkhead.rejected", limiter, ConcurrencyLimiter::getRejected).tags(tags)
+                        .register(meterRegistry));
+    }
+
+    <T> Flux<T> execute(Supplier<Flux<T>> work) {
+        return limiter.limit(Flux.defer(work).subscribeOn(scheduler));
+    }
+
+    void close() {
+        meters.forEach(meterRegistry::remove);
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ai.developer.tools;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Latency, throughput and payload meters for tool executions, tagged by tool and by
+ * the operation argument. The operation comes from the model, so only a bounded set
+ * of well-formed values per tool becomes a tag; anything else is tagged "other".
+ */
+class ToolMetrics {
+
+    private static final int MAX_OPERATIONS_PER_TOOL = 32;
+    private static final Pattern OPERATION = Pattern.compile("[a-z_]{1,32}");
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> operations = new ConcurrentHashMap<>();
+
+    ToolMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    Flux<ToolOutput> instrument(String toolName, Map<String, Object> arguments, Flux<ToolOutput> execution) {
+        return Flux.defer(() -> {
+            Tags tags = Tags.of("tool", toolName, "operation", operationTag(toolName, arguments.get("operation")));
+            Counter outputs = Counter.builder("tool.outputs")
+                    .tags(tags)
+                    .description("Outputs emitted by tool executions")
+                    .register(meterRegistry);
+            AtomicInteger inFlight = activeExecutions(toolName);
+            AtomicLong bytes = new AtomicLong();
+
+            inFlight.incrementAndGet();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            // Recorded before the terminal signal travels on, so callers see the meters when they return
+            Consumer<String> finish = outcome -> {
+                inFlight.decrementAndGet();
+                sample.stop(Timer.builder("tool.execution")
+                        .tags(tags)
+                        .tag("outcome", outcome)
+                        .description("Duration of tool executions")
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+                DistributionSummary.builder("tool.output.bytes")
+                        .tags(tags)
+                        .baseUnit("bytes")
+                        .description("Size of the output of one tool execution")
+                        .register(meterRegistry)
+                        .record(bytes.get());
+            };
+            return execution
+                    .doOnNext(output -> {
+                        outputs.increment();
+                        bytes.addAndGet(utf8Length(output.getContent()));
+                    })
+                    .doOnComplete(() -> finish.accept("success"))
+                    .doOnCancel(() -> finish.accept("cancelled"))
+                    .doOnError(e -> {
+                        String outcome = failureOutcome(e);
+                        finish.accept(outcome);
+                        Counter.builder("tool.errors")
+                                .tags(tags)
+                                .tag("type", outcome)
+                                .description("Failed tool executions by kind of failure")
+                                .register(meterRegistry)
+                                .increment();
+                    });
+        });
+    }
+
+    private AtomicInteger activeExecutions(String toolName) {
+        return active.computeIfAbsent(toolName, name -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("tool.executions.active", count, AtomicInteger::get)
+                    .tag("tool", name)
+                    .description("Tool executions in flight, including those waiting for their bulkhead")
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+
+    private String operationTag(String toolName, Object operation) {
+        if (!(operation instanceof String name)) {
+            return "none";
+        }
+        String normalized = name.toLowerCase();
+        if (!OPERATION.matcher(normalized).matches()) {
+            return "other";
+        }
+        Set<String> seen = operations.computeIfAbsent(toolName, n -> ConcurrentHashMap.newKeySet());
+        if (seen.contains(normalized)) {
+            return normalized;
+        }
+        synchronized (seen) {
+            if (seen.size() >= MAX_OPERATIONS_PER_TOOL) {
+                return "other";
+            }
+            seen.add(normalized);
+            return normalized;
+        }
+    }
+
+    private static String failureOutcome(Throwable failure) {
+        if (failure instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (failure instanceof RejectedExecutionException) {
+            return "rejected";
+        }
+        return "error";
+    }
+
+    private static long utf8Length(String content) {
+        if (content == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
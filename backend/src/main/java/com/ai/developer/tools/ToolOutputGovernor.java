@@ -0,0 +1,326 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolOutputConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps tool results that go into the conversation small. A result up to
+ * maxResultBytes is kept as is. A larger one is streamed to a spill file in a
+ * per-session directory as it is produced, and the conversation gets a preview of
+ * its head and tail plus a handle that the tool_output tool pages through.
+ *
+ * <p>A handle can only be read by the session it was spilled for. Spills are deleted
+ * with their session, when they get older than the age cap, and oldest first when all
+ * of them together are over the byte cap. The caps are also applied on a timer, so
+ * spills of sessions nobody uses any more go too. When sessions outlive a restart,
+ * so do their spills, which are picked up again on startup.
+ */
+@Slf4j
+@Component
+public class ToolOutputGovernor {
+
+    /** Key of the calling session's id in the Reactor context of a tool call */
+    public static final String SESSION_CONTEXT_KEY = "toolOutput.sessionId";
+
+    private static final int PAGE_HEADER_BYTES = 128;
+    private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(5);
+
+    private final ToolOutputConfig config;
+    private final Path spillRoot;
+    private final Map<String, Spill> spills = new ConcurrentHashMap<>();
+    // Orders spills made within the same millisecond
+    private final AtomicLong spillSequence = new AtomicLong();
+    private volatile boolean sessionsDurable;
+    private Disposable pruning;
+
+    public ToolOutputGovernor(ToolOutputConfig config) {
+        this.config = config;
+        this.spillRoot = config.getSpillDirectory() != null
+                ? Path.of(config.getSpillDirectory())
+                : Path.of(System.getProperty("java.io.tmpdir"), "agent-tool-output");
+    }
+
+    /** Picks up spills left by an earlier run and starts applying the caps on a timer */
+    @PostConstruct
+    public void start() {
+        loadSpills();
+        prune();
+        pruning = Flux.interval(PRUNE_INTERVAL, PRUNE_INTERVAL).subscribe(tick -> prune());
+    }
+
+    /** Whether sessions outlive a restart, in which case their spills are kept on shutdown */
+    public void setSessionsDurable(boolean sessionsDurable) {
+        this.sessionsDurable = sessionsDurable;
+    }
+
+    /**
+     * The result text of a tool call, one line per output, or its preview when it
+     * is over the cap. Output is never held in memory beyond the cap. An output with
+     * "continued" set in its metadata is part of a line the next output goes on with.
+     */
+    public Mono<String> capture(String sessionId, Flux<ToolOutput> outputs) {
+        return Mono.using(() -> new Capture(sessionId),
+                capture -> outputs
+                        .doOnNext(output -> capture.append(output.getContent(), !continued(output)))
+                        .then(Mono.fromCallable(capture::finish)),
+                Capture::close);
+    }
+
+    /**
+     * Up to length bytes of a result spilled for the given session, starting at offset.
+     * The page starts at the first character at or after offset and ends before a
+     * character it would cut, so the next offset continues at the first one left out.
+     */
+    public Page read(String sessionId, String handle, long offset, int length) throws IOException {
+        prune();
+        Spill spill = spills.get(handle);
+        // Handles of other sessions are as unknown as made-up ones
+        if (spill == null || !spill.sessionId().equals(sessionId)) {
+            throw new IllegalArgumentException("Unknown tool output handle: " + handle);
+        }
+        try (FileChannel channel = FileChannel.open(spill.file(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(Math.max(0, offset), size);
+            byte[] bytes = readRange(channel, start, (int) Math.min(Math.min(length, getMaxPageBytes()), size - start));
+            int from = characterStart(bytes);
+            int to = characterEnd(bytes);
+            if (to <= from) {
+                // Too short for a whole character; returning nothing would never move on
+                from = 0;
+                to = bytes.length;
+            }
+            return new Page(new String(bytes, from, to - from, StandardCharsets.UTF_8), start + from, start + to, size);
+        }
+    }
+
+    /** Largest page that, with a short header line, still fits into the conversation unspilled */
+    public int getMaxPageBytes() {
+        return config.getMaxResultBytes() - PAGE_HEADER_BYTES;
+    }
+
+    /** Deletes everything spilled for a session, as when the session is deleted */
+    public void deleteSession(String sessionId) {
+        spills.values().removeIf(spill -> spill.sessionId().equals(sessionId));
+        Path directory = spillRoot.resolve(sessionId);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(ToolOutputGovernor::delete);
+        } catch (IOException e) {
+            log.warn("Could not delete spilled tool output of session {}", sessionId, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pruning != null) {
+            pruning.dispose();
+        }
+        // Nobody could read the spills of sessions that are gone after a restart
+        if (!sessionsDurable) {
+            spills.values().forEach(spill -> delete(spill.file()));
+            spills.clear();
+        }
+    }
+
+    /** Registers the spill files under the spill directory, one directory per session */
+    private void loadSpills() {
+        if (!Files.isDirectory(spillRoot)) {
+            return;
+        }
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(spillRoot, Files::isDirectory)) {
+            for (Path session : sessions) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(session, "*.out")) {
+                    for (Path file : files) {
+                        String handle = file.getFileName().toString().replace(".out", "");
+                        spills.put(handle, new Spill(handle, session.getFileName().toString(), file, Files.size(file),
+                                Files.getLastModifiedTime(file).toMillis(), spillSequence.incrementAndGet()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not load spilled tool output from {}", spillRoot, e);
+        }
+    }
+
+    /**
+     * Deletes spills past the age cap, then the oldest ones until the rest fit the byte
+     * cap. The newest spill is kept even if it is over the cap by itself, since the
+     * preview just handed out refers to it.
+     */
+    private synchronized void prune() {
+        long now = System.currentTimeMillis();
+        long maxAgeMillis = config.getSpillMaxAgeMinutes() * 60_000L;
+        List<Spill> oldestFirst = spills.values().stream()
+                .sorted(Comparator.comparingLong(Spill::createdMillis).thenComparingLong(Spill::sequence))
+                .toList();
+        long total = oldestFirst.stream().mapToLong(Spill::bytes).sum();
+        for (int i = 0; i < oldestFirst.size(); i++) {
+            Spill spill = oldestFirst.get(i);
+            boolean newest = i == oldestFirst.size() - 1;
+            if (now - spill.createdMillis() > maxAgeMillis || (!newest && total > config.getMaxSpillBytes())) {
+                if (spills.remove(spill.handle(), spill)) {
+                    delete(spill.file());
+                }
+                total -= spill.bytes();
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spilled tool output {}", file, e);
+        }
+    }
+
+    public record Page(String content, long offset, long nextOffset, long totalBytes) {
+    }
+
+    private record Spill(String handle, String sessionId, Path file, long bytes, long createdMillis, long sequence) {
+    }
+
+    private static byte[] readRange(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // Positional reads may return fewer bytes than asked for
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static boolean continued(ToolOutput output) {
+        return output.getMetadata() != null && Boolean.TRUE.equals(output.getMetadata().get("continued"));
+    }
+
+    /** Number of continuation bytes bytes starts with, which belong to a character cut off before it */
+    private static int characterStart(byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && start < 3 && (bytes[start] & 0xC0) == 0x80) {
+            start++;
+        }
+        return start;
+    }
+
+    /** Length of bytes without the character cut off at its end, if any */
+    private static int characterEnd(byte[] bytes) {
+        // Back over the continuation bytes of the last character to its lead byte
+        int lead = bytes.length - 1;
+        while (lead > 0 && bytes.length - lead < 4 && (bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) {
+            return 0;
+        }
+        int first = bytes[lead] & 0xFF;
+        int characterLength = first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : first >= 0xC0 ? 2 : 1;
+        return lead + characterLength > bytes.length ? lead : bytes.length;
+    }
+
+    private class Capture {
+        private final String sessionId;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private long total;
+        private Path file;
+        private OutputStream spill;
+        private boolean finished;
+
+        Capture(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        void append(String content, boolean lineEnds) {
+            byte[] bytes = (lineEnds ? content + "\n" : content).getBytes(StandardCharsets.UTF_8);
+            total += bytes.length;
+            try {
+                if (spill == null && total > config.getMaxResultBytes()) {
+                    Path directory = Files.createDirectories(spillRoot.resolve(sessionId));
+                    file = directory.resolve(UUID.randomUUID() + ".out");
+                    spill = new BufferedOutputStream(Files.newOutputStream(file));
+                    buffer.writeTo(spill);
+                    buffer.reset();
+                }
+                if (spill == null) {
+                    buffer.write(bytes);
+                } else {
+                    spill.write(bytes);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill tool output", e);
+            }
+        }
+
+        String finish() throws IOException {
+            finished = true;
+            if (spill == null) {
+                return buffer.toString(StandardCharsets.UTF_8);
+            }
+            spill.close();
+
+            String handle = file.getFileName().toString().replace(".out", "");
+            spills.put(handle, new Spill(handle, sessionId, file, total, System.currentTimeMillis(),
+                    spillSequence.incrementAndGet()));
+            log.info("Spilled {} bytes of tool output for session {} to {}", total, sessionId, file);
+            prune();
+
+            int headLength = (int) Math.min(config.getPreviewBytes(), total);
+            int tailLength = (int) Math.min(config.getPreviewBytes(), total - headLength);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // Both are cut at character boundaries, so neither ends in a broken character
+                byte[] head = readRange(channel, 0, headLength);
+                byte[] tail = readRange(channel, total - tailLength, tailLength);
+                int headEnd = characterEnd(head);
+                int tailStart = characterStart(tail);
+                return new String(head, 0, headEnd, StandardCharsets.UTF_8)
+                        + "\n... [" + (total - headEnd - (tail.length - tailStart)) + " of " + total + " bytes omitted."
+                        + " The full output is saved as handle " + handle
+                        + "; read it with the tool_output tool, passing the handle and a byte offset] ...\n"
+                        + new String(tail, tailStart, tail.length - tailStart, StandardCharsets.UTF_8);
+            }
+        }
+
+        void close() {
+            if (spill == null) {
+                return;
+            }
+            try {
+                spill.close();
+                // Failed or cancelled calls leave nothing to page through
+                if (!finished) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                log.warn("Could not close spilled tool output {}", file, e);
+            }
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.ai.developer.tools;
 
+import com.ai.developer.config.ToolBulkheadConfig;
+import com.ai.developer.tools.ConcurrencyLimiter.RejectionPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.context.ApplicationContext;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -16,10 +21,25 @@ import reactor.core.publisher.Mono;
 public class ToolRegistry {
     
     private final Map<String, Tool> tools = new ConcurrentHashMap<>();
+    private final Map<String, ToolBulkhead> bulkheads = new ConcurrentHashMap<>();
     private final ApplicationContext context;
+    private final ToolBulkheadConfig bulkheadConfig;
+    private final ToolThreads toolThreads;
+    private final ToolResultCache resultCache;
+    private final MeterRegistry meterRegistry;
+    private final ToolMetrics metrics;
     
-    public ToolRegistry(ApplicationContext context) {
+    // Compiled once per change of the tool set and shared by every request until the next one
+    private volatile CompiledTools compiled = new CompiledTools(List.of(), ToolSchemaCompiler.compile(List.of()));
+    
+    public ToolRegistry(ApplicationContext context, ToolBulkheadConfig bulkheadConfig, ToolThreads toolThreads,
+                        ToolResultCache resultCache, MeterRegistry meterRegistry) {
         this.context = context;
+        this.bulkheadConfig = bulkheadConfig;
+        this.toolThreads = toolThreads;
+        this.resultCache = resultCache;
+        this.meterRegistry = meterRegistry;
+        this.metrics = new ToolMetrics(meterRegistry);
     }
     
     @PostConstruct
@@ -27,8 +47,30 @@ public class ToolRegistry {
         Map<String, Tool> toolBeans = context.getBeansOfType(Tool.class);
         toolBeans.forEach((name, tool) -> {
             tools.put(tool.getName(), tool);
+            replaceBulkhead(tool);
             log.info("Registered tool: {}", tool.getName());
         });
+        recompile();
+    }
+    
+    public void registerTool(Tool tool) {
+        tools.put(tool.getName(), tool);
+        replaceBulkhead(tool);
+        resultCache.invalidate(tool.getName());
+        log.info("Registered tool: {}", tool.getName());
+        recompile();
+    }
+    
+    public void unregisterTool(String name) {
+        if (tools.remove(name) != null) {
+            ToolBulkhead bulkhead = bulkheads.remove(name);
+            if (bulkhead != null) {
+                bulkhead.close();
+            }
+            resultCache.invalidate(name);
+            log.info("Unregistered tool: {}", name);
+            recompile();
+        }
     }
     
     public Tool getTool(String name) {
@@ -39,27 +81,86 @@ public class ToolRegistry {
         return new ArrayList<>(tools.values());
     }
     
+    /**
+     * Pre-serialized JSON array of all tool definitions in the given provider format,
+     * ready to be spliced into a request body. Null when no tools are registered.
+     */
+    public String getToolDefinitionsJson(ToolSchemaFormat format) {
+        CompiledTools current = compiled;
+        return current.infos().isEmpty() ? null : current.definitions().get(format);
+    }
+    
     public Flux<ToolOutput> executeTool(String name, Map<String, Object> arguments) {
         Tool tool = tools.get(name);
         if (tool == null) {
             return Flux.error(new IllegalArgumentException("Tool not found: " + name));
         }
         
-        return tool.execute(arguments)
+        ToolBulkhead bulkhead = bulkheads.get(name);
+        if (bulkhead == null) {
+            return Flux.error(new IllegalArgumentException("Tool not found: " + name));
+        }
+        
+        // Tool bodies block; each tool runs on its own bounded scheduler, never on the caller's thread.
+        // Cache hits skip the bulkhead altogether.
+        Flux<ToolOutput> execution = resultCache.cached(tool, arguments,
+                () -> bulkhead.execute(() -> tool.execute(arguments)));
+        return metrics.instrument(name, arguments, execution)
                 .doOnSubscribe(s -> log.info("Executing tool: {} with arguments: {}", name, arguments))
                 .doOnComplete(() -> log.info("Tool execution completed: {}", name))
                 .doOnError(e -> log.error("Error executing tool: {}", name, e));
     }
     
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(ToolBulkhead::close);
+        bulkheads.clear();
+    }
+    
     public Mono<List<ToolInfo>> getAvailableToolsInfo() {
-        return Mono.just(
-            tools.values().stream()
+        return Mono.just(compiled.infos());
+    }
+    
+    private synchronized void recompile() {
+        // getParameters() builds its map on every call, so read each tool once here
+        List<ToolInfo> infos = tools.values().stream()
+                .sorted(Comparator.comparing(Tool::getName))
                 .map(tool -> new ToolInfo(
                     tool.getName(),
                     tool.getDescription(),
-                    tool.getParameters()
+                    Map.copyOf(tool.getParameters())
                 ))
-                .toList()
-        );
+                .toList();
+        compiled = new CompiledTools(infos, ToolSchemaCompiler.compile(infos));
+        log.info("Compiled definitions for {} tools", infos.size());
+    }
+    
+    private void replaceBulkhead(Tool tool) {
+        ToolBulkheadConfig.Settings settings = bulkheadConfig.getTools().get(tool.getName());
+        int maxConcurrency = settings != null && settings.getMaxConcurrency() != null
+                ? settings.getMaxConcurrency() : tool.getMaxConcurrency();
+        int queueCapacity = settings != null && settings.getQueueCapacity() != null
+                ? settings.getQueueCapacity() : bulkheadConfig.getQueueCapacity();
+        String rejectionPolicy = settings != null && settings.getRejectionPolicy() != null
+                ? settings.getRejectionPolicy() : bulkheadConfig.getRejectionPolicy();
+        
+        ToolBulkhead previous = bulkheads.put(tool.getName(), new ToolBulkhead(tool.getName(), maxConcurrency,
+                queueCapacity, parseRejectionPolicy(rejectionPolicy), toolThreads, meterRegistry));
+        if (previous != null) {
+            previous.close();
+        }
+        log.info("Bulkhead for tool {}: maxConcurrency={}, queueCapacity={}, rejectionPolicy={}",
+                tool.getName(), maxConcurrency, queueCapacity, rejectionPolicy);
+    }
+    
+    private static RejectionPolicy parseRejectionPolicy(String policy) {
+        return switch (policy) {
+            case "fail" -> RejectionPolicy.FAIL;
+            case "evict-oldest" -> RejectionPolicy.EVICT_OLDEST;
+            default -> throw new IllegalArgumentException("Unknown tool rejection policy: " + policy);
+        };
+    }
+    
+    private record CompiledTools(List<ToolInfo> infos, Map<ToolSchemaFormat, String> definitions) {
     }
 }
@@ -0,0 +1,170 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolCacheConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache of completed tool results. A call is cached only when its
+ * tool returns a fingerprint for it, and the key is the tool name, the arguments with
+ * their keys sorted, and that fingerprint; a changed input therefore misses instead of
+ * returning a stale result. Memory is bounded by an estimate of the cached bytes, and
+ * the least recently used results are evicted first.
+ */
+@Slf4j
+@Component
+public class ToolResultCache {
+
+    private static final int OUTPUT_OVERHEAD_BYTES = 64;
+
+    private final ToolCacheConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper keyMapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Counter evictions;
+
+    // Access order turns the map into an LRU list: the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    public ToolResultCache(ToolCacheConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.evictions = Counter.builder("tool.cache.evictions")
+                .description("Tool results evicted to stay within the cache size")
+                .register(meterRegistry);
+        Gauge.builder("tool.cache.size", this, ToolResultCache::getBytes)
+                .baseUnit("bytes")
+                .description("Estimated size of the cached tool results")
+                .register(meterRegistry);
+        Gauge.builder("tool.cache.entries", this, ToolResultCache::getEntryCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The cached outputs of the call if its inputs are unchanged; otherwise the outputs
+     * of execution, which are cached once it completes.
+     */
+    public Flux<ToolOutput> cached(Tool tool, Map<String, Object> arguments, Supplier<Flux<ToolOutput>> execution) {
+        if (!config.getEnabled()) {
+            return execution.get();
+        }
+        return Flux.defer(() -> {
+            String key = key(tool, arguments);
+            if (key == null) {
+                return execution.get();
+            }
+
+            List<ToolOutput> hit = get(key);
+            countRequest(tool.getName(), hit != null);
+            if (hit != null) {
+                log.debug("Cache hit for tool: {}", tool.getName());
+                return Flux.fromIterable(hit);
+            }
+
+            List<ToolOutput> outputs = new ArrayList<>();
+            return execution.get()
+                    .doOnNext(outputs::add)
+                    .doOnComplete(() -> put(key, outputs));
+        });
+    }
+
+    public synchronized void invalidate(String toolName) {
+        String prefix = toolName + "\n";
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                bytes -= entry.getValue().bytes();
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private String key(Tool tool, Map<String, Object> arguments) {
+        Optional<String> fingerprint = tool.getCacheFingerprint(arguments);
+        if (fingerprint.isEmpty()) {
+            return null;
+        }
+        try {
+            return tool.getName() + "\n" + keyMapper.writeValueAsString(arguments) + "\n" + fingerprint.get();
+        } catch (JsonProcessingException e) {
+            log.debug("Arguments of tool {} cannot be used as a cache key", tool.getName(), e);
+            return null;
+        }
+    }
+
+    private synchronized List<ToolOutput> get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.outputs();
+    }
+
+    private void put(String key, List<ToolOutput> outputs) {
+        long size = estimateBytes(key, outputs);
+        if (size > config.getMaxEntryBytes()) {
+            return;
+        }
+
+        int evicted = 0;
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(List.copyOf(outputs), size));
+            bytes += size - (previous == null ? 0 : previous.bytes());
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > config.getMaxBytes() && eldest.hasNext()) {
+                bytes -= eldest.next().bytes();
+                eldest.remove();
+                evicted++;
+            }
+        }
+        evictions.increment(evicted);
+    }
+
+    private void countRequest(String toolName, boolean hit) {
+        Counter.builder("tool.cache.requests")
+                .tag("tool", toolName)
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static long estimateBytes(String key, List<ToolOutput> outputs) {
+        // Strings are at most two bytes per char; metadata is weighed by its printed size
+        long size = 2L * key.length();
+        for (ToolOutput output : outputs) {
+            size += OUTPUT_OVERHEAD_BYTES;
+            if (output.getContent() != null) {
+                size += 2L * output.getContent().length();
+            }
+            if (output.getMetadata() != null) {
+                size += 2L * String.valueOf(output.getMetadata()).length();
+            }
+        }
+        return size;
+    }
+
+    private record Entry(List<ToolOutput> outputs, long bytes) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.ai.developer.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serializes tool definitions into the JSON array each provider expects.
+ *
+ * Parameters are written in name order so the output is byte-for-byte stable
+ * across restarts, which keeps provider-side prompt caches warm.
+ */
+final class ToolSchemaCompiler {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ToolSchemaCompiler() {
+    }
+
+    static Map<ToolSchemaFormat, String> compile(List<ToolInfo> tools) {
+        Map<ToolSchemaFormat, String> definitions = new EnumMap<>(ToolSchemaFormat.class);
+        for (ToolSchemaFormat format : ToolSchemaFormat.values()) {
+            definitions.put(format, write(tools, format));
+        }
+        return definitions;
+    }
+
+    private static String write(List<ToolInfo> tools, ToolSchemaFormat format) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartArray();
+            for (int i = 0; i < tools.size(); i++) {
+                ToolInfo tool = tools.get(i);
+                generator.writeStartObject();
+                if (format == ToolSchemaFormat.OPENAI) {
+                    generator.writeStringField("type", "function");
+                    generator.writeObjectFieldStart("function");
+                    generator.writeStringField("name", tool.getName());
+                    generator.writeStringField("description", tool.getDescription());
+                    generator.writeFieldName("parameters");
+                    writeInputSchema(generator, tool.getParameters());
+                    generator.writeEndObject();
+                } else {
+                    generator.writeStringField("name", tool.getName());
+                    generator.writeStringField("description", tool.getDescription());
+                    generator.writeFieldName("input_schema");
+                    writeInputSchema(generator, tool.getParameters());
+                    if (format == ToolSchemaFormat.CLAUDE_CACHED && i == tools.size() - 1) {
+                        generator.writeObjectFieldStart("cache_control");
+                        generator.writeStringField("type", "ephemeral");
+                        generator.writeEndObject();
+                    }
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compile tool definitions", e);
+        }
+        return json.toString();
+    }
+
+    private static void writeInputSchema(JsonGenerator generator, Map<String, ParameterInfo> parameters) throws IOException {
+        Map<String, ParameterInfo> sorted = parameters != null ? new TreeMap<>(parameters) : Map.of();
+
+        generator.writeStartObject();
+        generator.writeStringField("type", "object");
+        generator.writeObjectFieldStart("properties");
+        for (Map.Entry<String, ParameterInfo> entry : sorted.entrySet()) {
+            ParameterInfo param = entry.getValue();
+            generator.writeObjectFieldStart(entry.getKey());
+            generator.writeStringField("type", param.getType());
+            generator.writeStringField("description", param.getDescription());
+            if (param.getEnumValues() != null && !param.getEnumValues().isEmpty()) {
+                generator.writeArrayFieldStart("enum");
+                for (String value : param.getEnumValues()) {
+                    generator.writeString(value);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeArrayFieldStart("required");
+        for (Map.Entry<String, ParameterInfo> entry : sorted.entrySet()) {
+            if (entry.getValue().isRequired()) {
+                generator.writeString(entry.getKey());
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,13 @@
+package com.ai.developer.tools;
+
+/**
+ * Wire formats the tool definitions are precompiled into, see ToolRegistry.
+ */
+public enum ToolSchemaFormat {
+    /** Anthropic Messages API tools array */
+    CLAUDE,
+    /** Same as CLAUDE, with a prompt-cache breakpoint on the last tool */
+    CLAUDE_CACHED,
+    /** OpenAI Chat Completions tools array of function definitions */
+    OPENAI
+}
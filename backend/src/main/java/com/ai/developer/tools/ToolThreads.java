@@ -0,0 +1,126 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolExecutionConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads for blocking tool work: tool bodies and the pumps that drain process
+ * output. In virtual mode each call and each pump gets its own virtual thread, so
+ * hundreds of running commands do not each hold a platform thread and its stack.
+ * Virtual threads are looked up reflectively because the code targets Java 17;
+ * on older runtimes the virtual mode falls back to platform threads.
+ */
+@Slf4j
+@Component
+public class ToolThreads {
+
+    private final boolean virtual;
+
+    public ToolThreads(ToolExecutionConfig config) {
+        this.virtual = switch (config.getMode()) {
+            case "platform" -> false;
+            case "virtual" -> virtualThreadsAvailable();
+            default -> throw new IllegalArgumentException("Unknown tool execution mode: " + config.getMode());
+        };
+        log.info("Running tools on {} threads", virtual ? "virtual" : "platform");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Scheduler for the bodies of one tool. The tool's bulkhead admits at most
+     * maxConcurrency calls, so that many platform threads always suffice.
+     */
+    Scheduler newScheduler(String name, int maxConcurrency) {
+        if (virtual) {
+            return Schedulers.fromExecutorService(newThreadPerTaskExecutor(virtualThreadFactory(name)), name);
+        }
+        return Schedulers.newBoundedElastic(maxConcurrency, Integer.MAX_VALUE, name, 60, true);
+    }
+
+    public Thread startPump(String name, Runnable pump) {
+        Thread thread;
+        if (virtual) {
+            thread = virtualThreadFactory(name).newThread(pump);
+        } else {
+            thread = new Thread(pump, name);
+            thread.setDaemon(true);
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Lines of the process output, read on a pump thread. Cancelling the returned
+     * Flux destroys the process, which also unblocks the pump.
+     */
+    public Flux<String> outputLines(String name, Process process) {
+        return Flux.create(sink -> {
+            Thread[] pump = new Thread[1];
+            sink.onCancel(() -> {
+                process.destroyForcibly();
+                if (pump[0] != null) {
+                    pump[0].interrupt();
+                }
+            });
+            pump[0] = startPump(name, () -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                    String line;
+                    while (!sink.isCancelled() && (line = reader.readLine()) != null) {
+                        sink.next(line);
+                    }
+                    sink.complete();
+                } catch (IOException e) {
+                    // Destroying the process on cancel closes the stream under the reader
+                    if (!sink.isCancelled()) {
+                        sink.error(e);
+                    }
+                }
+            });
+        });
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            virtualThreadFactory("probe");
+            Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return true;
+        } catch (IllegalStateException | NoSuchMethodException e) {
+            log.warn("Virtual threads are not available on Java {}, using platform threads", Runtime.version());
+            return false;
+        }
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
+}
@@ -37,6 +37,12 @@ public class BrowserAutomationTool implements Tool {
         return "browser_automation";
     }
     
+    @Override
+    public int getMaxConcurrency() {
+        // One shared Playwright browser, which is not thread-safe
+        return 1;
+    }
+    
     @Override
     public String getDescription() {
         return "Automate browser interactions and capture screenshots";
@@ -5,18 +5,34 @@ import org.apache.maven.shared.invoker.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 
 @Slf4j
 @Component
 public class BuildTool implements Tool {
     
+    private final ToolThreads toolThreads;
+    private final WorkspaceTrees workspaceTrees;
+    
+    public BuildTool(ToolThreads toolThreads, WorkspaceTrees workspaceTrees) {
+        this.toolThreads = toolThreads;
+        this.workspaceTrees = workspaceTrees;
+    }
+    
     @Override
     public String getName() {
         return "build_tool";
     }
     
+    @Override
+    public int getMaxConcurrency() {
+        // Parallel builds of one project overwrite each other's output
+        return 1;
+    }
+    
     @Override
     public String getDescription() {
         return "Execute Maven or Gradle build commands";
@@ -53,10 +69,11 @@ public class BuildTool implements Tool {
         String projectPath = (String) arguments.get("projectPath");
         List<String> goals = (List<String>) arguments.get("goals");
         
+        // Builds write their output into the project, which the workspace trees see by the end
         if ("maven".equalsIgnoreCase(tool)) {
-            return executeMaven(projectPath, goals);
+            return workspaceTrees.rescanAfter(Path.of(projectPath), executeMaven(projectPath, goals));
         } else if ("gradle".equalsIgnoreCase(tool)) {
-            return executeGradle(projectPath, goals);
+            return workspaceTrees.rescanAfter(Path.of(projectPath), executeGradle(projectPath, goals));
         } else {
             return Flux.error(new IllegalArgumentException("Unknown build tool: " + tool));
         }
@@ -102,59 +119,53 @@ public class BuildTool implements Tool {
     }
     
     private Flux<ToolOutput> executeGradle(String projectPath, List<String> goals) {
-        return Flux.create(sink -> {
-            try {
-                ProcessBuilder processBuilder = new ProcessBuilder();
-                List<String> command = new ArrayList<>();
-                
-                // Use gradlew if available, otherwise use gradle
-                File gradlew = new File(projectPath, "gradlew");
-                if (gradlew.exists() && gradlew.canExecute()) {
-                    command.add("./gradlew");
-                } else {
-                    command.add("gradle");
-                }
-                
-                command.addAll(goals);
-                processBuilder.command(command);
-                processBuilder.directory(new File(projectPath));
-                processBuilder.redirectErrorStream(true);
-                
-                Process process = processBuilder.start();
-                
-                // Read output
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sink.next(ToolOutput.builder()
+        // Cancelling the build destroys the Gradle process
+        return Flux.using(
+                () -> {
+                    ProcessBuilder processBuilder = new ProcessBuilder();
+                    List<String> command = new ArrayList<>();
+                    
+                    // Use gradlew if available, otherwise use gradle
+                    File gradlew = new File(projectPath, "gradlew");
+                    if (gradlew.exists() && gradlew.canExecute()) {
+                        command.add("./gradlew");
+                    } else {
+                        command.add("gradle");
+                    }
+                    
+                    command.addAll(goals);
+                    processBuilder.command(command);
+                    processBuilder.directory(new File(projectPath));
+                    processBuilder.redirectErrorStream(true);
+                    
+                    return processBuilder.start();
+                },
+                process -> toolThreads.outputLines("gradle-output", process)
+                        .map(line -> ToolOutput.builder()
                                 .type("build_output")
                                 .content(line)
                                 .metadata(Map.of("tool", "gradle"))
-                                .build());
+                                .build())
+                        .concatWith(Mono.fromCallable(() -> {
+                            int exitCode = process.waitFor();
+                            if (exitCode == 0) {
+                                return ToolOutput.builder()
+                                        .type("build_complete")
+                                        .content("Gradle build completed successfully")
+                                        .metadata(Map.of("exitCode", exitCode))
+                                        .build();
+                            }
+                            return ToolOutput.builder()
+                                    .type("build_error")
+                                    .content("Gradle build failed with exit code: " + exitCode)
+                                    .metadata(Map.of("exitCode", exitCode))
+                                    .build();
+                        })),
+                process -> {
+                    if (process.isAlive()) {
+                        process.destroyForcibly();
                     }
-                }
-                
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    sink.next(ToolOutput.builder()
-                            .type("build_complete")
-                            .content("Gradle build completed successfully")
-                            .metadata(Map.of("exitCode", exitCode))
-                            .build());
-                } else {
-                    sink.next(ToolOutput.builder()
-                            .type("build_error")
-                            .content("Gradle build failed with exit code: " + exitCode)
-                            .metadata(Map.of("exitCode", exitCode))
-                            .build());
-                }
-                
-                sink.complete();
-            } catch (Exception e) {
-                log.error("Error executing Gradle build", e);
-                sink.error(e);
-            }
-        });
+                })
+                .doOnError(e -> log.error("Error executing Gradle build", e));
     }
 }
@@ -0,0 +1,123 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.tools.ToolOutput;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Streams a file as successive ToolOutputs of about blockSize bytes each. Blocks are
+ * read from an AsynchronousFileChannel only as fast as they are requested, so memory
+ * stays at a block or two whatever the file size. Each chunk ends at a line break,
+ * which is left off its content because consumers join outputs with newlines. A line
+ * longer than two blocks is cut between characters instead, and its chunks but the last
+ * have "continued" set in their metadata, to be joined to the next without a newline.
+ * An empty file is one empty chunk.
+ */
+class ChunkedFileStreamer {
+
+    Flux<ToolOutput> stream(Path file, int blockSize) {
+        return Flux.defer(() -> {
+            Chunker chunker = new Chunker(file, blockSize);
+            return DataBufferUtils.readAsynchronousFileChannel(
+                            () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+                            DefaultDataBufferFactory.sharedInstance, blockSize)
+                    .<ToolOutput>handle((buffer, sink) -> {
+                        try {
+                            ToolOutput chunk = chunker.append(buffer);
+                            if (chunk != null) {
+                                sink.next(chunk);
+                            }
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(chunker::finish));
+        });
+    }
+
+    private static class Chunker {
+        private final Path file;
+        private final int blockSize;
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private long offset;
+        private int index;
+
+        Chunker(Path file, int blockSize) {
+            this.file = file;
+            this.blockSize = blockSize;
+        }
+
+        ToolOutput append(DataBuffer buffer) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            pending.write(bytes, 0, bytes.length);
+
+            byte[] data = pending.toByteArray();
+            int end = lastIndexOf(data, (byte) '\n');
+            if (end >= 0) {
+                return emit(data, end, end + 1, false);
+            }
+            // A line longer than a block is cut at a character boundary instead
+            if (data.length >= 2 * blockSize) {
+                int boundary = data.length;
+                while (boundary > 0 && (data[boundary - 1] & 0xC0) == 0x80) {
+                    boundary--;
+                }
+                // Step back over the lead byte of a character whose continuation bytes are missing
+                if (boundary > 0 && (data[boundary - 1] & 0x80) != 0) {
+                    boundary--;
+                }
+                return emit(data, boundary, boundary, true);
+            }
+            return null;
+        }
+
+        ToolOutput finish() {
+            byte[] data = pending.toByteArray();
+            // Only an empty file has nothing left and no chunk yet
+            return data.length == 0 && index > 0 ? null : emit(data, data.length, data.length, false);
+        }
+
+        /**
+         * Emits data[0, textEnd) and keeps data[consumed, length) for the next chunk
+         *
+         * @param continued whether the next chunk continues the line this one was cut from
+         */
+        private ToolOutput emit(byte[] data, int textEnd, int consumed, boolean continued) {
+            ToolOutput chunk = ToolOutput.builder()
+                    .type("file_chunk")
+                    .content(new String(data, 0, textEnd, StandardCharsets.UTF_8))
+                    .metadata(Map.of(
+                        "path", file.toString(),
+                        "chunk", index++,
+                        "offset", offset,
+                        "length", consumed,
+                        "continued", continued
+                    ))
+                    .build();
+            offset += consumed;
+            pending.reset();
+            pending.write(data, consumed, data.length - consumed);
+            return chunk;
+        }
+
+        private static int lastIndexOf(byte[] data, byte value) {
+            for (int i = data.length - 1; i >= 0; i--) {
+                if (data[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -1,31 +1,49 @@
 package com.ai.developer.tools.impl;
 
 import com.ai.developer.tools.*;
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
 public class CodeIntelligenceTool implements Tool {
     
+    private static final int DEFAULT_HIERARCHY_DEPTH = 1;
+    private static final int MAX_HIERARCHY_DEPTH = 10;
+    
+    private final WorkspaceTrees workspaceTrees;
+    private final JavaSourceIndexes javaSourceIndexes;
+    
+    public CodeIntelligenceTool(WorkspaceTrees workspaceTrees, JavaSourceIndexes javaSourceIndexes) {
+        this.workspaceTrees = workspaceTrees;
+        this.javaSourceIndexes = javaSourceIndexes;
+    }
+    
     @Override
     public String getName() {
         return "code_intelligence";
     }
     
+    @Override
+    public Optional<String> getCacheFingerprint(Map<String, Object> arguments) {
+        // Every operation only reads the Java sources under the path; the tree's stamp also
+        // moves for other files, which costs a cache miss but no per-file work
+        String path = (String) arguments.get("path");
+        if (path == null) {
+            return Optional.empty();
+        }
+        return workspaceTrees.treeFingerprint(Path.of(path))
+                .or(() -> InputFingerprints.ofTree(Path.of(path), ".java"));
+    }
+    
     @Override
     public String getDescription() {
         return "Analyze and manipulate code with AST operations";
@@ -37,7 +55,7 @@ public class CodeIntelligenceTool implements Tool {
         
         params.put("operation", ParameterInfo.builder()
             .type("string")
-            .description("Operation: analyze, find_methods, find_classes, extract_javadoc")
+            .description("Operation: analyze, find_methods, find_classes, extract_javadoc, find_usages, call_hierarchy, type_hierarchy. find_usages lists calls, method references and type uses of a simple name; call_hierarchy lists a method's declarations, the calls it makes and its callers; type_hierarchy lists a type's supertypes and subtypes. References are resolved to their declarations; those that cannot be are matched by simple name and reported with resolved=false")
             .required(true)
             .build());
             
@@ -49,7 +67,13 @@ public class CodeIntelligenceTool implements Tool {
             
         params.put("query", ParameterInfo.builder()
             .type("string")
-            .description("Search query or pattern")
+            .description("Search query or pattern. For find_usages and type_hierarchy a simple or qualified name; for call_hierarchy a method name, optionally as Type.method or package.Type.method")
+            .required(false)
+            .build());
+            
+        params.put("depth", ParameterInfo.builder()
+            .type("integer")
+            .description("Levels of callers, or of supertypes and subtypes, to follow (call_hierarchy and type_hierarchy, default 1, max 10)")
             .required(false)
             .build());
             
@@ -67,6 +91,10 @@ public class CodeIntelligenceTool implements Tool {
             case "find_methods" -> findMethods(path, query);
             case "find_classes" -> findClasses(path, query);
             case "extract_javadoc" -> extractJavadoc(path);
+            case "find_usages" -> findUsages(path, query);
+            // Deferred, so a malformed depth fails the returned Flux rather than this call
+            case "call_hierarchy" -> Flux.defer(() -> callHierarchy(path, query, depthArgument(arguments)));
+            case "type_hierarchy" -> Flux.defer(() -> typeHierarchy(path, query, depthArgument(arguments)));
             default -> Flux.error(new IllegalArgumentException("Unknown operation: " + operation));
         };
     }
@@ -100,30 +128,19 @@ public class CodeIntelligenceTool implements Tool {
                     .build();
         }
         
-        try (FileInputStream in = new FileInputStream(file)) {
-            JavaParser parser = new JavaParser();
-            CompilationUnit cu = parser.parse(in).getResult().orElseThrow();
-            
-            List<String> classes = cu.findAll(ClassOrInterfaceDeclaration.class).stream()
-                    .map(ClassOrInterfaceDeclaration::getNameAsString)
-                    .collect(Collectors.toList());
-                    
-            List<String> methods = cu.findAll(MethodDeclaration.class).stream()
-                    .map(MethodDeclaration::getNameAsString)
-                    .collect(Collectors.toList());
-            
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("path", file.getPath());
-            metadata.put("classes", classes);
-            metadata.put("methods", methods);
-            metadata.put("imports", cu.getImports().size());
-            
-            return ToolOutput.builder()
-                    .type("analysis_result")
-                    .content("Code analysis completed for: " + file.getName())
-                    .metadata(metadata)
-                    .build();
-        }
+        JavaSourceIndex.FileSummary summary = parsed(javaSourceIndexes.summarize(file.toPath()));
+        
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("path", file.getPath());
+        metadata.put("classes", typeNames(summary));
+        metadata.put("methods", methodNames(summary));
+        metadata.put("imports", summary.imports());
+        
+        return ToolOutput.builder()
+                .type("analysis_result")
+                .content("Code analysis completed for: " + file.getName())
+                .metadata(metadata)
+                .build();
     }
     
     private ToolOutput analyzeDirectory(File directory) throws Exception {
@@ -132,32 +149,20 @@ public class CodeIntelligenceTool implements Tool {
         int totalClasses = 0;
         int totalMethods = 0;
         
-        for (File file : directory.listFiles((dir, name) -> name.endsWith(".java"))) {
-            try (FileInputStream in = new FileInputStream(file)) {
-                JavaParser parser = new JavaParser();
-                CompilationUnit cu = parser.parse(in).getResult().orElse(null);
+        List<JavaSourceIndex.FileSummary> summaries = javaSourceIndexes.summarize(directory.toPath(), false)
+                .collectSortedList(Comparator.comparing(JavaSourceIndex.FileSummary::path))
+                .block();
+        for (JavaSourceIndex.FileSummary summary : summaries) {
+            if (summary.parsed()) {
+                totalFiles++;
+                totalClasses += summary.types().size();
+                totalMethods += summary.methods().size();
                 
-                if (cu != null) {
-                    List<String> classes = cu.findAll(ClassOrInterfaceDeclaration.class).stream()
-                            .map(ClassOrInterfaceDeclaration::getNameAsString)
-                            .collect(Collectors.toList());
-                            
-                    List<String> methods = cu.findAll(MethodDeclaration.class).stream()
-                            .map(MethodDeclaration::getNameAsString)
-                            .collect(Collectors.toList());
-                    
-                    totalFiles++;
-                    totalClasses += classes.size();
-                    totalMethods += methods.size();
-                    
-                    fileResults.add(Map.of(
-                        "file", file.getName(),
-                        "classes", classes,
-                        "methods", methods
-                    ));
-                }
-            } catch (Exception e) {
-                log.warn("Error parsing file: {}", file.getName(), e);
+                fileResults.add(Map.of(
+                    "file", summary.fileName(),
+                    "classes", typeNames(summary),
+                    "methods", methodNames(summary)
+                ));
             }
         }
         
@@ -176,139 +181,302 @@ public class CodeIntelligenceTool implements Tool {
     }
     
     private Flux<ToolOutput> findMethods(String path, String query) {
-        return Mono.fromCallable(() -> {
-            try {
-                File file = new File(path);
-                if (!file.exists()) {
-                    throw new IllegalArgumentException("File does not exist: " + path);
-                }
-                
-                List<Map<String, Object>> methods = new ArrayList<>();
-                
-                if (file.isDirectory()) {
-                    for (File javaFile : Files.walk(file.toPath())
-                            .filter(p -> p.toString().endsWith(".java"))
-                            .map(Path::toFile)
-                            .collect(Collectors.toList())) {
-                        methods.addAll(findMethodsInFile(javaFile, query));
-                    }
-                } else {
-                    methods.addAll(findMethodsInFile(file, query));
-                }
-                
-                return ToolOutput.builder()
-                        .type("method_search_result")
-                        .content("Found " + methods.size() + " methods matching: " + query)
-                        .metadata(Map.of(
-                            "query", query,
-                            "methods", methods
-                        ))
-                        .build();
-            } catch (Exception e) {
-                log.error("Error finding methods: {}", path, e);
-                throw new RuntimeException("Error finding methods: " + e.getMessage());
-            }
-        }).flux();
+        // One result per file with matches as soon as it is parsed, then the total
+        return Flux.defer(() -> {
+            int[] found = new int[1];
+            return summaries(path)
+                    .flatMap(summary -> {
+                        List<Map<String, Object>> methods = new ArrayList<>();
+                        summary.methods().stream()
+                                .filter(method -> query.isEmpty() || method.name().contains(query))
+                                .forEach(method -> {
+                                    Map<String, Object> methodInfo = new HashMap<>();
+                                    methodInfo.put("name", method.name());
+                                    methodInfo.put("returnType", method.returnType());
+                                    methodInfo.put("parameters", method.parameters());
+                                    methodInfo.put("signature", method.signature());
+                                    methodInfo.put("file", summary.fileName());
+                                    methodInfo.put("line", method.line());
+                                    methodInfo.put("endLine", method.endLine());
+                                    
+                                    methods.add(methodInfo);
+                                });
+                        if (methods.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        found[0] += methods.size();
+                        return Mono.just(ToolOutput.builder()
+                                .type("method_search_result")
+                                .content("Found " + methods.size() + " methods matching: " + query + " in " + summary.fileName())
+                                .metadata(Map.of(
+                                    "query", query,
+                                    "path", summary.path(),
+                                    "methods", methods
+                                ))
+                                .build());
+                    })
+                    .concatWith(Mono.fromSupplier(() -> ToolOutput.builder()
+                            .type("method_search_summary")
+                            .content("Found " + found[0] + " methods matching: " + query)
+                            .metadata(Map.of(
+                                "query", query,
+                                "methods", found[0]
+                            ))
+                            .build()))
+                    .doOnError(e -> log.error("Error finding methods: {}", path, e))
+                    .onErrorMap(e -> new RuntimeException("Error finding methods: " + e.getMessage()));
+        });
     }
     
-    private List<Map<String, Object>> findMethodsInFile(File file, String query) throws Exception {
-        if (!file.getName().endsWith(".java")) {
-            return Collections.emptyList();
+    private Flux<ToolOutput> findClasses(String path, String query) {
+        return Flux.defer(() -> {
+            int[] found = new int[1];
+            return summaries(path)
+                    .flatMap(summary -> {
+                        List<Map<String, Object>> classes = new ArrayList<>();
+                        summary.types().stream()
+                                .filter(cls -> query.isEmpty() || cls.name().contains(query))
+                                .forEach(cls -> {
+                                    Map<String, Object> classInfo = new HashMap<>();
+                                    classInfo.put("name", cls.name());
+                                    classInfo.put("isInterface", cls.isInterface());
+                                    classInfo.put("methods", cls.methodCount());
+                                    classInfo.put("file", summary.fileName());
+                                    classInfo.put("line", cls.line());
+                                    classInfo.put("endLine", cls.endLine());
+                                    
+                                    classes.add(classInfo);
+                                });
+                        if (classes.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        found[0] += classes.size();
+                        return Mono.just(ToolOutput.builder()
+                                .type("class_search_result")
+                                .content("Found " + classes.size() + " classes matching: " + query + " in " + summary.fileName())
+                                .metadata(Map.of(
+                                    "query", query,
+                                    "path", summary.path(),
+                                    "classes", classes
+                                ))
+                                .build());
+                    })
+                    .concatWith(Mono.fromSupplier(() -> ToolOutput.builder()
+                            .type("class_search_summary")
+                            .content("Found " + found[0] + " classes matching: " + query)
+                            .metadata(Map.of(
+                                "query", query,
+                                "classes", found[0]
+                            ))
+                            .build()))
+                    .doOnError(e -> log.error("Error finding classes: {}", path, e))
+                    .onErrorMap(e -> new RuntimeException("Error finding classes: " + e.getMessage()));
+        });
+    }
+    
+    private Flux<ToolOutput> findUsages(String path, String query) {
+        if (query.isBlank()) {
+            return Flux.error(new IllegalArgumentException("query is required for find_usages"));
         }
-        
-        List<Map<String, Object>> methods = new ArrayList<>();
-        
-        try (FileInputStream in = new FileInputStream(file)) {
-            JavaParser parser = new JavaParser();
-            CompilationUnit cu = parser.parse(in).getResult().orElse(null);
-            
-            if (cu != null) {
-                cu.findAll(MethodDeclaration.class).stream()
-                        .filter(method -> query.isEmpty() || method.getNameAsString().contains(query))
-                        .forEach(method -> {
-                            Map<String, Object> methodInfo = new HashMap<>();
-                            methodInfo.put("name", method.getNameAsString());
-                            methodInfo.put("returnType", method.getTypeAsString());
-                            methodInfo.put("parameters", method.getParameters().toString());
-                            methodInfo.put("file", file.getName());
-                            methodInfo.put("line", method.getBegin().map(p -> p.line).orElse(-1));
-                            
-                            methods.add(methodInfo);
-                        });
-            }
-        } catch (Exception e) {
-            log.warn("Error parsing file: {}", file.getName(), e);
+        return Flux.defer(() -> {
+            int[] found = new int[1];
+            return resolvedSummaries(path)
+                    .flatMap(summary -> {
+                        List<JavaSourceIndex.Reference> references = CodeReferences.usages(summary, query);
+                        List<Map<String, Object>> usages = references.stream()
+                                .map(CodeIntelligenceTool::referenceInfo)
+                                .collect(Collectors.toList());
+                        if (usages.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        found[0] += usages.size();
+                        return Mono.just(ToolOutput.builder()
+                                .type("usage_search_result")
+                                .content("Found " + usages.size() + " usages of: " + query + " in " + summary.fileName()
+                                        + unresolvedNote(references.stream().filter(reference -> !reference.resolved()).count()))
+                                .metadata(Map.of(
+                                    "query", query,
+                                    "path", summary.path(),
+                                    "usages", usages
+                                ))
+                                .build());
+                    })
+                    .concatWith(Mono.fromSupplier(() -> ToolOutput.builder()
+                            .type("usage_search_summary")
+                            .content("Found " + found[0] + " usages of: " + query)
+                            .metadata(Map.of(
+                                "query", query,
+                                "usages", found[0]
+                            ))
+                            .build()))
+                    .doOnError(e -> log.error("Error finding usages: {}", path, e))
+                    .onErrorMap(e -> new RuntimeException("Error finding usages: " + e.getMessage()));
+        });
+    }
+    
+    private Flux<ToolOutput> callHierarchy(String path, String query, int depth) {
+        if (query.isBlank()) {
+            return Flux.error(new IllegalArgumentException("query is required for call_hierarchy"));
         }
-        
-        return methods;
+        int dot = query.lastIndexOf('.');
+        String type = dot > 0 ? query.substring(0, dot) : null;
+        String method = query.substring(dot + 1);
+        return resolvedSummaries(path)
+                .collectList()
+                .map(summaries -> {
+                    CodeReferences.CallHierarchy hierarchy = CodeReferences.callHierarchy(summaries, type, method, depth);
+                    List<Map<String, Object>> declarations = hierarchy.declarations().stream()
+                            .map(declaration -> {
+                                Map<String, Object> declarationInfo = new HashMap<>();
+                                declarationInfo.put("type", declaration.method().declaringType());
+                                declarationInfo.put("signature", declaration.method().signature());
+                                declarationInfo.put("qualifiedSignature", declaration.method().qualifiedSignature());
+                                declarationInfo.put("path", declaration.path());
+                                declarationInfo.put("line", declaration.method().line());
+                                return declarationInfo;
+                            })
+                            .collect(Collectors.toList());
+                    
+                    return ToolOutput.builder()
+                            .type("call_hierarchy")
+                            .content("Found " + declarations.size() + " declarations of " + query + " with "
+                                    + hierarchy.callers().size() + " callers and " + hierarchy.callees().size() + " calls"
+                                    + unresolvedNote(hierarchy.callers().stream().filter(call -> !call.resolved()).count()))
+                            .metadata(Map.of(
+                                "query", query,
+                                "declarations", declarations,
+                                "callers", callInfo(hierarchy.callers()),
+                                "callees", callInfo(hierarchy.callees())
+                            ))
+                            .build();
+                })
+                .flux()
+                .doOnError(e -> log.error("Error building call hierarchy: {}", path, e))
+                .onErrorMap(e -> new RuntimeException("Error building call hierarchy: " + e.getMessage()));
     }
     
-    private Flux<ToolOutput> findClasses(String path, String query) {
-        return Mono.fromCallable(() -> {
-            try {
-                File file = new File(path);
-                if (!file.exists()) {
-                    throw new IllegalArgumentException("File does not exist: " + path);
-                }
-                
-                List<Map<String, Object>> classes = new ArrayList<>();
-                
-                if (file.isDirectory()) {
-                    for (File javaFile : Files.walk(file.toPath())
-                            .filter(p -> p.toString().endsWith(".java"))
-                            .map(Path::toFile)
-                            .collect(Collectors.toList())) {
-                        classes.addAll(findClassesInFile(javaFile, query));
-                    }
-                } else {
-                    classes.addAll(findClassesInFile(file, query));
-                }
-                
-                return ToolOutput.builder()
-                        .type("class_search_result")
-                        .content("Found " + classes.size() + " classes matching: " + query)
-                        .metadata(Map.of(
-                            "query", query,
-                            "classes", classes
-                        ))
-                        .build();
-            } catch (Exception e) {
-                log.error("Error finding classes: {}", path, e);
-                throw new RuntimeException("Error finding classes: " + e.getMessage());
-            }
-        }).flux();
+    private Flux<ToolOutput> typeHierarchy(String path, String query, int depth) {
+        if (query.isBlank()) {
+            return Flux.error(new IllegalArgumentException("query is required for type_hierarchy"));
+        }
+        return resolvedSummaries(path)
+                .collectList()
+                .map(summaries -> {
+                    CodeReferences.TypeHierarchy hierarchy = CodeReferences.typeHierarchy(summaries, query, depth);
+                    return ToolOutput.builder()
+                            .type("type_hierarchy")
+                            .content("Found " + hierarchy.declarations().size() + " declarations of " + query + " with "
+                                    + hierarchy.supertypes().size() + " supertypes and " + hierarchy.subtypes().size() + " subtypes"
+                                    + unresolvedNote(Stream.concat(hierarchy.supertypes().stream(), hierarchy.subtypes().stream())
+                                            .filter(type -> !type.resolved()).count()))
+                            .metadata(Map.of(
+                                "query", query,
+                                "declarations", typeInfo(hierarchy.declarations()),
+                                "supertypes", typeInfo(hierarchy.supertypes()),
+                                "subtypes", typeInfo(hierarchy.subtypes())
+                            ))
+                            .build();
+                })
+                .flux()
+                .doOnError(e -> log.error("Error building type hierarchy: {}", path, e))
+                .onErrorMap(e -> new RuntimeException("Error building type hierarchy: " + e.getMessage()));
+    }
+    
+    private static Map<String, Object> referenceInfo(JavaSourceIndex.Reference reference) {
+        Map<String, Object> referenceInfo = new HashMap<>();
+        referenceInfo.put("kind", reference.kind().name().toLowerCase());
+        referenceInfo.put("name", reference.name());
+        referenceInfo.put("arguments", reference.arguments());
+        referenceInfo.put("target", reference.target());
+        referenceInfo.put("resolved", reference.resolved());
+        referenceInfo.put("enclosingType", reference.enclosingType());
+        referenceInfo.put("enclosingMethod", reference.enclosingMethod());
+        referenceInfo.put("line", reference.line());
+        referenceInfo.put("column", reference.column());
+        return referenceInfo;
+    }
+    
+    private static List<Map<String, Object>> callInfo(List<CodeReferences.Call> calls) {
+        return calls.stream()
+                .map(call -> {
+                    Map<String, Object> callInfo = referenceInfo(call.reference());
+                    callInfo.put("path", call.path());
+                    callInfo.put("depth", call.depth());
+                    callInfo.put("resolved", call.resolved());
+                    return callInfo;
+                })
+                .collect(Collectors.toList());
+    }
+    
+    private static List<Map<String, Object>> typeInfo(List<CodeReferences.TypeNode> types) {
+        return types.stream()
+                .map(type -> {
+                    Map<String, Object> typeInfo = new HashMap<>();
+                    typeInfo.put("name", type.name());
+                    typeInfo.put("qualifiedName", type.qualifiedName());
+                    typeInfo.put("isInterface", type.isInterface());
+                    typeInfo.put("supertypes", type.supertypes().stream()
+                            .map(supertype -> supertype.qualifiedName() != null ? supertype.qualifiedName() : supertype.name())
+                            .collect(Collectors.toList()));
+                    typeInfo.put("path", type.path());
+                    typeInfo.put("line", type.line());
+                    typeInfo.put("depth", type.depth());
+                    typeInfo.put("resolved", type.resolved());
+                    return typeInfo;
+                })
+                .collect(Collectors.toList());
+    }
+    
+    private static String unresolvedNote(long unresolved) {
+        return unresolved == 0 ? "" : " (" + unresolved + " matched by name only, as they could not be resolved)";
+    }
+    
+    private static int depthArgument(Map<String, Object> arguments) {
+        int depth = ToolArguments.intValue(arguments, "depth", DEFAULT_HIERARCHY_DEPTH);
+        return Math.max(1, Math.min(depth, MAX_HIERARCHY_DEPTH));
     }
     
-    private List<Map<String, Object>> findClassesInFile(File file, String query) throws Exception {
+    /** Summaries of a source file, or of every source below a directory */
+    private Flux<JavaSourceIndex.FileSummary> summaries(String path) {
+        return summaries(path, false);
+    }
+
+    /** As {@link #summaries(String)}, with calls, method references and type uses resolved to their declarations */
+    private Flux<JavaSourceIndex.FileSummary> resolvedSummaries(String path) {
+        return summaries(path, true);
+    }
+
+    private Flux<JavaSourceIndex.FileSummary> summaries(String path, boolean resolved) {
+        File file = new File(path);
+        if (!file.exists()) {
+            return Flux.error(new IllegalArgumentException("File does not exist: " + path));
+        }
+        if (file.isDirectory()) {
+            return resolved
+                    ? javaSourceIndexes.resolve(file.toPath(), true)
+                    : javaSourceIndexes.summarize(file.toPath(), true);
+        }
         if (!file.getName().endsWith(".java")) {
-            return Collections.emptyList();
+            return Flux.empty();
         }
-        
-        List<Map<String, Object>> classes = new ArrayList<>();
-        
-        try (FileInputStream in = new FileInputStream(file)) {
-            JavaParser parser = new JavaParser();
-            CompilationUnit cu = parser.parse(in).getResult().orElse(null);
-            
-            if (cu != null) {
-                cu.findAll(ClassOrInterfaceDeclaration.class).stream()
-                        .filter(cls -> query.isEmpty() || cls.getNameAsString().contains(query))
-                        .forEach(cls -> {
-                            Map<String, Object> classInfo = new HashMap<>();
-                            classInfo.put("name", cls.getNameAsString());
-                            classInfo.put("isInterface", cls.isInterface());
-                            classInfo.put("methods", cls.getMethods().size());
-                            classInfo.put("file", file.getName());
-                            classInfo.put("line", cls.getBegin().map(p -> p.line).orElse(-1));
-                            
-                            classes.add(classInfo);
-                        });
-            }
-        } catch (Exception e) {
-            log.warn("Error parsing file: {}", file.getName(), e);
+        return resolved
+                ? javaSourceIndexes.resolve(file.toPath()).flux()
+                : Mono.fromCallable(() -> javaSourceIndexes.summarize(file.toPath())).flux();
+    }
+    
+    private static JavaSourceIndex.FileSummary parsed(JavaSourceIndex.FileSummary summary) {
+        if (!summary.parsed()) {
+            throw new IllegalArgumentException("Cannot parse " + summary.path());
         }
-        
-        return classes;
+        return summary;
+    }
+    
+    private static List<String> typeNames(JavaSourceIndex.FileSummary summary) {
+        return summary.types().stream().map(JavaSourceIndex.TypeSummary::name).collect(Collectors.toList());
+    }
+    
+    private static List<String> methodNames(JavaSourceIndex.FileSummary summary) {
+        return summary.methods().stream().map(JavaSourceIndex.MethodSummary::name).collect(Collectors.toList());
     }
     
     private Flux<ToolOutput> extractJavadoc(String path) {
@@ -327,43 +495,35 @@ public class CodeIntelligenceTool implements Tool {
                             .build();
                 }
                 
-                try (FileInputStream in = new FileInputStream(file)) {
-                    JavaParser parser = new JavaParser();
-                    CompilationUnit cu = parser.parse(in).getResult().orElseThrow();
-                    
-                    List<Map<String, Object>> javadocs = new ArrayList<>();
-                    
-                    // Extract class javadocs
-                    cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-                        cls.getJavadoc().ifPresent(javadoc -> {
-                            javadocs.add(Map.of(
-                                "type", "class",
-                                "name", cls.getNameAsString(),
-                                "javadoc", javadoc.getDescription().toText()
-                            ));
-                        });
-                    });
-                    
-                    // Extract method javadocs
-                    cu.findAll(MethodDeclaration.class).forEach(method -> {
-                        method.getJavadoc().ifPresent(javadoc -> {
-                            javadocs.add(Map.of(
-                                "type", "method",
-                                "name", method.getNameAsString(),
-                                "javadoc", javadoc.getDescription().toText()
-                            ));
-                        });
-                    });
-                    
-                    return ToolOutput.builder()
-                            .type("javadoc_result")
-                            .content("Extracted " + javadocs.size() + " javadoc comments from: " + file.getName())
-                            .metadata(Map.of(
-                                "path", file.getPath(),
-                                "javadocs", javadocs
-                            ))
-                            .build();
-                }
+                JavaSourceIndex.FileSummary summary = parsed(javaSourceIndexes.summarize(file.toPath()));
+                List<Map<String, Object>> javadocs = new ArrayList<>();
+                
+                // Extract class javadocs
+                summary.types().stream().filter(cls -> cls.javadoc() != null).forEach(cls -> {
+                    javadocs.add(Map.of(
+                        "type", "class",
+                        "name", cls.name(),
+                        "javadoc", cls.javadoc()
+                    ));
+                });
+                
+                // Extract method javadocs
+                summary.methods().stream().filter(method -> method.javadoc() != null).forEach(method -> {
+                    javadocs.add(Map.of(
+                        "type", "method",
+                        "name", method.name(),
+                        "javadoc", method.javadoc()
+                    ));
+                });
+                
+                return ToolOutput.builder()
+                        .type("javadoc_result")
+                        .content("Extracted " + javadocs.size() + " javadoc comments from: " + file.getName())
+                        .metadata(Map.of(
+                            "path", file.getPath(),
+                            "javadocs", javadocs
+                        ))
+                        .build();
             } catch (Exception e) {
                 log.error("Error extracting javadoc: {}", path, e);
                 throw new RuntimeException("Error extracting javadoc: " + e.getMessage());
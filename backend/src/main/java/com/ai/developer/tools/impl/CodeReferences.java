@@ -0,0 +1,280 @@
+package com.ai.developer.tools.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cross-reference queries over the source summaries of a project: usages, call
+ * hierarchies and type hierarchies. References are matched by the declaration they
+ * resolve to, so overloads and same-named methods and types of other classes are told
+ * apart. References that could not be resolved, such as those to types of jars missing
+ * from the local repository, are matched by simple name instead, and calls also by
+ * argument count; such matches are reported as unresolved.
+ */
+final class CodeReferences {
+
+    private CodeReferences() {
+    }
+
+    /**
+     * Uses of a method or type in one file. A simple name matches every use with that
+     * name; a qualified one, such as {@code app.Circle.area} or {@code app.Circle.area(double)},
+     * matches uses resolved to it and unresolved uses of its simple name.
+     */
+    static List<JavaSourceIndex.Reference> usages(JavaSourceIndex.FileSummary file, String name) {
+        return file.references().stream().filter(reference -> refersTo(reference, name)).toList();
+    }
+
+    private static boolean refersTo(JavaSourceIndex.Reference reference, String name) {
+        int parameters = name.indexOf('(');
+        String qualified = parameters < 0 ? name : name.substring(0, parameters);
+        if (qualified.indexOf('.') < 0) {
+            return reference.name().equals(qualified);
+        }
+        if (!reference.resolved()) {
+            return reference.name().equals(qualified.substring(qualified.lastIndexOf('.') + 1));
+        }
+        return reference.target().equals(name) || (parameters < 0 && reference.target().startsWith(name + "("));
+    }
+
+    /**
+     * Declarations of a method, the calls made inside them, and the calls of them up to
+     * depth levels out: a call at depth 2 calls the method containing a call at depth 1.
+     * A call of a method the declaration overrides counts too, since it may dispatch to
+     * the declaration.
+     *
+     * @param type declaring type of the declarations to report, simple or qualified, or null for any
+     */
+    static CallHierarchy callHierarchy(List<JavaSourceIndex.FileSummary> files, String type, String method, int depth) {
+        List<Declaration> declarations = new ArrayList<>();
+        Map<String, JavaSourceIndex.FileSummary> byPath = new HashMap<>();
+        Map<String, JavaSourceIndex.MethodSummary> bySignature = new HashMap<>();
+        Map<String, JavaSourceIndex.TypeSummary> types = new HashMap<>();
+        for (JavaSourceIndex.FileSummary file : files) {
+            byPath.put(file.path(), file);
+            file.types().forEach(summary -> types.put(summary.qualifiedName(), summary));
+            for (JavaSourceIndex.MethodSummary summary : file.methods()) {
+                bySignature.put(summary.qualifiedSignature(), summary);
+                if (summary.name().equals(method) && (type == null || type.equals(summary.declaringType())
+                        || summary.qualifiedSignature().startsWith(type + "." + method + "("))) {
+                    declarations.add(new Declaration(file.path(), summary));
+                }
+            }
+        }
+
+        List<Call> callees = new ArrayList<>();
+        for (Declaration declaration : declarations) {
+            // Calls in the method's own lines, which also tells overloads apart
+            for (JavaSourceIndex.Reference reference : byPath.get(declaration.path()).references()) {
+                if (reference.kind() != JavaSourceIndex.Reference.Kind.TYPE
+                        && reference.line() >= declaration.method().line()
+                        && reference.line() <= declaration.method().endLine()) {
+                    callees.add(new Call(declaration.path(), reference, 1, reference.resolved()));
+                }
+            }
+        }
+
+        // Breadth first over the methods containing the calls found so far
+        List<Call> callers = new ArrayList<>();
+        List<Target> targets = declarations.stream()
+                .map(declaration -> Target.of(declaration.method()))
+                .toList();
+        Set<String> visited = new HashSet<>();
+        targets.forEach(target -> visited.add(target.signature()));
+        Set<String> seenCalls = new HashSet<>();
+        for (int level = 1; level <= depth && !targets.isEmpty(); level++) {
+            Set<String> signatures = new HashSet<>();
+            for (Target target : targets) {
+                signatures.addAll(overridden(target.signature(), types));
+            }
+            List<Target> next = new ArrayList<>();
+            for (JavaSourceIndex.FileSummary file : files) {
+                for (JavaSourceIndex.Reference reference : file.references()) {
+                    if (reference.kind() == JavaSourceIndex.Reference.Kind.TYPE || !calls(reference, targets, signatures)
+                            || !seenCalls.add(file.path() + ":" + reference.line() + ":" + reference.column())) {
+                        continue;
+                    }
+                    callers.add(new Call(file.path(), reference, level, reference.resolved()));
+                    String caller = reference.enclosingMember();
+                    if (caller != null && visited.add(caller)) {
+                        JavaSourceIndex.MethodSummary summary = bySignature.get(caller);
+                        next.add(summary != null
+                                ? Target.of(summary)
+                                : new Target(caller, reference.enclosingMethod(), -1));
+                    }
+                }
+            }
+            targets = next;
+        }
+        return new CallHierarchy(declarations, callers, callees);
+    }
+
+    private static boolean calls(JavaSourceIndex.Reference reference, List<Target> targets, Set<String> signatures) {
+        if (reference.resolved()) {
+            return signatures.contains(reference.target());
+        }
+        for (Target target : targets) {
+            if (target.name().equals(reference.name())
+                    && (target.arity() < 0 || reference.arguments() < 0 || target.arity() == reference.arguments())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The signature with the same method on each supertype of its type, declared in the
+     * project or not; the signatures only match where the parameter types are the same.
+     */
+    private static Set<String> overridden(String signature, Map<String, JavaSourceIndex.TypeSummary> types) {
+        int parameters = signature.indexOf('(');
+        int dot = signature.lastIndexOf('.', parameters);
+        Set<String> signatures = new LinkedHashSet<>(Set.of(signature));
+        if (dot < 0) {
+            return signatures;
+        }
+        String member = signature.substring(dot);
+        List<String> pending = new ArrayList<>(List.of(signature.substring(0, dot)));
+        Set<String> seen = new HashSet<>(pending);
+        while (!pending.isEmpty()) {
+            JavaSourceIndex.TypeSummary type = types.get(pending.remove(pending.size() - 1));
+            if (type == null) {
+                continue;
+            }
+            for (JavaSourceIndex.Supertype supertype : type.supertypes()) {
+                if (supertype.qualifiedName() != null && seen.add(supertype.qualifiedName())) {
+                    signatures.add(supertype.qualifiedName() + member);
+                    pending.add(supertype.qualifiedName());
+                }
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * Declarations of a type, simple or qualified name, with its supertypes and subtypes
+     * up to depth levels away.
+     */
+    static TypeHierarchy typeHierarchy(List<JavaSourceIndex.FileSummary> files, String name, int depth) {
+        Map<String, List<TypeNode>> byQualifiedName = new HashMap<>();
+        Map<String, List<TypeNode>> byName = new HashMap<>();
+        // Subtypes by the qualified name of a resolved supertype, and by the simple name of an unresolved one
+        Map<String, List<TypeNode>> resolvedSubtypes = new HashMap<>();
+        Map<String, List<TypeNode>> unresolvedSubtypes = new HashMap<>();
+        for (JavaSourceIndex.FileSummary file : files) {
+            for (JavaSourceIndex.TypeSummary type : file.types()) {
+                TypeNode node = new TypeNode(type.name(), type.qualifiedName(), file.path(), type.line(),
+                        type.isInterface(), type.supertypes(), 0, true);
+                byQualifiedName.computeIfAbsent(type.qualifiedName(), n -> new ArrayList<>()).add(node);
+                byName.computeIfAbsent(type.name(), n -> new ArrayList<>()).add(node);
+                for (JavaSourceIndex.Supertype supertype : type.supertypes()) {
+                    if (supertype.qualifiedName() != null) {
+                        resolvedSubtypes.computeIfAbsent(supertype.qualifiedName(), n -> new ArrayList<>()).add(node);
+                    } else {
+                        unresolvedSubtypes.computeIfAbsent(supertype.name(), n -> new ArrayList<>()).add(node);
+                    }
+                }
+            }
+        }
+        String simpleName = name.substring(name.lastIndexOf('.') + 1);
+        List<TypeNode> declarations = name.indexOf('.') >= 0
+                ? byQualifiedName.getOrDefault(name, List.of())
+                : byName.getOrDefault(name, List.of());
+
+        List<TypeNode> supertypes = new ArrayList<>();
+        List<TypeNode> subtypes = new ArrayList<>();
+        Set<String> seenUp = new HashSet<>();
+        Set<String> seenDown = new HashSet<>();
+        declarations.forEach(declaration -> {
+            seenUp.add(declaration.qualifiedName());
+            seenDown.add(declaration.path() + "#" + declaration.qualifiedName());
+        });
+        // A type declared outside the project still has subtypes in it
+        List<TypeNode> up = declarations;
+        List<TypeNode> down = declarations.isEmpty()
+                ? List.of(new TypeNode(simpleName, name, null, -1, false, List.of(), 0, true))
+                : declarations;
+        for (int level = 1; level <= depth; level++) {
+            List<TypeNode> nextUp = new ArrayList<>();
+            for (TypeNode current : up) {
+                for (JavaSourceIndex.Supertype supertype : current.supertypes()) {
+                    boolean resolved = supertype.qualifiedName() != null;
+                    if (!seenUp.add(resolved ? supertype.qualifiedName() : supertype.name())) {
+                        continue;
+                    }
+                    List<TypeNode> known = resolved
+                            ? byQualifiedName.get(supertype.qualifiedName())
+                            : byName.get(supertype.name());
+                    if (known == null) {
+                        // Declared outside the project, such as a JDK or library type
+                        supertypes.add(new TypeNode(supertype.name(), supertype.qualifiedName(), null, -1, false,
+                                List.of(), level, resolved));
+                        continue;
+                    }
+                    for (TypeNode node : known) {
+                        supertypes.add(node.at(level, resolved));
+                        nextUp.add(node);
+                    }
+                }
+            }
+            List<TypeNode> nextDown = new ArrayList<>();
+            for (TypeNode current : down) {
+                List<TypeNode> resolved = resolvedSubtypes.getOrDefault(current.qualifiedName(), List.of());
+                List<TypeNode> unresolved = unresolvedSubtypes.getOrDefault(current.name(), List.of());
+                for (List<TypeNode> candidates : List.of(resolved, unresolved)) {
+                    for (TypeNode subtype : candidates) {
+                        // A type reached along two paths, as through two interfaces, is listed once
+                        if (seenDown.add(subtype.path() + "#" + subtype.qualifiedName())) {
+                            subtypes.add(subtype.at(level, candidates == resolved));
+                            nextDown.add(subtype);
+                        }
+                    }
+                }
+            }
+            up = nextUp;
+            down = nextDown;
+        }
+        return new TypeHierarchy(declarations, supertypes, subtypes);
+    }
+
+    record Declaration(String path, JavaSourceIndex.MethodSummary method) {
+    }
+
+    /** A method whose calls are looked for; arity -1 when unknown */
+    private record Target(String signature, String name, int arity) {
+
+        static Target of(JavaSourceIndex.MethodSummary method) {
+            return new Target(method.qualifiedSignature(), method.name(), method.parameterCount());
+        }
+    }
+
+    /**
+     * @param depth    1 for a direct call, 2 for a call of a direct caller and so on
+     * @param resolved false if the call was matched by name, as it could not be resolved
+     */
+    record Call(String path, JavaSourceIndex.Reference reference, int depth, boolean resolved) {
+    }
+
+    record CallHierarchy(List<Declaration> declarations, List<Call> callers, List<Call> callees) {
+    }
+
+    /**
+     * @param path     null for a type declared outside the project
+     * @param resolved false if the type was matched by its simple name, as the supertype could not be resolved
+     */
+    record TypeNode(String name, String qualifiedName, String path, int line, boolean isInterface,
+                    List<JavaSourceIndex.Supertype> supertypes, int depth, boolean resolved) {
+
+        TypeNode at(int level, boolean resolved) {
+            return new TypeNode(name, qualifiedName, path, line, isInterface, supertypes, level, resolved);
+        }
+    }
+
+    record TypeHierarchy(List<TypeNode> declarations, List<TypeNode> supertypes, List<TypeNode> subtypes) {
+    }
+}
@@ -0,0 +1,183 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches files for a literal or regular expression on several threads at once. Files
+ * are memory-mapped rather than read into the heap. A case-sensitive literal is first
+ * looked for in the raw bytes, so files that do not contain it are never decoded.
+ * Files with a NUL byte near the start are treated as binary and skipped.
+ */
+@Slf4j
+class ContentSearcher {
+
+    private static final int BINARY_PROBE_BYTES = 8192;
+    // Bigger files are mostly generated or data; they would dominate the scan
+    static final long MAX_FILE_BYTES = 64L * 1024 * 1024;
+    // Minified sources have very long lines, so only a window around the match is returned
+    private static final int MAX_LINE_CHARS = 400;
+
+    private final int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private final Scheduler scheduler = Schedulers.newParallel("content-search", parallelism, true);
+
+    static Query query(String pattern, boolean regex, boolean caseSensitive, int contextLines, int maxMatchesPerFile) {
+        int flags = Pattern.MULTILINE | (regex ? 0 : Pattern.LITERAL)
+                | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        byte[] literal = !regex && caseSensitive && !pattern.isEmpty() ? pattern.getBytes(StandardCharsets.UTF_8) : null;
+        return new Query(Pattern.compile(pattern, flags), literal, contextLines, maxMatchesPerFile);
+    }
+
+    /**
+     * Searches files, given relative to root, and emits the matches of each file that has
+     * any as soon as that file is done. Files finish in no particular order.
+     */
+    Flux<List<Match>> search(Path root, Flux<Path> files, Query query) {
+        return files
+                .parallel(parallelism)
+                .runOn(scheduler)
+                .map(file -> searchFile(root, file, query))
+                .filter(matches -> !matches.isEmpty())
+                .sequential();
+    }
+
+    /** Matches in one file; empty when the file is binary, too large or unreadable */
+    List<Match> searchFile(Path root, Path file, Query query) {
+        Path absolute = root.resolve(file);
+        try (FileChannel channel = FileChannel.open(absolute, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0 || size > MAX_FILE_BYTES) {
+                return List.of();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isBinary(buffer) || (query.literal() != null && indexOf(buffer, query.literal()) < 0)) {
+                return List.of();
+            }
+            CharBuffer text = StandardCharsets.UTF_8.decode(buffer);
+            return findMatches(file.toString().replace('\\', '/'), text, query);
+        } catch (IOException e) {
+            log.debug("Cannot search {}", absolute, e);
+            return List.of();
+        }
+    }
+
+    private static List<Match> findMatches(String path, CharBuffer text, Query query) {
+        List<Match> matches = new ArrayList<>();
+        Matcher matcher = query.pattern().matcher(text);
+        int line = 1;
+        int lineStart = 0;
+        int scanned = 0;
+        int searchFrom = 0;
+        while (matches.size() < query.maxMatchesPerFile() && searchFrom <= text.length() && matcher.find(searchFrom)) {
+            int start = matcher.start();
+            for (; scanned < start; scanned++) {
+                if (text.charAt(scanned) == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+            }
+            int lineEnd = lineEnd(text, start);
+            matches.add(new Match(path, line, start - lineStart + 1, window(text, lineStart, lineEnd, start),
+                    linesBefore(text, lineStart, query.contextLines()),
+                    linesAfter(text, lineEnd, query.contextLines())));
+            // One match per line, like grep; the next search starts on the following line
+            searchFrom = lineEnd + 1;
+        }
+        return matches;
+    }
+
+    private static String window(CharBuffer text, int lineStart, int lineEnd, int matchStart) {
+        if (lineEnd - lineStart <= MAX_LINE_CHARS) {
+            return stripCarriageReturn(text.subSequence(lineStart, lineEnd).toString());
+        }
+        int from = Math.max(lineStart, matchStart - MAX_LINE_CHARS / 4);
+        int to = Math.min(lineEnd, from + MAX_LINE_CHARS);
+        return (from > lineStart ? "..." : "") + text.subSequence(from, to) + (to < lineEnd ? "..." : "");
+    }
+
+    private static List<String> linesBefore(CharBuffer text, int lineStart, int count) {
+        List<String> lines = new ArrayList<>();
+        int end = lineStart - 1;
+        while (lines.size() < count && end >= 0) {
+            int start = end;
+            while (start > 0 && text.charAt(start - 1) != '\n') {
+                start--;
+            }
+            lines.add(0, window(text, start, end, start));
+            end = start - 1;
+        }
+        return lines;
+    }
+
+    private static List<String> linesAfter(CharBuffer text, int lineEnd, int count) {
+        List<String> lines = new ArrayList<>();
+        int start = lineEnd + 1;
+        while (lines.size() < count && start < text.length()) {
+            int end = lineEnd(text, start);
+            lines.add(window(text, start, end, start));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private static int lineEnd(CharBuffer text, int from) {
+        int end = from;
+        while (end < text.length() && text.charAt(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    static boolean isBinary(MappedByteBuffer buffer) {
+        int probe = Math.min(buffer.limit(), BINARY_PROBE_BYTES);
+        for (int i = 0; i < probe; i++) {
+            if (buffer.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int indexOf(MappedByteBuffer buffer, byte[] needle) {
+        int last = buffer.limit() - needle.length;
+        byte first = needle[0];
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (buffer.get(i) != first) {
+                continue;
+            }
+            for (int j = 1; j < needle.length; j++) {
+                if (buffer.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /** @param literal UTF-8 bytes every match contains, for a fast rejection; null when unknown */
+    record Query(Pattern pattern, byte[] literal, int contextLines, int maxMatchesPerFile) {
+    }
+
+    record Match(String path, int line, int column, String text, List<String> before, List<String> after) {
+    }
+}
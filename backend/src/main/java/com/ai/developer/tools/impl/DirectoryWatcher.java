@@ -0,0 +1,89 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports changes in a set of directories from a WatchService on a daemon thread.
+ * Directories are registered one at a time, not recursively; callers register new
+ * subdirectories as they learn about them.
+ */
+@Slf4j
+class DirectoryWatcher implements Closeable {
+
+    interface Listener {
+        /** A file or directory was created, modified or deleted */
+        void changed(Path path, boolean created);
+
+        /** Events were lost; the listener should rescan everything */
+        void overflow();
+    }
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    DirectoryWatcher(String name, Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** False when the directory cannot be watched, e.g. because the OS watch limit is reached */
+    boolean register(Path directory) {
+        try {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            directories.put(key, directory);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.debug("Cannot watch {}", directory, e);
+            return false;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        listener.overflow();
+                    } else if (directory != null) {
+                        listener.changed(directory.resolve((Path) event.context()),
+                                event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Error handling change in {}", directory, e);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,335 @@
+package com.ai.developer.tools.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Changes part of a text file: a unique search and replace, a line-range splice or a
+ * unified diff. The new content is written to a temporary file next to the original
+ * and renamed over it, so readers see either the old or the new file, never a mix.
+ * New text is converted to the file's line separator.
+ */
+class FileEditor {
+
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+
+    Edit replace(Path file, String oldText, String newText, boolean replaceAll, boolean fsync) throws IOException {
+        if (oldText == null || oldText.isEmpty()) {
+            throw new IllegalArgumentException("oldText must not be empty");
+        }
+        String content = Files.readString(file);
+        String separator = separatorOf(content);
+        String search = withSeparator(oldText, separator);
+        String replacement = withSeparator(newText != null ? newText : "", separator);
+
+        int first = content.indexOf(search);
+        if (first < 0) {
+            throw new IllegalArgumentException("oldText was not found in " + file);
+        }
+        int occurrences = 0;
+        for (int i = first; i >= 0; i = content.indexOf(search, i + search.length())) {
+            occurrences++;
+        }
+        if (occurrences > 1 && !replaceAll) {
+            throw new IllegalArgumentException("oldText occurs " + occurrences + " times in " + file
+                    + "; include more surrounding lines to make it unique, or set replaceAll");
+        }
+
+        String updated = replaceAll ? content.replace(search, replacement)
+                : content.substring(0, first) + replacement + content.substring(first + search.length());
+        long size = writeAtomically(file, updated, fsync);
+        int startLine = lineOf(content, first);
+        int removed = lineCount(search);
+        int added = lineCount(replacement);
+        return new Edit(file.toString(), startLine, removed, added, occurrences, size,
+                (occurrences > 1 ? "Replaced " + occurrences + " occurrences, the first" : "Replaced " + lines(removed))
+                        + " at line " + startLine + (occurrences > 1 ? "" : " with " + lines(added)));
+    }
+
+    /** Replaces lines startLine to endLine, inclusive and 1-based; endLine = startLine - 1 inserts */
+    Edit splice(Path file, int startLine, int endLine, String newText, boolean fsync) throws IOException {
+        Lines lines = Lines.read(file);
+        if (startLine < 1 || startLine > lines.text.size() + 1 || endLine < startLine - 1 || endLine > lines.text.size()) {
+            throw new IllegalArgumentException("Line range " + startLine + "-" + endLine + " is outside "
+                    + file + ", which has " + lines.text.size() + " lines");
+        }
+        List<String> replacement = newText == null || newText.isEmpty() ? List.of() : splitLines(newText);
+        List<String> range = lines.text.subList(startLine - 1, endLine);
+        int removed = range.size();
+        range.clear();
+        range.addAll(replacement);
+        long size = lines.write(file, fsync);
+        return new Edit(file.toString(), startLine, removed, replacement.size(), 1, size,
+                "Replaced " + lines(removed) + " at line " + startLine + " with " + lines(replacement.size()));
+    }
+
+    /**
+     * Applies a unified diff for this one file. Each hunk must match the file exactly
+     * apart from line separators, but may have moved up or down since the diff was made.
+     */
+    Edit patch(Path file, String diff, boolean fsync) throws IOException {
+        if (diff == null || diff.isBlank()) {
+            throw new IllegalArgumentException("diff must not be empty");
+        }
+        Lines lines = Lines.read(file);
+        List<Hunk> hunks = parseHunks(diff);
+        if (hunks.isEmpty()) {
+            throw new IllegalArgumentException("The diff has no hunks");
+        }
+        int offset = 0;
+        int removed = 0;
+        int added = 0;
+        for (Hunk hunk : hunks) {
+            // Hunk positions refer to the original file; earlier hunks and drift shift them. A hunk
+            // without old lines, as diff -U0 writes for insertions, names the line it goes after
+            int original = hunk.oldLines.isEmpty() ? hunk.oldStart : Math.max(0, hunk.oldStart - 1);
+            int at = locate(lines.text, hunk.oldLines, original + offset);
+            if (at < 0) {
+                throw new IllegalArgumentException("Hunk @@ -" + hunk.oldStart + " @@ does not match " + file
+                        + "; read the lines again and regenerate the diff");
+            }
+            List<String> range = lines.text.subList(at, at + hunk.oldLines.size());
+            range.clear();
+            range.addAll(hunk.newLines);
+            offset = at - original + hunk.newLines.size() - hunk.oldLines.size();
+            removed += hunk.removed;
+            added += hunk.added;
+            if (hunk.noNewlineAtEnd != null) {
+                lines.trailingNewline = !hunk.noNewlineAtEnd;
+            }
+        }
+        long size = lines.write(file, fsync);
+        return new Edit(file.toString(), hunks.get(0).oldStart, removed, added, hunks.size(), size,
+                "Applied " + hunks.size() + (hunks.size() == 1 ? " hunk" : " hunks") + ": -" + removed + " +" + added + " lines");
+    }
+
+    /** Index where lines match at or nearest to expected, or -1 */
+    private static int locate(List<String> text, List<String> expectedLines, int expected) {
+        int last = text.size() - expectedLines.size();
+        for (int distance = 0; distance <= Math.max(expected, last - expected); distance++) {
+            if (expected - distance >= 0 && expected - distance <= last && matchesAt(text, expectedLines, expected - distance)) {
+                return expected - distance;
+            }
+            if (distance > 0 && expected + distance <= last && matchesAt(text, expectedLines, expected + distance)) {
+                return expected + distance;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(List<String> text, List<String> expectedLines, int at) {
+        for (int i = 0; i < expectedLines.size(); i++) {
+            if (!text.get(at + i).equals(expectedLines.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static List<Hunk> parseHunks(String diff) {
+        List<Hunk> hunks = new ArrayList<>();
+        Hunk current = null;
+        List<String> lines = splitLines(diff);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher header = HUNK_HEADER.matcher(line);
+            if (header.matches()) {
+                current = new Hunk(Integer.parseInt(header.group(1)));
+                hunks.add(current);
+            } else if (line.startsWith("--- ") && i + 1 < lines.size() && lines.get(i + 1).startsWith("+++ ")) {
+                // File header; the hunk counts are not trusted to tell it from a removed "-- " line
+                i++;
+            } else if (current == null) {
+                // Anything before the first hunk, such as a diff --git line
+            } else if (line.startsWith("\\")) {
+                current.markNoNewline();
+            } else if (line.startsWith("-") || line.startsWith("+")) {
+                current.add(line.charAt(0), line.substring(1));
+            } else {
+                // Context; some tools drop the leading space of empty context lines
+                current.add(' ', line.isEmpty() ? "" : line.substring(1));
+            }
+        }
+        return hunks;
+    }
+
+    /**
+     * Writes content to a temporary file in the same directory and renames it over file.
+     * A symbolic link is followed, so the file it points to is replaced and the link kept.
+     * With fsync, the data and the rename are forced to disk before returning.
+     */
+    static long writeAtomically(Path path, String content, boolean fsync) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Path file = Files.exists(path) ? path.toRealPath() : path.toAbsolutePath();
+        Path directory = file.getParent();
+        Path temp = directory.resolve("." + file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(true);
+                }
+            }
+            copyPermissions(file, temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (fsync) {
+                forceDirectory(directory);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return bytes.length;
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (source != null && Files.exists(from)) {
+            Files.getFileAttributeView(to, PosixFileAttributeView.class).setPermissions(source.readAttributes().permissions());
+        }
+    }
+
+    private static void forceDirectory(Path directory) {
+        // Makes the rename durable; not every platform lets a directory be opened for this
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort
+        }
+    }
+
+    private static String separatorOf(String content) {
+        int newline = content.indexOf('\n');
+        return newline > 0 && content.charAt(newline - 1) == '\r' ? "\r\n" : "\n";
+    }
+
+    private static String withSeparator(String text, String separator) {
+        String normalized = text.replace("\r\n", "\n");
+        return separator.equals("\n") ? normalized : normalized.replace("\n", separator);
+    }
+
+    private static List<String> splitLines(String text) {
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> lines = new ArrayList<>(List.of(text.replace("\r\n", "\n").split("\n", -1)));
+        if (text.endsWith("\n")) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
+
+    private static int lineOf(String content, int index) {
+        int line = 1;
+        for (int i = 0; i < index; i++) {
+            if (content.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private static int lineCount(String text) {
+        if (text.isEmpty()) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = 0; i < text.length() - 1; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String lines(int count) {
+        return count == 1 ? "1 line" : count + " lines";
+    }
+
+    /** A file split into lines without their separators */
+    private static class Lines {
+        final List<String> text;
+        final String separator;
+        boolean trailingNewline;
+
+        private Lines(List<String> text, String separator, boolean trailingNewline) {
+            this.text = text;
+            this.separator = separator;
+            this.trailingNewline = trailingNewline;
+        }
+
+        static Lines read(Path file) throws IOException {
+            String content = Files.readString(file);
+            return new Lines(splitLines(content), separatorOf(content), content.isEmpty() || content.endsWith("\n"));
+        }
+
+        long write(Path file, boolean fsync) throws IOException {
+            String content = String.join(separator, text) + (trailingNewline && !text.isEmpty() ? separator : "");
+            return writeAtomically(file, content, fsync);
+        }
+    }
+
+    /** One hunk of a unified diff: the lines it expects and the lines replacing them */
+    static final class Hunk {
+        final int oldStart;
+        final List<String> oldLines = new ArrayList<>();
+        final List<String> newLines = new ArrayList<>();
+        int removed;
+        int added;
+        // Whether the new file ends without a newline; null if the hunk does not say
+        Boolean noNewlineAtEnd;
+        private char lastSide;
+
+        Hunk(int oldStart) {
+            this.oldStart = oldStart;
+        }
+
+        void add(char side, String line) {
+            if (side != '+') {
+                oldLines.add(line);
+            }
+            if (side != '-') {
+                newLines.add(line);
+            }
+            removed += side == '-' ? 1 : 0;
+            added += side == '+' ? 1 : 0;
+            lastSide = side;
+        }
+
+        /** "\ No newline at end of file" applies to the line just before it */
+        void markNoNewline() {
+            if (lastSide != '-') {
+                noNewlineAtEnd = true;
+            } else if (noNewlineAtEnd == null) {
+                // Only the old file lacked it, so the new one ends with a newline
+                noNewlineAtEnd = false;
+            }
+        }
+    }
+
+    /**
+     * @param changes occurrences replaced, or hunks applied
+     * @param size    bytes in the file afterwards
+     */
+    record Edit(String path, int startLine, int linesRemoved, int linesAdded, int changes, long size, String summary) {
+    }
+}
@@ -8,16 +8,61 @@ import reactor.core.publisher.Mono;
 import java.nio.file.*;
 import java.util.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
 public class FileSystemTool implements Tool {
     
+    // Ranged reads return at most this much; the caller pages on with offset or startLine
+    private static final int MAX_RANGE_BYTES = 1024 * 1024;
+    // Room for the note on where to read on after the first page of a large file
+    private static final int TRUNCATION_NOTE_BYTES = 256;
+    private static final long DEFAULT_LINE_COUNT = 200;
+    
+    private static final int DEFAULT_BLOCK_BYTES = 64 * 1024;
+    private static final int MIN_BLOCK_BYTES = 4 * 1024;
+    
+    private static final int DEFAULT_TREE_DEPTH = 20;
+    private static final int DEFAULT_TREE_ENTRIES = 5_000;
+    private static final int MAX_TREE_ENTRIES = 100_000;
+    private static final int TREE_BATCH_SIZE = 500;
+    
+    private final RangedFileReader rangedReader = new RangedFileReader(MAX_RANGE_BYTES);
+    private final ChunkedFileStreamer fileStreamer = new ChunkedFileStreamer();
+    private final FileTreeWalker treeWalker = new FileTreeWalker();
+    private final FileEditor fileEditor = new FileEditor();
+    private final WorkspaceTrees workspaceTrees;
+    private final ToolOutputGovernor outputGovernor;
+    
+    public FileSystemTool(WorkspaceTrees workspaceTrees, ToolOutputGovernor outputGovernor) {
+        this.workspaceTrees = workspaceTrees;
+        this.outputGovernor = outputGovernor;
+    }
+    
     @Override
     public String getName() {
         return "file_system";
     }
     
+    @Override
+    public int getMaxConcurrency() {
+        // Independent reads and writes, bounded only to limit open files
+        return 8;
+    }
+    
+    @Override
+    public Optional<String> getCacheFingerprint(Map<String, Object> arguments) {
+        String operation = (String) arguments.get("operation");
+        String path = (String) arguments.get("path");
+        if (!"read".equalsIgnoreCase(operation) || path == null) {
+            return Optional.empty();
+        }
+        // The live tree answers without touching the disk; files outside it are stat'ed
+        return workspaceTrees.fileFingerprint(Path.of(path)).or(() -> InputFingerprints.ofFile(Path.of(path)));
+    }
+    
     @Override
     public String getDescription() {
         return "Perform file system operations like read, write, list, and delete";
@@ -29,7 +74,7 @@ public class FileSystemTool implements Tool {
         
         params.put("operation", ParameterInfo.builder()
             .type("string")
-            .description("Operation: read, write, append, list, delete")
+            .description("Operation: read, stream, write, append, replace, splice, patch, list, tree, delete. A read returns the whole file, or its first page and where to read on if the file is large, unless offset/length, startLine/endLine, head or tail is given; stream returns the file in blocks of blockSize bytes; tree lists a directory recursively. To change part of a file prefer replace (oldText/newText), splice (startLine/endLine/content) or patch (diff) over write")
             .required(true)
             .build());
             
@@ -41,7 +86,109 @@ public class FileSystemTool implements Tool {
             
         params.put("content", ParameterInfo.builder()
             .type("string")
-            .description("Content to write (for write/append operations)")
+            .description("Content to write (for write/append operations), or the lines replacing startLine-endLine (splice operation)")
+            .required(false)
+            .build());
+            
+        params.put("offset", ParameterInfo.builder()
+            .type("integer")
+            .description("Byte offset to read from (read operation, with length)")
+            .required(false)
+            .build());
+            
+        params.put("length", ParameterInfo.builder()
+            .type("integer")
+            .description("Number of bytes to read (read operation, with offset)")
+            .required(false)
+            .build());
+            
+        params.put("startLine", ParameterInfo.builder()
+            .type("integer")
+            .description("First line to read or replace, 1-based (read and splice operations)")
+            .required(false)
+            .build());
+            
+        params.put("endLine", ParameterInfo.builder()
+            .type("integer")
+            .description("Last line to read or replace, inclusive; startLine - 1 inserts before startLine (read and splice operations)")
+            .required(false)
+            .build());
+            
+        params.put("head", ParameterInfo.builder()
+            .type("integer")
+            .description("Read only the first N lines (read operation)")
+            .required(false)
+            .build());
+            
+        params.put("tail", ParameterInfo.builder()
+            .type("integer")
+            .description("Read only the last N lines (read operation)")
+            .required(false)
+            .build());
+            
+        params.put("blockSize", ParameterInfo.builder()
+            .type("integer")
+            .description("Bytes per emitted block (stream operation, default 64 KB)")
+            .required(false)
+            .build());
+            
+        params.put("oldText", ParameterInfo.builder()
+            .type("string")
+            .description("Exact text to replace, unique in the file unless replaceAll is set (replace operation)")
+            .required(false)
+            .build());
+            
+        params.put("newText", ParameterInfo.builder()
+            .type("string")
+            .description("Text replacing oldText (replace operation)")
+            .required(false)
+            .build());
+            
+        params.put("replaceAll", ParameterInfo.builder()
+            .type("boolean")
+            .description("Replace every occurrence of oldText (replace operation, default false)")
+            .required(false)
+            .build());
+            
+        params.put("diff", ParameterInfo.builder()
+            .type("string")
+            .description("Unified diff of this file with @@ hunks (patch operation)")
+            .required(false)
+            .build());
+            
+        params.put("fsync", ParameterInfo.builder()
+            .type("boolean")
+            .description("Force the change to disk before returning (write, replace, splice and patch operations, default false)")
+            .required(false)
+            .build());
+            
+        params.put("include", ParameterInfo.builder()
+            .type("array")
+            .description("Globs of files to list, e.g. *.java or src/**/*.ts (tree operation)")
+            .required(false)
+            .build());
+            
+        params.put("exclude", ParameterInfo.builder()
+            .type("array")
+            .description("Globs of files and directories to skip (tree operation)")
+            .required(false)
+            .build());
+            
+        params.put("gitignore", ParameterInfo.builder()
+            .type("boolean")
+            .description("Skip files matched by .gitignore (tree operation, default true)")
+            .required(false)
+            .build());
+            
+        params.put("maxDepth", ParameterInfo.builder()
+            .type("integer")
+            .description("Maximum directory depth, 1 for direct children only (tree operation, default 20)")
+            .required(false)
+            .build());
+            
+        params.put("maxEntries", ParameterInfo.builder()
+            .type("integer")
+            .description("Maximum number of entries to return (tree operation, default 5000)")
             .required(false)
             .build());
             
@@ -66,10 +213,13 @@ public class FileSystemTool implements Tool {
         }
         
         return switch (operation.toLowerCase()) {
-            case "read" -> readFile(path);
-            case "write" -> writeFile(path, (String) arguments.get("content"));
+            case "read" -> isRangedRead(arguments) ? readRange(path, arguments) : readFile(path);
+            case "write" -> writeFile(path, (String) arguments.get("content"), ToolArguments.booleanValue(arguments, "fsync", false));
             case "append" -> appendFile(path, (String) arguments.get("content"));
+            case "replace", "splice", "patch" -> editFile(operation.toLowerCase(), path, arguments);
+            case "stream" -> streamFile(path, arguments);
             case "list" -> listDirectory(path);
+            case "tree" -> walkTree(path, arguments);
             case "delete" -> deleteFile(path);
             default -> Flux.error(new IllegalArgumentException("Unknown operation: " + operation));
         };
@@ -78,7 +228,13 @@ public class FileSystemTool implements Tool {
     private Flux<ToolOutput> readFile(String path) {
         return Mono.fromCallable(() -> {
             try {
-                String content = Files.readString(Path.of(path));
+                Path file = Path.of(path);
+                // A file over the result cap would only be spilled; it is not loaded whole to find that out
+                int maxBytes = outputGovernor.getMaxPageBytes() - TRUNCATION_NOTE_BYTES;
+                if (Files.size(file) > maxBytes) {
+                    return readFirstPage(path, file, maxBytes);
+                }
+                String content = Files.readString(file);
                 return ToolOutput.builder()
                         .type("file_content")
                         .content(content)
@@ -94,10 +250,155 @@ public class FileSystemTool implements Tool {
         }).flux();
     }
     
-    private Flux<ToolOutput> writeFile(String path, String content) {
+    /** The lines in the first maxBytes of a large file, and where to read on */
+    private ToolOutput readFirstPage(String path, Path file, int maxBytes) throws IOException {
+        RangedFileReader.Range range = rangedReader.readBytes(file, 0, maxBytes);
+        String text = range.text();
+        // Ends at a line break, which also drops a character cut in half at the end
+        int lastNewline = text.lastIndexOf('\n');
+        if (lastNewline >= 0) {
+            text = text.substring(0, lastNewline + 1);
+        }
+        long nextOffset = range.offset() + text.getBytes(StandardCharsets.UTF_8).length;
+        return ToolOutput.builder()
+                .type("file_content")
+                .content(text + "\n... [Showing the first " + nextOffset + " of " + range.fileSize() + " bytes."
+                        + " Read on with offset " + nextOffset + ", or read lines with startLine/endLine, head or tail] ...")
+                .metadata(Map.of(
+                    "path", path,
+                    "size", range.fileSize(),
+                    "nextOffset", nextOffset,
+                    "truncated", true
+                ))
+                .build();
+    }
+    
+    private static boolean isRangedRead(Map<String, Object> arguments) {
+        return Stream.of("offset", "length", "startLine", "endLine", "head", "tail").anyMatch(arguments::containsKey);
+    }
+    
+    private Flux<ToolOutput> readRange(String path, Map<String, Object> arguments) {
         return Mono.fromCallable(() -> {
             try {
-                Files.writeString(Path.of(path), content);
+                Path file = Path.of(path);
+                Long head = ToolArguments.longValue(arguments, "head");
+                Long tail = ToolArguments.longValue(arguments, "tail");
+                Long startLine = ToolArguments.longValue(arguments, "startLine");
+                Long endLine = ToolArguments.longValue(arguments, "endLine");
+                RangedFileReader.Range range;
+                if (head != null) {
+                    range = rangedReader.head(file, head);
+                } else if (tail != null) {
+                    range = rangedReader.tail(file, tail);
+                } else if (startLine != null || endLine != null) {
+                    long first = startLine != null ? startLine : 1;
+                    range = rangedReader.readLines(file, first, endLine != null ? endLine : first + DEFAULT_LINE_COUNT - 1);
+                } else {
+                    Long offset = ToolArguments.longValue(arguments, "offset");
+                    Long length = ToolArguments.longValue(arguments, "length");
+                    range = rangedReader.readBytes(file, offset != null ? offset : 0,
+                            length != null ? (int) Math.min(length, MAX_RANGE_BYTES) : MAX_RANGE_BYTES);
+                }
+                
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put("path", path);
+                metadata.put("offset", range.offset());
+                metadata.put("nextOffset", range.nextOffset());
+                metadata.put("fileSize", range.fileSize());
+                metadata.put("truncated", range.truncated());
+                if (range.firstLine() > 0) {
+                    metadata.put("startLine", range.firstLine());
+                }
+                if (range.lastLine() >= 0) {
+                    metadata.put("endLine", range.lastLine());
+                }
+                if (range.totalLines() >= 0) {
+                    metadata.put("totalLines", range.totalLines());
+                }
+                return ToolOutput.builder()
+                        .type("file_content")
+                        .content(range.text())
+                        .metadata(metadata)
+                        .build();
+            } catch (IOException e) {
+                log.error("Error reading file range: {}", path, e);
+                throw new RuntimeException("Error reading file: " + e.getMessage());
+            }
+        }).flux();
+    }
+    
+    private Flux<ToolOutput> streamFile(String path, Map<String, Object> arguments) {
+        Long blockSize = ToolArguments.longValue(arguments, "blockSize");
+        int size = blockSize != null
+                ? (int) Math.max(MIN_BLOCK_BYTES, Math.min(blockSize, MAX_RANGE_BYTES))
+                : DEFAULT_BLOCK_BYTES;
+        return fileStreamer.stream(Path.of(path), size)
+                .doOnError(e -> log.error("Error streaming file: {}", path, e));
+    }
+    
+    private Flux<ToolOutput> walkTree(String path, Map<String, Object> arguments) {
+        Long maxDepth = ToolArguments.longValue(arguments, "maxDepth");
+        Long maxEntries = ToolArguments.longValue(arguments, "maxEntries");
+        int depth = maxDepth != null ? (int) Math.max(1, maxDepth) : DEFAULT_TREE_DEPTH;
+        int limit = maxEntries != null ? (int) Math.max(1, Math.min(maxEntries, MAX_TREE_ENTRIES)) : DEFAULT_TREE_ENTRIES;
+        boolean gitignore = ToolArguments.booleanValue(arguments, "gitignore", true);
+        
+        // Walk one entry past the cap so the summary can tell whether the tree was cut short
+        return Flux.defer(() -> {
+            long[] count = new long[1];
+            return walkEntries(Path.of(path), PathGlobs.of(ToolArguments.list(arguments, "include")),
+                            PathGlobs.of(ToolArguments.list(arguments, "exclude")), gitignore, depth, limit + 1)
+                    .filter(entry -> ++count[0] <= limit)
+                    .buffer(TREE_BATCH_SIZE)
+                    .map(batch -> ToolOutput.builder()
+                            .type("tree_batch")
+                            .content(String.join("\n", batch.stream()
+                                    .map(entry -> entry.directory() ? entry.path() + "/" : entry.path() + " (" + entry.size() + " bytes)")
+                                    .toList()))
+                            .metadata(Map.of(
+                                "path", path,
+                                "entries", batch
+                            ))
+                            .build())
+                    .concatWith(Mono.fromSupplier(() -> ToolOutput.builder()
+                            .type("tree_summary")
+                            .content(count[0] > limit
+                                    ? "Listed the first " + limit + " entries; narrow the walk with include, exclude or maxDepth to see the rest"
+                                    : "Listed " + count[0] + " entries")
+                            .metadata(Map.of(
+                                "path", path,
+                                "entries", Math.min(count[0], limit),
+                                "truncated", count[0] > limit
+                            ))
+                            .build()))
+                    .doOnError(e -> log.error("Error walking directory: {}", path, e));
+        });
+    }
+    
+    /** Gitignore-aware walks inside projects are served from the live workspace tree; others read the disk */
+    private Flux<FileTreeWalker.Entry> walkEntries(Path directory, PathGlobs include, PathGlobs exclude, boolean gitignore,
+                                                   int maxDepth, int maxEntries) {
+        Path start = directory.toAbsolutePath().normalize();
+        if (!gitignore || !Files.isDirectory(start)) {
+            return treeWalker.walk(directory, include, exclude, gitignore, maxDepth, maxEntries);
+        }
+        Optional<WorkspaceTree> open = workspaceTrees.treeFor(start);
+        if (open.isEmpty()) {
+            return treeWalker.walk(directory, include, exclude, true, maxDepth, maxEntries);
+        }
+        WorkspaceTree tree = open.get();
+        String relative = tree.relativize(start);
+        int prefix = relative.isEmpty() ? 0 : relative.length() + 1;
+        return Flux.fromIterable(tree.walk(relative, include, exclude, maxDepth, maxEntries))
+                .map(node -> new FileTreeWalker.Entry(node.path().substring(prefix), node.directory(),
+                        node.symbolicLink(), false, node.size(), node.lastModified()));
+    }
+    
+    private Flux<ToolOutput> writeFile(String path, String content, boolean fsync) {
+        return Mono.fromCallable(() -> {
+            try {
+                FileEditor.writeAtomically(Path.of(path), content, fsync);
+                workspaceTrees.changed(Path.of(path));
                 return ToolOutput.builder()
                         .type("file_written")
                         .content("File written successfully")
@@ -113,10 +414,51 @@ public class FileSystemTool implements Tool {
         }).flux();
     }
     
+    private Flux<ToolOutput> editFile(String operation, String path, Map<String, Object> arguments) {
+        return Mono.fromCallable(() -> {
+            try {
+                Path file = Path.of(path);
+                boolean fsync = ToolArguments.booleanValue(arguments, "fsync", false);
+                FileEditor.Edit edit = switch (operation) {
+                    case "replace" -> fileEditor.replace(file, (String) arguments.get("oldText"),
+                            (String) arguments.get("newText"), ToolArguments.booleanValue(arguments, "replaceAll", false),
+                            fsync);
+                    case "splice" -> {
+                        Long startLine = ToolArguments.longValue(arguments, "startLine");
+                        Long endLine = ToolArguments.longValue(arguments, "endLine");
+                        if (startLine == null || endLine == null) {
+                            throw new IllegalArgumentException("startLine and endLine are required for splice");
+                        }
+                        yield fileEditor.splice(file, startLine.intValue(), endLine.intValue(),
+                                (String) arguments.get("content"), fsync);
+                    }
+                    default -> fileEditor.patch(file, (String) arguments.get("diff"), fsync);
+                };
+                workspaceTrees.changed(file);
+                return ToolOutput.builder()
+                        .type("file_edited")
+                        .content(edit.summary())
+                        .metadata(Map.of(
+                            "path", path,
+                            "startLine", edit.startLine(),
+                            "linesRemoved", edit.linesRemoved(),
+                            "linesAdded", edit.linesAdded(),
+                            "changes", edit.changes(),
+                            "size", edit.size()
+                        ))
+                        .build();
+            } catch (IOException e) {
+                log.error("Error editing file: {}", path, e);
+                throw new RuntimeException("Error editing file: " + e.getMessage());
+            }
+        }).flux();
+    }
+    
     private Flux<ToolOutput> appendFile(String path, String content) {
         return Mono.fromCallable(() -> {
             try {
                 Files.writeString(Path.of(path), content, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                workspaceTrees.changed(Path.of(path));
                 return ToolOutput.builder()
                         .type("file_appended")
                         .content("Content appended successfully")
@@ -135,17 +477,20 @@ public class FileSystemTool implements Tool {
     private Flux<ToolOutput> listDirectory(String path) {
         return Mono.fromCallable(() -> {
             try {
-                List<Map<String, Object>> entries = new ArrayList<>();
-                try (DirectoryStream<Path> stream = Files.newDirectoryStream(Path.of(path))) {
-                    for (Path entry : stream) {
-                        boolean isDirectory = Files.isDirectory(entry);
-                        entries.add(Map.of(
-                            "name", entry.getFileName().toString(),
-                            "path", entry.toString(),
-                            "isDirectory", isDirectory,
-                            "size", isDirectory ? 0 : Files.size(entry),
-                            "lastModified", Files.getLastModifiedTime(entry).toMillis()
-                        ));
+                Optional<List<Map<String, Object>>> tracked = listTracked(Path.of(path).toAbsolutePath().normalize());
+                List<Map<String, Object>> entries = tracked.orElseGet(ArrayList::new);
+                if (tracked.isEmpty()) {
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(Path.of(path))) {
+                        for (Path entry : stream) {
+                            boolean isDirectory = Files.isDirectory(entry);
+                            entries.add(Map.of(
+                                "name", entry.getFileName().toString(),
+                                "path", entry.toString(),
+                                "isDirectory", isDirectory,
+                                "size", isDirectory ? 0 : Files.size(entry),
+                                "lastModified", Files.getLastModifiedTime(entry).toMillis()
+                            ));
+                        }
                     }
                 }
                 
@@ -164,10 +509,29 @@ public class FileSystemTool implements Tool {
         }).flux();
     }
     
+    /** Entries of a directory in an open workspace tree, without reading the disk */
+    private Optional<List<Map<String, Object>>> listTracked(Path directory) {
+        return workspaceTrees.find(directory)
+                .flatMap(tree -> tree.list(tree.relativize(directory)))
+                .map(nodes -> nodes.stream()
+                        .map(node -> {
+                            String name = node.path().substring(node.path().lastIndexOf('/') + 1);
+                            return Map.<String, Object>of(
+                                "name", name,
+                                "path", directory.resolve(name).toString(),
+                                "isDirectory", node.directory(),
+                                "size", node.size(),
+                                "lastModified", node.lastModified()
+                            );
+                        })
+                        .toList());
+    }
+    
     private Flux<ToolOutput> deleteFile(String path) {
         return Mono.fromCallable(() -> {
             try {
                 boolean deleted = Files.deleteIfExists(Path.of(path));
+                workspaceTrees.changed(Path.of(path));
                 return ToolOutput.builder()
                         .type("file_deleted")
                         .content(deleted ? "File deleted successfully" : "File does not exist")
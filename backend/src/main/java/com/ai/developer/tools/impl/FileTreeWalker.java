@@ -0,0 +1,178 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recursive directory walk that lists directories in parallel on a fork/join pool and
+ * streams entries as each directory is read. Each entry costs a single
+ * readAttributes call. Symbolic links are reported but never followed, so the walk
+ * cannot loop. Entries of one directory arrive together and sorted; directories
+ * arrive in no particular order. Gitignore rules of the repository above the walk's
+ * root apply too, so walking a subdirectory skips what walking the project would.
+ */
+@Slf4j
+class FileTreeWalker {
+
+    // Listing blocks on the file system, so use a few more workers than cores on small machines
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * @param include  globs a file must match to be listed; directories are then left out
+     * @param exclude  globs of files and directories to skip, including everything below them
+     * @param maxDepth 1 lists only the entries of root
+     */
+    Flux<Entry> walk(Path root, PathGlobs include, PathGlobs exclude, boolean gitignore, int maxDepth, int maxEntries) {
+        return walk(root, include, exclude, gitignore, false, maxDepth, maxEntries);
+    }
+
+    /** @param reportIgnored list gitignored entries, flagged as such, without descending into them */
+    Flux<Entry> walk(Path root, PathGlobs include, PathGlobs exclude, boolean gitignore, boolean reportIgnored,
+                     int maxDepth, int maxEntries) {
+        return Flux.create(sink -> {
+            Path start = root.toAbsolutePath().normalize();
+            if (!Files.isDirectory(start)) {
+                sink.error(new IllegalArgumentException("Not a directory: " + root));
+                return;
+            }
+            Walk walk = new Walk(start, include, exclude, reportIgnored, maxDepth, maxEntries, sink);
+            sink.onCancel(walk::stop);
+            pool.execute(new DirectoryTask(null, walk, start, 1, gitignore ? GitIgnoreRules.above(start) : null));
+        }, FluxSink.OverflowStrategy.BUFFER);
+    }
+
+    record Entry(String path, boolean directory, boolean symbolicLink, boolean ignored, long size, long lastModified) {
+    }
+
+    private static class Walk {
+        private final Path root;
+        private final PathGlobs include;
+        private final PathGlobs exclude;
+        private final boolean reportIgnored;
+        private final int maxDepth;
+        private final int maxEntries;
+        private final FluxSink<Entry> sink;
+        private final AtomicInteger emitted = new AtomicInteger();
+        private volatile boolean stopped;
+
+        Walk(Path root, PathGlobs include, PathGlobs exclude, boolean reportIgnored, int maxDepth, int maxEntries,
+             FluxSink<Entry> sink) {
+            this.root = root;
+            this.include = include;
+            this.exclude = exclude;
+            this.reportIgnored = reportIgnored;
+            this.maxDepth = maxDepth;
+            this.maxEntries = maxEntries;
+            this.sink = sink;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        /** Emits the entries of directory and returns the subdirectories to descend into */
+        List<Path> list(Path directory, int depth, GitIgnoreRules rules) {
+            List<Path> subdirectories = new ArrayList<>();
+            List<Entry> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        // Deleted since it was listed, or cannot be stat'ed; the rest of the directory still counts
+                        log.debug("Cannot read attributes of {}", child, e);
+                        continue;
+                    }
+                    boolean isDirectory = attributes.isDirectory();
+                    Path relative = root.relativize(child);
+                    boolean ignored = rules != null && rules.isIgnored(child, isDirectory);
+                    if ((ignored && !reportIgnored) || exclude.matches(relative)) {
+                        continue;
+                    }
+                    if (isDirectory && !ignored && depth < maxDepth) {
+                        subdirectories.add(child);
+                    }
+                    if (include.isEmpty() || (!isDirectory && include.matches(relative))) {
+                        entries.add(new Entry(relative.toString().replace('\\', '/'), isDirectory,
+                                attributes.isSymbolicLink(), ignored, isDirectory ? 0 : attributes.size(),
+                                attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable directories are skipped rather than failing the whole walk
+                log.debug("Cannot list {}", directory, e);
+            }
+
+            entries.sort(Comparator.comparing(Entry::path));
+            for (Entry entry : entries) {
+                if (stopped) {
+                    break;
+                }
+                if (emitted.incrementAndGet() > maxEntries) {
+                    stop();
+                    break;
+                }
+                sink.next(entry);
+            }
+            return stopped ? List.of() : subdirectories;
+        }
+    }
+
+    private static class DirectoryTask extends CountedCompleter<Void> {
+        // ForkJoinTask is Serializable, but a task only lives as long as its walk and is never serialized
+        private static final long serialVersionUID = 1L;
+
+        private final transient Walk walk;
+        private final transient Path directory;
+        private final int depth;
+        private final transient GitIgnoreRules parentRules;
+
+        DirectoryTask(DirectoryTask parent, Walk walk, Path directory, int depth, GitIgnoreRules parentRules) {
+            super(parent);
+            this.walk = walk;
+            this.directory = directory;
+            this.depth = depth;
+            this.parentRules = parentRules;
+        }
+
+        @Override
+        public void compute() {
+            if (!walk.stopped) {
+                GitIgnoreRules rules = parentRules != null ? parentRules.enter(directory) : null;
+                for (Path subdirectory : walk.list(directory, depth, rules)) {
+                    addToPendingCount(1);
+                    new DirectoryTask(this, walk, subdirectory, depth + 1, rules).fork();
+                }
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (getCompleter() == null) {
+                walk.sink.complete();
+            }
+        }
+
+        @Override
+        public boolean onExceptionalCompletion(Throwable error, CountedCompleter<?> caller) {
+            walk.sink.error(error);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The .gitignore rules in effect for one directory: its own file's rules on top of
+ * those of its ancestors. Instances are immutable, so walkers working on different
+ * subtrees at the same time share their common ancestors. Covers the commonly used
+ * syntax: comments, negation, directory-only and anchored patterns, and ** globs.
+ */
+@Slf4j
+final class GitIgnoreRules {
+
+    static final GitIgnoreRules NONE = new GitIgnoreRules(null, List.of());
+
+    private final GitIgnoreRules parent;
+    private final List<Rule> rules;
+
+    private GitIgnoreRules(GitIgnoreRules parent, List<Rule> rules) {
+        this.parent = parent;
+        this.rules = rules;
+    }
+
+    /**
+     * The rules a walk starting at directory inherits: those of the .gitignore files from
+     * the root of its git repository down to its parent. None outside a repository, or
+     * when directory is the root itself.
+     */
+    static GitIgnoreRules above(Path directory) {
+        if (Files.exists(directory.resolve(".git"))) {
+            return NONE;
+        }
+        Deque<Path> ancestors = new ArrayDeque<>();
+        for (Path candidate = directory.getParent(); candidate != null; candidate = candidate.getParent()) {
+            ancestors.push(candidate);
+            // .git is a file in worktrees and submodules
+            if (Files.exists(candidate.resolve(".git"))) {
+                GitIgnoreRules rules = NONE;
+                for (Path ancestor : ancestors) {
+                    rules = rules.enter(ancestor);
+                }
+                return rules;
+            }
+        }
+        return NONE;
+    }
+
+    /** These rules plus those of the .gitignore in directory, if it has one */
+    GitIgnoreRules enter(Path directory) {
+        Path file = directory.resolve(".gitignore");
+        if (!Files.isRegularFile(file)) {
+            return this;
+        }
+        try {
+            List<Rule> parsed = new ArrayList<>();
+            for (String line : Files.readAllLines(file)) {
+                Rule rule = Rule.parse(directory, line);
+                if (rule != null) {
+                    parsed.add(rule);
+                }
+            }
+            return parsed.isEmpty() ? this : new GitIgnoreRules(this, parsed);
+        } catch (IOException e) {
+            log.debug("Cannot read {}", file, e);
+            return this;
+        }
+    }
+
+    boolean isIgnored(Path path, boolean directory) {
+        if (directory && path.getFileName() != null && path.getFileName().toString().equals(".git")) {
+            return true;
+        }
+        // The last matching rule wins, and rules of deeper .gitignore files come later
+        Boolean ignored = match(path, directory);
+        return ignored != null && ignored;
+    }
+
+    private Boolean match(Path path, boolean directory) {
+        Boolean result = parent != null ? parent.match(path, directory) : null;
+        for (Rule rule : rules) {
+            if (rule.matches(path, directory)) {
+                result = !rule.negated();
+            }
+        }
+        return result;
+    }
+
+    private record Rule(Path base, PathMatcher matcher, boolean nameOnly, boolean directoryOnly, boolean negated) {
+
+        static Rule parse(Path base, String line) {
+            String pattern = line.strip();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return null;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.isEmpty()) {
+                return null;
+            }
+            // Without an inner slash a pattern matches a name at any depth; with one it is
+            // relative to the directory of the .gitignore
+            boolean nameOnly = !pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            String glob = pattern.startsWith("**/")
+                    ? "{" + pattern.substring(3) + "," + pattern + "}"
+                    : pattern;
+            try {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                return new Rule(base, matcher, nameOnly, directoryOnly, negated);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        boolean matches(Path path, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            }
+            if (nameOnly) {
+                return path.getFileName() != null && matcher.matches(path.getFileName());
+            }
+            return path.startsWith(base) && matcher.matches(base.relativize(path));
+        }
+    }
+}
@@ -11,17 +11,41 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.io.File;
+import java.nio.file.Path;
 import java.util.*;
 
 @Slf4j
 @Component
 public class GitTool implements Tool {
     
+    private final WorkspaceTrees workspaceTrees;
+    
+    public GitTool(WorkspaceTrees workspaceTrees) {
+        this.workspaceTrees = workspaceTrees;
+    }
+    
     @Override
     public String getName() {
         return "git_operations";
     }
     
+    @Override
+    public int getMaxConcurrency() {
+        // Concurrent git commands on one repository contend for index.lock
+        return 1;
+    }
+    
+    @Override
+    public Optional<String> getCacheFingerprint(Map<String, Object> arguments) {
+        // Status also depends on the working tree, which no cheap stamp covers
+        String operation = (String) arguments.get("operation");
+        String path = (String) arguments.get("path");
+        if (!"log".equalsIgnoreCase(operation) || path == null) {
+            return Optional.empty();
+        }
+        return InputFingerprints.ofGitHead(Path.of(path));
+    }
+    
     @Override
     public String getDescription() {
         return "Perform Git operations on repositories";
@@ -69,7 +93,7 @@ public class GitTool implements Tool {
         String operation = (String) arguments.get("operation");
         String path = (String) arguments.get("path");
         
-        return Mono.fromCallable(() -> {
+        Flux<ToolOutput> output = Mono.fromCallable(() -> {
             switch (operation.toLowerCase()) {
                 case "init":
                     return initRepository(path);
@@ -89,6 +113,9 @@ public class GitTool implements Tool {
                     throw new IllegalArgumentException("Unknown operation: " + operation);
             }
         }).flux();
+        // Init, clone and checkout change the working tree, which the workspace trees see by the end
+        boolean readOnly = "status".equalsIgnoreCase(operation) || "log".equalsIgnoreCase(operation);
+        return readOnly || path == null ? output : workspaceTrees.rescanAfter(Path.of(path), output);
     }
     
     private ToolOutput initRepository(String path) throws GitAPIException {
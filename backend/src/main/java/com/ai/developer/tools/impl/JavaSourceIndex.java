@@ -0,0 +1,750 @@
+package com.ai.developer.tools.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.nodeTypes.NodeWithName;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.javadoc.Javadoc;
+import com.github.javaparser.resolution.declarations.AssociableToAST;
+import com.github.javaparser.resolution.types.ResolvedType;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Summaries of the Java sources of one workspace tree: types, methods, signatures, line
+ * ranges and javadoc, keyed by path and content hash. A summary is reused while the
+ * tree's stamp for the file is unchanged; a new stamp costs a read and a hash, and only
+ * a new hash costs a parse. Summaries are immutable and kept in a concurrent map, so
+ * sessions share them without locking.
+ *
+ * <p>Stale files are read and parsed in parallel, each worker thread reusing its own
+ * parser, and their summaries are emitted as each one is ready. Summaries name what a
+ * file uses as written; resolving calls, method references and type uses to their
+ * declarations costs far more than parsing, so it is only done by
+ * {@link #resolvedSummaries}, one file at a time under the index's own lock. A resolved
+ * summary is kept until its file changes, or a file declaring something it resolved to
+ * changes, or a changed file declares a name that one of its unresolved references uses.
+ *
+ * <p>Summaries are saved when the index is closed and loaded when it is opened again,
+ * after which each file costs a read and a hash before its summary is used. Resolved
+ * summaries are saved with the hashes of the files they resolved to. Before the first
+ * of them is used again, every source is summarized, and those whose files have changed
+ * since, or that may resolve further now, are dropped.
+ */
+@Slf4j
+class JavaSourceIndex implements Closeable {
+
+    // JavaParser instances are not thread-safe, but are cheap to reuse on one thread
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(() -> new JavaParser(
+            new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17)));
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final int VERSION = 3;
+    // Stamp of summaries loaded from disk, which no node has, so they are checked by hash first
+    private static final long LOADED = -1;
+
+    private final WorkspaceTree tree;
+    private final Scheduler scheduler;
+    private final int parallelism;
+    private final JavaSymbolResolver resolver;
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+    // The resolver and the fields below are guarded by resolutionLock
+    private final ReentrantLock resolutionLock = new ReentrantLock();
+    private final Map<String, FileSummary> resolved = new HashMap<>();
+    // Hashes of the files each resolved file resolved something to, by their paths
+    private final Map<String, Map<String, String>> dependencies = new HashMap<>();
+    // Paths of the files that resolved something to a declaration in each file
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    // Names used by the references of each resolved file that did not resolve
+    private final Map<String, Set<String>> unresolvedNames = new HashMap<>();
+    // Resolutions loaded from disk and not checked against the sources yet, or null
+    private volatile Saved loaded;
+
+    /**
+     * @param resolver  resolves references for {@link #resolvedSummaries}, or null to leave them unresolved
+     * @param indexFile where summaries are saved on close, or null to keep them in memory only
+     */
+    JavaSourceIndex(WorkspaceTree tree, Scheduler scheduler, int parallelism, JavaSymbolResolver resolver,
+                    Path indexFile) {
+        this.tree = tree;
+        this.scheduler = scheduler;
+        this.parallelism = parallelism;
+        this.resolver = resolver;
+        this.indexFile = indexFile;
+    }
+
+    static JavaSourceIndex open(WorkspaceTree tree, Scheduler scheduler, int parallelism, JavaSymbolResolver resolver,
+                                Path indexFile) {
+        JavaSourceIndex index = new JavaSourceIndex(tree, scheduler, parallelism, resolver, indexFile);
+        if (Files.exists(indexFile)) {
+            try {
+                index.load();
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable source index {}", indexFile, e);
+                index.entries.clear();
+            }
+        }
+        return index;
+    }
+
+    WorkspaceTree getTree() {
+        return tree;
+    }
+
+    /** Summary of a tracked .java file, or empty if the tree does not track it */
+    Optional<FileSummary> summary(String path) {
+        return tree.get(path).filter(WorkspaceTree.Node::isFile).flatMap(this::summary);
+    }
+
+    /**
+     * Summaries of the .java files in directory, or below it when recursive. Cached
+     * summaries come first; the others follow in no particular order as they are parsed.
+     */
+    Flux<FileSummary> summaries(String directory, boolean recursive) {
+        return Flux.defer(() -> {
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            List<FileSummary> current = new ArrayList<>();
+            List<WorkspaceTree.Node> stale = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (WorkspaceTree.Node node : tree.files(directory)) {
+                if (!node.path().endsWith(".java") || (!recursive && node.path().indexOf('/', prefix.length()) >= 0)) {
+                    continue;
+                }
+                seen.add(node.path());
+                Entry entry = entries.get(node.path());
+                if (entry != null && entry.stamp() == node.stamp()) {
+                    current.add(entry.summary());
+                } else {
+                    stale.add(node);
+                }
+            }
+            if (recursive) {
+                // Files gone from the tree would otherwise stay cached
+                modified |= entries.keySet().removeIf(path -> path.startsWith(prefix) && !seen.contains(path));
+            }
+            return Flux.fromIterable(current).concatWith(Flux.fromIterable(stale)
+                    .parallel(parallelism)
+                    .runOn(scheduler)
+                    .flatMap(node -> Mono.justOrEmpty(summary(node)))
+                    .sequential());
+        });
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Optional<FileSummary> summary(WorkspaceTree.Node node) {
+        Entry entry = entries.get(node.path());
+        if (entry != null && entry.stamp() == node.stamp()) {
+            return Optional.of(entry.summary());
+        }
+        Source source;
+        try {
+            source = Source.read(tree.getRoot().resolve(node.path()));
+        } catch (IOException e) {
+            log.debug("Cannot read {}", node.path(), e);
+            return Optional.empty();
+        }
+        FileSummary summary;
+        if (entry != null && entry.summary().hash().equals(source.hash())) {
+            summary = entry.summary();
+        } else {
+            summary = parse(node.path(), source);
+            modified = true;
+        }
+        // Stamped with the node read before the file, so a later change is noticed next time
+        entries.put(node.path(), new Entry(node.stamp(), summary));
+        return Optional.of(summary);
+    }
+
+    /** Parses a file without caching it or resolving its references, for sources the tree does not track */
+    static FileSummary parse(Path file, String path) throws IOException {
+        return parse(path, Source.read(file));
+    }
+
+    private static FileSummary parse(String path, Source source) {
+        Optional<CompilationUnit> unit = parseUnit(path, source);
+        return unit.isPresent()
+                ? new Summarizer(false).summarize(path, source.hash(), unit.get())
+                : new FileSummary(path, source.hash(), false, null, 0, List.of(), List.of(), List.of());
+    }
+
+    private static Optional<CompilationUnit> parseUnit(String path, Source source) {
+        ParseResult<CompilationUnit> result = PARSER.get().parse(source.text());
+        if (result.getResult().isEmpty()) {
+            log.warn("Error parsing file: {} {}", path, result.getProblems());
+        }
+        return result.getResult();
+    }
+
+    /** Summary of a tracked .java file with its references resolved, or empty if the tree does not track it */
+    Mono<FileSummary> resolvedSummary(String path) {
+        return restore().then(Mono.fromCallable(() -> summary(path).map(summary -> resolve(prepare(summary))).orElse(null)));
+    }
+
+    /**
+     * Summaries of the .java files in directory, or below it when recursive, with their
+     * references resolved. Files are read and parsed in parallel, then resolved one at a time.
+     */
+    Flux<FileSummary> resolvedSummaries(String directory, boolean recursive) {
+        if (resolver == null) {
+            return summaries(directory, recursive);
+        }
+        return restore().thenMany(summaries(directory, recursive)
+                .parallel(parallelism)
+                .runOn(scheduler)
+                .map(this::prepare)
+                .sequential()
+                .map(this::resolve));
+    }
+
+    /** Takes over the loaded resolutions that are still current, once, after summarizing every source */
+    private Mono<Void> restore() {
+        if (resolver == null || loaded == null) {
+            return Mono.empty();
+        }
+        return summaries("", true).collectList().doOnNext(this::restore).then();
+    }
+
+    private void restore(List<FileSummary> sources) {
+        resolutionLock.lock();
+        try {
+            Saved saved = loaded;
+            if (saved == null) {
+                return;
+            }
+            loaded = null;
+            invalidate(resolver.refresh());
+            if (!resolver.configuration().equals(saved.configuration())) {
+                // Other source roots or dependencies may change what anything resolves to
+                modified = true;
+                return;
+            }
+            Map<String, String> hashes = new HashMap<>();
+            Set<String> declared = new HashSet<>();
+            for (FileSummary source : sources) {
+                hashes.put(source.path(), source.hash());
+                declaredNames(source, declared);
+            }
+            int kept = 0;
+            for (Resolution resolution : saved.resolved()) {
+                FileSummary summary = resolution.summary();
+                boolean current = summary.hash().equals(hashes.get(summary.path()))
+                        && resolution.dependencies().entrySet().stream()
+                                .allMatch(dependency -> dependency.getValue().equals(hashes.get(dependency.getKey())))
+                        && Collections.disjoint(unresolvedNames(summary), declared);
+                if (current) {
+                    record(summary, resolution.dependencies());
+                    kept++;
+                } else {
+                    modified = true;
+                }
+            }
+            log.debug("Kept {} of {} saved resolutions of {}", kept, saved.resolved().size(), tree.getRoot());
+        } finally {
+            resolutionLock.unlock();
+        }
+    }
+
+    /** The resolved summary if it is current, or else the file parsed again for resolving */
+    private Resolving prepare(FileSummary summary) {
+        if (resolver == null || !summary.parsed()) {
+            return new Resolving(summary, null, null, null);
+        }
+        Optional<FileSummary> current = current(summary.path(), summary.hash());
+        if (current.isPresent()) {
+            return new Resolving(current.get(), null, null, null);
+        }
+        Source source;
+        try {
+            source = Source.read(tree.getRoot().resolve(summary.path()));
+        } catch (IOException e) {
+            log.debug("Cannot read {}", summary.path(), e);
+            return new Resolving(summary, null, null, null);
+        }
+        return parseUnit(summary.path(), source)
+                .map(unit -> new Resolving(null, summary.path(), source.hash(), unit))
+                .orElseGet(() -> new Resolving(summary, null, null, null));
+    }
+
+    private FileSummary resolve(Resolving resolving) {
+        if (resolving.summary() != null) {
+            return resolving.summary();
+        }
+        String path = resolving.path();
+        CompilationUnit unit = resolving.unit();
+        resolutionLock.lock();
+        try {
+            invalidate(resolver.refresh());
+            FileSummary summary = resolved.get(path);
+            if (summary != null && summary.hash().equals(resolving.hash())) {
+                return summary;
+            }
+            resolver.inject(unit);
+            Summarizer summarizer = new Summarizer(true);
+            summary = summarizer.summarize(path, resolving.hash(), unit);
+            Map<String, String> declaringHashes = new HashMap<>();
+            for (Path file : summarizer.declaringFiles) {
+                if (file.startsWith(tree.getRoot())) {
+                    String declaring = tree.relativize(file);
+                    summary(declaring).ifPresent(source -> declaringHashes.put(declaring, source.hash()));
+                }
+            }
+            record(summary, declaringHashes);
+            modified = true;
+            return summary;
+        } finally {
+            resolutionLock.unlock();
+        }
+    }
+
+    private Optional<FileSummary> current(String path, String hash) {
+        resolutionLock.lock();
+        try {
+            invalidate(resolver.refresh());
+            return Optional.ofNullable(resolved.get(path)).filter(summary -> summary.hash().equals(hash));
+        } finally {
+            resolutionLock.unlock();
+        }
+    }
+
+    private void record(FileSummary summary, Map<String, String> declaringHashes) {
+        String path = summary.path();
+        resolved.put(path, summary);
+        dependencies.put(path, declaringHashes);
+        declaringHashes.keySet().forEach(declaring -> dependents.computeIfAbsent(declaring, key -> new HashSet<>()).add(path));
+        Set<String> names = unresolvedNames(summary);
+        if (names.isEmpty()) {
+            unresolvedNames.remove(path);
+        } else {
+            unresolvedNames.put(path, names);
+        }
+    }
+
+    private void drop(String path) {
+        if (resolved.remove(path) != null) {
+            modified = true;
+        }
+        dependencies.remove(path);
+        unresolvedNames.remove(path);
+    }
+
+    /** Drops the resolved summaries that changes may have made out of date */
+    private void invalidate(JavaSymbolResolver.Changes changes) {
+        if (changes.rebuilt()) {
+            modified |= !resolved.isEmpty();
+            resolved.clear();
+            dependencies.clear();
+            dependents.clear();
+            unresolvedNames.clear();
+            return;
+        }
+        if (changes.sources().isEmpty()) {
+            return;
+        }
+        Set<String> declared = new HashSet<>();
+        for (String path : changes.sources()) {
+            drop(path);
+            Set<String> referencing = dependents.remove(path);
+            if (referencing != null) {
+                referencing.forEach(this::drop);
+            }
+            summary(path).ifPresent(summary -> declaredNames(summary, declared));
+        }
+        // A new or changed source may declare what these could not resolve before
+        List<String> unresolved = unresolvedNames.entrySet().stream()
+                .filter(entry -> !Collections.disjoint(entry.getValue(), declared))
+                .map(Map.Entry::getKey)
+                .toList();
+        unresolved.forEach(this::drop);
+    }
+
+    private static Set<String> unresolvedNames(FileSummary summary) {
+        return summary.references().stream()
+                .filter(reference -> !reference.resolved())
+                .map(Reference::name)
+                .collect(Collectors.toSet());
+    }
+
+    private static void declaredNames(FileSummary summary, Set<String> names) {
+        summary.types().forEach(type -> names.add(type.name()));
+        summary.methods().forEach(method -> names.add(method.name()));
+    }
+
+    /** Builds the summary of one parsed file, resolving names if the unit has a symbol solver attached */
+    private static final class Summarizer {
+
+        private final boolean resolving;
+        private final Map<CallableDeclaration<?>, String> signatures = new IdentityHashMap<>();
+        // Source files of the declarations that references resolved to
+        private final Set<Path> declaringFiles = new HashSet<>();
+
+        Summarizer(boolean resolving) {
+            this.resolving = resolving;
+        }
+
+        FileSummary summarize(String path, String hash, CompilationUnit unit) {
+            List<TypeSummary> types = unit.findAll(TypeDeclaration.class).stream()
+                    .map(type -> typeSummary((TypeDeclaration<?>) type))
+                    .toList();
+            List<MethodSummary> methods = unit.findAll(MethodDeclaration.class).stream()
+                    .map(method -> new MethodSummary(method.getNameAsString(), enclosingType(method),
+                            method.getTypeAsString(), method.getParameters().toString(), method.getParameters().size(),
+                            method.getDeclarationAsString(true, true, true), signature(method), beginLine(method),
+                            endLine(method), javadoc(method.getJavadoc())))
+                    .toList();
+            return new FileSummary(path, hash, true, unit.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse(""),
+                    unit.getImports().size(), types, methods, references(unit));
+        }
+
+        private TypeSummary typeSummary(TypeDeclaration<?> type) {
+            boolean isInterface = type instanceof AnnotationDeclaration
+                    || (type instanceof ClassOrInterfaceDeclaration declaration && declaration.isInterface());
+            // Classes and interfaces extend, and classes, enums and records implement
+            Stream<ClassOrInterfaceType> extended = type instanceof NodeWithExtends<?> node
+                    ? node.getExtendedTypes().stream()
+                    : Stream.empty();
+            Stream<ClassOrInterfaceType> implemented = type instanceof NodeWithImplements<?> node
+                    ? node.getImplementedTypes().stream()
+                    : Stream.empty();
+            return new TypeSummary(type.getNameAsString(), qualifiedName(type), isInterface,
+                    Stream.concat(extended, implemented)
+                            .map(supertype -> new Supertype(supertype.getNameAsString(), target(supertype)))
+                            .toList(),
+                    type.getMethods().size(), beginLine(type), endLine(type), javadoc(type.getJavadoc()));
+        }
+
+        /** Call sites, method references and type uses, in source order */
+        private List<Reference> references(CompilationUnit unit) {
+            List<Reference> references = new ArrayList<>();
+            unit.walk(node -> {
+                if (node instanceof MethodCallExpr call) {
+                    references.add(reference(Reference.Kind.CALL, call.getNameAsString(), call.getArguments().size(), call));
+                } else if (node instanceof MethodReferenceExpr method) {
+                    references.add(reference(Reference.Kind.METHOD_REFERENCE, method.getIdentifier(), -1, method));
+                } else if (node instanceof ClassOrInterfaceType type) {
+                    references.add(reference(Reference.Kind.TYPE, type.getNameAsString(), -1, type));
+                }
+            });
+            return references;
+        }
+
+        private Reference reference(Reference.Kind kind, String name, int arguments, Node node) {
+            Optional<CallableDeclaration<?>> enclosing = enclosingCallable(node);
+            return new Reference(kind, name, arguments, target(node), enclosingType(node),
+                    enclosing.map(CallableDeclaration::getNameAsString).orElse(null),
+                    enclosing.map(this::signature).orElse(null), beginLine(node),
+                    node.getBegin().map(position -> position.column).orElse(-1));
+        }
+
+        /** Qualified signature or type name a reference resolves to, or null if it does not */
+        private String target(Node node) {
+            if (!resolving) {
+                return null;
+            }
+            try {
+                if (node instanceof MethodCallExpr call) {
+                    return declaredIn(call.resolve()).getQualifiedSignature();
+                }
+                if (node instanceof MethodReferenceExpr method) {
+                    return declaredIn(method.resolve()).getQualifiedSignature();
+                }
+                if (node instanceof ClassOrInterfaceType type) {
+                    ResolvedType resolved = type.resolve();
+                    if (!resolved.isReferenceType()) {
+                        return null;
+                    }
+                    resolved.asReferenceType().getTypeDeclaration().ifPresent(this::declaredIn);
+                    return resolved.asReferenceType().getQualifiedName();
+                }
+            } catch (RuntimeException e) {
+                // Unknown types, missing jars and solver limitations all end up here
+                log.trace("Cannot resolve {}", node, e);
+            }
+            return null;
+        }
+
+        /** Notes the source file of a declaration, unless it comes from the JDK or a jar */
+        private <D extends AssociableToAST> D declaredIn(D declaration) {
+            declaration.toAst()
+                    .flatMap(Node::findCompilationUnit)
+                    .flatMap(CompilationUnit::getStorage)
+                    .map(CompilationUnit.Storage::getPath)
+                    .ifPresent(declaringFiles::add);
+            return declaration;
+        }
+
+        /**
+         * Qualified signature of a method or constructor as resolved calls report it, or
+         * with parameter types as written when they cannot be resolved.
+         */
+        private String signature(CallableDeclaration<?> callable) {
+            return signatures.computeIfAbsent(callable, declaration -> {
+                if (resolving) {
+                    try {
+                        if (declaration instanceof MethodDeclaration method) {
+                            return method.resolve().getQualifiedSignature();
+                        }
+                        if (declaration instanceof ConstructorDeclaration constructor) {
+                            return constructor.resolve().getQualifiedSignature();
+                        }
+                    } catch (RuntimeException e) {
+                        log.trace("Cannot resolve {}", declaration.getDeclarationAsString(), e);
+                    }
+                }
+                String type = enclosingTypeDeclaration(declaration).map(Summarizer::qualifiedName).orElse("");
+                return (type.isEmpty() ? "" : type + ".") + declaration.getNameAsString()
+                        + declaration.getParameters().stream()
+                                .map(parameter -> parameter.getTypeAsString() + (parameter.isVarArgs() ? "..." : ""))
+                                .collect(Collectors.joining(", ", "(", ")"));
+            });
+        }
+
+        private static String qualifiedName(TypeDeclaration<?> type) {
+            return type.getFullyQualifiedName().orElse(type.getNameAsString());
+        }
+    }
+
+    private static Optional<CallableDeclaration<?>> enclosingCallable(Node node) {
+        for (Node parent = node.getParentNode().orElse(null); parent != null; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof CallableDeclaration<?> callable) {
+                return Optional.of(callable);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<TypeDeclaration<?>> enclosingTypeDeclaration(Node node) {
+        for (Node parent = node.getParentNode().orElse(null); parent != null; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof TypeDeclaration<?> type) {
+                return Optional.of(type);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static String enclosingType(Node node) {
+        return enclosingTypeDeclaration(node).map(TypeDeclaration::getNameAsString).orElse(null);
+    }
+
+    private static int beginLine(Node node) {
+        return node.getBegin().map(position -> position.line).orElse(-1);
+    }
+
+    private static int endLine(Node node) {
+        return node.getEnd().map(position -> position.line).orElse(-1);
+    }
+
+    private static String javadoc(Optional<Javadoc> javadoc) {
+        return javadoc.map(doc -> doc.getDescription().toText()).orElse(null);
+    }
+
+    /** Writes the summaries to a temporary file, which is then moved into place */
+    private synchronized void save() {
+        if (indexFile == null || !modified) {
+            return;
+        }
+        modified = false;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            List<FileSummary> files = entries.values().stream().map(Entry::summary).toList();
+            MAPPER.writeValue(temp.toFile(), resolutions(files));
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save source index {}", indexFile, e);
+        }
+    }
+
+    /** What is saved: the summaries, and the resolutions loaded and not checked yet or else those made since */
+    private Saved resolutions(List<FileSummary> files) {
+        resolutionLock.lock();
+        try {
+            Saved saved = loaded;
+            if (saved != null) {
+                return new Saved(VERSION, tree.getRoot().toString(), files, saved.configuration(), saved.resolved());
+            }
+            if (resolver == null || resolved.isEmpty()) {
+                return new Saved(VERSION, tree.getRoot().toString(), files, null, List.of());
+            }
+            List<Resolution> resolutions = resolved.values().stream()
+                    .map(summary -> new Resolution(summary, dependencies.getOrDefault(summary.path(), Map.of())))
+                    .toList();
+            return new Saved(VERSION, tree.getRoot().toString(), files, resolver.configuration(), resolutions);
+        } finally {
+            resolutionLock.unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        Saved saved = MAPPER.readValue(indexFile.toFile(), Saved.class);
+        if (saved.version() != VERSION || !tree.getRoot().toString().equals(saved.root())) {
+            throw new IOException("Not a source index of " + tree.getRoot());
+        }
+        for (FileSummary summary : saved.files()) {
+            entries.put(summary.path(), new Entry(LOADED, summary));
+        }
+        if (saved.configuration() != null && !saved.resolved().isEmpty()) {
+            loaded = saved;
+        }
+    }
+
+    @Override
+    public void close() {
+        save();
+    }
+
+    private record Entry(long stamp, FileSummary summary) {
+    }
+
+    /** A resolved summary that is current, or a file parsed to resolve and the hash of its content */
+    private record Resolving(FileSummary summary, String path, String hash, CompilationUnit unit) {
+    }
+
+    /**
+     * @param configuration source roots and dependencies of the solver the resolutions were made with
+     */
+    private record Saved(int version, String root, List<FileSummary> files, String configuration,
+                         List<Resolution> resolved) {
+
+        Saved {
+            resolved = resolved != null ? resolved : List.of();
+        }
+    }
+
+    /** @param dependencies hashes of the files the summary resolved something to, by their paths */
+    private record Resolution(FileSummary summary, Map<String, String> dependencies) {
+    }
+
+    /** Content of a source file, read through one buffer that is hashed and decoded in place */
+    private record Source(String text, String hash) {
+
+        static Source read(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Too large to parse: " + file);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(buffer.duplicate());
+                return new Source(StandardCharsets.UTF_8.decode(buffer).toString(), HexFormat.of().formatHex(digest.digest()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * @param parsed      false if the parser could not recover from syntax errors, in which case nothing else is known
+     * @param packageName "" in the default package
+     */
+    record FileSummary(String path, String hash, boolean parsed, String packageName, int imports, List<TypeSummary> types,
+                       List<MethodSummary> methods, List<Reference> references) {
+
+        String fileName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+
+    /**
+     * A class, interface, enum, record or annotation type, nested ones included; javadoc
+     * is null when there is none.
+     *
+     * @param isInterface true for interfaces and annotation types
+     * @param supertypes  the extended and implemented types
+     */
+    record TypeSummary(String name, String qualifiedName, boolean isInterface, List<Supertype> supertypes, int methodCount,
+                       int line, int endLine, String javadoc) {
+    }
+
+    /** @param qualifiedName null if the type could not be resolved, and in summaries that are not resolved */
+    record Supertype(String name, String qualifiedName) {
+    }
+
+    /**
+     * @param declaringType      the innermost named type around the method
+     * @param qualifiedSignature as in {@link Reference#target()} when the summary is resolved and the parameter
+     *                           types resolve, else with the parameter types as written
+     */
+    record MethodSummary(String name, String declaringType, String returnType, String parameters, int parameterCount,
+                         String signature, String qualifiedSignature, int line, int endLine, String javadoc) {
+    }
+
+    /**
+     * A use of a method or type.
+     *
+     * @param name            simple name as written
+     * @param arguments       arguments passed by a call; -1 for other kinds
+     * @param target          qualified signature of the method, such as {@code app.Circle.scale(double)}, or
+     *                        qualified name of the type; null if it could not be resolved, and in summaries that
+     *                        are not resolved
+     * @param enclosingMethod method or constructor containing the use; null in field initializers and type headers
+     * @param enclosingMember qualified signature of the enclosing method, as in {@link MethodSummary#qualifiedSignature()}
+     */
+    record Reference(Kind kind, String name, int arguments, String target, String enclosingType, String enclosingMethod,
+                     String enclosingMember, int line, int column) {
+
+        boolean resolved() {
+            return target != null;
+        }
+
+        enum Kind {
+            CALL,
+            METHOD_REFERENCE,
+            TYPE
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.CodeIndexConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * One Java source index per workspace tree, shared by every session that analyzes code
+ * in it. Sources the tree does not track, such as gitignored ones, are parsed on every
+ * request instead, as are sources outside any project, and their references are not
+ * resolved. All indexes parse on one pool of daemon threads, one per core; each resolves
+ * references on its own, one file at a time.
+ */
+@Slf4j
+@Component
+public class JavaSourceIndexes {
+
+    private final WorkspaceTrees workspaceTrees;
+    private final Path directory;
+    private final Path mavenRepository;
+    private final int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private final Scheduler scheduler = Schedulers.newParallel("java-parse", parallelism, true);
+    private final Map<Path, JavaSourceIndex> indexes = new ConcurrentHashMap<>();
+
+    public JavaSourceIndexes(CodeIndexConfig config, WorkspaceTrees workspaceTrees) {
+        this.workspaceTrees = workspaceTrees;
+        this.directory = config.getDirectory() != null
+                ? Path.of(config.getDirectory())
+                : Path.of(System.getProperty("java.io.tmpdir"), "agent-code-index");
+        this.mavenRepository = config.getMavenRepository() != null
+                ? Path.of(config.getMavenRepository())
+                : Path.of(System.getProperty("user.home"), ".m2", "repository");
+    }
+
+    /** Summary of one source file */
+    JavaSourceIndex.FileSummary summarize(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Optional<JavaSourceIndex> index = indexFor(absolute.getParent());
+        if (index.isEmpty()) {
+            return JavaSourceIndex.parse(absolute, absolute.getFileName().toString());
+        }
+        String path = index.get().getTree().relativize(absolute);
+        Optional<JavaSourceIndex.FileSummary> summary = index.get().summary(path);
+        return summary.isPresent() ? summary.get() : JavaSourceIndex.parse(absolute, path);
+    }
+
+    /**
+     * Summaries of the sources in directory, or below it when recursive, each emitted as
+     * soon as it is ready and in no particular order.
+     */
+    Flux<JavaSourceIndex.FileSummary> summarize(Path directory, boolean recursive) {
+        return summaries(directory, recursive, false);
+    }
+
+    /** Summary of one source file with its references resolved, if a project tracks it */
+    Mono<JavaSourceIndex.FileSummary> resolve(Path file) {
+        return Mono.defer(() -> {
+            Path absolute = file.toAbsolutePath().normalize();
+            Optional<JavaSourceIndex> index = indexFor(absolute.getParent());
+            if (index.isEmpty()) {
+                return Mono.fromCallable(() -> JavaSourceIndex.parse(absolute, absolute.getFileName().toString()));
+            }
+            String path = index.get().getTree().relativize(absolute);
+            return index.get().resolvedSummary(path)
+                    .switchIfEmpty(Mono.fromCallable(() -> JavaSourceIndex.parse(absolute, path)));
+        });
+    }
+
+    /**
+     * Summaries of the sources in directory, or below it when recursive, with the references
+     * of those a project tracks resolved, in no particular order.
+     */
+    Flux<JavaSourceIndex.FileSummary> resolve(Path directory, boolean recursive) {
+        return summaries(directory, recursive, true);
+    }
+
+    private Flux<JavaSourceIndex.FileSummary> summaries(Path directory, boolean recursive, boolean resolved) {
+        return Flux.defer(() -> {
+            Path absolute = directory.toAbsolutePath().normalize();
+            Optional<JavaSourceIndex> index = indexFor(absolute);
+            if (index.isPresent()) {
+                String path = index.get().getTree().relativize(absolute);
+                if (index.get().getTree().get(path).filter(node -> !node.ignored()).isPresent()) {
+                    return resolved
+                            ? index.get().resolvedSummaries(path, recursive)
+                            : index.get().summaries(path, recursive);
+                }
+            }
+            // Outside projects and in ignored directories paths are relative to the one asked for
+            Path base = index.map(i -> i.getTree().getRoot()).orElse(absolute);
+            return parseAll(base, Flux.using(() -> recursive ? Files.walk(absolute) : Files.list(absolute),
+                    files -> Flux.fromStream(files.filter(file -> file.toString().endsWith(".java") && Files.isRegularFile(file))),
+                    Stream::close));
+        });
+    }
+
+    /** Summaries of untracked source files, parsed in parallel without caching */
+    private Flux<JavaSourceIndex.FileSummary> parseAll(Path base, Flux<Path> files) {
+        return files
+                .parallel(parallelism)
+                .runOn(scheduler)
+                .flatMap(file -> {
+                    try {
+                        return Mono.just(JavaSourceIndex.parse(file, base.relativize(file).toString().replace('\\', '/')));
+                    } catch (IOException e) {
+                        log.debug("Cannot read {}", file, e);
+                        return Mono.empty();
+                    }
+                })
+                .sequential();
+    }
+
+    private Optional<JavaSourceIndex> indexFor(Path sources) {
+        return workspaceTrees.treeFor(sources).map(tree -> {
+            // Indexes of trees that have since been closed are saved and dropped
+            indexes.values().removeIf(index -> {
+                boolean stale = index.getTree().isClosed() && index.getTree() != tree;
+                if (stale) {
+                    index.close();
+                }
+                return stale;
+            });
+            return indexes.compute(tree.getRoot(), (root, index) -> {
+                if (index != null && index.getTree() == tree) {
+                    return index;
+                }
+                if (index != null) {
+                    index.close();
+                }
+                return JavaSourceIndex.open(tree, scheduler, parallelism, new JavaSymbolResolver(tree, mavenRepository),
+                        this.directory.resolve(tree.storageName(".json")));
+            });
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        indexes.values().forEach(JavaSourceIndex::close);
+        indexes.clear();
+        scheduler.dispose();
+    }
+}
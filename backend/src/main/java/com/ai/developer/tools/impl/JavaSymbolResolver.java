@@ -0,0 +1,228 @@
+package com.ai.developer.tools.impl;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.cache.Cache;
+import com.github.javaparser.symbolsolver.cache.InMemoryCache;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Resolves names in one project's sources to their declarations with the JavaParser
+ * symbol solver, over the JDK, the project's source roots and the jars its pom files
+ * depend on. Source roots are the src/main/java and src/test/java directories of the
+ * project's modules, or the project itself when it has none.
+ *
+ * <p>The solver is built once and only built again when the source roots or the pom
+ * files change, as that means opening every jar again. When other sources change, only
+ * their parsed files and the type lookups of their root are dropped.
+ *
+ * <p>The solver caches what it resolves without synchronization, so a resolver is not
+ * thread-safe; its index resolves one file at a time under a lock of its own. Every
+ * resolver has its own solvers, so projects are resolved independently of each other.
+ */
+@Slf4j
+class JavaSymbolResolver {
+
+    private static final List<String> SOURCE_ROOTS = List.of("src/main/java/", "src/test/java/");
+
+    private final WorkspaceTree tree;
+    private final Path mavenRepository;
+    private JavaSymbolSolver solver;
+    private Cache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> typeCache;
+    // Caches of each source root's solver, by root; "" is the project itself when it has no roots
+    private Map<String, RootCaches> roots = Map.of();
+    private Map<String, Long> poms = Map.of();
+    private Map<String, Long> sources = Map.of();
+    private long treeStamp = -1;
+    private String configuration;
+
+    JavaSymbolResolver(WorkspaceTree tree, Path mavenRepository) {
+        this.tree = tree;
+        this.mavenRepository = mavenRepository;
+    }
+
+    /**
+     * Brings the solver up to date with the tree.
+     *
+     * @return whether the solver was built again, or else the sources that changed since the last call
+     */
+    Changes refresh() {
+        long stamp = tree.subtreeStamp("").orElse(0);
+        if (solver != null && stamp == treeStamp) {
+            return Changes.NONE;
+        }
+        treeStamp = stamp;
+        Set<String> currentRoots = new TreeSet<>();
+        Map<String, Long> currentPoms = new HashMap<>();
+        Map<String, Long> currentSources = new HashMap<>();
+        for (WorkspaceTree.Node node : tree.files("")) {
+            String path = node.path();
+            if (path.equals("pom.xml") || path.endsWith("/pom.xml")) {
+                currentPoms.put(path, node.stamp());
+            } else if (path.endsWith(".java")) {
+                currentSources.put(path, node.stamp());
+                sourceRoot(path).ifPresent(currentRoots::add);
+            }
+        }
+        if (currentRoots.isEmpty()) {
+            currentRoots.add("");
+        }
+
+        if (solver == null || !currentRoots.equals(roots.keySet()) || !currentPoms.equals(poms)) {
+            build(currentRoots, currentPoms);
+            sources = currentSources;
+            return new Changes(true, Set.of());
+        }
+        Set<String> changed = new HashSet<>();
+        currentSources.forEach((path, sourceStamp) -> {
+            if (!sourceStamp.equals(sources.get(path))) {
+                changed.add(path);
+            }
+        });
+        for (String path : sources.keySet()) {
+            if (!currentSources.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+        sources = currentSources;
+        if (!changed.isEmpty()) {
+            changed.forEach(this::evict);
+            typeCache.removeAll();
+        }
+        return new Changes(false, changed);
+    }
+
+    /**
+     * The source roots and the content hashes of the pom files the solver was built from,
+     * which resolutions made with it can be saved with; call {@link #refresh()} first.
+     */
+    String configuration() {
+        return configuration;
+    }
+
+    /** Attaches the solver to unit, so its nodes can be resolved; call {@link #refresh()} first */
+    void inject(CompilationUnit unit) {
+        solver.inject(unit);
+    }
+
+    private void build(Set<String> sourceRoots, Map<String, Long> pomStamps) {
+        long start = System.nanoTime();
+        List<TypeSolver> solvers = new ArrayList<>();
+        solvers.add(new ReflectionTypeSolver(true));
+        ParserConfiguration parserConfiguration = new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
+        Map<String, RootCaches> rootCaches = new TreeMap<>();
+        for (String root : sourceRoots) {
+            RootCaches caches = new RootCaches(tree.getRoot().resolve(root).toAbsolutePath(), InMemoryCache.create(),
+                    InMemoryCache.create(), InMemoryCache.create());
+            solvers.add(new JavaParserTypeSolver(caches.directory(), new JavaParser(parserConfiguration), caches.parsedFiles(),
+                    caches.parsedDirectories(), caches.foundTypes()));
+            rootCaches.put(root, caches);
+        }
+        List<Path> pomFiles = pomStamps.keySet().stream().map(tree.getRoot()::resolve).toList();
+        // A jar solver belongs to the one combined solver it was added to, so jars are opened per build
+        for (Path jar : MavenDependencies.jars(mavenRepository, pomFiles)) {
+            openJar(jar).ifPresent(solvers::add);
+        }
+        typeCache = InMemoryCache.create();
+        solver = new JavaSymbolSolver(new CombinedTypeSolver(CombinedTypeSolver.ExceptionHandlers.IGNORE_NONE, solvers,
+                typeCache));
+        roots = rootCaches;
+        poms = pomStamps;
+        configuration = configuration(sourceRoots, pomStamps.keySet());
+        log.debug("Built the symbol solver of {} over {} source roots and {} jars in {} ms", tree.getRoot(),
+                rootCaches.size(), solvers.size() - rootCaches.size() - 1, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private String configuration(Set<String> sourceRoots, Set<String> pomPaths) {
+        StringBuilder builder = new StringBuilder(String.join(",", sourceRoots));
+        for (String pom : new TreeSet<>(pomPaths)) {
+            builder.append(';').append(pom).append('=');
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(tree.getRoot().resolve(pom)));
+                builder.append(HexFormat.of().formatHex(digest));
+            } catch (IOException e) {
+                // Matches no saved configuration, so nothing resolved before is trusted
+                builder.append("unreadable@").append(System.nanoTime());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return builder.toString();
+    }
+
+    /** Drops what the solver of the file's source root has parsed or found that the file may have changed */
+    private void evict(String path) {
+        roots.forEach((root, caches) -> {
+            if (root.isEmpty() || path.startsWith(root + "/")) {
+                Path file = tree.getRoot().resolve(path).toAbsolutePath();
+                caches.parsedFiles().remove(file);
+                // Directories are cached with the files they hold, so an added or deleted file changes them
+                for (Path directory = file.getParent(); directory != null && directory.startsWith(caches.directory());
+                     directory = directory.getParent()) {
+                    caches.parsedDirectories().remove(directory);
+                }
+                caches.foundTypes().removeAll();
+            }
+        });
+    }
+
+    private static Optional<String> sourceRoot(String path) {
+        for (String root : SOURCE_ROOTS) {
+            int at = path.startsWith(root) ? 0 : path.indexOf("/" + root) + 1;
+            if (at >= 0 && path.startsWith(root, at)) {
+                return Optional.of(path.substring(0, at + root.length() - 1));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<JarTypeSolver> openJar(Path jar) {
+        try {
+            return Optional.of(new JarTypeSolver(jar));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Cannot open {} for symbol resolution", jar, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param rebuilt whether the solver was built again, so everything resolved before may be out of date
+     * @param sources paths of the sources added, changed or deleted otherwise
+     */
+    record Changes(boolean rebuilt, Set<String> sources) {
+
+        static final Changes NONE = new Changes(false, Set.of());
+    }
+
+    private record RootCaches(Path directory,
+                              Cache<Path, Optional<CompilationUnit>> parsedFiles,
+                              Cache<Path, List<CompilationUnit>> parsedDirectories,
+                              Cache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> foundTypes) {
+    }
+}
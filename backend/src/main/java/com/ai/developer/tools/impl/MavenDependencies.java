@@ -0,0 +1,140 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Jars of the dependencies declared in pom files, looked up in a local Maven repository.
+ * Only direct dependencies are found, with ${property} versions taken from the same pom;
+ * a version left to a parent or an imported BOM is taken to be the newest one in the
+ * repository. Nothing is downloaded, so dependencies missing locally are skipped.
+ */
+@Slf4j
+final class MavenDependencies {
+
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+    private MavenDependencies() {
+    }
+
+    static Set<Path> jars(Path repository, Iterable<Path> poms) {
+        Set<Path> jars = new LinkedHashSet<>();
+        for (Path pom : poms) {
+            try {
+                jars(repository, pom, jars);
+            } catch (Exception e) {
+                log.debug("Cannot read dependencies of {}", pom, e);
+            }
+        }
+        return jars;
+    }
+
+    private static void jars(Path repository, Path pom, Set<Path> jars) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        Document document = factory.newDocumentBuilder().parse(pom.toFile());
+        Element project = document.getDocumentElement();
+
+        Map<String, String> properties = new HashMap<>();
+        Optional<Element> parent = child(project, "parent");
+        String version = text(project, "version").or(() -> parent.flatMap(p -> text(p, "version"))).orElse("");
+        properties.put("project.version", version);
+        child(project, "properties").ifPresent(element -> children(element)
+                .forEach(property -> properties.put(property.getTagName(), property.getTextContent().trim())));
+
+        Optional<Element> dependencies = child(project, "dependencies");
+        if (dependencies.isEmpty()) {
+            return;
+        }
+        for (Element dependency : children(dependencies.get()).toList()) {
+            String type = text(dependency, "type").orElse("jar");
+            String scope = text(dependency, "scope").orElse("compile");
+            Optional<String> groupId = text(dependency, "groupId").map(value -> expand(value, properties));
+            Optional<String> artifactId = text(dependency, "artifactId").map(value -> expand(value, properties));
+            if (!type.equals("jar") || scope.equals("system") || groupId.isEmpty() || artifactId.isEmpty()) {
+                continue;
+            }
+            Path artifact = repository.resolve(groupId.get().replace('.', '/')).resolve(artifactId.get());
+            Optional<String> declared = text(dependency, "version")
+                    .map(value -> expand(value, properties))
+                    .filter(value -> !value.contains("${"));
+            Optional<String> resolved = declared.isPresent() ? declared : newestVersion(artifact);
+            resolved.map(v -> artifact.resolve(v).resolve(artifactId.get() + "-" + v + ".jar"))
+                    .filter(Files::isRegularFile)
+                    .ifPresent(jars::add);
+        }
+    }
+
+    private static Optional<String> newestVersion(Path artifact) throws IOException {
+        if (!Files.isDirectory(artifact)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> versions = Files.list(artifact)) {
+            return versions.filter(Files::isDirectory)
+                    .map(path -> path.getFileName().toString())
+                    .max(Comparator.comparing(MavenDependencies::versionKey, MavenDependencies::compareVersions));
+        }
+    }
+
+    private static String[] versionKey(String version) {
+        return version.split("[.-]");
+    }
+
+    /** Compares numerically where both parts are numbers, so 3.10 sorts after 3.9 */
+    private static int compareVersions(String[] a, String[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int order = a[i].matches("\\d{1,9}") && b[i].matches("\\d{1,9}")
+                    ? Integer.compare(Integer.parseInt(a[i]), Integer.parseInt(b[i]))
+                    : a[i].compareTo(b[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static String expand(String value, Map<String, String> properties) {
+        Matcher matcher = PROPERTY.matcher(value);
+        StringBuilder expanded = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(properties.getOrDefault(matcher.group(1), matcher.group())));
+        }
+        return matcher.appendTail(expanded).toString();
+    }
+
+    private static Optional<Element> child(Element element, String name) {
+        return children(element).filter(child -> child.getTagName().equals(name)).findFirst();
+    }
+
+    private static Optional<String> text(Element element, String name) {
+        return child(element, name).map(child -> child.getTextContent().trim()).filter(text -> !text.isEmpty());
+    }
+
+    private static Stream<Element> children(Element element) {
+        Stream.Builder<Element> children = Stream.builder();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element childElement) {
+                children.add(childElement);
+            }
+        }
+        return children.build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.ai.developer.tools.impl;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+
+/**
+ * Glob patterns from tool arguments. A pattern without a slash matches a file name at
+ * any depth ("*.java"); one with a slash matches the path relative to the walk root
+ * ("src/**&#47;*.java").
+ */
+final class PathGlobs {
+
+    static final PathGlobs NONE = new PathGlobs(List.of(), List.of());
+
+    private final List<PathMatcher> nameMatchers;
+    private final List<PathMatcher> pathMatchers;
+
+    private PathGlobs(List<PathMatcher> nameMatchers, List<PathMatcher> pathMatchers) {
+        this.nameMatchers = nameMatchers;
+        this.pathMatchers = pathMatchers;
+    }
+
+    static PathGlobs of(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return NONE;
+        }
+        return new PathGlobs(
+                patterns.stream().filter(p -> !p.contains("/")).map(PathGlobs::matcher).toList(),
+                patterns.stream().filter(p -> p.contains("/")).map(PathGlobs::matcher).toList());
+    }
+
+    boolean isEmpty() {
+        return nameMatchers.isEmpty() && pathMatchers.isEmpty();
+    }
+
+    boolean matches(Path relativePath) {
+        Path name = relativePath.getFileName();
+        for (PathMatcher matcher : nameMatchers) {
+            if (name != null && matcher.matches(name)) {
+                return true;
+            }
+        }
+        for (PathMatcher matcher : pathMatchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PathMatcher matcher(String pattern) {
+        return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+}
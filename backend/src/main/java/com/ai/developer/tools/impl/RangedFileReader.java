@@ -0,0 +1,199 @@
+package com.ai.developer.tools.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads part of a file without loading the rest: a byte range, a line range, or the
+ * first or last lines. The file is read through memory-mapped windows, and line
+ * ranges are located with a sparse index of line offsets that is built once per file
+ * and reused for as long as the file's size and mtime are unchanged. Reading lines
+ * 90,000 to 90,100 of a multi-gigabyte log then maps only the few pages involved.
+ */
+class RangedFileReader {
+
+    // One offset every STRIDE lines keeps the index of a 2 GB log at a few hundred KB
+    private static final int STRIDE = 1024;
+    private static final int WINDOW_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_INDEXED_FILES = 32;
+
+    private final int maxBytes;
+    private final Map<Path, LineIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, LineIndex> eldest) {
+            return size() > MAX_INDEXED_FILES;
+        }
+    };
+
+    RangedFileReader(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Up to length bytes starting at offset */
+    Range readBytes(Path file, long offset, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(Math.max(0, offset), size);
+            long end = Math.min(size, start + Math.max(0, length));
+            return read(channel, start, end, -1, -1, -1, size);
+        }
+    }
+
+    /** Lines firstLine to lastLine, 1-based and inclusive */
+    Range readLines(Path file, long firstLine, long lastLine) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineIndex index = index(file, channel, attributes);
+            long first = Math.max(1, firstLine);
+            long last = Math.min(lastLine, index.lineCount());
+            if (last < first) {
+                return new Range("", index.size(), index.size(), first, first - 1, index.lineCount(), index.size(), false);
+            }
+            long start = index.offsetOf(channel, first - 1);
+            long end = index.offsetOf(channel, last);
+            return read(channel, start, end, first, last, index.lineCount(), index.size());
+        }
+    }
+
+    /** The first count lines, found by scanning from the start without an index */
+    Range head(Path file, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = skipLines(channel, 0, count, size);
+            return read(channel, 0, end, 1, -1, -1, size);
+        }
+    }
+
+    /** The last count lines, found by scanning back from the end without an index */
+    Range tail(Path file, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (count <= 0) {
+                return read(channel, size, size, -1, -1, -1, size);
+            }
+            long start = size;
+            long newlines = 0;
+            // A trailing newline ends the last line rather than starting an empty one
+            long position = size > 0 && byteAt(channel, size - 1) == '\n' ? size - 1 : size;
+            scan:
+            while (position > 0) {
+                long windowStart = Math.max(0, position - WINDOW_BYTES);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, position - windowStart);
+                for (int i = window.limit() - 1; i >= 0; i--) {
+                    if (window.get(i) == '\n' && ++newlines == count) {
+                        start = windowStart + i + 1;
+                        break scan;
+                    }
+                }
+                position = windowStart;
+                start = 0;
+            }
+            return read(channel, start, size, -1, -1, -1, size);
+        }
+    }
+
+    private Range read(FileChannel channel, long start, long end, long firstLine, long lastLine,
+                       long totalLines, long size) throws IOException {
+        boolean truncated = end - start > maxBytes;
+        long readEnd = truncated ? start + maxBytes : end;
+        byte[] bytes = new byte[(int) (readEnd - start)];
+        if (bytes.length > 0) {
+            channel.map(FileChannel.MapMode.READ_ONLY, start, bytes.length).get(bytes);
+        }
+        return new Range(new String(bytes, StandardCharsets.UTF_8), start, readEnd, firstLine, lastLine,
+                totalLines, size, truncated);
+    }
+
+    private LineIndex index(Path file, FileChannel channel, BasicFileAttributes attributes) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        synchronized (indexes) {
+            LineIndex index = indexes.get(key);
+            if (index != null && index.isCurrent(attributes)) {
+                return index;
+            }
+        }
+        // Built outside the lock; two readers of a new file may both build it, which is harmless
+        LineIndex index = LineIndex.build(channel, attributes);
+        synchronized (indexes) {
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /** Position just after the count-th newline from position, or the end of the file */
+    private static long skipLines(FileChannel channel, long position, long count, long size) throws IOException {
+        long remaining = count;
+        while (remaining > 0 && position < size) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_BYTES, size - position));
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '\n' && --remaining == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += limit;
+        }
+        return Math.min(position, size);
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 1).get(0);
+    }
+
+    record Range(String text, long offset, long nextOffset, long firstLine, long lastLine, long totalLines,
+                 long fileSize, boolean truncated) {
+    }
+
+    private record LineIndex(long size, FileTime modified, long[] checkpoints, long lineCount) {
+
+        static LineIndex build(FileChannel channel, BasicFileAttributes attributes) throws IOException {
+            long size = attributes.size();
+            long[] checkpoints = new long[16];
+            int count = 1;
+            long newlines = 0;
+            byte last = '\n';
+            for (long position = 0; position < size; ) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_BYTES, size - position));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    if (window.get(i) == '\n' && ++newlines % STRIDE == 0) {
+                        if (count == checkpoints.length) {
+                            checkpoints = Arrays.copyOf(checkpoints, count * 2);
+                        }
+                        checkpoints[count++] = position + i + 1;
+                    }
+                }
+                last = window.get(limit - 1);
+                position += limit;
+            }
+            long lineCount = newlines + (size > 0 && last != '\n' ? 1 : 0);
+            return new LineIndex(size, attributes.lastModifiedTime(), Arrays.copyOf(checkpoints, count),
+                    lineCount);
+        }
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return attributes.size() == size && attributes.lastModifiedTime().equals(modified);
+        }
+
+        /** Byte offset where the given 0-based line starts */
+        long offsetOf(FileChannel channel, long line) throws IOException {
+            if (line >= lineCount) {
+                return size;
+            }
+            int checkpoint = (int) (line / STRIDE);
+            return skipLines(channel, checkpoints[checkpoint], line % STRIDE, size);
+        }
+    }
+}
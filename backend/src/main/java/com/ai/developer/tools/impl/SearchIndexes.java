@@ -0,0 +1,71 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.SearchIndexConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One trigram index per workspace tree, shared by every session that searches in it
+ * and kept current from the tree's changes.
+ */
+@Slf4j
+@Component
+public class SearchIndexes {
+
+    private final SearchIndexConfig config;
+    private final WorkspaceTrees workspaceTrees;
+    private final Path directory;
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private final Map<Path, TrigramIndex> indexes = new ConcurrentHashMap<>();
+
+    public SearchIndexes(SearchIndexConfig config, WorkspaceTrees workspaceTrees) {
+        this.config = config;
+        this.workspaceTrees = workspaceTrees;
+        this.directory = config.getDirectory() != null
+                ? Path.of(config.getDirectory())
+                : Path.of(System.getProperty("java.io.tmpdir"), "agent-search-index");
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config.getEnabled());
+    }
+
+    /**
+     * The index covering the searched directory, which must be absolute and normalized;
+     * empty outside projects, which have no workspace tree to follow.
+     */
+    Optional<TrigramIndex> indexFor(Path searched) {
+        return workspaceTrees.treeFor(searched).map(tree -> {
+            // Indexes of trees that have since been closed are saved and dropped
+            indexes.values().removeIf(index -> {
+                boolean stale = index.getTree().isClosed() && index.getTree() != tree;
+                if (stale) {
+                    index.close();
+                }
+                return stale;
+            });
+            return indexes.compute(tree.getRoot(), (root, index) -> {
+                if (index != null && index.getTree() == tree) {
+                    return index;
+                }
+                if (index != null) {
+                    index.close();
+                }
+                return TrigramIndex.open(tree, directory.resolve(tree.storageName(".idx")), pool);
+            });
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        indexes.values().forEach(TrigramIndex::close);
+        indexes.clear();
+    }
+}
@@ -0,0 +1,253 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.tools.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Searches file contents under a directory, like grep. Candidate files come from the
+ * project's trigram index, or from the tree walk when gitignored files are searched
+ * too, and are scanned in parallel; each file's matches are emitted as soon as it has
+ * been searched.
+ */
+@Slf4j
+@Component
+public class SearchTool implements Tool {
+
+    private static final int DEFAULT_MATCHES_PER_FILE = 20;
+    private static final int DEFAULT_MAX_RESULTS = 500;
+    private static final int MAX_RESULTS = 10_000;
+    private static final int MAX_CONTEXT_LINES = 10;
+
+    private final FileTreeWalker treeWalker = new FileTreeWalker();
+    private final ContentSearcher searcher = new ContentSearcher();
+    private final SearchIndexes searchIndexes;
+
+    public SearchTool(SearchIndexes searchIndexes) {
+        this.searchIndexes = searchIndexes;
+    }
+
+    @Override
+    public String getName() {
+        return "search";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Search file contents under a directory for a literal string or regular expression";
+    }
+
+    @Override
+    public Map<String, ParameterInfo> getParameters() {
+        Map<String, ParameterInfo> params = new HashMap<>();
+
+        params.put("pattern", ParameterInfo.builder()
+            .type("string")
+            .description("Text or regular expression to search for")
+            .required(true)
+            .build());
+
+        params.put("path", ParameterInfo.builder()
+            .type("string")
+            .description("Directory to search")
+            .required(true)
+            .build());
+
+        params.put("regex", ParameterInfo.builder()
+            .type("boolean")
+            .description("Treat the pattern as a Java regular expression (default false)")
+            .required(false)
+            .build());
+
+        params.put("caseSensitive", ParameterInfo.builder()
+            .type("boolean")
+            .description("Match case exactly (default true)")
+            .required(false)
+            .build());
+
+        params.put("include", ParameterInfo.builder()
+            .type("array")
+            .description("Globs of files to search, e.g. *.java or src/**/*.ts")
+            .required(false)
+            .build());
+
+        params.put("exclude", ParameterInfo.builder()
+            .type("array")
+            .description("Globs of files and directories to skip")
+            .required(false)
+            .build());
+
+        params.put("gitignore", ParameterInfo.builder()
+            .type("boolean")
+            .description("Skip files matched by .gitignore (default true)")
+            .required(false)
+            .build());
+
+        params.put("contextLines", ParameterInfo.builder()
+            .type("integer")
+            .description("Lines of context before and after each match (default 0, at most " + MAX_CONTEXT_LINES + ")")
+            .required(false)
+            .build());
+
+        params.put("maxMatchesPerFile", ParameterInfo.builder()
+            .type("integer")
+            .description("Matching lines to report per file (default " + DEFAULT_MATCHES_PER_FILE + ")")
+            .required(false)
+            .build());
+
+        params.put("maxResults", ParameterInfo.builder()
+            .type("integer")
+            .description("Matching lines to report in total (default " + DEFAULT_MAX_RESULTS + ")")
+            .required(false)
+            .build());
+
+        return params;
+    }
+
+    @Override
+    public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+        String pattern = (String) arguments.get("pattern");
+        String path = (String) arguments.get("path");
+        if (pattern == null || pattern.isEmpty()) {
+            return Flux.error(new IllegalArgumentException("Pattern parameter is required"));
+        }
+        if (path == null) {
+            return Flux.error(new IllegalArgumentException("Path parameter is required"));
+        }
+        Path root = Path.of(path).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return Flux.error(new IllegalArgumentException("Not a directory: " + path));
+        }
+
+        boolean regex = ToolArguments.booleanValue(arguments, "regex", false);
+        boolean caseSensitive = ToolArguments.booleanValue(arguments, "caseSensitive", true);
+        ContentSearcher.Query query;
+        try {
+            query = ContentSearcher.query(pattern, regex, caseSensitive,
+                    Math.min(ToolArguments.intValue(arguments, "contextLines", 0), MAX_CONTEXT_LINES),
+                    Math.max(1, ToolArguments.intValue(arguments, "maxMatchesPerFile", DEFAULT_MATCHES_PER_FILE)));
+        } catch (PatternSyntaxException e) {
+            return Flux.error(new IllegalArgumentException("Invalid regular expression: " + e.getDescription()));
+        }
+        int maxResults = Math.max(1, Math.min(ToolArguments.intValue(arguments, "maxResults", DEFAULT_MAX_RESULTS), MAX_RESULTS));
+        PathGlobs include = PathGlobs.of(ToolArguments.list(arguments, "include"));
+        PathGlobs exclude = PathGlobs.of(ToolArguments.list(arguments, "exclude"));
+        boolean gitignore = ToolArguments.booleanValue(arguments, "gitignore", true);
+
+        return Flux.defer(() -> {
+            AtomicInteger filesSearched = new AtomicInteger();
+            AtomicInteger filesMatched = new AtomicInteger();
+            AtomicInteger matchCount = new AtomicInteger();
+            AtomicBoolean truncated = new AtomicBoolean();
+
+            Flux<Path> files = (gitignore && searchIndexes.isEnabled()
+                    ? indexedFiles(root, TrigramIndex.queryTrigrams(pattern, regex, caseSensitive), include, exclude)
+                    : walkedFiles(root, include, exclude, gitignore))
+                    .doOnNext(file -> filesSearched.incrementAndGet());
+
+            return searcher.search(root, files, query)
+                    .<ToolOutput>handle((matches, sink) -> {
+                        // Stop at the first match past the limit, so a full page is not reported as cut short
+                        int reported = matchCount.get();
+                        if (reported >= maxResults) {
+                            truncated.set(true);
+                            sink.complete();
+                            return;
+                        }
+                        List<ContentSearcher.Match> kept = matches.subList(0, Math.min(matches.size(), maxResults - reported));
+                        matchCount.addAndGet(kept.size());
+                        filesMatched.incrementAndGet();
+                        sink.next(toOutput(kept, query.contextLines() > 0));
+                        if (kept.size() < matches.size()) {
+                            truncated.set(true);
+                            sink.complete();
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() -> summary(path, filesSearched.get(), filesMatched.get(),
+                            matchCount.get(), truncated.get())))
+                    .doOnError(e -> log.error("Error searching {}", path, e));
+        });
+    }
+
+    /**
+     * Files that may match according to the index, filtered like the tree walk would;
+     * outside projects, which have no index, the walk itself.
+     */
+    private Flux<Path> indexedFiles(Path root, int[] trigrams, PathGlobs include, PathGlobs exclude) {
+        return Mono.fromCallable(() -> searchIndexes.indexFor(root))
+                .flatMapMany(index -> index.isEmpty()
+                        ? walkedFiles(root, include, exclude, true)
+                        : Flux.fromIterable(index.get().candidates(root, trigrams))
+                                .filter(file -> include.isEmpty() || include.matches(file))
+                                .filter(file -> {
+                                    // An excluded directory excludes everything below it
+                                    for (int i = 1; i <= file.getNameCount(); i++) {
+                                        if (exclude.matches(file.subpath(0, i))) {
+                                            return false;
+                                        }
+                                    }
+                                    return true;
+                                }));
+    }
+
+    private Flux<Path> walkedFiles(Path root, PathGlobs include, PathGlobs exclude, boolean gitignore) {
+        return treeWalker.walk(root, include, exclude, gitignore, Integer.MAX_VALUE, Integer.MAX_VALUE)
+                .filter(entry -> !entry.directory() && !entry.symbolicLink())
+                .map(entry -> Path.of(entry.path()));
+    }
+
+    private static ToolOutput toOutput(List<ContentSearcher.Match> matches, boolean withContext) {
+        StringBuilder content = new StringBuilder();
+        for (ContentSearcher.Match match : matches) {
+            if (withContext && content.length() > 0) {
+                content.append("--\n");
+            }
+            for (int i = 0; i < match.before().size(); i++) {
+                int line = match.line() - match.before().size() + i;
+                content.append(match.path()).append('-').append(line).append('-').append(match.before().get(i)).append('\n');
+            }
+            content.append(match.path()).append(':').append(match.line()).append(':').append(match.column())
+                    .append(':').append(match.text()).append('\n');
+            for (int i = 0; i < match.after().size(); i++) {
+                content.append(match.path()).append('-').append(match.line() + i + 1).append('-').append(match.after().get(i)).append('\n');
+            }
+        }
+        content.setLength(content.length() - 1);
+
+        return ToolOutput.builder()
+                .type("search_matches")
+                .content(content.toString())
+                .metadata(Map.of(
+                    "path", matches.get(0).path(),
+                    "matches", matches
+                ))
+                .build();
+    }
+
+    private static ToolOutput summary(String path, int filesSearched, int filesMatched, int matches, boolean truncated) {
+        String content = matches == 0
+                ? "No matches in " + filesSearched + " files"
+                : matches + " matching lines in " + filesMatched + " of " + filesSearched + " files searched"
+                        + (truncated ? "; stopped at the result limit, narrow the search with include or exclude" : "");
+        return ToolOutput.builder()
+                .type("search_summary")
+                .content(content)
+                .metadata(Map.of(
+                    "path", path,
+                    "filesSearched", filesSearched,
+                    "filesMatched", filesMatched,
+                    "matches", matches,
+                    "truncated", truncated
+                ))
+                .build();
+    }
+}
@@ -5,15 +5,26 @@ import com.pty4j.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
-import java.io.*;
+import reactor.core.publisher.Mono;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Component
 public class TerminalTool implements Tool {
     
+    private static final Duration COMMAND_TIMEOUT = Duration.ofSeconds(30);
+    
+    private final ToolThreads toolThreads;
+    private final WorkspaceTrees workspaceTrees;
+    
+    public TerminalTool(ToolThreads toolThreads, WorkspaceTrees workspaceTrees) {
+        this.toolThreads = toolThreads;
+        this.workspaceTrees = workspaceTrees;
+    }
+    
     @Override
     public String getName() {
         return "execute_command";
@@ -50,57 +61,42 @@ public class TerminalTool implements Tool {
         String command = (String) arguments.get("command");
         String workingDir = (String) arguments.getOrDefault("workingDirectory", ".");
         
-        return Flux.create(sink -> {
-            try {
-                Map<String, String> env = new HashMap<>(System.getenv());
-                String[] cmd = command.split(" ");
-                
-                PtyProcessBuilder builder = new PtyProcessBuilder()
-                        .setCommand(cmd)
-                        .setEnvironment(env)
-                        .setDirectory(workingDir)
-                        .setRedirectErrorStream(true);
-                
-                PtyProcess process = builder.start();
-                
-                // Read output in separate thread
-                Thread outputReader = new Thread(() -> {
-                    try (BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(process.getInputStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            sink.next(ToolOutput.builder()
-                                    .type("stdout")
-                                    .content(line)
-                                    .metadata(Map.of("command", command))
-                                    .build());
-                        }
-                    } catch (IOException e) {
-                        sink.error(e);
+        // The process lives exactly as long as the subscription: cancelling, failing
+        // or timing out destroys it. Whatever it wrote is in the workspace trees by the end.
+        return workspaceTrees.rescanAfter(Path.of(workingDir), Flux.using(
+                () -> {
+                    Map<String, String> env = new HashMap<>(System.getenv());
+                    String[] cmd = command.split(" ");
+                    
+                    return new PtyProcessBuilder()
+                            .setCommand(cmd)
+                            .setEnvironment(env)
+                            .setDirectory(workingDir)
+                            .setRedirectErrorStream(true)
+                            .start();
+                },
+                process -> toolThreads.outputLines("pty-output", process)
+                        .map(line -> ToolOutput.builder()
+                                .type("stdout")
+                                .content(line)
+                                .metadata(Map.of("command", command))
+                                .build())
+                        .concatWith(Mono.fromCallable(() -> {
+                            int exitCode = process.waitFor();
+                            return ToolOutput.builder()
+                                    .type("exit")
+                                    .content(String.valueOf(exitCode))
+                                    .metadata(Map.of("command", command, "exitCode", exitCode))
+                                    .build();
+                        }))
+                        .mergeWith(Mono.delay(COMMAND_TIMEOUT)
+                                .then(Mono.error(() -> new TimeoutException("Command timed out after 30 seconds"))))
+                        .takeUntil(output -> "exit".equals(output.getType())),
+                process -> {
+                    if (process.isAlive()) {
+                        process.destroyForcibly();
                     }
-                });
-                
-                outputReader.start();
-                
-                // Wait for process completion
-                boolean completed = process.waitFor(30, TimeUnit.SECONDS);
-                if (!completed) {
-                    process.destroyForcibly();
-                    sink.error(new TimeoutException("Command timed out after 30 seconds"));
-                } else {
-                    int exitCode = process.exitValue();
-                    sink.next(ToolOutput.builder()
-                            .type("exit")
-                            .content(String.valueOf(exitCode))
-                            .metadata(Map.of("command", command, "exitCode", exitCode))
-                            .build());
-                    sink.complete();
-                }
-                
-            } catch (Exception e) {
-                log.error("Error executing command: {}", command, e);
-                sink.error(e);
-            }
-        });
+                }))
+                .doOnError(e -> log.error("Error executing command: {}", command, e));
     }
 }
@@ -0,0 +1,55 @@
+package com.ai.developer.tools.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed reads of tool call arguments. Models send numbers and booleans either as JSON
+ * values or as strings, and lists either as arrays or as comma-separated strings, so
+ * both forms are accepted.
+ */
+final class ToolArguments {
+
+    private ToolArguments() {
+    }
+
+    static boolean booleanValue(Map<String, Object> arguments, String name, boolean defaultValue) {
+        Object value = arguments.get(name);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            return Boolean.parseBoolean(text.trim());
+        }
+        return defaultValue;
+    }
+
+    static int intValue(Map<String, Object> arguments, String name, int defaultValue) {
+        Long value = longValue(arguments, name);
+        return value != null ? value.intValue() : defaultValue;
+    }
+
+    /** The argument as a number, or null if it is absent */
+    static Long longValue(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            return Long.parseLong(text.trim());
+        }
+        return null;
+    }
+
+    static List<String> list(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            return Arrays.stream(text.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        }
+        return List.of();
+    }
+}
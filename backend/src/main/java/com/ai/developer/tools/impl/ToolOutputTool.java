@@ -0,0 +1,85 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.tools.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.util.*;
+
+/**
+ * Pages through tool results that were too large for the conversation and were
+ * replaced there by a preview and a handle. Only the session a result was spilled for
+ * can read it; its id comes from the Reactor context of the call.
+ */
+@Slf4j
+@Component
+public class ToolOutputTool implements Tool {
+
+    private final ToolOutputGovernor outputGovernor;
+
+    public ToolOutputTool(ToolOutputGovernor outputGovernor) {
+        this.outputGovernor = outputGovernor;
+    }
+
+    @Override
+    public String getName() {
+        return "tool_output";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Read a range of a large tool result that was saved under a handle";
+    }
+
+    @Override
+    public Map<String, ParameterInfo> getParameters() {
+        Map<String, ParameterInfo> params = new HashMap<>();
+
+        params.put("handle", ParameterInfo.builder()
+            .type("string")
+            .description("Handle of the saved tool output")
+            .required(true)
+            .build());
+
+        params.put("offset", ParameterInfo.builder()
+            .type("integer")
+            .description("Byte offset to start reading at (default 0)")
+            .required(false)
+            .build());
+
+        params.put("length", ParameterInfo.builder()
+            .type("integer")
+            .description("Number of bytes to read (default and maximum " + outputGovernor.getMaxPageBytes() + ")")
+            .required(false)
+            .build());
+
+        return params;
+    }
+
+    @Override
+    public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+        String handle = (String) arguments.get("handle");
+        if (handle == null) {
+            return Flux.error(new IllegalArgumentException("Handle parameter is required"));
+        }
+        long offset = arguments.get("offset") instanceof Number n ? n.longValue() : 0;
+        int length = arguments.get("length") instanceof Number n ? n.intValue() : outputGovernor.getMaxPageBytes();
+
+        return Mono.deferContextual(context -> Mono.fromCallable(() -> {
+            String sessionId = context.getOrDefault(ToolOutputGovernor.SESSION_CONTEXT_KEY, null);
+            ToolOutputGovernor.Page page = outputGovernor.read(sessionId, handle, offset, length);
+            return ToolOutput.builder()
+                    .type("tool_output_page")
+                    .content("[Bytes " + page.offset() + "-" + page.nextOffset() + " of " + page.totalBytes() + "]\n"
+                            + page.content())
+                    .metadata(Map.of(
+                        "handle", handle,
+                        "offset", page.offset(),
+                        "nextOffset", page.nextOffset(),
+                        "totalBytes", page.totalBytes()
+                    ))
+                    .build();
+        })).flux();
+    }
+}
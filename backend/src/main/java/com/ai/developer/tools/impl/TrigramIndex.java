@@ -0,0 +1,667 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram index over the text files of one project. For every three-byte sequence it
+ * keeps the sorted ids of the files containing it, so the files that can match a query
+ * are found by intersecting a few lists instead of reading the tree. Candidates still
+ * have to be verified with an exact search. ASCII letters are indexed in lower case,
+ * which lets one index serve case-sensitive and case-insensitive queries.
+ *
+ * <p>Files the workspace tree reports as changed are reindexed before the next query.
+ * A reindexed file gets a new id and its old id is dropped from the posting lists
+ * lazily, so lists stay sorted by appending alone. Once half the ids are dead, the live
+ * ones are renumbered densely in their old order. The index is saved to disk, compacted,
+ * on close and after full scans, and reconciled with the tree by size and mtime when
+ * reopened.
+ */
+@Slf4j
+class TrigramIndex implements Closeable {
+
+    private static final int MAGIC = 0x54524731;
+    private static final int VERSION = 1;
+    // Id of a file that is binary or too large, which is tracked but never a candidate
+    private static final int NOT_INDEXED = -1;
+
+    // An inline flag group such as (?x) or (?ix:...) that turns on comments mode
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x[a-zA-Z-]*[:)]");
+    private static final ThreadLocal<BitSet> SEEN = ThreadLocal.withInitial(() -> new BitSet(1 << 24));
+
+    private final WorkspaceTree tree;
+    private final Path root;
+    private final Path indexFile;
+    private final ForkJoinPool pool;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final TreeMap<String, FileEntry> files = new TreeMap<>();
+    private final Map<Integer, IntList> postings = new HashMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private int deadIds;
+    // Stamp of the tree state the index reflects; -1 until it has been compared with the tree
+    private long treeStamp = -1;
+
+    private TrigramIndex(WorkspaceTree tree, Path indexFile, ForkJoinPool pool) {
+        this.tree = tree;
+        this.root = tree.getRoot();
+        this.indexFile = indexFile;
+        this.pool = pool;
+    }
+
+    WorkspaceTree getTree() {
+        return tree;
+    }
+
+    static TrigramIndex open(WorkspaceTree tree, Path indexFile, ForkJoinPool pool) {
+        TrigramIndex index = new TrigramIndex(tree, indexFile, pool);
+        if (Files.exists(indexFile)) {
+            try {
+                index.load();
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable search index {}", indexFile, e);
+                index.clear();
+            }
+        }
+        return index;
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    int getFileCount() {
+        lock.readLock().lock();
+        try {
+            return files.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ids handed out since the last compaction, dead ones included */
+    int getIdCount() {
+        lock.readLock().lock();
+        try {
+            return paths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Files under directory, relative to it, that may contain all of the given trigrams;
+     * with no trigrams, every indexed text file under it.
+     */
+    List<Path> candidates(Path directory, int[] trigrams) {
+        refresh();
+        String prefix = root.relativize(directory).toString().replace('\\', '/');
+        lock.readLock().lock();
+        try {
+            List<String> matches = new ArrayList<>();
+            if (trigrams.length == 0) {
+                Map<String, FileEntry> scope = prefix.isEmpty() ? files : files.subMap(prefix + "/", prefix + "0");
+                scope.forEach((path, entry) -> {
+                    if (entry.id() != NOT_INDEXED) {
+                        matches.add(path);
+                    }
+                });
+            } else {
+                for (int id : intersect(trigrams)) {
+                    String path = paths.get(id);
+                    if (path != null && (prefix.isEmpty() || path.startsWith(prefix + "/"))) {
+                        matches.add(path);
+                    }
+                }
+            }
+            List<Path> relative = new ArrayList<>(matches.size());
+            for (String path : matches) {
+                relative.add(Path.of(prefix.isEmpty() ? path : path.substring(prefix.length() + 1)));
+            }
+            return relative;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] intersect(int[] trigrams) {
+        List<IntList> lists = new ArrayList<>();
+        for (int trigram : trigrams) {
+            IntList list = postings.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(IntList::size));
+        int[] result = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] ids, IntList list) {
+        int[] result = new int[Math.min(ids.length, list.size)];
+        int count = 0;
+        int j = 0;
+        for (int id : ids) {
+            // Lists are sorted, so a binary search skips long runs of the larger one
+            j = Arrays.binarySearch(list.values, j, list.size, id);
+            if (j >= 0) {
+                result[count++] = id;
+            } else {
+                j = -j - 1;
+            }
+            if (j >= list.size) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Reindexes the files the workspace tree reports as changed since the last refresh */
+    void refresh() {
+        WorkspaceTree.Changes changes = tree.changesSince(treeStamp);
+        if (changes.complete() && changes.paths().isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // Another query may have applied them while this one waited for the lock
+            changes = tree.changesSince(treeStamp);
+            if (!changes.complete()) {
+                if (reconcile()) {
+                    save();
+                }
+            } else {
+                changes.paths().forEach(this::update);
+            }
+            treeStamp = changes.stamp();
+            if (deadIds > paths.size() / 2) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Compares every file with the tree by size and mtime; true if anything changed */
+    private boolean reconcile() {
+        Map<String, WorkspaceTree.Node> current = new HashMap<>();
+        for (WorkspaceTree.Node node : tree.files("")) {
+            current.put(node.path(), node);
+        }
+
+        Set<String> removed = new HashSet<>(files.keySet());
+        removed.removeAll(current.keySet());
+        removed.forEach(this::remove);
+
+        List<WorkspaceTree.Node> changed = current.values().stream()
+                .filter(node -> {
+                    FileEntry known = files.get(node.path());
+                    return known == null || known.size() != node.size() || known.lastModified() != node.lastModified();
+                })
+                .toList();
+        List<int[]> trigrams = pool.submit(() -> changed.parallelStream()
+                .map(node -> fileTrigrams(root.resolve(node.path())))
+                .toList()).join();
+        for (int i = 0; i < changed.size(); i++) {
+            WorkspaceTree.Node node = changed.get(i);
+            add(node.path(), node.size(), node.lastModified(), trigrams.get(i));
+        }
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            log.debug("Search index of {}: {} files changed, {} removed", root, changed.size(), removed.size());
+        }
+        return !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    private void update(String path) {
+        Optional<WorkspaceTree.Node> node = tree.get(path).filter(WorkspaceTree.Node::isFile);
+        if (node.isEmpty()) {
+            // Deleted, ignored or no longer a file; a deleted directory reports each file in it
+            remove(path);
+            return;
+        }
+        // The tree saw a change, which an edit keeping the size within the mtime's resolution hides from both
+        add(path, node.get().size(), node.get().lastModified(), fileTrigrams(root.resolve(path)));
+    }
+
+    private void add(String path, long size, long lastModified, int[] trigrams) {
+        remove(path);
+        int id = NOT_INDEXED;
+        if (trigrams != null) {
+            id = paths.size();
+            paths.add(path);
+            for (int trigram : trigrams) {
+                postings.computeIfAbsent(trigram, t -> new IntList()).add(id);
+            }
+        }
+        files.put(path, new FileEntry(id, size, lastModified));
+    }
+
+    private void remove(String path) {
+        FileEntry entry = files.remove(path);
+        if (entry != null && entry.id() != NOT_INDEXED) {
+            paths.set(entry.id(), null);
+            deadIds++;
+        }
+    }
+
+    /**
+     * Drops the ids of removed and reindexed files and renumbers the rest from zero. New
+     * ids keep the order of the old ones, so the posting lists stay sorted.
+     */
+    private void compact() {
+        int[] newIds = new int[paths.size()];
+        List<String> live = new ArrayList<>(paths.size() - deadIds);
+        for (int id = 0; id < paths.size(); id++) {
+            String path = paths.get(id);
+            newIds[id] = path == null ? NOT_INDEXED : live.size();
+            if (path != null) {
+                live.add(path);
+            }
+        }
+        postings.values().removeIf(list -> {
+            list.retainIf(id -> newIds[id] != NOT_INDEXED);
+            list.replaceAll(id -> newIds[id]);
+            return list.size == 0;
+        });
+        files.replaceAll((path, entry) -> entry.id() == NOT_INDEXED
+                ? entry
+                : new FileEntry(newIds[entry.id()], entry.size(), entry.lastModified()));
+        paths.clear();
+        paths.addAll(live);
+        deadIds = 0;
+    }
+
+    private void clear() {
+        files.clear();
+        postings.clear();
+        paths.clear();
+        deadIds = 0;
+    }
+
+    /**
+     * Sorted distinct trigrams of a file, or null if it is binary or too large to search.
+     * The file is memory-mapped and a per-thread bitmap of all 2^24 trigrams removes
+     * duplicates without boxing.
+     */
+    static int[] fileTrigrams(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > ContentSearcher.MAX_FILE_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (ContentSearcher.isBinary(buffer)) {
+                return null;
+            }
+            BitSet seen = SEEN.get();
+            IntList found = new IntList();
+            int trigram = 0;
+            for (int i = 0; i < buffer.limit(); i++) {
+                trigram = ((trigram << 8) | lowerAscii(buffer.get(i))) & 0xFFFFFF;
+                if (i >= 2 && !seen.get(trigram)) {
+                    seen.set(trigram);
+                    found.add(trigram);
+                }
+            }
+            for (int i = 0; i < found.size; i++) {
+                seen.clear(found.values[i]);
+            }
+            int[] trigrams = Arrays.copyOf(found.values, found.size);
+            Arrays.sort(trigrams);
+            return trigrams;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Cannot index {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Trigrams every match of the query contains. Empty when nothing is certain, e.g. for
+     * a short literal or a regex made of alternatives, in which case every file is a candidate.
+     */
+    static int[] queryTrigrams(String pattern, boolean regex, boolean caseSensitive) {
+        List<String> literals = regex ? requiredLiterals(pattern) : List.of(pattern);
+        // Inline flags such as (?i) may turn on case-insensitive matching
+        boolean asciiOnly = !caseSensitive || (regex && pattern.contains("(?"));
+        Set<Integer> trigrams = new HashSet<>();
+        for (String literal : literals) {
+            byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+            for (int i = 2; i < bytes.length; i++) {
+                // Case-insensitive matching of non-ASCII text can match other byte sequences
+                if (asciiOnly && (bytes[i - 2] < 0 || bytes[i - 1] < 0 || bytes[i] < 0)) {
+                    continue;
+                }
+                trigrams.add(lowerAscii(bytes[i - 2]) << 16 | lowerAscii(bytes[i - 1]) << 8 | lowerAscii(bytes[i]));
+            }
+        }
+        return trigrams.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Literal runs that must appear in every match of a regex. Conservative: groups,
+     * classes, escapes other than quotes and anything quantified are skipped, and
+     * alternation and comments mode give up entirely.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        // In comments mode whitespace and #-comments in the pattern match nothing
+        if (regex.indexOf('|') >= 0 || COMMENTS_FLAG.matcher(regex).find()) {
+            return literals;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    // Everything up to \E is literal text
+                    int end = regex.indexOf("\\E", i + 2);
+                    String quoted = regex.substring(i + 2, end < 0 ? regex.length() : end);
+                    if (depth == 0) {
+                        run.append(quoted);
+                    }
+                    i = end < 0 ? regex.length() : end + 1;
+                    continue;
+                }
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // A class like \w, a code point, a back reference or a property; none is taken as a literal
+                    flush(run, literals);
+                    i = escapeEnd(regex, i + 1);
+                    continue;
+                }
+                c = regex.charAt(++i);
+            } else if (c == '[') {
+                flush(run, literals);
+                i = classEnd(regex, i);
+                continue;
+            } else if (c == '(') {
+                flush(run, literals);
+                depth++;
+                continue;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                continue;
+            } else if (c == '?' || c == '*' || c == '{') {
+                // The quantified character is optional
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                flush(run, literals);
+                if (c == '{') {
+                    int close = regex.indexOf('}', i);
+                    i = close < 0 ? regex.length() : close;
+                }
+                continue;
+            } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+                flush(run, literals);
+                continue;
+            }
+            if (depth == 0) {
+                run.append(c);
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /** Index of the last character of the escape whose letter or digit is at start */
+    private static int escapeEnd(String regex, int start) {
+        if (start >= regex.length()) {
+            return start;
+        }
+        int next = start + 1;
+        switch (regex.charAt(start)) {
+            case 'x':
+                return next < regex.length() && regex.charAt(next) == '{'
+                        ? closing(regex, next, '}')
+                        : Math.min(start + 2, regex.length() - 1);
+            case 'u':
+                return Math.min(start + 4, regex.length() - 1);
+            case '0': {
+                int end = start;
+                while (end + 1 < regex.length() && end - start < 3 && regex.charAt(end + 1) >= '0'
+                        && regex.charAt(end + 1) <= '7') {
+                    end++;
+                }
+                return end;
+            }
+            case 'c':
+                return Math.min(next, regex.length() - 1);
+            case 'k':
+                return closing(regex, next, '>');
+            case 'p', 'P', 'N', 'b':
+                return next < regex.length() && regex.charAt(next) == '{' ? closing(regex, next, '}') : start;
+            default: {
+                // Back references take as many digits as follow
+                int end = start;
+                while (Character.isDigit(regex.charAt(start)) && end + 1 < regex.length()
+                        && Character.isDigit(regex.charAt(end + 1))) {
+                    end++;
+                }
+                return end;
+            }
+        }
+    }
+
+    private static int closing(String regex, int from, char close) {
+        int end = regex.indexOf(close, from);
+        return end < 0 ? regex.length() - 1 : end;
+    }
+
+    private static int classEnd(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    private static int lowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + 32 : b & 0xFF;
+    }
+
+    /** Compacts the index and writes it to a temporary file, which is then moved into place */
+    private void save() {
+        if (deadIds > 0) {
+            compact();
+        }
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(root.toString());
+                out.writeInt(paths.size());
+                out.writeInt(files.size());
+                for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+                    out.writeUTF(file.getKey());
+                    out.writeInt(file.getValue().id());
+                    out.writeLong(file.getValue().size());
+                    out.writeLong(file.getValue().lastModified());
+                }
+                out.writeInt(postings.size());
+                for (Map.Entry<Integer, IntList> posting : postings.entrySet()) {
+                    IntList list = posting.getValue();
+                    out.writeInt(posting.getKey());
+                    out.writeInt(list.size);
+                    // Ids are sorted and dense, so the gaps between them are small and fit a byte or two
+                    int previous = 0;
+                    for (int i = 0; i < list.size; i++) {
+                        writeVarInt(out, list.values[i] - previous);
+                        previous = list.values[i];
+                    }
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save search index {}", indexFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(root.toString())) {
+                throw new IOException("Not a search index of " + root);
+            }
+            int idCount = in.readInt();
+            for (int i = 0; i < idCount; i++) {
+                paths.add(null);
+            }
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                String path = in.readUTF();
+                FileEntry entry = new FileEntry(in.readInt(), in.readLong(), in.readLong());
+                files.put(path, entry);
+                if (entry.id() != NOT_INDEXED) {
+                    paths.set(entry.id(), path);
+                }
+            }
+            deadIds = idCount - (int) files.values().stream().filter(entry -> entry.id() != NOT_INDEXED).count();
+            int trigramCount = in.readInt();
+            for (int i = 0; i < trigramCount; i++) {
+                int trigram = in.readInt();
+                int count = in.readInt();
+                IntList list = new IntList(count);
+                int id = 0;
+                for (int j = 0; j < count; j++) {
+                    id += readVarInt(in);
+                    list.add(id);
+                }
+                postings.put(trigram, list);
+            }
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            save();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record FileEntry(int id, long size, long lastModified) {
+    }
+
+    /** Growable sorted list of ids, to avoid boxing millions of postings */
+    private static class IntList {
+        private int[] values;
+        private int size;
+
+        IntList() {
+            this(4);
+        }
+
+        IntList(int capacity) {
+            values = new int[Math.max(1, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void retainIf(IntPredicate keep) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (keep.test(values[i])) {
+                    values[kept++] = values[i];
+                }
+            }
+            size = kept;
+            values = Arrays.copyOf(values, Math.max(1, kept));
+        }
+
+        void replaceAll(IntUnaryOperator operator) {
+            for (int i = 0; i < size; i++) {
+                values[i] = operator.applyAsInt(values[i]);
+            }
+        }
+    }
+}
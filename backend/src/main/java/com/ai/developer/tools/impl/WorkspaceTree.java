@@ -0,0 +1,589 @@
+package com.ai.developer.tools.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of a project's file tree: paths, types, sizes and mtimes, with content
+ * hashes computed on demand. It is scanned once and then kept current by a WatchService,
+ * so listings and fingerprints are memory lookups. Gitignored entries are recorded but
+ * not descended into, and neither is .git.
+ *
+ * <p>Every change gets a stamp from a counter, which lets consumers such as the search
+ * index ask what changed since the last stamp they saw. Tools that write files report
+ * the change themselves, so their own writes are visible at once instead of after the
+ * watch event arrives.
+ */
+@Slf4j
+class WorkspaceTree implements Closeable {
+
+    // Changes remembered for changesSince; older stamps get an incomplete answer
+    private static final int MAX_CHANGE_LOG = 100_000;
+    // Without a watch on every directory reads rescan, but no more often than this
+    private static final long RESCAN_INTERVAL_MILLIS = 5_000;
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final Path root;
+    // Tells trees opened at the same root apart, since their stamps both start at zero
+    private final long generation = GENERATIONS.incrementAndGet();
+    private final FileTreeWalker treeWalker;
+    // Rules of the .gitignore files above a tree opened below its repository's root
+    private final GitIgnoreRules outerRules;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock; "" is the root directory
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Map<String, NavigableSet<String>> children = new HashMap<>();
+    // Latest stamp of a change below each directory that has had one
+    private final Map<String, Long> subtreeStamps = new HashMap<>();
+    private final ArrayDeque<Change> changeLog = new ArrayDeque<>();
+    // Paths changed while a rescan walks the tree, which its results must not overwrite; null between rescans
+    private Set<String> changedDuringScan;
+    private long stamp;
+    private long oldestStamp;
+
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private DirectoryWatcher watcher;
+    // False when some directory could not be watched; reads then rescan first
+    private volatile boolean watchingAll;
+    private volatile boolean closed;
+    private final long rescanIntervalMillis;
+    private final ReentrantLock scanLock = new ReentrantLock();
+    private volatile long lastScan;
+
+    private WorkspaceTree(Path root, FileTreeWalker treeWalker, long rescanIntervalMillis) {
+        this.root = root;
+        this.treeWalker = treeWalker;
+        this.outerRules = GitIgnoreRules.above(root);
+        this.rescanIntervalMillis = rescanIntervalMillis;
+    }
+
+    static WorkspaceTree open(Path root, FileTreeWalker treeWalker) {
+        return open(root, treeWalker, listener -> new DirectoryWatcher("workspace-watch", listener), RESCAN_INTERVAL_MILLIS);
+    }
+
+    static WorkspaceTree open(Path root, FileTreeWalker treeWalker, WatcherFactory watcherFactory,
+                              long rescanIntervalMillis) {
+        WorkspaceTree tree = new WorkspaceTree(root, treeWalker, rescanIntervalMillis);
+        try {
+            tree.watcher = watcherFactory.create(tree.new Listener());
+        } catch (IOException e) {
+            log.warn("Cannot watch {}; its tree will be rescanned before every use", root, e);
+        }
+        tree.rescan();
+        // The initial scan is not a change anyone needs to hear about
+        tree.lock.writeLock().lock();
+        try {
+            tree.changeLog.clear();
+            tree.oldestStamp = tree.stamp;
+        } finally {
+            tree.lock.writeLock().unlock();
+        }
+        return tree;
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    /** Name of a file kept about this tree between runs, the same for every tree opened at its root */
+    String storageName(String extension) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(root.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + extension;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Path of an absolute path inside the tree relative to its root, with '/' separators */
+    String relativize(Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    Optional<Node> get(String path) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(nodes.get(path));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Children of a tracked directory sorted by name, or empty if it is unknown or ignored */
+    Optional<List<Node>> list(String directory) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(directory);
+            if (node == null || !node.directory() || node.ignored()) {
+                return Optional.empty();
+            }
+            List<Node> entries = new ArrayList<>();
+            for (String name : children.getOrDefault(directory, new TreeSet<>())) {
+                entries.add(nodes.get(child(directory, name)));
+            }
+            return Optional.of(entries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entries below directory, depth first and sorted by name within each directory.
+     * Gitignored entries are left out. At most maxEntries are returned.
+     */
+    List<Node> walk(String directory, PathGlobs include, PathGlobs exclude, int maxDepth, int maxEntries) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            List<Node> entries = new ArrayList<>();
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            walk(directory, prefix, 1, include, exclude, maxDepth, maxEntries, entries);
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void walk(String directory, String prefix, int depth, PathGlobs include, PathGlobs exclude,
+                      int maxDepth, int maxEntries, List<Node> entries) {
+        for (String name : children.getOrDefault(directory, new TreeSet<>())) {
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+            Node node = nodes.get(child(directory, name));
+            Path relative = Path.of(node.path().substring(prefix.length()));
+            if (node.ignored() || exclude.matches(relative)) {
+                continue;
+            }
+            if (include.isEmpty() || (!node.directory() && include.matches(relative))) {
+                entries.add(node);
+            }
+            if (node.directory() && depth < maxDepth) {
+                walk(node.path(), prefix, depth + 1, include, exclude, maxDepth, maxEntries, entries);
+            }
+        }
+    }
+
+    /** Tracked, not ignored regular files below directory */
+    List<Node> files(String directory) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            List<Node> files = new ArrayList<>();
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            for (Node node : nodes.values()) {
+                if (node.isFile() && node.path().startsWith(prefix)) {
+                    files.add(node);
+                }
+            }
+            return files;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stamp of the latest change to a tracked directory or anything below it, or empty
+     * if the directory is unknown or ignored. Looking it up does not depend on the size of the tree.
+     */
+    OptionalLong subtreeStamp(String directory) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(directory);
+            if (node == null || !node.directory() || node.ignored()) {
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(Math.max(node.stamp(), subtreeStamps.getOrDefault(directory, 0L)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getStamp() {
+        lock.readLock().lock();
+        try {
+            return stamp;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Paths created, modified or deleted after the given stamp. When the stamp is older
+     * than the change log reaches back, the answer is incomplete and the caller has to
+     * compare everything it knows with the tree.
+     */
+    Changes changesSince(long since) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            if (since < oldestStamp) {
+                return new Changes(stamp, Set.of(), false);
+            }
+            Set<String> paths = new HashSet<>();
+            Iterator<Change> iterator = changeLog.descendingIterator();
+            while (iterator.hasNext()) {
+                Change change = iterator.next();
+                if (change.stamp() <= since) {
+                    break;
+                }
+                paths.add(change.path());
+            }
+            return new Changes(stamp, paths, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** SHA-256 of a tracked file's content, cached until the file changes */
+    Optional<String> contentHash(String path) {
+        Optional<Node> node = get(path).filter(Node::isFile);
+        if (node.isEmpty()) {
+            return Optional.empty();
+        }
+        String cached = hashes.get(path);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(root.resolve(path)),
+                MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            String hash = HexFormat.of().formatHex(in.getMessageDigest().digest());
+            // Only kept if the file did not change while it was read
+            if (get(path).equals(node)) {
+                hashes.put(path, hash);
+            }
+            return Optional.of(hash);
+        } catch (IOException e) {
+            return Optional.empty();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Updates the tree for a path that was just written, created or deleted */
+    void changed(Path path) {
+        if (!path.startsWith(root) || path.equals(root)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            update(relativize(path), Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * False while some directory could not be watched, e.g. past the OS watch limit. Reads
+     * then rescan at most every few seconds, so changes made by other programs in the
+     * meantime may not be reflected yet.
+     */
+    boolean isWatchingAll() {
+        return watchingAll;
+    }
+
+    private void ensureCurrent() {
+        // A scan already running in another thread is as good as one started here
+        if (!watchingAll && System.currentTimeMillis() - lastScan >= rescanIntervalMillis && scanLock.tryLock()) {
+            try {
+                rescanLocked();
+            } finally {
+                scanLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Scans the whole tree and records the differences to what was known. The walk runs
+     * without the lock, so paths that watch events or writers update meanwhile keep
+     * their newer state.
+     */
+    void rescan() {
+        scanLock.lock();
+        try {
+            rescanLocked();
+        } finally {
+            scanLock.unlock();
+        }
+    }
+
+    private void rescanLocked() {
+        lastScan = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedDuringScan = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean watching = watcher != null && watcher.register(root);
+        // Sorted, so a directory is applied before what is in it
+        Map<String, Node> found = new TreeMap<>();
+        found.put("", new Node("", true, false, false, 0, 0, 0));
+        for (FileTreeWalker.Entry entry : treeWalker.walk(root, PathGlobs.NONE, PathGlobs.NONE, true, true,
+                Integer.MAX_VALUE, Integer.MAX_VALUE).toIterable()) {
+            if (entry.directory() && !entry.ignored()) {
+                watching &= watcher != null && watcher.register(root.resolve(entry.path()));
+            }
+            found.put(entry.path(), new Node(entry.path(), entry.directory(), entry.symbolicLink(), entry.ignored(),
+                    entry.size(), entry.lastModified(), 0));
+        }
+
+        lock.writeLock().lock();
+        try {
+            Set<String> changed = changedDuringScan;
+            changedDuringScan = null;
+            for (String path : List.copyOf(nodes.keySet())) {
+                // Paths changed during the walk keep their newer state
+                if (!found.containsKey(path) && !changed.contains(path)) {
+                    removeNode(path);
+                }
+            }
+            for (Node node : found.values()) {
+                Node known = nodes.get(node.path());
+                // Likewise, and nothing is added to a directory deleted during the walk
+                if ((known == null || !known.sameAs(node)) && !changed.contains(node.path())
+                        && (node.path().isEmpty() || nodes.containsKey(parentOf(node.path())))) {
+                    putNode(node);
+                }
+            }
+            watchingAll = watching;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Brings one path up to date; a new directory is scanned with everything in it */
+    private void update(String path, boolean scanNewDirectory) {
+        Path file = root.resolve(path);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            attributes = null;
+        }
+        Node parent = nodes.get(parentOf(path));
+        if (attributes == null || parent == null || parent.ignored()) {
+            removeNode(path);
+            return;
+        }
+        GitIgnoreRules rules = rulesFor(parentOf(path));
+        boolean ignored = rules.isIgnored(file, attributes.isDirectory());
+        Node node = new Node(path, attributes.isDirectory(), attributes.isSymbolicLink(), ignored,
+                attributes.isDirectory() ? 0 : attributes.size(), attributes.lastModifiedTime().toMillis(), 0);
+        Node known = nodes.get(path);
+        if (known == null || !known.sameAs(node)) {
+            putNode(node);
+        }
+        if (node.directory() && !ignored && scanNewDirectory && known == null) {
+            watchingAll &= watcher != null && watcher.register(file);
+            scanDirectory(path, rules.enter(file));
+        }
+    }
+
+    private void scanDirectory(String directory, GitIgnoreRules rules) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root.resolve(directory))) {
+            for (Path child : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    // Only this entry is left out; a deleted one is also reported by its own watch event
+                    log.debug("Cannot read attributes of {}", child, e);
+                    continue;
+                }
+                String path = child(directory, child.getFileName().toString());
+                boolean ignored = rules.isIgnored(child, attributes.isDirectory());
+                putNode(new Node(path, attributes.isDirectory(), attributes.isSymbolicLink(), ignored,
+                        attributes.isDirectory() ? 0 : attributes.size(), attributes.lastModifiedTime().toMillis(), 0));
+                if (attributes.isDirectory() && !ignored) {
+                    watchingAll &= watcher != null && watcher.register(child);
+                    scanDirectory(path, rules.enter(child));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Cannot list {}", directory, e);
+        }
+    }
+
+    private GitIgnoreRules rulesFor(String directory) {
+        GitIgnoreRules rules = outerRules.enter(root);
+        Path current = root;
+        if (!directory.isEmpty()) {
+            for (Path name : Path.of(directory)) {
+                current = current.resolve(name);
+                rules = rules.enter(current);
+            }
+        }
+        return rules;
+    }
+
+    private void putNode(Node node) {
+        Node stamped = new Node(node.path(), node.directory(), node.symbolicLink(), node.ignored(), node.size(),
+                node.lastModified(), ++stamp);
+        Node previous = nodes.put(node.path(), stamped);
+        if (!node.path().isEmpty()) {
+            children.computeIfAbsent(parentOf(node.path()), p -> new TreeSet<>()).add(nameOf(node.path()));
+        }
+        if (previous != null && previous.directory() && !node.directory()) {
+            // A directory replaced by a file takes its contents with it
+            removeChildren(node.path());
+        }
+        hashes.remove(node.path());
+        log(node.path());
+    }
+
+    private void removeNode(String path) {
+        if (nodes.remove(path) == null) {
+            return;
+        }
+        removeChildren(path);
+        subtreeStamps.remove(path);
+        NavigableSet<String> siblings = children.get(parentOf(path));
+        if (siblings != null) {
+            siblings.remove(nameOf(path));
+        }
+        hashes.remove(path);
+        stamp++;
+        log(path);
+    }
+
+    private void removeChildren(String directory) {
+        Collection<String> names = children.remove(directory);
+        if (names != null) {
+            for (String name : List.copyOf(names)) {
+                removeNode(child(directory, name));
+            }
+        }
+    }
+
+    private void log(String path) {
+        if (changedDuringScan != null) {
+            changedDuringScan.add(path);
+        }
+        changeLog.addLast(new Change(stamp, path));
+        for (String directory = path; !directory.isEmpty(); ) {
+            directory = parentOf(directory);
+            subtreeStamps.put(directory, stamp);
+        }
+        if (changeLog.size() > MAX_CHANGE_LOG) {
+            oldestStamp = changeLog.removeFirst().stamp();
+        }
+    }
+
+    private static String child(String directory, String name) {
+        return directory.isEmpty() ? name : directory + "/" + name;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** Closed trees stop following changes; holders of one should get the current tree again */
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.debug("Error closing watcher of {}", root, e);
+            }
+        }
+    }
+
+    private class Listener implements DirectoryWatcher.Listener {
+        @Override
+        public void changed(Path path, boolean created) {
+            if (path.getFileName().toString().equals(".gitignore")) {
+                // What is ignored may have changed anywhere below
+                rescan();
+            } else if (path.startsWith(root)) {
+                lock.writeLock().lock();
+                try {
+                    update(relativize(path), created);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        @Override
+        public void overflow() {
+            rescan();
+        }
+    }
+
+    interface WatcherFactory {
+        DirectoryWatcher create(DirectoryWatcher.Listener listener) throws IOException;
+    }
+
+    /** @param stamp value of the change counter when the entry last changed */
+    record Node(String path, boolean directory, boolean symbolicLink, boolean ignored, long size, long lastModified,
+                long stamp) {
+
+        boolean isFile() {
+            return !directory && !symbolicLink && !ignored;
+        }
+
+        boolean sameAs(Node other) {
+            return directory == other.directory && symbolicLink == other.symbolicLink && ignored == other.ignored
+                    && size == other.size && lastModified == other.lastModified;
+        }
+    }
+
+    /** @param complete false if changes before the requested stamp were forgotten */
+    record Changes(long stamp, Set<String> paths, boolean complete) {
+    }
+
+    private record Change(long stamp, String path) {
+    }
+}
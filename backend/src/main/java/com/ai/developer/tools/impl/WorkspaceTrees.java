@@ -0,0 +1,203 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.WorkspaceTreeConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The live file trees of the projects tools work in, one per project and shared by all
+ * sessions and tools. A tree is opened at the enclosing git repository, or at a
+ * configured root, the first time a tool needs a recursive view of it; other
+ * directories get no tree, and tools walk them within their own limits instead. Plain
+ * lookups such as fingerprints only use trees that are already open. Trees left idle,
+ * and the least recently used ones past the configured number, are closed.
+ */
+@Component
+public class WorkspaceTrees {
+
+    private final FileTreeWalker treeWalker = new FileTreeWalker();
+    private final List<Path> configuredRoots;
+    private final int maxOpen;
+    private final long idleMillis;
+    private final Map<Path, OpenTree> trees = new ConcurrentHashMap<>();
+
+    public WorkspaceTrees(WorkspaceTreeConfig config) {
+        this.configuredRoots = config.getRoots().stream()
+                .map(root -> Path.of(root).toAbsolutePath().normalize())
+                .toList();
+        this.maxOpen = Math.max(1, config.getMaxOpen());
+        this.idleMillis = config.getIdleMinutes() * 60_000L;
+    }
+
+    /**
+     * The tree containing directory, opened if directory belongs to a project; empty
+     * outside projects. directory must be absolute and normalized.
+     */
+    Optional<WorkspaceTree> treeFor(Path directory) {
+        Optional<WorkspaceTree> open = find(directory);
+        if (open.isPresent()) {
+            return open;
+        }
+        Path root = projectRoot(directory);
+        if (root == null) {
+            return Optional.empty();
+        }
+        // Opening scans the project, so two tools asking at once must not both do it
+        synchronized (this) {
+            open = find(directory);
+            if (open.isPresent()) {
+                return open;
+            }
+            WorkspaceTree tree = WorkspaceTree.open(root, treeWalker);
+            // A tree opened at a parent replaces those of repositories nested in it
+            trees.entrySet().removeIf(entry -> {
+                boolean nested = entry.getKey().startsWith(root);
+                if (nested) {
+                    entry.getValue().tree.close();
+                }
+                return nested;
+            });
+            trees.put(root, new OpenTree(tree));
+            evictLeastRecentlyUsed(root);
+            return Optional.of(tree);
+        }
+    }
+
+    /** The innermost open tree containing path */
+    Optional<WorkspaceTree> find(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        long now = System.currentTimeMillis();
+        OpenTree found = null;
+        for (OpenTree open : trees.values()) {
+            if (now - open.lastUsed > idleMillis) {
+                close(open);
+            } else if (absolute.startsWith(open.tree.getRoot())
+                    && (found == null || open.tree.getRoot().startsWith(found.tree.getRoot()))) {
+                found = open;
+            }
+        }
+        if (found == null) {
+            return Optional.empty();
+        }
+        found.lastUsed = now;
+        return Optional.of(found.tree);
+    }
+
+    private void evictLeastRecentlyUsed(Path keep) {
+        while (trees.size() > maxOpen) {
+            trees.values().stream()
+                    .filter(open -> !open.tree.getRoot().equals(keep))
+                    .min(Comparator.comparingLong(open -> open.lastUsed))
+                    .ifPresent(this::close);
+        }
+    }
+
+    private void close(OpenTree open) {
+        if (trees.remove(open.tree.getRoot(), open)) {
+            open.tree.close();
+        }
+    }
+
+    /**
+     * Stamp of a file tracked by an open tree; empty if no tree tracks it, or if the tree
+     * is not watching every directory and may be behind.
+     */
+    public Optional<String> fileFingerprint(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        return find(absolute)
+                .filter(WorkspaceTree::isWatchingAll)
+                .flatMap(tree -> tree.get(tree.relativize(absolute)))
+                .filter(WorkspaceTree.Node::isFile)
+                .map(node -> node.size() + ":" + node.lastModified() + ":" + node.stamp());
+    }
+
+    /**
+     * Stamp of the latest change anywhere under directory, from the open tree containing
+     * it. Empty if there is no such tree, or if that tree is not watching every directory.
+     */
+    public Optional<String> treeFingerprint(Path directory) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        return find(absolute)
+                .filter(WorkspaceTree::isWatchingAll)
+                .flatMap(tree -> {
+                    OptionalLong stamp = tree.subtreeStamp(tree.relativize(absolute));
+                    return stamp.isPresent()
+                            ? Optional.of(tree.getGeneration() + ":" + stamp.getAsLong())
+                            : Optional.empty();
+                });
+    }
+
+    /** Tells the open tree containing path, if any, that a tool has just changed it */
+    public void changed(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        find(absolute).ifPresent(tree -> tree.changed(absolute));
+    }
+
+    /**
+     * Scans the open trees containing directory, or inside it, again, after a command run
+     * there may have changed any file. The scan runs before the caller goes on, so stamps
+     * and fingerprints read afterwards cover what the command wrote even if the watch
+     * events for it have not arrived yet.
+     */
+    public void rescan(Path directory) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        for (OpenTree open : List.copyOf(trees.values())) {
+            Path root = open.tree.getRoot();
+            if ((absolute.startsWith(root) || root.startsWith(absolute)) && !open.tree.isClosed()) {
+                open.tree.rescan();
+            }
+        }
+    }
+
+    /**
+     * Emits what output emits, and scans the trees at directory again as {@link #rescan}
+     * does before passing on its end, for tools whose commands write files.
+     */
+    public <T> Flux<T> rescanAfter(Path directory, Flux<T> output) {
+        Mono<Void> rescan = Mono.fromRunnable(() -> rescan(directory));
+        return Flux.usingWhen(Mono.just(directory), ignored -> output,
+                ignored -> rescan, (ignored, error) -> rescan, ignored -> rescan);
+    }
+
+    /** A configured root containing directory, else its git repository, else null */
+    private Path projectRoot(Path directory) {
+        for (Path root : configuredRoots) {
+            if (directory.startsWith(root)) {
+                return root;
+            }
+        }
+        for (Path candidate = directory; candidate != null; candidate = candidate.getParent()) {
+            // .git is a file in worktrees and submodules
+            if (Files.exists(candidate.resolve(".git"))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void close() {
+        trees.values().forEach(open -> open.tree.close());
+        trees.clear();
+    }
+
+    private static final class OpenTree {
+        final WorkspaceTree tree;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        OpenTree(WorkspaceTree tree) {
+            this.tree = tree;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ai.developer.benchmark;
+
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+import com.ai.developer.llm.PersistentList;
+import com.ai.developer.llm.ToolCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-turn history overhead in ChatService: adding the user message and handing
+ * the provider a snapshot, with the old deep defensive copy as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatContextBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int messages;
+
+    private List<Message> history;
+    private PersistentList<Message> persistentHistory;
+    private ChatContext context;
+    private Message userMessage;
+
+    @Setup
+    public void setUp() {
+        history = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            history.add(Message.builder()
+                    .role(i % 2 == 0 ? "user" : "assistant")
+                    .content("Message " + i + ": " + "lorem ipsum ".repeat(20))
+                    .timestamp(Instant.now())
+                    .build());
+        }
+        persistentHistory = PersistentList.copyOf(history);
+        context = ChatContext.builder()
+                .sessionId("benchmark")
+                .messages(persistentHistory)
+                .build();
+        userMessage = Message.builder()
+                .role("user")
+                .content("Next question")
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    @Benchmark
+    public List<Message> defensiveCopyTurn() {
+        history.add(userMessage);
+        List<Message> copy = deepCopy(history);
+        history.remove(history.size() - 1);
+        return copy;
+    }
+
+    @Benchmark
+    public ChatContext persistentSnapshotTurn() {
+        context.setMessages(persistentHistory);
+        context.addMessage(userMessage);
+        return context.snapshot();
+    }
+
+    // Equivalent of the removed ChatService.createDefensiveCopy
+    private static List<Message> deepCopy(List<Message> original) {
+        List<Message> copiedMessages = new ArrayList<>();
+        for (Message msg : original) {
+            Message copiedMsg = Message.builder()
+                    .role(msg.getRole())
+                    .content(msg.getContent())
+                    .timestamp(msg.getTimestamp())
+                    .build();
+            if (msg.getToolCallId() != null) {
+                copiedMsg.setToolCallId(msg.getToolCallId());
+            }
+            if (msg.getToolCall() != null) {
+                copiedMsg.setToolCall(ToolCall.builder()
+                        .id(msg.getToolCall().getId())
+                        .name(msg.getToolCall().getName())
+                        .arguments(msg.getToolCall().getArguments())
+                        .build());
+            }
+            copiedMessages.add(copiedMsg);
+        }
+        return copiedMessages;
+    }
+}
@@ -0,0 +1,133 @@
+package com.ai.developer.benchmark;
+
+import com.ai.developer.llm.providers.ClaudeSseDecoder;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a streamed Claude response of 2000 text deltas, delivered in 8 KB
+ * buffers. The baseline is the previous path: the body decoded to Strings, split
+ * into events, and every event bound to a POJO with ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaudeSseDecoderBenchmark {
+
+    private static final int DELTAS = 2000;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<DataBuffer> buffers;
+
+    @Setup
+    public void setUp() {
+        StringBuilder body = new StringBuilder();
+        body.append("event: message_start\ndata: {\"type\":\"message_start\",\"message\":{\"id\":\"msg_1\",\"type\":\"message\","
+                + "\"role\":\"assistant\",\"content\":[],\"model\":\"claude\",\"usage\":{\"input_tokens\":1200,\"output_tokens\":1}}}\n\n");
+        body.append("event: content_block_start\ndata: {\"type\":\"content_block_start\",\"index\":0,"
+                + "\"content_block\":{\"type\":\"text\",\"text\":\"\"}}\n\n");
+        for (int i = 0; i < DELTAS; i++) {
+            body.append("event: content_block_delta\ndata: {\"type\":\"content_block_delta\",\"index\":0,"
+                    + "\"delta\":{\"type\":\"text_delta\",\"text\":\"token ").append(i).append(" of the answer \"}}\n\n");
+            if (i % 100 == 0) {
+                body.append("event: ping\ndata: {\"type\":\"ping\"}\n\n");
+            }
+        }
+        body.append("event: content_block_stop\ndata: {\"type\":\"content_block_stop\",\"index\":0}\n\n");
+        body.append("event: message_delta\ndata: {\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"end_turn\"},"
+                + "\"usage\":{\"output_tokens\":4000}}\n\n");
+        body.append("event: message_stop\ndata: {\"type\":\"message_stop\"}\n\n");
+
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        buffers = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += BUFFER_SIZE) {
+            int length = Math.min(BUFFER_SIZE, bytes.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(bytes, offset, chunk, 0, length);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+        }
+    }
+
+    @Benchmark
+    public void pojoBinding(Blackhole blackhole) throws Exception {
+        StringBuilder pending = new StringBuilder();
+        for (DataBuffer buffer : buffers) {
+            pending.append(buffer.toString(buffer.readPosition(), buffer.readableByteCount(), StandardCharsets.UTF_8));
+            int end;
+            while ((end = pending.indexOf("\n\n")) >= 0) {
+                String event = pending.substring(0, end);
+                pending.delete(0, end + 2);
+                for (String line : event.split("\n")) {
+                    if (!line.startsWith("data: ")) {
+                        continue;
+                    }
+                    StreamingEvent parsed = objectMapper.readValue(line.substring(6), StreamingEvent.class);
+                    if ("content_block_delta".equals(parsed.getType()) && parsed.getDelta() != null
+                            && parsed.getDelta().getText() != null) {
+                        blackhole.consume(parsed.getDelta().getText());
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamingDecoder(Blackhole blackhole) {
+        ClaudeSseDecoder decoder = new ClaudeSseDecoder(objectMapper.getFactory());
+        ClaudeSseDecoder.Listener listener = (index, text) -> blackhole.consume(text);
+        for (DataBuffer buffer : buffers) {
+            decoder.decode(buffer, listener);
+        }
+        decoder.complete(listener);
+    }
+
+    // Shape of the DTOs the provider bound every event to before the streaming decoder
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StreamingEvent {
+        private String type;
+        private Integer index;
+        @JsonProperty("content_block")
+        private Map<String, Object> contentBlock;
+        private Delta delta;
+        private Map<String, Object> usage;
+        private Map<String, Object> message;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Delta {
+        private String type;
+        private String text;
+        private Map<String, Object> input;
+        @JsonProperty("stop_reason")
+        private String stopReason;
+        @JsonProperty("stop_sequence")
+        private String stopSequence;
+    }
+}
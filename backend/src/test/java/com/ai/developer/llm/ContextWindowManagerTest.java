@@ -0,0 +1,82 @@
+package com.ai.developer.llm;
+
+import com.ai.developer.config.LLMConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContextWindowManagerTest {
+
+    private LLMConfig config;
+    private ContextWindowManager manager;
+    private ChatContext context;
+
+    @BeforeEach
+    void setUp() {
+        config = new LLMConfig();
+        config.setContextTokenBudget(2000);
+        config.setContextRecentTurns(2);
+        manager = new ContextWindowManager(config);
+
+        context = ChatContext.builder().sessionId("test-session").build();
+        context.addMessage(message("system", "You are a helpful AI assistant."));
+    }
+
+    @Test
+    void testHistoryWithinBudgetIsSentVerbatim() {
+        addTurns(2, 100);
+
+        ChatContext window = manager.prepare(context);
+
+        assertSame(context.getMessages(), window.getMessages());
+    }
+
+    @Test
+    void testOlderTurnsAreFoldedIntoSummary() {
+        addTurns(10, 400);
+
+        List<Message> window = manager.prepare(context).getMessages();
+
+        assertEquals("system", window.get(0).getRole());
+        assertTrue(window.get(1).getContent().startsWith("Summary of the earlier conversation"));
+        assertTrue(window.get(1).getContent().contains("question 0"));
+        assertEquals("question 8 " + "x".repeat(400), window.get(2).getContent());
+        assertEquals(6, window.size());
+    }
+
+    @Test
+    void testSummaryIsExtendedIncrementally() {
+        addTurns(10, 400);
+        manager.prepare(context);
+        HistorySummary first = context.getHistorySummary();
+
+        addTurns(1, 400);
+        manager.prepare(context);
+        HistorySummary second = context.getHistorySummary();
+
+        assertEquals(first.getFoldedMessages() + 2, second.getFoldedMessages());
+        assertTrue(second.getText().startsWith(first.getText()));
+    }
+
+    private void addTurns(int turns, int length) {
+        int offset = context.getMessages().size() / 2;
+        for (int i = 0; i < turns; i++) {
+            context.addMessage(message("user", "question " + (offset + i) + " " + "x".repeat(length)));
+            context.addMessage(message("assistant", "answer " + (offset + i) + " " + "y".repeat(length)));
+        }
+    }
+
+    private Message message(String role, String content) {
+        return Message.builder()
+                .role(role)
+                .content(content)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
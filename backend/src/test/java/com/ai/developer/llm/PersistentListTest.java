@@ -0,0 +1,39 @@
+package com.ai.developer.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PersistentListTest {
+
+    @Test
+    void testAppendAcrossTrieLevels() {
+        PersistentList<Integer> list = PersistentList.empty();
+        List<Integer> expected = new ArrayList<>();
+        // 32 * 32 * 2 + 5 crosses the tail, first-level and root-overflow boundaries
+        for (int i = 0; i < 2053; i++) {
+            list = list.append(i);
+            expected.add(i);
+        }
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, list);
+        assertThrows(IndexOutOfBoundsException.class, () -> PersistentList.empty().get(0));
+    }
+
+    @Test
+    void testOlderVersionsAreUnaffectedByAppends() {
+        PersistentList<String> base = PersistentList.copyOf(List.of("system", "user"));
+        PersistentList<String> first = base.append("assistant");
+        PersistentList<String> second = base.append("tool");
+
+        assertEquals(List.of("system", "user"), base);
+        assertEquals(List.of("system", "user", "assistant"), first);
+        assertEquals(List.of("system", "user", "tool"), second);
+        assertThrows(UnsupportedOperationException.class, () -> base.add("mutation"));
+    }
+}
@@ -4,6 +4,7 @@ import com.ai.developer.config.LLMConfig;
 import com.ai.developer.llm.ChatContext;
 import com.ai.developer.llm.Message;
 import com.ai.developer.tools.ToolRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -47,7 +48,7 @@ public class ClaudeLLMProviderTest {
         lenient().when(config.getMaxTokens()).thenReturn(4000);
         lenient().when(config.getTemperature()).thenReturn(0.7);
         
-        provider = new CustomClaudeLLMProvider(config, objectMapper, toolRegistry);
+        provider = new CustomClaudeLLMProvider(config, objectMapper, toolRegistry, new SimpleMeterRegistry());
         
         // Initialize provider but skip actual HTTP client creation
         // This is a test-only approach to avoid real API calls
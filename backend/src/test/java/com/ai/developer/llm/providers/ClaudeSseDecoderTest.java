@@ -0,0 +1,97 @@
+package com.ai.developer.llm.providers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ClaudeSseDecoderTest {
+
+    private static final String STREAM =
+            "event: message_start\r\n"
+            + "data: {\"type\":\"message_start\",\"message\":{\"id\":\"msg_1\",\"usage\":{\"input_tokens\":12,\"cache_read_input_tokens\":7}}}\r\n\r\n"
+            + "event: content_block_delta\n"
+            + "data: {\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":\"Hé \\\"quoted\\\"\"},\"type\":\"content_block_delta\"}\n\n"
+            + ": keep-alive comment\n\n"
+            + "event: content_block_start\n"
+            + "data: {\"type\":\"content_block_start\",\"index\":1,\"content_block\":{\"type\":\"tool_use\",\"id\":\"toolu_1\",\"name\":\"file_system\",\"input\":{}}}\n\n"
+            + "event: content_block_delta\n"
+            + "data: {\"type\":\"content_block_delta\",\"index\":1,\"delta\":{\"type\":\"input_json_delta\",\"partial_json\":\"{\\\"path\\\":\"}}\n\n"
+            + "event: content_block_stop\n"
+            + "data: {\"type\":\"content_block_stop\",\"index\":1}\n\n"
+            + "event: message_delta\n"
+            + "data: {\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"tool_use\",\"stop_sequence\":null},\"usage\":{\"output_tokens\":5}}\n\n"
+            + "event: error\n"
+            + "data: {\"type\":\"error\",\"error\":{\"type\":\"overloaded_error\",\"message\":\"Overloaded\"}}";
+
+    @Test
+    void testEventsSurviveAnyBufferBoundary() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = decode(bytes, bytes.length);
+
+        assertEquals(List.of(
+                "start:12/7",
+                "text:0:Hé \"quoted\"",
+                "tool:1:toolu_1:file_system",
+                "json:1:{\"path\":",
+                "stop:1",
+                "delta:tool_use:5",
+                "error:overloaded_error:Overloaded"), expected);
+
+        for (int chunkSize = 1; chunkSize < 64; chunkSize++) {
+            assertEquals(expected, decode(bytes, chunkSize), "chunk size " + chunkSize);
+        }
+    }
+
+    private List<String> decode(byte[] bytes, int chunkSize) {
+        List<String> events = new ArrayList<>();
+        ClaudeSseDecoder.Listener listener = new ClaudeSseDecoder.Listener() {
+            @Override
+            public void onText(int index, String text) {
+                events.add("text:" + index + ":" + text);
+            }
+
+            @Override
+            public void onToolUseStart(int index, String id, String name) {
+                events.add("tool:" + index + ":" + id + ":" + name);
+            }
+
+            @Override
+            public void onInputJsonDelta(int index, String partialJson) {
+                events.add("json:" + index + ":" + partialJson);
+            }
+
+            @Override
+            public void onContentBlockStop(int index) {
+                events.add("stop:" + index);
+            }
+
+            @Override
+            public void onMessageStart(CustomClaudeLLMProvider.Usage usage) {
+                events.add("start:" + usage.getInputTokens() + "/" + usage.getCacheReadInputTokens());
+            }
+
+            @Override
+            public void onMessageDelta(String stopReason, Integer outputTokens) {
+                events.add("delta:" + stopReason + ":" + outputTokens);
+            }
+
+            @Override
+            public void onError(String type, String message) {
+                events.add("error:" + type + ":" + message);
+            }
+        };
+
+        ClaudeSseDecoder decoder = new ClaudeSseDecoder(new JsonFactory());
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            decoder.decode(ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset)), listener);
+        }
+        decoder.complete(listener);
+        return events;
+    }
+}
@@ -0,0 +1,270 @@
+package com.ai.developer.llm.providers;
+
+import com.ai.developer.config.LLMConfig;
+import com.ai.developer.config.ToolBulkheadConfig;
+import com.ai.developer.config.ToolCacheConfig;
+import com.ai.developer.config.ToolExecutionConfig;
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+import com.ai.developer.llm.ToolCall;
+import com.ai.developer.tools.ParameterInfo;
+import com.ai.developer.tools.Tool;
+import com.ai.developer.tools.ToolOutput;
+import com.ai.developer.tools.ToolRegistry;
+import com.ai.developer.tools.ToolResultCache;
+import com.ai.developer.tools.ToolThreads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs CustomClaudeLLMProvider against a local stub of the Messages API.
+ */
+public class CustomClaudeLLMProviderTest {
+
+    private static final String STREAM = String.join("\n",
+            "event: message_start",
+            "data: {\"type\":\"message_start\",\"message\":{\"id\":\"msg_1\",\"type\":\"message\",\"role\":\"assistant\",\"content\":[],"
+                    + "\"usage\":{\"input_tokens\":12,\"cache_creation_input_tokens\":0,\"cache_read_input_tokens\":2048,\"output_tokens\":1}}}",
+            "",
+            "event: ping",
+            "data: {\"type\":\"ping\"}",
+            "",
+            "event: content_block_start",
+            "data: {\"type\":\"content_block_start\",\"index\":0,\"content_block\":{\"type\":\"text\",\"text\":\"\"}}",
+            "",
+            "event: content_block_delta",
+            "data: {\"type\":\"content_block_delta\",\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":\"Hello\"}}",
+            "",
+            "event: content_block_stop",
+            "data: {\"type\":\"content_block_stop\",\"index\":0}",
+            "",
+            "event: message_delta",
+            "data: {\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"end_turn\"},\"usage\":{\"output_tokens\":5}}",
+            "",
+            "event: message_stop",
+            "data: {\"type\":\"message_stop\"}",
+            "", "");
+
+    private static final String TOOL_USE_STREAM = String.join("\n",
+            "event: content_block_start",
+            "data: {\"type\":\"content_block_start\",\"index\":0,\"content_block\":{\"type\":\"text\",\"text\":\"\"}}",
+            "",
+            "event: content_block_delta",
+            "data: {\"type\":\"content_block_delta\",\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":\"Reading both\"}}",
+            "",
+            "event: content_block_stop",
+            "data: {\"type\":\"content_block_stop\",\"index\":0}",
+            "",
+            "event: content_block_start",
+            "data: {\"type\":\"content_block_start\",\"index\":1,\"content_block\":{\"type\":\"tool_use\",\"id\":\"toolu_1\",\"name\":\"file_system\",\"input\":{}}}",
+            "",
+            "event: content_block_delta",
+            "data: {\"type\":\"content_block_delta\",\"index\":1,\"delta\":{\"type\":\"input_json_delta\",\"partial_json\":\"{\\\"pa\"}}",
+            "",
+            "event: content_block_start",
+            "data: {\"type\":\"content_block_start\",\"index\":2,\"content_block\":{\"type\":\"tool_use\",\"id\":\"toolu_2\",\"name\":\"git_operations\",\"input\":{}}}",
+            "",
+            "event: content_block_delta",
+            "data: {\"type\":\"content_block_delta\",\"index\":1,\"delta\":{\"type\":\"input_json_delta\",\"partial_json\":\"th\\\": \\\"src/A.java\\\"}\"}}",
+            "",
+            "event: content_block_stop",
+            "data: {\"type\":\"content_block_stop\",\"index\":1}",
+            "",
+            "event: content_block_stop",
+            "data: {\"type\":\"content_block_stop\",\"index\":2}",
+            "",
+            "event: message_delta",
+            "data: {\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"tool_use\"},\"usage\":{\"output_tokens\":40}}",
+            "",
+            "event: message_stop",
+            "data: {\"type\":\"message_stop\"}",
+            "", "");
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final AtomicReference<String> responseStream = new AtomicReference<>(STREAM);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HttpServer server;
+    private CustomClaudeLLMProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/messages", exchange -> {
+            requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = responseStream.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        LLMConfig config = new LLMConfig();
+        config.setApiKey("test-api-key");
+        config.setEndpoint("http://localhost:" + server.getAddress().getPort() + "/v1/messages");
+
+        ToolRegistry toolRegistry = new ToolRegistry(mock(ApplicationContext.class), new ToolBulkheadConfig(),
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        toolRegistry.registerTool(tool("file_system"));
+        toolRegistry.registerTool(tool("git_operations"));
+
+        provider = new CustomClaudeLLMProvider(config, objectMapper, toolRegistry, meterRegistry);
+        provider.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testStablePrefixIsMarkedForPromptCaching() throws Exception {
+        ChatContext context = ChatContext.builder().sessionId("test-session").build();
+        context.addMessage(message("system", "You are a helpful AI assistant."));
+        context.addMessage(message("user", "First question"));
+        context.addMessage(message("assistant", "First answer"));
+
+        StepVerifier.create(provider.streamResponse("Second question", context))
+                .expectNext("Hello")
+                .verifyComplete();
+
+        JsonNode request = objectMapper.readTree(requestBody.get());
+        assertEquals("ephemeral", request.at("/system/0/cache_control/type").asText());
+        assertEquals("ephemeral", request.at("/tools/1/cache_control/type").asText());
+        assertFalse(request.at("/tools/0").has("cache_control"));
+
+        JsonNode messages = request.get("messages");
+        assertEquals(3, messages.size());
+        assertEquals("ephemeral", messages.at("/1/content/0/cache_control/type").asText());
+        assertFalse(messages.at("/0/content/0").has("cache_control"));
+        assertFalse(messages.at("/2/content/0").has("cache_control"));
+        assertEquals("Second question", messages.at("/2/content/0/text").asText());
+
+        assertEquals(2048, meterRegistry.counter("llm.tokens", "provider", "claude", "type", "cache_read").count());
+        assertEquals(5, meterRegistry.counter("llm.tokens", "provider", "claude", "type", "output").count());
+    }
+
+    @Test
+    void testToolInputIsAssembledPerContentBlock() {
+        responseStream.set(TOOL_USE_STREAM);
+        ChatContext context = ChatContext.builder().sessionId("test-session").build();
+
+        StepVerifier.create(provider.streamResponse("Read A and show the log", context))
+                .expectNext("Reading both")
+                .expectNext("[TOOL_USE:{\"id\":\"toolu_1\",\"name\":\"file_system\",\"input\":{\"path\":\"src/A.java\"}}]")
+                .expectNext("[TOOL_USE:{\"id\":\"toolu_2\",\"name\":\"git_operations\",\"input\":{}}]")
+                .verifyComplete();
+    }
+
+    @Test
+    void testMalformedToolInputIsReportedWithTheRawInput() {
+        // The stream ends the first block's input in the middle of a string
+        responseStream.set(TOOL_USE_STREAM.replace("\\\"src/A.java\\\"}", "\\\"src/A.ja"));
+        ChatContext context = ChatContext.builder().sessionId("test-session").build();
+
+        StepVerifier.create(provider.streamResponse("Read A", context))
+                .expectNext("Reading both")
+                .assertNext(chunk -> {
+                    assertTrue(chunk.startsWith("[TOOL_USE:{\"id\":\"toolu_1\",\"name\":\"file_system\",\"input\":{},"
+                            + "\"inputError\":\"The input is not valid JSON ("), chunk);
+                    assertTrue(chunk.endsWith("Input received: {\\\"path\\\": \\\"src/A.ja\"}]"), chunk);
+                })
+                .expectNext("[TOOL_USE:{\"id\":\"toolu_2\",\"name\":\"git_operations\",\"input\":{}}]")
+                .verifyComplete();
+    }
+
+    @Test
+    void testToolCallsAndResultsAreSentAsContentBlocks() throws Exception {
+        ChatContext context = ChatContext.builder().sessionId("test-session").build();
+        context.addMessage(message("user", "Read A"));
+        context.addMessage(message("assistant", "Reading"));
+        context.addMessage(Message.builder()
+                .role("assistant")
+                .toolCallId("toolu_1")
+                .toolCall(new ToolCall("toolu_1", "file_system", "{\"path\":\"A.java\"}"))
+                .timestamp(Instant.now())
+                .build());
+        context.addMessage(Message.builder()
+                .role("tool")
+                .toolCallId("toolu_1")
+                .content("class A {}")
+                .timestamp(Instant.now())
+                .build());
+
+        StepVerifier.create(provider.streamResponse(null, context))
+                .expectNext("Hello")
+                .verifyComplete();
+
+        JsonNode messages = objectMapper.readTree(requestBody.get()).get("messages");
+        assertEquals(3, messages.size());
+        assertEquals("assistant", messages.at("/1/role").asText());
+        assertEquals("Reading", messages.at("/1/content/0/text").asText());
+        assertEquals("tool_use", messages.at("/1/content/1/type").asText());
+        assertEquals("A.java", messages.at("/1/content/1/input/path").asText());
+        assertEquals("user", messages.at("/2/role").asText());
+        assertEquals("tool_result", messages.at("/2/content/0/type").asText());
+        assertEquals("toolu_1", messages.at("/2/content/0/tool_use_id").asText());
+        assertEquals("class A {}", messages.at("/2/content/0/content").asText());
+    }
+
+    private Message message(String role, String content) {
+        return Message.builder()
+                .role(role)
+                .content(content)
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private Tool tool(String name) {
+        return new Tool() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Test tool " + name;
+            }
+
+            @Override
+            public Map<String, ParameterInfo> getParameters() {
+                return Map.of("path", ParameterInfo.builder()
+                        .type("string")
+                        .description("File or directory path")
+                        .required(true)
+                        .build());
+            }
+
+            @Override
+            public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+                return Flux.empty();
+            }
+        };
+    }
+}
@@ -0,0 +1,220 @@
+package com.ai.developer.service;
+
+import com.ai.developer.config.AgentConfig;
+import com.ai.developer.config.LLMConfig;
+import com.ai.developer.config.ToolBulkheadConfig;
+import com.ai.developer.config.ToolCacheConfig;
+import com.ai.developer.config.ToolExecutionConfig;
+import com.ai.developer.config.ToolOutputConfig;
+import com.ai.developer.config.ToolOutputWebSocketHandler;
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.ContextWindowManager;
+import com.ai.developer.llm.LLMProvider;
+import com.ai.developer.llm.Message;
+import com.ai.developer.model.ChatRequest;
+import com.ai.developer.model.ChatResponse;
+import com.ai.developer.session.InMemorySessionStore;
+import com.ai.developer.tools.ParameterInfo;
+import com.ai.developer.tools.Tool;
+import com.ai.developer.tools.ToolOutput;
+import com.ai.developer.tools.ToolOutputGovernor;
+import com.ai.developer.tools.ToolRegistry;
+import com.ai.developer.tools.ToolResultCache;
+import com.ai.developer.tools.ToolThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ChatServiceTest {
+
+    private static final String READ_FILE = "[TOOL_USE:{\"id\":\"toolu_1\",\"name\":\"file_system\",\"input\":{\"path\":\"A.java\"}}]";
+    private static final String MALFORMED_READ = "[TOOL_USE:{\"id\":\"toolu_2\",\"name\":\"file_system\",\"input\":{},"
+            + "\"inputError\":\"The input is not valid JSON (Unexpected end-of-input). Input received: {\\\"path\\\": \\\"A.ja\"}]";
+    private static final String READ_SLOW_FILE = "[TOOL_USE:{\"id\":\"toolu_0\",\"name\":\"file_system\",\"input\":{\"path\":\"slow.java\"}}]";
+
+    private final InMemorySessionStore sessionStore = new InMemorySessionStore();
+    private final AgentConfig agentConfig = new AgentConfig();
+    private final List<String> prompts = new ArrayList<>();
+    private final List<List<String>> requestRoles = new ArrayList<>();
+
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        ToolRegistry toolRegistry = new ToolRegistry(mock(ApplicationContext.class), new ToolBulkheadConfig(),
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        toolRegistry.registerTool(fileSystemTool());
+
+        // Calls a tool until it has seen a tool result, then answers
+        LLMProvider llmProvider = new LLMProvider() {
+            @Override
+            public Mono<String> generateResponse(String prompt, ChatContext context) {
+                return Mono.empty();
+            }
+
+            @Override
+            public Flux<String> streamResponse(String prompt, ChatContext context) {
+                prompts.add(prompt);
+                requestRoles.add(context.getMessages().stream().map(Message::getRole).toList());
+                Message last = context.getMessages().get(context.getMessages().size() - 1);
+                if ("tool".equals(last.getRole())) {
+                    return Flux.just("A.java ", "has 3 lines");
+                }
+                if (last.getContent().contains("malformed")) {
+                    return Flux.just(MALFORMED_READ);
+                }
+                return last.getContent().contains("both")
+                        ? Flux.just("Reading", READ_SLOW_FILE, READ_FILE)
+                        : Flux.just("Reading", READ_FILE);
+            }
+
+            @Override
+            public String getProviderName() {
+                return "test";
+            }
+        };
+
+        chatService = new ChatService(llmProvider, toolRegistry, mock(ToolOutputWebSocketHandler.class),
+                new ObjectMapper(), sessionStore, new ContextWindowManager(new LLMConfig()), agentConfig,
+                new ToolOutputGovernor(new ToolOutputConfig()));
+    }
+
+    @Test
+    void testToolResultsAreSentBackUntilEndTurn() {
+        String sessionId = newSession();
+
+        List<ChatResponse> responses = chatService.processMessage(request(sessionId)).collectList().block();
+
+        assertEquals(List.of("null:1:Reading", "tool_call:1", "tool_result:1", "step:2", "null:2:A.java ", "null:2:has 3 lines"),
+                responses.stream().map(this::describe).toList());
+        assertEquals("line 1\n", responses.get(2).getToolCall().getResult());
+
+        // The prompt is only in the context, never passed separately
+        assertEquals(2, prompts.size());
+        prompts.forEach(prompt -> assertNull(prompt));
+        assertEquals(List.of("system", "user", "assistant", "assistant", "tool"), requestRoles.get(1));
+
+        List<Message> history = sessionStore.find(sessionId).orElseThrow().getMessages();
+        assertEquals(List.of("system", "user", "assistant", "assistant", "tool", "assistant"),
+                history.stream().map(Message::getRole).toList());
+        assertEquals("{\"path\":\"A.java\"}", history.get(3).getToolCall().getArguments());
+        assertEquals("toolu_1", history.get(4).getToolCallId());
+        assertEquals("A.java has 3 lines", history.get(5).getContent());
+    }
+
+    @Test
+    void testLoopStopsAtStepBudget() {
+        agentConfig.setMaxSteps(1);
+        String sessionId = newSession();
+
+        List<ChatResponse> responses = chatService.processMessage(request(sessionId)).collectList().block();
+
+        assertEquals(List.of("null:1:Reading", "tool_call:1", "tool_result:1", "budget_exhausted:1"),
+                responses.stream().map(this::describe).toList());
+        assertEquals(1, prompts.size());
+    }
+
+    @Test
+    void testToolCallsOfOneStepRunConcurrentlyAndKeepTheirOrder() {
+        String sessionId = newSession();
+        ChatRequest request = ChatRequest.builder()
+                .sessionId(sessionId)
+                .message("Read both files")
+                .build();
+
+        long start = System.nanoTime();
+        List<ChatResponse> responses = chatService.processMessage(request).collectList().block();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(List.of("null:1:Reading", "tool_call:1", "tool_call:1", "tool_result:1", "tool_result:1", "step:2",
+                "null:2:A.java ", "null:2:has 3 lines"), responses.stream().map(this::describe).toList());
+        assertEquals("toolu_0", responses.get(3).getToolCallId());
+        assertEquals("toolu_1", responses.get(4).getToolCallId());
+        assertTrue(elapsedMillis < 400, "took " + elapsedMillis + " ms");
+
+        List<Message> history = sessionStore.find(sessionId).orElseThrow().getMessages();
+        assertEquals(List.of("system", "user", "assistant", "assistant", "assistant", "tool", "tool", "assistant"),
+                history.stream().map(Message::getRole).toList());
+        assertEquals("slow line\n", history.get(5).getContent());
+        assertEquals("line 1\n", history.get(6).getContent());
+    }
+
+    @Test
+    void testMalformedToolInputIsReturnedToTheModelWithoutCallingTheTool() {
+        String sessionId = newSession();
+        ChatRequest request = ChatRequest.builder()
+                .sessionId(sessionId)
+                .message("Send a malformed call")
+                .build();
+
+        List<ChatResponse> responses = chatService.processMessage(request).collectList().block();
+
+        assertEquals(List.of("tool_call:1", "tool_result:1", "step:2", "null:2:A.java ", "null:2:has 3 lines"),
+                responses.stream().map(this::describe).toList());
+        String result = responses.get(1).getToolCall().getResult();
+        assertTrue(result.startsWith("Error: tool file_system was not called. The input is not valid JSON"), result);
+        assertTrue(result.contains("{\"path\": \"A.ja"), result);
+    }
+
+    private String describe(ChatResponse response) {
+        return response.getEvent() == null
+                ? "null:" + response.getStep() + ":" + response.getMessage()
+                : response.getEvent() + ":" + response.getStep();
+    }
+
+    private String newSession() {
+        return chatService.createSession().block().getSessionId();
+    }
+
+    private ChatRequest request(String sessionId) {
+        return ChatRequest.builder()
+                .sessionId(sessionId)
+                .message("How long is A.java?")
+                .build();
+    }
+
+    private Tool fileSystemTool() {
+        return new Tool() {
+            @Override
+            public String getName() {
+                return "file_system";
+            }
+
+            @Override
+            public String getDescription() {
+                return "Test file system";
+            }
+
+            @Override
+            public Map<String, ParameterInfo> getParameters() {
+                return Map.of();
+            }
+
+            @Override
+            public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+                String path = (String) arguments.get("path");
+                return Mono.delay(Duration.ofMillis(path.startsWith("slow") ? 200 : 0))
+                        .map(tick -> ToolOutput.builder()
+                                .type("text")
+                                .content(path.startsWith("slow") ? "slow line" : "line 1")
+                                .build())
+                        .flux();
+            }
+        };
+    }
+}
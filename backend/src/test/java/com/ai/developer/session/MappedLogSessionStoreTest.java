@@ -0,0 +1,256 @@
+package com.ai.developer.session;
+
+import com.ai.developer.config.SessionStoreConfig;
+import com.ai.developer.llm.ChatContext;
+import com.ai.developer.llm.Message;
+import com.ai.developer.llm.ToolCall;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MappedLogSessionStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private SessionStoreConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new SessionStoreConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeMb(1);
+        config.setCacheMaxSessions(2);
+        config.setCompactionIntervalMinutes(0);
+    }
+
+    @Test
+    void testSessionsSurviveRestart() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext context = newSession("session-1");
+        store.save(context);
+
+        Message toolCall = Message.builder()
+                .role("assistant")
+                .toolCallId("call-1")
+                .toolCall(new ToolCall("call-1", "file_system", "{\"operation\":\"read\"}"))
+                .timestamp(Instant.now())
+                .build();
+        context.addMessage(toolCall);
+        store.append(context, toolCall);
+        store.close();
+
+        ChatContext reloaded = open().find("session-1").orElseThrow();
+        assertEquals(2, reloaded.getMessages().size());
+        assertEquals("system", reloaded.getMessages().get(0).getRole());
+        assertEquals("file_system", reloaded.getMessages().get(1).getToolCall().getName());
+        assertEquals(toolCall.getTimestamp(), reloaded.getMessages().get(1).getTimestamp());
+    }
+
+    @Test
+    void testEvictedSessionsReloadLazily() throws Exception {
+        MappedLogSessionStore store = open();
+        for (int i = 0; i < 5; i++) {
+            store.save(newSession("session-" + i));
+        }
+
+        ChatContext cold = store.find("session-0").orElseThrow();
+        assertEquals(1, cold.getMessages().size());
+        assertTrue(store.find("missing").isEmpty());
+    }
+
+    @Test
+    void testLargeMessagesRollToNewSegment() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext context = newSession("session-large");
+        store.save(context);
+
+        for (int i = 0; i < 3; i++) {
+            Message message = Message.builder()
+                    .role("tool")
+                    .content("x".repeat(700 * 1024))
+                    .timestamp(Instant.now())
+                    .build();
+            context.addMessage(message);
+            store.append(context, message);
+        }
+        store.close();
+
+        ChatContext reloaded = open().find("session-large").orElseThrow();
+        assertEquals(4, reloaded.getMessages().size());
+        assertEquals(700 * 1024, reloaded.getMessages().get(3).getContent().length());
+    }
+
+    @Test
+    void testDeletedSessionsStayDeletedAfterRestart() throws Exception {
+        MappedLogSessionStore store = open();
+        List<String> removed = new ArrayList<>();
+        store.addRemovalListener(removed::add);
+        store.save(newSession("session-1"));
+        store.save(newSession("session-2"));
+
+        assertTrue(store.delete("session-1"));
+        assertFalse(store.delete("session-1"));
+        assertEquals(List.of("session-1"), removed);
+        assertTrue(store.find("session-1").isEmpty());
+        store.close();
+
+        MappedLogSessionStore reopened = open();
+        assertTrue(reopened.find("session-1").isEmpty());
+        assertEquals(1, reopened.find("session-2").orElseThrow().getMessages().size());
+    }
+
+    @Test
+    void testMessagesAppendedAfterDeletionDoNotReviveTheSession() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext context = newSession("session-1");
+        store.save(context);
+        assertTrue(store.delete("session-1"));
+
+        // A reply still streaming when the session was deleted
+        Message late = Message.builder().role("assistant").content("done").timestamp(Instant.now()).build();
+        context.addMessage(late);
+        store.append(context, late);
+
+        assertTrue(store.find("session-1").isEmpty());
+        store.close();
+        assertTrue(open().find("session-1").isEmpty());
+    }
+
+    @Test
+    void testEvictedSessionsAreNotReportedAsRemoved() throws Exception {
+        MappedLogSessionStore store = open();
+        List<String> removed = new ArrayList<>();
+        store.addRemovalListener(removed::add);
+        for (int i = 0; i < 3; i++) {
+            store.save(newSession("session-" + i));
+        }
+        // Evicted from the cache, but still in the log
+        assertEquals(List.of(), removed);
+        assertEquals(1, store.find("session-0").orElseThrow().getMessages().size());
+    }
+
+    @Test
+    void testSystemMessagesAddedLaterReloadFirst() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext context = ChatContext.builder()
+                .sessionId("session-late-system")
+                .messages(new ArrayList<>(List.of(message("user"))))
+                .build();
+        store.save(context);
+        Message system = message("system");
+        context.addMessageFirst(system);
+        store.append(context, system);
+        store.close();
+
+        assertEquals(List.of("system", "user"), open().find("session-late-system").orElseThrow().getMessages().stream()
+                .map(Message::getRole).toList());
+    }
+
+    @Test
+    void testCompactionDropsDeletedSessionsAndKeepsLiveOnes() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext kept = newSession("session-kept");
+        store.save(kept);
+        ChatContext deleted = newSession("session-deleted");
+        store.save(deleted);
+        for (int i = 0; i < 3; i++) {
+            appendLarge(store, kept, "kept " + i);
+            appendLarge(store, deleted, "deleted " + i);
+        }
+        store.delete("session-deleted");
+        List<Path> before = segments();
+        assertTrue(before.size() > 1);
+
+        store.compactIfWorthwhile();
+
+        List<Path> after = segments();
+        assertTrue(after.stream().noneMatch(before.subList(0, before.size() - 1)::contains), after.toString());
+        // Evicted, so reloaded from the snapshot
+        store.save(newSession("session-a"));
+        store.save(newSession("session-b"));
+        assertEquals(4, store.find("session-kept").orElseThrow().getMessages().size());
+
+        appendLarge(store, store.find("session-kept").orElseThrow(), "after compaction");
+        store.close();
+
+        MappedLogSessionStore reopened = open();
+        assertTrue(reopened.find("session-deleted").isEmpty());
+        List<Message> messages = reopened.find("session-kept").orElseThrow().getMessages();
+        assertEquals(List.of("You are a helpful AI assistant.", "kept 0", "kept 1", "kept 2", "after compaction"), messages.stream()
+                .map(message -> message.getContent().split(":")[0])
+                .toList());
+    }
+
+    @Test
+    void testLogsWithoutGarbageAreNotCompacted() throws Exception {
+        MappedLogSessionStore store = open();
+        ChatContext context = newSession("session-1");
+        store.save(context);
+        for (int i = 0; i < 3; i++) {
+            appendLarge(store, context, "message " + i);
+        }
+        List<Path> before = segments();
+
+        store.compactIfWorthwhile();
+
+        assertEquals(before, segments());
+    }
+
+    private void appendLarge(MappedLogSessionStore store, ChatContext context, String label) {
+        Message message = Message.builder()
+                .role("tool")
+                .content(label + ":" + "x".repeat(300 * 1024))
+                .timestamp(Instant.now())
+                .build();
+        context.addMessage(message);
+        store.append(context, message);
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void testSegmentsMustFitOneMapping() {
+        config.setSegmentSizeMb(2048);
+        assertThrows(IllegalArgumentException.class, this::open);
+    }
+
+    private static Message message(String role) {
+        return Message.builder().role(role).content(role + " message").timestamp(Instant.now()).build();
+    }
+
+    private MappedLogSessionStore open() throws Exception {
+        MappedLogSessionStore store = new MappedLogSessionStore(config);
+        store.init();
+        return store;
+    }
+
+    private ChatContext newSession(String sessionId) {
+        List<Message> messages = new ArrayList<>();
+        messages.add(Message.builder()
+                .role("system")
+                .content("You are a helpful AI assistant.")
+                .timestamp(Instant.now())
+                .build());
+        return ChatContext.builder()
+                .sessionId(sessionId)
+                .messages(messages)
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolOutputConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ToolOutputGovernorTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private ToolOutputGovernor governor(int maxResultBytes, int previewBytes) {
+        return governor(maxResultBytes, previewBytes, 1024L * 1024);
+    }
+
+    private ToolOutputGovernor governor(int maxResultBytes, int previewBytes, long maxSpillBytes) {
+        ToolOutputConfig config = new ToolOutputConfig();
+        config.setMaxSpillBytes(maxSpillBytes);
+        config.setMaxResultBytes(maxResultBytes);
+        config.setPreviewBytes(previewBytes);
+        config.setSpillDirectory(spillDirectory.toString());
+        return new ToolOutputGovernor(config);
+    }
+
+    @Test
+    void testSmallResultsAreKeptAsIs() {
+        String result = governor(1024, 16).capture("session", lines(3)).block();
+
+        assertEquals("line 0\nline 1\nline 2\n", result);
+        assertFalse(Files.exists(spillDirectory.resolve("session")));
+    }
+
+    @Test
+    void testLargeResultsAreSpilledAndPaged() throws IOException {
+        ToolOutputGovernor governor = governor(256, 14);
+
+        String preview = governor.capture("session", lines(100)).block();
+
+        assertTrue(preview.startsWith("line 0\nline 1\n\n... ["), preview);
+        assertTrue(preview.endsWith("] ...\nne 98\nline 99\n"), preview);
+        Matcher handle = Pattern.compile("handle ([0-9a-f-]+);").matcher(preview);
+        assertTrue(handle.find());
+
+        ToolOutputGovernor.Page page = governor.read("session", handle.group(1), 7, 14);
+        assertEquals("line 1\nline 2\n", page.content());
+        assertEquals(21, page.nextOffset());
+        assertEquals(790, page.totalBytes());
+    }
+
+    @Test
+    void testPreviewsAndPagesAreCutBetweenCharacters() throws IOException {
+        ToolOutputGovernor governor = governor(256, 14);
+        // Ten bytes a line: two, three and four byte characters and the newline
+        Flux<ToolOutput> outputs = Flux.range(0, 100).map(n -> ToolOutput.builder().content("ä€😀").build());
+
+        String preview = governor.capture("session", outputs).block();
+
+        assertTrue(preview.startsWith("ä€😀\nä\n... [977 of 1000 bytes omitted."), preview);
+        assertTrue(preview.endsWith("] ...\n\nä€😀\n"), preview);
+        ToolOutputGovernor.Page page = governor.read("session", handle(preview), 3, 10);
+        assertEquals("😀\nä", page.content());
+        assertEquals(5, page.offset());
+        assertEquals(12, page.nextOffset());
+    }
+
+    @Test
+    void testContinuedOutputsAreJoinedWithoutANewline() {
+        Flux<ToolOutput> outputs = Flux.just(
+                ToolOutput.builder().content("long ").metadata(Map.of("continued", true)).build(),
+                ToolOutput.builder().content("line").metadata(Map.of("continued", false)).build(),
+                ToolOutput.builder().content("next").build());
+
+        assertEquals("long line\nnext\n", governor(1024, 16).capture("session", outputs).block());
+    }
+
+    @Test
+    void testFailedCallsLeaveNoSpillFile() throws IOException {
+        Flux<ToolOutput> failing = lines(100).concatWith(Flux.error(new IllegalStateException("build failed")));
+
+        governor(256, 14).capture("session", failing).onErrorResume(e -> Mono.empty()).block();
+
+        try (Stream<Path> files = Files.list(spillDirectory.resolve("session"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testHandlesAreOnlyReadableByTheirSession() throws IOException {
+        ToolOutputGovernor governor = governor(256, 14);
+        String handle = handle(governor.capture("session", lines(100)).block());
+
+        assertThrows(IllegalArgumentException.class, () -> governor.read("other", handle, 0, 14));
+        assertThrows(IllegalArgumentException.class, () -> governor.read(null, handle, 0, 14));
+        assertEquals("line 0\n", governor.read("session", handle, 0, 7).content());
+    }
+
+    @Test
+    void testDeletedSessionsTakeTheirSpillsAlong() {
+        ToolOutputGovernor governor = governor(256, 14);
+        String handle = handle(governor.capture("session", lines(100)).block());
+        governor.capture("other", lines(100)).block();
+
+        governor.deleteSession("session");
+
+        assertFalse(Files.exists(spillDirectory.resolve("session")));
+        assertTrue(Files.exists(spillDirectory.resolve("other")));
+        assertThrows(IllegalArgumentException.class, () -> governor.read("session", handle, 0, 14));
+    }
+
+    @Test
+    void testOldestSpillsAreDeletedOverTheByteCap() throws IOException {
+        // Each spill of 100 lines is 790 bytes, so two fit
+        ToolOutputGovernor governor = governor(256, 14, 1600);
+        String first = handle(governor.capture("session", lines(100)).block());
+        String second = handle(governor.capture("session", lines(100)).block());
+        String third = handle(governor.capture("session", lines(100)).block());
+
+        assertThrows(IllegalArgumentException.class, () -> governor.read("session", first, 0, 14));
+        assertEquals(790, governor.read("session", second, 0, 14).totalBytes());
+        assertEquals(790, governor.read("session", third, 0, 14).totalBytes());
+        try (Stream<Path> files = Files.list(spillDirectory.resolve("session"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testSpillsOutliveARestartOnlyWithDurableSessions() throws IOException {
+        ToolOutputGovernor governor = governor(256, 14);
+        governor.setSessionsDurable(true);
+        String handle = handle(governor.capture("session", lines(100)).block());
+        governor.close();
+
+        ToolOutputGovernor restarted = governor(256, 14);
+        restarted.start();
+        assertEquals("line 0\n", restarted.read("session", handle, 0, 7).content());
+        restarted.close();
+
+        assertFalse(Files.exists(spillDirectory.resolve("session").resolve(handle + ".out")));
+    }
+
+    private static String handle(String preview) {
+        Matcher handle = Pattern.compile("handle ([0-9a-f-]+);").matcher(preview);
+        assertTrue(handle.find(), preview);
+        return handle.group(1);
+    }
+
+    private Flux<ToolOutput> lines(int count) {
+        return Flux.range(0, count).map(n -> ToolOutput.builder().content("line " + n).build());
+    }
+}
@@ -0,0 +1,228 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolBulkheadConfig;
+import com.ai.developer.config.ToolCacheConfig;
+import com.ai.developer.config.ToolExecutionConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ToolRegistryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testDefinitionsAreCompiledOncePerToolSetChange() throws Exception {
+        AtomicInteger parameterCalls = new AtomicInteger();
+        ApplicationContext context = mock(ApplicationContext.class);
+        when(context.getBeansOfType(Tool.class)).thenReturn(Map.of("gitTool", tool("git_operations", parameterCalls)));
+
+        ToolRegistry registry = new ToolRegistry(context, new ToolBulkheadConfig(),
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        assertNull(registry.getToolDefinitionsJson(ToolSchemaFormat.CLAUDE));
+        registry.registerTools();
+
+        String first = registry.getToolDefinitionsJson(ToolSchemaFormat.CLAUDE);
+        assertSame(first, registry.getToolDefinitionsJson(ToolSchemaFormat.CLAUDE));
+        assertEquals(1, parameterCalls.get());
+
+        registry.registerTool(tool("file_system", parameterCalls));
+        JsonNode claude = objectMapper.readTree(registry.getToolDefinitionsJson(ToolSchemaFormat.CLAUDE_CACHED));
+        assertEquals(2, claude.size());
+        assertEquals("file_system", claude.at("/0/name").asText());
+        assertEquals(List.of("operation", "path"), fieldNames(claude.at("/0/input_schema/properties")));
+        assertEquals("[\"read\",\"write\"]", claude.at("/0/input_schema/properties/operation/enum").toString());
+        assertEquals("[\"operation\"]", claude.at("/0/input_schema/required").toString());
+        assertFalse(claude.get(0).has("cache_control"));
+        assertEquals("ephemeral", claude.at("/1/cache_control/type").asText());
+
+        JsonNode openAi = objectMapper.readTree(registry.getToolDefinitionsJson(ToolSchemaFormat.OPENAI));
+        assertEquals("function", openAi.at("/1/type").asText());
+        assertEquals("git_operations", openAi.at("/1/function/name").asText());
+        assertEquals("object", openAi.at("/1/function/parameters/type").asText());
+
+        registry.unregisterTool("file_system");
+        assertEquals(first, registry.getToolDefinitionsJson(ToolSchemaFormat.CLAUDE));
+        assertEquals(1, registry.getAvailableToolsInfo().block().size());
+    }
+
+    @Test
+    void testExecutionsAreCappedPerTool() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ToolRegistry registry = new ToolRegistry(mock(ApplicationContext.class), new ToolBulkheadConfig(),
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        registry.registerTool(slowTool(running, maxRunning));
+
+        List<String> results = Flux.range(0, 6)
+                .flatMapSequential(n -> registry.executeTool("slow_tool", Map.of("n", n)))
+                .map(ToolOutput::getContent)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"), results);
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    void testBulkheadRejectsBeyondQueueAndPublishesSettings() {
+        ToolBulkheadConfig.Settings settings = new ToolBulkheadConfig.Settings();
+        settings.setMaxConcurrency(1);
+        settings.setQueueCapacity(1);
+        ToolBulkheadConfig config = new ToolBulkheadConfig();
+        config.getTools().put("slow_tool", settings);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ToolRegistry registry = new ToolRegistry(mock(ApplicationContext.class), config,
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), meterRegistry), meterRegistry);
+        registry.registerTool(slowTool(new AtomicInteger(), new AtomicInteger()));
+
+        // One call runs, one waits and the third finds the queue full
+        List<String> results = Flux.range(0, 3)
+                .flatMapSequential(n -> registry.executeTool("slow_tool", Map.of("n", n))
+                        .map(ToolOutput::getContent)
+                        .onErrorResume(RejectedExecutionException.class, e -> Flux.just("rejected")))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("0", "1", "rejected"), results);
+        assertEquals(1.0, meterRegistry.get("tool.bulkhead.max.concurrency").tag("tool", "slow_tool").gauge().value());
+        assertEquals(1.0, meterRegistry.get("tool.bulkhead.queue.capacity").tag("tool", "slow_tool").gauge().value());
+        assertEquals(1.0, meterRegistry.get("tool.bulkhead.rejected").tag("tool", "slow_tool").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("tool.bulkhead.active").tag("tool", "slow_tool").gauge().value());
+
+        registry.unregisterTool("slow_tool");
+        assertNull(meterRegistry.find("tool.bulkhead.active").tag("tool", "slow_tool").gauge());
+    }
+
+    @Test
+    void testExecutionsArePublishedAsMetrics() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ToolRegistry registry = new ToolRegistry(mock(ApplicationContext.class), new ToolBulkheadConfig(),
+                new ToolThreads(new ToolExecutionConfig()),
+                new ToolResultCache(new ToolCacheConfig(), meterRegistry), meterRegistry);
+        registry.registerTool(slowTool(new AtomicInteger(), new AtomicInteger()));
+
+        registry.executeTool("slow_tool", Map.of("operation", "Read", "n", "hello")).blockLast();
+        registry.executeTool("slow_tool", Map.of("operation", "../etc/passwd", "n", 1)).blockLast();
+        registry.executeTool("slow_tool", Map.of("operation", "read", "n", "fail"))
+                .onErrorResume(e -> Flux.empty())
+                .blockLast();
+
+        Timer succeeded = meterRegistry.get("tool.execution")
+                .tags("tool", "slow_tool", "operation", "read", "outcome", "success").timer();
+        assertEquals(1, succeeded.count());
+        assertTrue(succeeded.totalTime(TimeUnit.MILLISECONDS) >= 50);
+        assertEquals(1, meterRegistry.get("tool.execution").tags("operation", "other").timer().count());
+        assertEquals(1.0, meterRegistry.get("tool.errors")
+                .tags("tool", "slow_tool", "operation", "read", "type", "error").counter().count());
+        assertEquals(5.0, meterRegistry.get("tool.output.bytes").tags("operation", "read").summary().totalAmount());
+        assertEquals(0.0, meterRegistry.get("tool.executions.active").tag("tool", "slow_tool").gauge().value());
+    }
+
+    private Tool slowTool(AtomicInteger running, AtomicInteger maxRunning) {
+        return new Tool() {
+            @Override
+            public String getName() {
+                return "slow_tool";
+            }
+
+            @Override
+            public String getDescription() {
+                return "Sleeps for a while";
+            }
+
+            @Override
+            public Map<String, ParameterInfo> getParameters() {
+                return Map.of();
+            }
+
+            @Override
+            public int getMaxConcurrency() {
+                return 2;
+            }
+
+            @Override
+            public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+                return Flux.defer(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    if ("fail".equals(arguments.get("n"))) {
+                        running.decrementAndGet();
+                        return Flux.error(new IllegalStateException("failed"));
+                    }
+                    return Mono.delay(Duration.ofMillis(50))
+                            .map(tick -> ToolOutput.builder().content(String.valueOf(arguments.get("n"))).build())
+                            .doOnNext(output -> running.decrementAndGet())
+                            .flux();
+                });
+            }
+        };
+    }
+
+    private List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private Tool tool(String name, AtomicInteger parameterCalls) {
+        return new Tool() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Test tool " + name;
+            }
+
+            @Override
+            public Map<String, ParameterInfo> getParameters() {
+                parameterCalls.incrementAndGet();
+                Map<String, ParameterInfo> parameters = new HashMap<>();
+                parameters.put("path", ParameterInfo.builder()
+                        .type("string")
+                        .description("File or directory path")
+                        .build());
+                parameters.put("operation", ParameterInfo.builder()
+                        .type("string")
+                        .description("Operation to perform")
+                        .required(true)
+                        .enumValues(List.of("read", "write"))
+                        .build());
+                return parameters;
+            }
+
+            @Override
+            public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+                return Flux.empty();
+            }
+        };
+    }
+}
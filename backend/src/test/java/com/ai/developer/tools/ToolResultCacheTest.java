@@ -0,0 +1,131 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolCacheConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ToolResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void testUnchangedInputIsServedFromCache() throws Exception {
+        ToolResultCache cache = new ToolResultCache(new ToolCacheConfig(), meterRegistry);
+        Path file = Files.writeString(tempDir.resolve("A.java"), "class A {}");
+        Tool tool = readTool();
+
+        assertEquals(List.of("class A {}"), read(cache, tool, file));
+        assertEquals(List.of("class A {}"), read(cache, tool, Path.of(file.toString())));
+        assertEquals(1, executions.get());
+
+        Files.writeString(file, "class A { int x; }");
+        assertEquals(List.of("class A { int x; }"), read(cache, tool, file));
+        assertEquals(2, executions.get());
+
+        assertEquals(1.0, meterRegistry.get("tool.cache.requests").tags("tool", "reader", "result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("tool.cache.requests").tags("tool", "reader", "result", "miss").counter().count());
+    }
+
+    @Test
+    void testLeastRecentlyUsedResultsAreEvicted() throws Exception {
+        ToolCacheConfig config = new ToolCacheConfig();
+        // Room for two of the results below but not three
+        config.setMaxBytes(3000L);
+        ToolResultCache cache = new ToolResultCache(config, meterRegistry);
+        Tool tool = readTool();
+        Path a = Files.writeString(tempDir.resolve("a.txt"), "a".repeat(400));
+        Path b = Files.writeString(tempDir.resolve("b.txt"), "b".repeat(400));
+        Path c = Files.writeString(tempDir.resolve("c.txt"), "c".repeat(400));
+
+        read(cache, tool, a);
+        read(cache, tool, b);
+        read(cache, tool, a);
+        read(cache, tool, c);
+        assertEquals(3, executions.get());
+        assertEquals(2, cache.getEntryCount());
+
+        // b was the least recently used, so a is still cached
+        read(cache, tool, a);
+        assertEquals(3, executions.get());
+        read(cache, tool, b);
+        assertEquals(4, executions.get());
+        assertEquals(2.0, meterRegistry.get("tool.cache.evictions").counter().count());
+    }
+
+    @Test
+    void testCallsWithoutFingerprintAreNotCached() throws Exception {
+        ToolResultCache cache = new ToolResultCache(new ToolCacheConfig(), meterRegistry);
+        Tool tool = readTool();
+        Path missing = tempDir.resolve("missing.txt");
+
+        cache.cached(tool, Map.of("path", missing.toString()), () -> Flux.defer(() -> {
+            executions.incrementAndGet();
+            return Flux.empty();
+        })).blockLast();
+        cache.cached(tool, Map.of("path", missing.toString()), () -> Flux.defer(() -> {
+            executions.incrementAndGet();
+            return Flux.empty();
+        })).blockLast();
+
+        assertEquals(2, executions.get());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    private List<String> read(ToolResultCache cache, Tool tool, Path file) {
+        Map<String, Object> arguments = Map.of("path", file.toString());
+        return cache.cached(tool, arguments, () -> tool.execute(arguments))
+                .map(ToolOutput::getContent)
+                .collectList()
+                .block();
+    }
+
+    private Tool readTool() {
+        return new Tool() {
+            @Override
+            public String getName() {
+                return "reader";
+            }
+
+            @Override
+            public String getDescription() {
+                return "Reads a file";
+            }
+
+            @Override
+            public Map<String, ParameterInfo> getParameters() {
+                return Map.of();
+            }
+
+            @Override
+            public Optional<String> getCacheFingerprint(Map<String, Object> arguments) {
+                return InputFingerprints.ofFile(Path.of((String) arguments.get("path")));
+            }
+
+            @Override
+            public Flux<ToolOutput> execute(Map<String, Object> arguments) {
+                return Mono.fromCallable(() -> {
+                    executions.incrementAndGet();
+                    return ToolOutput.builder()
+                            .content(Files.readString(Path.of((String) arguments.get("path"))))
+                            .build();
+                }).flux();
+            }
+        };
+    }
+}
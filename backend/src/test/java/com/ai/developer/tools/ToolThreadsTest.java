@@ -0,0 +1,52 @@
+package com.ai.developer.tools;
+
+import com.ai.developer.config.ToolExecutionConfig;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ToolThreadsTest {
+
+    @Test
+    void testVirtualModeFallsBackWithoutVirtualThreads() {
+        ToolExecutionConfig config = new ToolExecutionConfig();
+        config.setMode("virtual");
+
+        ToolThreads toolThreads = new ToolThreads(config);
+
+        assertEquals(Runtime.version().feature() >= 21, toolThreads.isVirtual());
+        assertFalse(new ToolThreads(new ToolExecutionConfig()).isVirtual());
+    }
+
+    @Test
+    void testOutputLinesAreStreamedFromThePump() throws Exception {
+        ToolThreads toolThreads = new ToolThreads(new ToolExecutionConfig());
+        Process process = new ProcessBuilder("sh", "-c", "echo one; echo two").start();
+
+        List<String> lines = toolThreads.outputLines("test-output", process)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("one", "two"), lines);
+        assertEquals(0, process.waitFor());
+    }
+
+    @Test
+    void testCancellingDestroysTheProcess() throws Exception {
+        ToolThreads toolThreads = new ToolThreads(new ToolExecutionConfig());
+        Process process = new ProcessBuilder("sh", "-c", "echo started; sleep 30").start();
+
+        Disposable subscription = toolThreads.outputLines("test-output", process).subscribe();
+        subscription.dispose();
+
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+        assertFalse(process.isAlive());
+    }
+}
@@ -0,0 +1,85 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.tools.ToolOutput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChunkedFileStreamerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ChunkedFileStreamer streamer = new ChunkedFileStreamer();
+
+    @Test
+    void testChunksEndAtLineBreaksAndRejoinToTheFile() throws Exception {
+        String content = IntStream.range(0, 500)
+                .mapToObj(n -> "zeile " + n + " äöü €")
+                .collect(Collectors.joining("\n"));
+        Path file = Files.writeString(tempDir.resolve("umlauts.txt"), content);
+
+        List<ToolOutput> chunks = streamer.stream(file, 64).collectList().block();
+
+        assertTrue(chunks.size() > 100);
+        assertEquals(content, chunks.stream().map(ToolOutput::getContent).collect(Collectors.joining("\n")));
+        assertEquals(0L, chunks.get(0).getMetadata().get("offset"));
+        ToolOutput last = chunks.get(chunks.size() - 1);
+        assertEquals(Files.size(file), (long) last.getMetadata().get("offset") + (int) last.getMetadata().get("length"));
+    }
+
+    /** Joins chunks as consumers do, with a newline after each but those of a line that goes on */
+    private static String join(List<ToolOutput> chunks) {
+        StringBuilder joined = new StringBuilder();
+        for (ToolOutput chunk : chunks) {
+            joined.append(chunk.getContent());
+            if (!Boolean.TRUE.equals(chunk.getMetadata().get("continued"))) {
+                joined.append('\n');
+            }
+        }
+        return joined.substring(0, joined.length() - 1);
+    }
+
+    @Test
+    void testLongLinesAreCutAtCharacterBoundaries() throws Exception {
+        String content = "€".repeat(100) + "\nshort\n" + "ä".repeat(40);
+        Path file = Files.writeString(tempDir.resolve("long.txt"), content);
+
+        List<ToolOutput> chunks = streamer.stream(file, 16).collectList().block();
+
+        assertTrue(chunks.size() > 3);
+        assertEquals(content, join(chunks));
+        assertEquals(false, chunks.get(chunks.size() - 1).getMetadata().get("continued"));
+    }
+
+    @Test
+    void testEmptyFilesAreOneEmptyChunk() throws Exception {
+        Path file = Files.createFile(tempDir.resolve("empty.txt"));
+
+        List<ToolOutput> chunks = streamer.stream(file, 16).collectList().block();
+
+        assertEquals(1, chunks.size());
+        assertEquals("", chunks.get(0).getContent());
+        assertEquals(0L, chunks.get(0).getMetadata().get("offset"));
+        assertEquals(0, chunks.get(0).getMetadata().get("length"));
+    }
+
+    @Test
+    void testBlocksAreReadOnDemand() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("big.txt"), "line\n".repeat(100_000));
+
+        StepVerifier.create(streamer.stream(file, 4096), 1)
+                .assertNext(chunk -> assertEquals(0L, chunk.getMetadata().get("offset")))
+                .thenCancel()
+                .verify();
+    }
+}
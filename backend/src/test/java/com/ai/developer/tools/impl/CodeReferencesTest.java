@@ -0,0 +1,156 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CodeReferencesTest {
+
+    @TempDir
+    Path project;
+
+    private final List<JavaSourceIndex.FileSummary> files = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        add("Shape.java", "interface Shape extends Comparable<Shape> { double area(); }");
+        add("Circle.java", """
+                class Circle implements Shape {
+                    public double area() { return Math.PI * square(radius()); }
+                    double radius() { return 1; }
+                    static double square(double x) { return x * x; }
+                    public int compareTo(Shape other) { return 0; }
+                }
+                """);
+        add("Ring.java", "class Ring extends Circle { public double area() { return super.area() - 1; } }");
+        add("Report.java", """
+                class Report {
+                    Shape shape = new Circle();
+                    double total() { return shape.area() + sum(); }
+                    double sum() { return shape.area(); }
+                    void print() { System.out.println(total()); }
+                }
+                """);
+    }
+
+    private void add(String name, String source) throws Exception {
+        Path file = Files.writeString(project.resolve(name), source);
+        files.add(JavaSourceIndex.parse(file, name));
+    }
+
+    private JavaSourceIndex.FileSummary file(String path) {
+        return files.stream().filter(file -> file.path().equals(path)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testUsagesIncludeCallsAndTypeUses() {
+        List<JavaSourceIndex.Reference> usages = CodeReferences.usages(file("Report.java"), "Shape");
+        assertEquals(1, usages.size());
+        assertEquals(JavaSourceIndex.Reference.Kind.TYPE, usages.get(0).kind());
+        assertNull(usages.get(0).enclosingMethod());
+
+        List<JavaSourceIndex.Reference> calls = CodeReferences.usages(file("Report.java"), "area");
+        assertEquals(List.of(3, 4), calls.stream().map(JavaSourceIndex.Reference::line).toList());
+        assertEquals(List.of("total", "sum"), calls.stream().map(JavaSourceIndex.Reference::enclosingMethod).toList());
+    }
+
+    @Test
+    void testCallHierarchyFollowsCallersOutwards() {
+        CodeReferences.CallHierarchy hierarchy = CodeReferences.callHierarchy(files, "Circle", "area", 3);
+
+        assertEquals(1, hierarchy.declarations().size());
+        assertEquals(List.of("square", "radius"), hierarchy.callees().stream().map(call -> call.reference().name()).toList());
+        // super.area() in Ring, total and sum at depth 1; then total through sum and print through total
+        assertEquals(List.of("Ring.area@1", "Report.total@1", "Report.sum@1", "Report.total@2", "Report.print@2"),
+                hierarchy.callers().stream()
+                        .map(call -> call.reference().enclosingType() + "." + call.reference().enclosingMethod() + "@" + call.depth())
+                        .toList());
+    }
+
+    @Test
+    void testTypeHierarchyGoesBothWays() {
+        CodeReferences.TypeHierarchy hierarchy = CodeReferences.typeHierarchy(files, "Circle", 5);
+
+        assertEquals(List.of("Shape@1", "Comparable@2"), hierarchy.supertypes().stream()
+                .map(type -> type.name() + "@" + type.depth()).toList());
+        assertNull(hierarchy.supertypes().get(1).path());
+        assertEquals(List.of("Ring@1"), hierarchy.subtypes().stream().map(type -> type.name() + "@" + type.depth()).toList());
+
+        assertEquals(List.of("Circle@1", "Ring@2"), CodeReferences.typeHierarchy(files, "Shape", 5).subtypes().stream()
+                .map(type -> type.name() + "@" + type.depth()).toList());
+    }
+
+    @Test
+    void testRecordsEnumsAndAnnotationsAreTypes() throws Exception {
+        add("Sized.java", "interface Sized { int size(); }");
+        add("Box.java", "record Box(int size) implements Sized { }");
+        add("Unit.java", "enum Unit implements Sized { ONE; public int size() { return 1; } }");
+        add("Marker.java", "@interface Marker { }");
+
+        assertEquals(List.of("Box@1", "Unit@1"), CodeReferences.typeHierarchy(files, "Sized", 5).subtypes().stream()
+                .map(type -> type.name() + "@" + type.depth()).toList());
+        CodeReferences.TypeHierarchy unit = CodeReferences.typeHierarchy(files, "Unit", 5);
+        assertEquals(List.of("Sized.java"), unit.supertypes().stream().map(CodeReferences.TypeNode::path).toList());
+        assertEquals(1, unit.declarations().get(0).line());
+        assertTrue(file("Marker.java").types().get(0).isInterface());
+    }
+
+    @Test
+    void testResolvedCallsAreToldApartFromSameNamedMethods() throws Exception {
+        Path sources = Files.createDirectories(project.resolve("resolved/src/main/java/geo"));
+        Files.writeString(sources.resolve("Area.java"), "package geo; public interface Area { double area(); }");
+        Files.writeString(sources.resolve("Square.java"), """
+                package geo;
+                public class Square implements Area {
+                    public double area() { return 4; }
+                    public double area(double scale) { return area() * scale; }
+                }
+                """);
+        Files.writeString(sources.resolve("Land.java"), "package geo; public class Land { public double area() { return 9; } }");
+        Files.writeString(sources.resolve("Survey.java"), """
+                package geo;
+                class Survey {
+                    double total(Area shape, Land land) { return shape.area() + land.area(); }
+                    double report(Area shape, Land land) { return total(shape, land); }
+                    double size(Land land) { return land.area(); }
+                }
+                """);
+        WorkspaceTree tree = WorkspaceTree.open(project.resolve("resolved"), new FileTreeWalker());
+        try {
+            JavaSourceIndex index = new JavaSourceIndex(tree, Schedulers.parallel(), 4,
+                    new JavaSymbolResolver(tree, project.resolve("m2")), null);
+            List<JavaSourceIndex.FileSummary> summaries = index.resolvedSummaries("", true).collectList().block();
+
+            CodeReferences.CallHierarchy hierarchy = CodeReferences.callHierarchy(summaries, "Square", "area", 3);
+            // area() through the interface and from the overload, but neither Land.area() nor size
+            assertEquals(List.of("geo.Square.area(double)@1", "geo.Survey.total(geo.Area, geo.Land)@1",
+                            "geo.Survey.report(geo.Area, geo.Land)@2"),
+                    hierarchy.callers().stream()
+                            .sorted(Comparator.comparing(CodeReferences.Call::depth)
+                                    .thenComparing(call -> call.reference().enclosingMember()))
+                            .map(call -> call.reference().enclosingMember() + "@" + call.depth())
+                            .toList());
+            assertTrue(hierarchy.callers().stream().allMatch(CodeReferences.Call::resolved));
+
+            JavaSourceIndex.FileSummary survey = summaries.stream()
+                    .filter(file -> file.path().endsWith("Survey.java")).findFirst().orElseThrow();
+            assertEquals(List.of(3, 5), CodeReferences.usages(survey, "geo.Land.area").stream()
+                    .map(JavaSourceIndex.Reference::line).toList());
+            assertEquals(List.of("geo.Square@1"), CodeReferences.typeHierarchy(summaries, "geo.Area", 2).subtypes().stream()
+                    .map(type -> type.qualifiedName() + "@" + type.depth()).toList());
+        } finally {
+            tree.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentSearcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ContentSearcher searcher = new ContentSearcher();
+
+    @Test
+    void testLiteralMatchesReportLineColumnAndContext() throws Exception {
+        Files.writeString(tempDir.resolve("App.java"), "package app;\n\nclass App {\n    void run() { run(); }\n}\n");
+
+        List<ContentSearcher.Match> matches = searcher.searchFile(tempDir, Path.of("App.java"),
+                ContentSearcher.query("run(", false, true, 1, 10));
+
+        assertEquals(1, matches.size());
+        ContentSearcher.Match match = matches.get(0);
+        assertEquals(4, match.line());
+        assertEquals(10, match.column());
+        assertEquals("    void run() { run(); }", match.text());
+        assertEquals(List.of("class App {"), match.before());
+        assertEquals(List.of("}"), match.after());
+    }
+
+    @Test
+    void testRegexCaseInsensitiveAndPerFileCap() throws Exception {
+        Files.writeString(tempDir.resolve("notes.txt"), "TODO one\nnothing\ntodo two\nToDo three\n");
+
+        List<ContentSearcher.Match> matches = searcher.searchFile(tempDir, Path.of("notes.txt"),
+                ContentSearcher.query("^todo \\w+", true, false, 0, 2));
+
+        assertEquals(2, matches.size());
+        assertEquals(1, matches.get(0).line());
+        assertEquals(3, matches.get(1).line());
+    }
+
+    @Test
+    void testBinaryFilesAreSkipped() throws Exception {
+        Files.write(tempDir.resolve("blob.bin"), new byte[] {'k', 'e', 'y', 0, 'k', 'e', 'y'});
+
+        assertTrue(searcher.searchFile(tempDir, Path.of("blob.bin"), ContentSearcher.query("key", false, true, 0, 10)).isEmpty());
+    }
+
+    @Test
+    void testSearchEmitsOnlyFilesWithMatches() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Files.writeString(tempDir.resolve("file" + i + ".txt"), i % 10 == 0 ? "needle ü\n" : "hay\n");
+        }
+
+        List<List<ContentSearcher.Match>> results = searcher.search(tempDir,
+                Flux.range(0, 50).map(i -> Path.of("file" + i + ".txt")),
+                ContentSearcher.query("needle ü", false, true, 0, 10)).collectList().block();
+
+        assertEquals(5, results.size());
+        assertTrue(results.stream().allMatch(matches -> matches.size() == 1 && matches.get(0).column() == 1));
+    }
+}
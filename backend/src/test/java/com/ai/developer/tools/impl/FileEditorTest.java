@@ -0,0 +1,138 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileEditorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final FileEditor editor = new FileEditor();
+
+    @Test
+    void testReplaceRequiresAUniqueMatch() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("App.java"), "int a = 1;\nint b = 1;\n");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> editor.replace(file, "= 1;", "= 2;", false, false));
+        assertTrue(error.getMessage().contains("2 times"));
+        assertThrows(IllegalArgumentException.class, () -> editor.replace(file, "missing", "x", false, false));
+
+        FileEditor.Edit edit = editor.replace(file, "int b = 1;", "int b = 2;\nint c = 3;", false, true);
+
+        assertEquals("int a = 1;\nint b = 2;\nint c = 3;\n", Files.readString(file));
+        assertEquals(2, edit.startLine());
+        assertEquals("Replaced 1 line at line 2 with 2 lines", edit.summary());
+    }
+
+    @Test
+    void testReplaceKeepsWindowsLineSeparators() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("crlf.txt"), "one\r\ntwo\r\nthree\r\n");
+
+        editor.replace(file, "one\ntwo", "1\n2", false, false);
+
+        assertEquals("1\r\n2\r\nthree\r\n", Files.readString(file));
+    }
+
+    @Test
+    void testSpliceReplacesAndInsertsLines() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("lines.txt"), "a\nb\nc\nd\n");
+
+        editor.splice(file, 2, 3, "B\nC\nC2", false);
+        assertEquals("a\nB\nC\nC2\nd\n", Files.readString(file));
+
+        editor.splice(file, 1, 0, "first\n", false);
+        assertEquals("first\na\nB\nC\nC2\nd\n", Files.readString(file));
+
+        assertThrows(IllegalArgumentException.class, () -> editor.splice(file, 5, 10, "x", false));
+    }
+
+    @Test
+    void testPatchAppliesHunksThatHaveMoved() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("Main.java"),
+                "// header added later\nclass Main {\n    void run() {\n        step();\n    }\n\n    void stop() {\n    }\n}\n");
+        String diff = """
+                --- a/Main.java
+                +++ b/Main.java
+                @@ -2,3 +2,4 @@ class Main {
+                     void run() {
+                -        step();
+                +        prepare();
+                +        step();
+                     }
+                @@ -6,2 +7,3 @@
+                     void stop() {
+                +        cleanup();
+                     }
+                """;
+
+        FileEditor.Edit edit = editor.patch(file, diff, false);
+
+        assertEquals("// header added later\nclass Main {\n    void run() {\n        prepare();\n        step();\n    }\n\n"
+                + "    void stop() {\n        cleanup();\n    }\n}\n", Files.readString(file));
+        assertEquals("Applied 2 hunks: -1 +3 lines", edit.summary());
+    }
+
+    @Test
+    void testPatchInsertsZeroContextHunksAfterTheirLine() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("lines.txt"), "1\n2\n3\n4\n5\n6\n");
+        // As written by diff -U0: the insertion goes after line 5, the removal takes line 2
+        String diff = """
+                --- a/lines.txt
+                +++ b/lines.txt
+                @@ -2 +1,0 @@
+                -2
+                @@ -5,0 +5,2 @@
+                +5a
+                +5b
+                """;
+
+        editor.patch(file, diff, false);
+
+        assertEquals("1\n3\n4\n5\n5a\n5b\n6\n", Files.readString(file));
+    }
+
+    @Test
+    void testPatchFailsWithoutChangingTheFileWhenAHunkDoesNotMatch() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("a.txt"), "x\ny\n");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> editor.patch(file, "@@ -1,1 +1,1 @@\n-z\n+w\n", false));
+        assertEquals("x\ny\n", Files.readString(file));
+    }
+
+    @Test
+    void testAtomicWriteLeavesNoTemporaryFiles() throws Exception {
+        Path file = tempDir.resolve("new.txt");
+
+        FileEditor.writeAtomically(file, "content", true);
+        FileEditor.writeAtomically(file, "replaced", false);
+
+        assertEquals("replaced", Files.readString(file));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testAtomicWriteReplacesTheTargetOfASymbolicLink() throws Exception {
+        Path target = Files.writeString(Files.createDirectories(tempDir.resolve("real")).resolve("target.txt"), "old");
+        Path link = Files.createSymbolicLink(tempDir.resolve("link.txt"), target);
+
+        editor.replace(link, "old", "new", false, false);
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", Files.readString(target));
+        try (var files = Files.list(target.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.ToolOutputConfig;
+import com.ai.developer.config.WorkspaceTreeConfig;
+import com.ai.developer.tools.ToolOutput;
+import com.ai.developer.tools.ToolOutputGovernor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileSystemToolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final WorkspaceTrees trees = new WorkspaceTrees(new WorkspaceTreeConfig());
+    private FileSystemTool tool;
+
+    @AfterEach
+    void tearDown() {
+        trees.close();
+    }
+
+    private ToolOutput read(Path file, int maxResultBytes) {
+        ToolOutputConfig config = new ToolOutputConfig();
+        config.setMaxResultBytes(maxResultBytes);
+        config.setSpillDirectory(tempDir.resolve("spill").toString());
+        tool = new FileSystemTool(trees, new ToolOutputGovernor(config));
+        return tool.execute(Map.of("operation", "read", "path", file.toString())).blockLast();
+    }
+
+    @Test
+    void testLargeFilesAreReadUpToTheResultCapAtALineBreak() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(String.format("line %04d\n", i));
+        }
+        Path file = Files.writeString(tempDir.resolve("big.log"), content);
+
+        ToolOutput output = read(file, 1024);
+
+        // 1024 less the page header and the note leaves room for 64 lines of 10 bytes
+        assertTrue(output.getContent().startsWith("line 0000\n"));
+        assertTrue(output.getContent().contains("line 0063\n\n... [Showing the first 640 of 10000 bytes."
+                + " Read on with offset 640"), output.getContent());
+        assertTrue(output.getContent().getBytes().length < 1024 - 128);
+        assertEquals(640L, output.getMetadata().get("nextOffset"));
+        assertEquals(true, output.getMetadata().get("truncated"));
+    }
+
+    @Test
+    void testSmallFilesAreReadWhole() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("small.txt"), "one\ntwo\n");
+
+        ToolOutput output = read(file, 1024);
+
+        assertEquals("one\ntwo\n", output.getContent());
+    }
+}
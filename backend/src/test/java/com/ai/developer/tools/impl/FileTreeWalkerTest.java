@@ -0,0 +1,106 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTreeWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final FileTreeWalker walker = new FileTreeWalker();
+
+    private Set<String> walk(PathGlobs include, PathGlobs exclude, boolean gitignore, int maxDepth, int maxEntries) {
+        return walker.walk(tempDir, include, exclude, gitignore, maxDepth, maxEntries)
+                .map(FileTreeWalker.Entry::path)
+                .collect(Collectors.toSet())
+                .block();
+    }
+
+    private void createProject() throws Exception {
+        Files.createDirectories(tempDir.resolve("src/main/java/app"));
+        Files.createDirectories(tempDir.resolve("target/classes"));
+        Files.createDirectories(tempDir.resolve(".git"));
+        Files.writeString(tempDir.resolve(".gitignore"), "target/\n*.log\n!keep.log\n");
+        Files.writeString(tempDir.resolve("src/main/java/app/App.java"), "class App {}");
+        Files.writeString(tempDir.resolve("src/main/java/app/README.md"), "# app");
+        Files.writeString(tempDir.resolve("target/classes/App.class"), "");
+        Files.writeString(tempDir.resolve("build.log"), "");
+        Files.writeString(tempDir.resolve("keep.log"), "");
+        Files.writeString(tempDir.resolve(".git/HEAD"), "ref: refs/heads/main");
+    }
+
+    @Test
+    void testGitignoredEntriesAndGitDirectoryAreSkipped() throws Exception {
+        createProject();
+
+        Set<String> paths = walk(PathGlobs.NONE, PathGlobs.NONE, true, 20, 1000);
+
+        assertEquals(Set.of(".gitignore", "keep.log", "src", "src/main", "src/main/java", "src/main/java/app",
+                "src/main/java/app/App.java", "src/main/java/app/README.md"), paths);
+    }
+
+    @Test
+    void testWalksBelowTheProjectRootApplyItsGitignore() throws Exception {
+        createProject();
+        Files.writeString(tempDir.resolve("src/main/java/app/debug.log"), "");
+
+        Set<String> paths = walker.walk(tempDir.resolve("src/main"), PathGlobs.NONE, PathGlobs.NONE, true, 10, 1000)
+                .map(FileTreeWalker.Entry::path)
+                .collect(Collectors.toSet())
+                .block();
+        assertEquals(Set.of("java", "java/app", "java/app/App.java", "java/app/README.md"), paths);
+    }
+
+    @Test
+    void testIncludeAndExcludeGlobs() throws Exception {
+        createProject();
+
+        assertEquals(Set.of("src/main/java/app/App.java", "target/classes/App.class"),
+                walk(PathGlobs.of(List.of("App.*")), PathGlobs.NONE, false, 20, 1000));
+        assertEquals(Set.of("src/main/java/app/App.java"),
+                walk(PathGlobs.of(List.of("src/**/*.java")), PathGlobs.of(List.of("target")), false, 20, 1000));
+    }
+
+    @Test
+    void testDepthAndEntryCaps() throws Exception {
+        createProject();
+
+        assertEquals(Set.of(".gitignore", "keep.log", "src"), walk(PathGlobs.NONE, PathGlobs.NONE, true, 1, 1000));
+        assertEquals(3, walk(PathGlobs.NONE, PathGlobs.NONE, true, 20, 3).size());
+    }
+
+    @Test
+    void testFileEntryCarriesAttributes() throws Exception {
+        Files.writeString(tempDir.resolve("data.txt"), "12345");
+
+        StepVerifier.create(walker.walk(tempDir, PathGlobs.NONE, PathGlobs.NONE, true, 5, 10))
+                .assertNext(entry -> {
+                    assertEquals("data.txt", entry.path());
+                    assertFalse(entry.directory());
+                    assertEquals(5, entry.size());
+                    assertTrue(entry.lastModified() > 0);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testWalkingAFileFails() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("file.txt"), "x");
+
+        StepVerifier.create(walker.walk(file, PathGlobs.NONE, PathGlobs.NONE, true, 5, 10))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,248 @@
+package com.ai.developer.tools.impl;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaSourceIndexTest {
+
+    @TempDir
+    Path project;
+
+    private WorkspaceTree tree;
+    private JavaSourceIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(project.resolve("src/app"));
+        Files.writeString(project.resolve("src/app/App.java"), """
+                package app;
+
+                import java.util.List;
+
+                /** The application */
+                public class App {
+                    /** Runs it */
+                    public int run(String[] args) {
+                        return new Runnable() { public void run() {} }.hashCode();
+                    }
+
+                    interface Step {
+                        void apply();
+                    }
+                }
+                """);
+        Files.writeString(project.resolve("src/Util.java"), "class Util { static void help() {} }");
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+        index = open(null);
+    }
+
+    private JavaSourceIndex open(Path indexFile) {
+        return new JavaSourceIndex(tree, Schedulers.parallel(), 4, new JavaSymbolResolver(tree, project.resolve("m2")),
+                indexFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tree.close();
+    }
+
+    @Test
+    void testSummaryDescribesTypesAndMethods() {
+        JavaSourceIndex.FileSummary summary = index.summary("src/app/App.java").orElseThrow();
+
+        assertEquals(1, summary.imports());
+        assertEquals(List.of("App", "Step"), summary.types().stream().map(JavaSourceIndex.TypeSummary::name).toList());
+        assertEquals("The application", summary.types().get(0).javadoc());
+        JavaSourceIndex.MethodSummary run = summary.methods().get(0);
+        assertEquals("public int run(String[] args)", run.signature());
+        assertEquals("App", run.declaringType());
+        assertEquals(8, run.line());
+        assertEquals(10, run.endLine());
+        assertEquals("Runs it", run.javadoc());
+        assertNull(summary.methods().get(1).javadoc());
+        assertEquals("Step", summary.methods().get(2).declaringType());
+    }
+
+    private List<JavaSourceIndex.FileSummary> summaries(String directory, boolean recursive) {
+        return index.summaries(directory, recursive)
+                .collectSortedList(Comparator.comparing(JavaSourceIndex.FileSummary::path))
+                .block();
+    }
+
+    @Test
+    void testOnlyChangedContentIsParsedAgain() throws Exception {
+        List<JavaSourceIndex.FileSummary> first = summaries("", true);
+        assertEquals(List.of("src/Util.java", "src/app/App.java"),
+                first.stream().map(JavaSourceIndex.FileSummary::path).toList());
+        assertEquals(List.of("src/Util.java"),
+                summaries("src", false).stream().map(JavaSourceIndex.FileSummary::path).toList());
+
+        // A new mtime with the same content keeps the summary
+        Path app = project.resolve("src/app/App.java");
+        Files.setLastModifiedTime(app, FileTime.fromMillis(Files.getLastModifiedTime(app).toMillis() + 5_000));
+        tree.changed(app);
+        Files.writeString(project.resolve("src/Util.java"), "class Util { static void help() {} void more() {} }");
+        tree.changed(project.resolve("src/Util.java"));
+
+        List<JavaSourceIndex.FileSummary> second = summaries("", true);
+        assertSame(first.get(1), second.get(1));
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals(2, second.get(0).methods().size());
+
+        Files.delete(project.resolve("src/Util.java"));
+        tree.changed(project.resolve("src/Util.java"));
+        assertEquals(1, summaries("", true).size());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testManyFilesAreParsedInParallel() throws Exception {
+        Files.createDirectories(project.resolve("gen"));
+        for (int i = 0; i < 200; i++) {
+            Files.writeString(project.resolve("gen/Gen" + i + ".java"), "class Gen" + i + " { void m" + i + "() {} }");
+        }
+        tree.close();
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+        Scheduler scheduler = Schedulers.newParallel("java-parse", 4);
+        index = new JavaSourceIndex(tree, scheduler, 4, null, null);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Schedulers.onScheduleHook("parse-threads", task -> () -> {
+            threads.add(Thread.currentThread().getName());
+            task.run();
+        });
+
+        try {
+            List<JavaSourceIndex.FileSummary> summaries;
+            try {
+                summaries = summaries("gen", true);
+            } finally {
+                Schedulers.resetOnScheduleHook("parse-threads");
+            }
+
+            assertTrue(threads.stream().filter(thread -> thread.startsWith("java-parse")).count() > 1,
+                    threads.toString());
+            assertEquals(200, summaries.size());
+            assertEquals("m0", summaries.get(0).methods().get(0).name());
+            // Everything is cached now, so the second pass emits the same summaries
+            assertEquals(summaries, summaries("gen", true));
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void testSummariesAreSavedOnCloseAndReusedAfterReopening(@TempDir Path saved) {
+        Path indexFile = saved.resolve("index.json");
+        index = open(indexFile);
+        List<JavaSourceIndex.FileSummary> first = summaries("", true);
+        index.close();
+
+        index = JavaSourceIndex.open(tree, Schedulers.parallel(), 4, null, indexFile);
+        assertEquals(2, index.size());
+        assertEquals(first, summaries("", true));
+        // Summaries keep names as written; only resolved ones qualify them
+        assertEquals("app.App.run(String[])", first.get(1).methods().get(0).qualifiedSignature());
+        assertEquals("app.App.run(java.lang.String[])", open(null).resolvedSummary("src/app/App.java").block()
+                .methods().get(0).qualifiedSignature());
+    }
+
+    private JavaSourceIndex.FileSummary resolved(String path) {
+        return index.resolvedSummary(path).blockOptional().orElseThrow();
+    }
+
+    private List<String> calls(String path) {
+        return resolved(path).references().stream()
+                .filter(reference -> reference.kind() == JavaSourceIndex.Reference.Kind.CALL)
+                .map(reference -> reference.resolved() ? reference.target() : reference.name() + "?")
+                .toList();
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path file = project.resolve(path);
+        Files.writeString(file, content);
+        tree.changed(file);
+    }
+
+    private void shop() throws Exception {
+        Files.createDirectories(project.resolve("src/main/java/shop"));
+        // Each level, as the watcher may have scanned a directory before the next one was made in it
+        for (String directory : List.of("src/main", "src/main/java", "src/main/java/shop")) {
+            tree.changed(project.resolve(directory));
+        }
+        write("src/main/java/shop/Main.java", """
+                package shop;
+                class Main {
+                    void start() { new Job().go(); new Task().go(); }
+                }
+                """);
+        write("src/main/java/shop/Job.java", "package shop; class Job { void go() {} }");
+        // Missing is declared nowhere, like a type from a jar that is not in the local repository
+        write("src/main/java/shop/Other.java", "package shop; class Other { int size() { return Missing.count(); } }");
+    }
+
+    @Test
+    void testResolvedFilesAreResolvedAgainWhenWhatTheyUseChanges() throws Exception {
+        shop();
+
+        assertEquals(List.of("shop.Job.go()", "go?"), calls("src/main/java/shop/Main.java"));
+        assertNull(index.summary("src/main/java/shop/Main.java").orElseThrow().references().get(0).target());
+        JavaSourceIndex.FileSummary other = resolved("src/main/java/shop/Other.java");
+
+        // A new source may declare what did not resolve before, but only Main uses what Task declares
+        write("src/main/java/shop/Task.java", "package shop; class Task { void go() {} }");
+        assertEquals(List.of("shop.Job.go()", "shop.Task.go()"), calls("src/main/java/shop/Main.java"));
+        assertSame(other, resolved("src/main/java/shop/Other.java"));
+
+        // Main resolved a call to Job, so it is resolved again when Job changes, and Other is not
+        write("src/main/java/shop/Base.java", "package shop; class Base { void go() {} }");
+        write("src/main/java/shop/Job.java", "package shop; class Job extends Base { }");
+        assertEquals(List.of("shop.Base.go()", "shop.Task.go()"), calls("src/main/java/shop/Main.java"));
+        assertSame(other, resolved("src/main/java/shop/Other.java"));
+    }
+
+    @Test
+    void testResolutionsAreSavedAndOnlyThoseOutOfDateAreResolvedAgain(@TempDir Path saved) throws Exception {
+        shop();
+        Path indexFile = saved.resolve("index.json");
+        index = open(indexFile);
+        assertEquals(List.of("shop.Job.go()", "go?"), calls("src/main/java/shop/Main.java"));
+        JavaSourceIndex.FileSummary other = resolved("src/main/java/shop/Other.java");
+        index.close();
+
+        // Changed while the index was closed
+        write("src/main/java/shop/Base.java", "package shop; class Base { void go() {} }");
+        write("src/main/java/shop/Job.java", "package shop; class Job extends Base { }");
+        List<String> injected = new ArrayList<>();
+        index = JavaSourceIndex.open(tree, Schedulers.parallel(), 4, new JavaSymbolResolver(tree, project.resolve("m2")) {
+            @Override
+            void inject(CompilationUnit unit) {
+                injected.add(unit.getType(0).getNameAsString());
+                super.inject(unit);
+            }
+        }, indexFile);
+
+        assertEquals(List.of("shop.Base.go()", "go?"), calls("src/main/java/shop/Main.java"));
+        assertEquals(other, resolved("src/main/java/shop/Other.java"));
+        assertEquals(List.of("Main"), injected);
+    }
+}
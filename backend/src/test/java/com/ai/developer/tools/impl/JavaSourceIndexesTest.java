@@ -0,0 +1,78 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.CodeIndexConfig;
+import com.ai.developer.config.WorkspaceTreeConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JavaSourceIndexesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path project;
+    private Path indexDirectory;
+    private WorkspaceTrees trees;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        project = tempDir.resolve("project");
+        Files.createDirectories(project.resolve(".git"));
+        Path sources = Files.createDirectories(project.resolve("src/main/java/app"));
+        Files.writeString(sources.resolve("App.java"), "package app; class App { void run() {} }");
+        indexDirectory = tempDir.resolve("index");
+        trees = new WorkspaceTrees(new WorkspaceTreeConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        trees.close();
+    }
+
+    private JavaSourceIndexes indexes() {
+        CodeIndexConfig config = new CodeIndexConfig();
+        config.setDirectory(indexDirectory.toString());
+        config.setMavenRepository(tempDir.resolve("m2").toString());
+        return new JavaSourceIndexes(config, trees);
+    }
+
+    private static List<Path> jsonFiles(Path directory) throws Exception {
+        if (!Files.exists(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".json")).toList();
+        }
+    }
+
+    @Test
+    void testIndexesAreSavedInTheIndexDirectoryWhicheverFolderWasAnalyzed() throws Exception {
+        JavaSourceIndexes indexes = indexes();
+        assertEquals(1, indexes.summarize(project.resolve("src/main/java/app"), false).collectList().block().size());
+        indexes.close();
+
+        assertEquals(List.of(), jsonFiles(project));
+        List<Path> saved = jsonFiles(indexDirectory);
+        assertEquals(1, saved.size());
+        FileTime savedAt = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(saved.get(0), savedAt);
+
+        // Analyzed from another folder, the summaries come from the saved index, so there is nothing to save again
+        indexes = indexes();
+        assertEquals(1, indexes.summarize(project, true).collectList().block().size());
+        indexes.close();
+        assertEquals(saved, jsonFiles(indexDirectory));
+        assertEquals(savedAt, Files.getLastModifiedTime(saved.get(0)));
+        assertEquals(List.of(), jsonFiles(project));
+    }
+}
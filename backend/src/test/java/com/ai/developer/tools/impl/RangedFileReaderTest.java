@@ -0,0 +1,78 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RangedFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final RangedFileReader reader = new RangedFileReader(1024 * 1024);
+
+    @Test
+    void testLineRangesAcrossIndexCheckpoints() throws Exception {
+        Path log = writeLines(5000);
+
+        RangedFileReader.Range range = reader.readLines(log, 2047, 2050);
+
+        assertEquals("line 2047\nline 2048\nline 2049\nline 2050\n", range.text());
+        assertEquals(5000, range.totalLines());
+        assertEquals(Files.size(log), range.fileSize());
+        assertEquals("line 5000\n", reader.readLines(log, 5000, 6000).text());
+        assertEquals("", reader.readLines(log, 6000, 6001).text());
+    }
+
+    @Test
+    void testIndexIsRebuiltWhenTheFileChanges() throws Exception {
+        Path log = writeLines(3000);
+        assertEquals(3000, reader.readLines(log, 1, 1).totalLines());
+
+        Files.writeString(log, "line 3001\nline 3002", StandardOpenOption.APPEND);
+
+        RangedFileReader.Range range = reader.readLines(log, 3001, 3002);
+        assertEquals("line 3001\nline 3002", range.text());
+        assertEquals(3002, range.totalLines());
+    }
+
+    @Test
+    void testHeadTailAndByteRanges() throws Exception {
+        Path log = writeLines(100);
+
+        assertEquals("line 1\nline 2\n", reader.head(log, 2).text());
+        assertEquals("line 99\nline 100\n", reader.tail(log, 2).text());
+        assertEquals(Files.readString(log), reader.tail(log, 1000).text());
+
+        RangedFileReader.Range bytes = reader.readBytes(log, 7, 7);
+        assertEquals("line 2\n", bytes.text());
+        assertEquals(14, bytes.nextOffset());
+    }
+
+    @Test
+    void testReadsAreCappedAtMaxBytes() throws Exception {
+        Path log = writeLines(1000);
+        RangedFileReader small = new RangedFileReader(20);
+
+        RangedFileReader.Range range = small.readLines(log, 1, 1000);
+
+        assertTrue(range.truncated());
+        assertEquals("line 1\nline 2\nline 3", range.text().substring(0, 20));
+        assertEquals(20, range.nextOffset());
+    }
+
+    private Path writeLines(int count) throws Exception {
+        String content = IntStream.rangeClosed(1, count)
+                .mapToObj(n -> "line " + n + "\n")
+                .collect(Collectors.joining());
+        return Files.writeString(tempDir.resolve("app.log"), content);
+    }
+}
@@ -0,0 +1,162 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrigramIndexTest {
+
+    @TempDir
+    Path project;
+
+    @TempDir
+    Path indexDirectory;
+
+    private WorkspaceTree tree;
+    private TrigramIndex index;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.close();
+        }
+        if (tree != null) {
+            tree.close();
+        }
+    }
+
+    private TrigramIndex open() {
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+        return TrigramIndex.open(tree, indexDirectory.resolve("project.idx"), ForkJoinPool.commonPool());
+    }
+
+    private List<Path> candidates(String pattern, boolean regex, boolean caseSensitive) {
+        return index.candidates(project, TrigramIndex.queryTrigrams(pattern, regex, caseSensitive));
+    }
+
+    @Test
+    void testCandidatesContainEveryQueryTrigram() throws Exception {
+        Files.createDirectories(project.resolve("src"));
+        Files.writeString(project.resolve("src/Hello.java"), "class Hello { String greeting = \"Hello World\"; }");
+        Files.writeString(project.resolve("src/Bye.java"), "class Bye { String word = \"goodbye\"; }");
+        Files.writeString(project.resolve(".gitignore"), "*.log\n");
+        Files.writeString(project.resolve("build.log"), "Hello World");
+        index = open();
+
+        assertEquals(List.of(Path.of("src/Hello.java")), candidates("Hello World", false, true));
+        assertEquals(List.of(Path.of("src/Hello.java")), candidates("hello world", false, false));
+        assertEquals(List.of(), candidates("nowhere", false, true));
+        assertEquals(List.of(Path.of("Hello.java")),
+                index.candidates(project.resolve("src"), TrigramIndex.queryTrigrams("World", false, true)));
+        // Too short for a trigram, so every indexed file is a candidate, .gitignore included
+        assertEquals(3, candidates("by", false, true).size());
+    }
+
+    @Test
+    void testRequiredLiteralsOfRegex() {
+        assertEquals(List.of("foo.bar", "qux"), TrigramIndex.requiredLiterals("foo\\.bar(baz)?qux+"));
+        assertEquals(List.of("efg"), TrigramIndex.requiredLiterals("ab[cd]efg"));
+        assertEquals(List.of("yzw"), TrigramIndex.requiredLiterals("x{2}yzw"));
+        assertEquals(List.of("void "), TrigramIndex.requiredLiterals("void \\w+\\("));
+        assertEquals(List.of(), TrigramIndex.requiredLiterals("alpha|beta"));
+    }
+
+    @Test
+    void testRequiredLiteralsSkipWholeEscapes() {
+        assertEquals(List.of("BCD"), TrigramIndex.requiredLiterals("\\x41BCD"));
+        assertEquals(List.of("BCD"), TrigramIndex.requiredLiterals("\\x{41}BCD"));
+        assertEquals(List.of("caf"), TrigramIndex.requiredLiterals("caf\\u00e9s"));
+        assertEquals(List.of("BCD"), TrigramIndex.requiredLiterals("\\0101BCD"));
+        assertEquals(List.of("XYZ"), TrigramIndex.requiredLiterals("\\cXXYZ"));
+        assertEquals(List.of("xyz"), TrigramIndex.requiredLiterals("(?<n>ab)\\k<n>xyz"));
+        assertEquals(List.of("abc"), TrigramIndex.requiredLiterals("\\p{Lu}abc\\P{L}"));
+        assertEquals(List.of("a.b*c(d"), TrigramIndex.requiredLiterals("\\Qa.b*c(d\\E"));
+        assertEquals(List.of("pre$x", "post"), TrigramIndex.requiredLiterals("pre\\Q$x\\E\\d+post"));
+        // In comments mode the spaces in the pattern are not required
+        assertEquals(List.of(), TrigramIndex.requiredLiterals("(?x) foo bar"));
+        assertEquals(List.of(), TrigramIndex.requiredLiterals("(?ix:foo bar)"));
+    }
+
+    @Test
+    void testReopenedIndexPicksUpChangesMadeWhileClosed() throws Exception {
+        Files.writeString(project.resolve("a.txt"), "first version");
+        Files.writeString(project.resolve("b.txt"), "unchanged");
+        index = open();
+        assertEquals(List.of(Path.of("a.txt")), candidates("first", false, true));
+        index.close();
+        tree.close();
+
+        Files.writeString(project.resolve("a.txt"), "second version, longer");
+        Files.delete(project.resolve("b.txt"));
+        index = open();
+
+        assertEquals(List.of(), candidates("first", false, true));
+        assertEquals(List.of(Path.of("a.txt")), candidates("second", false, true));
+        assertEquals(1, index.getFileCount());
+    }
+
+    @Test
+    void testIdsOfReindexedFilesAreReused() throws Exception {
+        Files.writeString(project.resolve("a.txt"), "alpha");
+        Files.writeString(project.resolve("b.txt"), "bravo");
+        index = open();
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(project.resolve("a.txt"), "alpha version " + "x".repeat(i));
+            tree.changed(project.resolve("a.txt"));
+            assertEquals(List.of(Path.of("a.txt")), candidates("alpha", false, true));
+        }
+        assertTrue(index.getIdCount() <= 4);
+        assertEquals(List.of(Path.of("b.txt")), candidates("bravo", false, true));
+        index.close();
+        tree.close();
+
+        // Saved compacted, so the reopened index starts with one id per file
+        index = open();
+        assertEquals(2, index.getIdCount());
+        assertEquals(List.of(Path.of("a.txt")), candidates("version", false, true));
+        assertEquals(List.of(Path.of("b.txt")), candidates("bravo", false, true));
+    }
+
+    @Test
+    void testChangedFilesAreReindexedEvenWithTheirOldSizeAndMtime() throws Exception {
+        Path file = project.resolve("a.txt");
+        Files.writeString(file, "alpha");
+        FileTime indexedAt = Files.getLastModifiedTime(file);
+        index = open();
+        assertEquals(List.of(Path.of("a.txt")), candidates("alpha", false, true));
+
+        // Edited twice before the next search, the second time back to the size and mtime indexed
+        Files.writeString(file, "alphabet");
+        tree.changed(file);
+        Files.writeString(file, "omega");
+        Files.setLastModifiedTime(file, indexedAt);
+        tree.changed(file);
+
+        assertEquals(List.of(Path.of("a.txt")), candidates("omega", false, true));
+        assertEquals(List.of(), candidates("alpha", false, true));
+    }
+
+    @Test
+    void testWatchedChangesAreIndexed() throws Exception {
+        Files.writeString(project.resolve("a.txt"), "nothing here");
+        index = open();
+        assertEquals(List.of(), candidates("needle", false, true));
+
+        Files.writeString(project.resolve("a.txt"), "a needle appears");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (candidates("needle", false, true).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(candidates("needle", false, true).contains(Path.of("a.txt")));
+    }
+}
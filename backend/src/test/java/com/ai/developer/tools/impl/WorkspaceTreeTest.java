@@ -0,0 +1,204 @@
+package com.ai.developer.tools.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkspaceTreeTest {
+
+    @TempDir
+    Path project;
+
+    private WorkspaceTree tree;
+
+    @AfterEach
+    void tearDown() {
+        if (tree != null) {
+            tree.close();
+        }
+    }
+
+    private static List<String> paths(List<WorkspaceTree.Node> nodes) {
+        return nodes.stream().map(WorkspaceTree.Node::path).toList();
+    }
+
+    @Test
+    void testIgnoredEntriesAreListedButNotTracked() throws Exception {
+        Files.createDirectories(project.resolve("src/main"));
+        Files.createDirectories(project.resolve("target/classes"));
+        Files.writeString(project.resolve("src/main/App.java"), "class App {}");
+        Files.writeString(project.resolve("target/classes/App.class"), "binary");
+        Files.writeString(project.resolve(".gitignore"), "target/\n");
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+
+        List<WorkspaceTree.Node> root = tree.list("").orElseThrow();
+        assertEquals(List.of(".gitignore", "src", "target"), paths(root));
+        assertTrue(root.get(2).ignored());
+        assertEquals(Optional.empty(), tree.list("target"));
+        assertEquals(Optional.empty(), tree.get("target/classes"));
+        assertEquals(List.of(".gitignore", "src/main/App.java"),
+                paths(tree.files("")).stream().sorted().toList());
+    }
+
+    @Test
+    void testWalkAppliesGlobsAndDepth() throws Exception {
+        Files.createDirectories(project.resolve("a/b"));
+        Files.writeString(project.resolve("a/One.java"), "");
+        Files.writeString(project.resolve("a/b/Two.java"), "");
+        Files.writeString(project.resolve("a/b/notes.txt"), "");
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+
+        assertEquals(List.of("a", "a/One.java", "a/b", "a/b/Two.java", "a/b/notes.txt"),
+                paths(tree.walk("", PathGlobs.NONE, PathGlobs.NONE, 10, 100)));
+        assertEquals(List.of("a/One.java", "a/b/Two.java"),
+                paths(tree.walk("", PathGlobs.of(List.of("**/*.java")), PathGlobs.NONE, 10, 100)));
+        assertEquals(List.of("a/One.java", "a/b"),
+                paths(tree.walk("a", PathGlobs.NONE, PathGlobs.NONE, 1, 100)));
+        assertEquals(List.of("a/One.java"),
+                paths(tree.walk("a", PathGlobs.NONE, PathGlobs.of(List.of("b")), 10, 100)));
+    }
+
+    @Test
+    void testReportedChangesAreVisibleAtOnce() throws Exception {
+        Files.writeString(project.resolve("a.txt"), "one");
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+        long before = tree.getStamp();
+        String hash = tree.contentHash("a.txt").orElseThrow();
+
+        Files.writeString(project.resolve("a.txt"), "two, longer");
+        Files.writeString(project.resolve("b.txt"), "new");
+        tree.changed(project.resolve("a.txt"));
+        tree.changed(project.resolve("b.txt"));
+
+        WorkspaceTree.Changes changes = tree.changesSince(before);
+        assertTrue(changes.complete());
+        assertTrue(changes.paths().containsAll(List.of("a.txt", "b.txt")));
+        assertEquals(11, tree.get("a.txt").orElseThrow().size());
+        assertFalse(hash.equals(tree.contentHash("a.txt").orElseThrow()));
+
+        Files.delete(project.resolve("b.txt"));
+        tree.changed(project.resolve("b.txt"));
+        assertEquals(Optional.empty(), tree.get("b.txt"));
+        assertFalse(tree.changesSince(-1).complete());
+    }
+
+    @Test
+    void testSubtreeStampMovesOnlyForChangesBelowTheDirectory() throws Exception {
+        Files.createDirectories(project.resolve("a/b"));
+        Files.createDirectories(project.resolve("c"));
+        Files.writeString(project.resolve("a/b/One.java"), "");
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+        long a = tree.subtreeStamp("a").orElseThrow();
+        long root = tree.subtreeStamp("").orElseThrow();
+
+        Files.writeString(project.resolve("c/Two.java"), "class Two {}");
+        tree.changed(project.resolve("c/Two.java"));
+        assertEquals(a, tree.subtreeStamp("a").orElseThrow());
+        assertTrue(tree.subtreeStamp("").orElseThrow() > root);
+
+        Files.delete(project.resolve("a/b/One.java"));
+        tree.changed(project.resolve("a/b/One.java"));
+        assertTrue(tree.subtreeStamp("a").orElseThrow() > a);
+        assertTrue(tree.subtreeStamp("a/b/One.java").isEmpty());
+    }
+
+    @Test
+    void testWatchedDirectoriesAreAddedWithTheirContents() throws Exception {
+        tree = WorkspaceTree.open(project, new FileTreeWalker());
+
+        Files.createDirectories(project.resolve("new/nested"));
+        Files.writeString(project.resolve("new/nested/file.txt"), "content");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (tree.get("new/nested/file.txt").isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(tree.get("new/nested/file.txt").orElseThrow().isFile());
+    }
+
+    @Test
+    void testReadsRescanAtMostOncePerIntervalWhenADirectoryCannotBeWatched() throws Exception {
+        Files.createDirectories(project.resolve("unwatched"));
+        AtomicInteger scans = new AtomicInteger();
+        FileTreeWalker walker = new FileTreeWalker() {
+            @Override
+            Flux<Entry> walk(Path root, PathGlobs include, PathGlobs exclude, boolean gitignore, boolean reportIgnored,
+                             int maxDepth, int maxEntries) {
+                scans.incrementAndGet();
+                return super.walk(root, include, exclude, gitignore, reportIgnored, maxDepth, maxEntries);
+            }
+        };
+        // As when the OS watch limit is reached
+        tree = WorkspaceTree.open(project, walker, listener -> new DirectoryWatcher("test-watch", listener) {
+            @Override
+            boolean register(Path directory) {
+                return !directory.endsWith("unwatched") && super.register(directory);
+            }
+        }, 300);
+        assertFalse(tree.isWatchingAll());
+
+        for (int i = 0; i < 100; i++) {
+            tree.get("unwatched");
+        }
+        assertEquals(1, scans.get());
+
+        Files.writeString(project.resolve("unwatched/new.txt"), "content");
+        Thread.sleep(350);
+        assertTrue(tree.get("unwatched/new.txt").isPresent());
+        assertEquals(2, scans.get());
+    }
+
+    @Test
+    void testChangesDuringARescanAreNotUndoneByIt() throws Exception {
+        Files.createDirectories(project.resolve("unwatched"));
+        Files.writeString(project.resolve("old.txt"), "content");
+        AtomicBoolean changeDuringWalk = new AtomicBoolean();
+        FileTreeWalker walker = new FileTreeWalker() {
+            @Override
+            Flux<Entry> walk(Path root, PathGlobs include, PathGlobs exclude, boolean gitignore, boolean reportIgnored,
+                             int maxDepth, int maxEntries) {
+                List<Entry> entries = super.walk(root, include, exclude, gitignore, reportIgnored, maxDepth, maxEntries)
+                        .collectList().block();
+                if (changeDuringWalk.getAndSet(false)) {
+                    // Written and reported after the walk saw the directory, so its listing is stale
+                    try {
+                        Files.writeString(project.resolve("new.txt"), "content");
+                        Files.delete(project.resolve("old.txt"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    tree.changed(project.resolve("new.txt"));
+                    tree.changed(project.resolve("old.txt"));
+                }
+                return Flux.fromIterable(entries);
+            }
+        };
+        tree = WorkspaceTree.open(project, walker, listener -> new DirectoryWatcher("test-watch", listener) {
+            @Override
+            boolean register(Path directory) {
+                return !directory.endsWith("unwatched") && super.register(directory);
+            }
+        }, 0);
+
+        changeDuringWalk.set(true);
+        tree.get("unwatched");
+
+        assertFalse(changeDuringWalk.get());
+        assertTrue(tree.get("new.txt").isPresent());
+        assertTrue(tree.get("old.txt").isEmpty());
+    }
+}
@@ -0,0 +1,112 @@
+package com.ai.developer.tools.impl;
+
+import com.ai.developer.config.WorkspaceTreeConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkspaceTreesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private WorkspaceTrees trees;
+
+    @AfterEach
+    void tearDown() {
+        if (trees != null) {
+            trees.close();
+        }
+    }
+
+    private WorkspaceTrees trees(int maxOpen, List<String> roots) {
+        WorkspaceTreeConfig config = new WorkspaceTreeConfig();
+        config.setMaxOpen(maxOpen);
+        config.setRoots(roots);
+        return new WorkspaceTrees(config);
+    }
+
+    private Path repository(String name) throws Exception {
+        Path root = tempDir.resolve(name);
+        Files.createDirectories(root.resolve(".git"));
+        Files.createDirectories(root.resolve("src"));
+        return root;
+    }
+
+    @Test
+    void testTreesAreOnlyOpenedInsideProjects() throws Exception {
+        Path repository = repository("repo");
+        Path plain = Files.createDirectories(tempDir.resolve("plain"));
+        trees = trees(8, List.of());
+
+        assertEquals(Optional.empty(), trees.treeFor(plain));
+        WorkspaceTree tree = trees.treeFor(repository.resolve("src")).orElseThrow();
+        assertEquals(repository, tree.getRoot());
+        assertEquals(Optional.of(tree), trees.find(repository.resolve("src/App.java")));
+        assertEquals(Optional.empty(), trees.find(plain));
+    }
+
+    @Test
+    void testConfiguredRootsAreProjects() throws Exception {
+        Path workspace = Files.createDirectories(tempDir.resolve("workspace/module"));
+        trees = trees(8, List.of(tempDir.resolve("workspace").toString()));
+
+        assertEquals(tempDir.resolve("workspace"), trees.treeFor(workspace).orElseThrow().getRoot());
+    }
+
+    @Test
+    void testParentTreeReplacesNestedOnes() throws Exception {
+        Path parent = repository("parent");
+        Path nested = Files.createDirectories(parent.resolve("modules/nested"));
+        Files.createDirectories(nested.resolve(".git"));
+        trees = trees(8, List.of());
+
+        WorkspaceTree child = trees.treeFor(nested).orElseThrow();
+        WorkspaceTree outer = trees.treeFor(parent.resolve("src")).orElseThrow();
+
+        assertTrue(child.isClosed());
+        assertEquals(Optional.of(outer), trees.find(nested));
+    }
+
+    @Test
+    void testLeastRecentlyUsedTreeIsClosedPastTheLimit() throws Exception {
+        Path first = repository("first");
+        Path second = repository("second");
+        trees = trees(1, List.of());
+
+        WorkspaceTree firstTree = trees.treeFor(first).orElseThrow();
+        trees.treeFor(second).orElseThrow();
+
+        assertTrue(firstTree.isClosed());
+        assertEquals(Optional.empty(), trees.find(first));
+    }
+
+    @Test
+    void testTreesAreRescannedBeforeAToolCommandEnds() throws Exception {
+        Path repository = repository("repo");
+        trees = trees(8, List.of());
+        trees.treeFor(repository).orElseThrow();
+        Path written = repository.resolve("src/App.java");
+        String before = trees.treeFingerprint(repository).orElseThrow();
+
+        List<String> output = trees.rescanAfter(repository.resolve("src"), Mono.fromCallable(() -> {
+            Files.writeString(written, "class App {}");
+            return "written";
+        }).flux()).collectList().block();
+
+        assertEquals(List.of("written"), output);
+        // No watch event has to arrive first
+        assertTrue(trees.fileFingerprint(written).isPresent());
+        assertNotEquals(before, trees.treeFingerprint(repository).orElseThrow());
+    }
+}